@@ -0,0 +1,128 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.EntryIDSet.EntryIDSetCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the codecs storing the sets of entry IDs of the index keys.
+ * <p>
+ * This benchmark is in the same package as {@link EntryIDSet}, which is not
+ * public.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntryIDSetBenchmark
+{
+  /** The codec to benchmark. */
+  @Param({ "V1", "V2", "V3" })
+  public String codec;
+  /** The number of entry IDs in the set. */
+  @Param({ "10", "1000", "100000" })
+  public int size;
+  /** The average distance between consecutive entry IDs, 1 for a dense set. */
+  @Param({ "1", "16", "1024" })
+  public int spacing;
+
+  private EntryIDSetCodec entryIDSetCodec;
+  private EntryIDSet entryIDSet;
+  private ByteString encodedSet;
+
+  /** Generates the set of entry IDs from a fixed seed. */
+  @Setup
+  public void setUp()
+  {
+    switch (codec)
+    {
+    case "V1":
+      entryIDSetCodec = EntryIDSet.CODEC_V1;
+      break;
+    case "V2":
+      entryIDSetCodec = EntryIDSet.CODEC_V2;
+      break;
+    default:
+      entryIDSetCodec = EntryIDSet.CODEC_V3;
+      break;
+    }
+
+    final Random random = new Random(size * 31L + spacing);
+    final TreeSet<Long> ids = new TreeSet<>();
+    while (ids.size() < size)
+    {
+      ids.add((long) random.nextInt(size * spacing));
+    }
+    final long[] entryIDs = new long[size];
+    int i = 0;
+    for (long id : ids)
+    {
+      entryIDs[i++] = id;
+    }
+    entryIDSet = EntryIDSet.newDefinedSet(entryIDs);
+    encodedSet = entryIDSetCodec.encode(entryIDSet);
+  }
+
+  /**
+   * Encodes the set.
+   *
+   * @return the encoded set
+   */
+  @Benchmark
+  public ByteString encode()
+  {
+    return entryIDSetCodec.encode(entryIDSet);
+  }
+
+  /**
+   * Decodes the set.
+   *
+   * @return the decoded set
+   */
+  @Benchmark
+  public EntryIDSet decode()
+  {
+    return entryIDSetCodec.decode(ByteString.empty(), encodedSet);
+  }
+}
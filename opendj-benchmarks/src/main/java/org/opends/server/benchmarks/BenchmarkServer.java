@@ -0,0 +1,269 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import static org.opends.server.config.ConfigConstants.*;
+import static org.opends.server.util.ServerConstants.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.opends.server.admin.server.ServerManagementContext;
+import org.opends.server.admin.std.server.RootCfg;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.extensions.ConfigFileHandler;
+import org.opends.server.tools.makeldif.EntryWriter;
+import org.opends.server.tools.makeldif.TemplateEntry;
+import org.opends.server.tools.makeldif.TemplateFile;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFExportConfig;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.util.LDIFException;
+import org.opends.server.util.LDIFReader;
+
+/**
+ * Bootstraps the Directory Server in the benchmark JVM, the same way offline
+ * tools do, and generates the entries used by the benchmarks.
+ * <p>
+ * The configuration, schema and MakeLDIF resources are copied from the server
+ * module into a temporary instance, so that benchmarks never modify the
+ * source tree. The server module is located with the
+ * {@value #PROPERTY_SERVER_DIR} system property.
+ * <p>
+ * Entries are generated from the MakeLDIF example template with a fixed seed,
+ * so that each run of the benchmarks processes exactly the same data.
+ */
+public final class BenchmarkServer
+{
+  /** The system property giving the location of the server module. */
+  public static final String PROPERTY_SERVER_DIR = "org.opends.server.benchmarks.ServerDir";
+
+  /** The seed used for generating entries. */
+  private static final long SEED = 0x5EEDL;
+  /** The MakeLDIF template used for generating entries. */
+  private static final String TEMPLATE = "example.template";
+
+  private static File instanceRoot;
+  private static List<Entry> entries;
+
+  private BenchmarkServer()
+  {
+    // prevent instantiation
+  }
+
+  /**
+   * Bootstraps the server, if not already done, with its configuration and
+   * schema. No connection handler nor backend is started.
+   *
+   * @throws Exception
+   *           if the server cannot be bootstrapped
+   */
+  public static synchronized void start() throws Exception
+  {
+    if (instanceRoot != null)
+    {
+      return;
+    }
+
+    final File serverDir = new File(System.getProperty(PROPERTY_SERVER_DIR, "../opendj-server-legacy"));
+    final File resourceDir = new File(serverDir, "resource");
+    if (!resourceDir.isDirectory())
+    {
+      throw new IOException("Cannot find the server resources in " + resourceDir.getAbsolutePath()
+          + ", please set the " + PROPERTY_SERVER_DIR + " system property");
+    }
+
+    final File root = Files.createTempDirectory("opendj-benchmarks-").toFile();
+    final File configDir = new File(root, "config");
+    copyDirectory(new File(resourceDir, "config"), configDir);
+    copyDirectory(new File(resourceDir, "schema"), new File(configDir, "schema"));
+    copyDirectory(new File(resourceDir, "MakeLDIF"), new File(configDir, "MakeLDIF"));
+    for (String dir : new String[] { "logs", "locks", "db" })
+    {
+      new File(root, dir).mkdir();
+    }
+    System.setProperty(PROPERTY_SERVER_ROOT, root.getAbsolutePath());
+    System.setProperty(PROPERTY_INSTANCE_ROOT, root.getAbsolutePath());
+
+    final DirectoryServer directoryServer = DirectoryServer.getInstance();
+    DirectoryServer.bootstrapClient();
+    DirectoryServer.initializeJMX();
+    directoryServer.initializeConfiguration(ConfigFileHandler.class.getName(),
+        new File(configDir, CONFIG_FILE_NAME).getAbsolutePath());
+    directoryServer.initializeSchema();
+    instanceRoot = root;
+  }
+
+  /**
+   * Returns the root configuration of the server.
+   *
+   * @return the root configuration of the server
+   * @throws Exception
+   *           if the server cannot be bootstrapped
+   */
+  public static RootCfg getRootConfiguration() throws Exception
+  {
+    start();
+    return ServerManagementContext.getInstance().getRootConfiguration();
+  }
+
+  /**
+   * Returns the entries generated from the MakeLDIF example template, which
+   * are always the same: the suffix, the people branch and the users.
+   *
+   * @return the generated entries, which must not be modified
+   * @throws Exception
+   *           if the server cannot be bootstrapped or the entries cannot be
+   *           generated
+   */
+  public static synchronized List<Entry> getEntries() throws Exception
+  {
+    if (entries == null)
+    {
+      entries = Collections.unmodifiableList(generateEntries());
+    }
+    return entries;
+  }
+
+  private static List<Entry> generateEntries() throws Exception
+  {
+    start();
+    final File makeLDIFDir = new File(instanceRoot, "config" + File.separator + "MakeLDIF");
+    final TemplateFile templateFile = new TemplateFile(makeLDIFDir.getAbsolutePath(), new Random(SEED));
+    final List<LocalizableMessage> warnings = new ArrayList<>();
+    templateFile.parse(new File(makeLDIFDir, TEMPLATE).getAbsolutePath(), warnings);
+
+    final ByteArrayOutputStream ldif = new ByteArrayOutputStream();
+    final LDIFExportConfig exportConfig = new LDIFExportConfig(ldif);
+    templateFile.generateLDIF(new EntryWriter()
+    {
+      @Override
+      public boolean writeEntry(TemplateEntry entry) throws IOException
+      {
+        try
+        {
+          return entry.toLDIF(exportConfig);
+        }
+        catch (LDIFException e)
+        {
+          throw new IOException(e);
+        }
+      }
+
+      @Override
+      public void closeEntryWriter()
+      {
+        exportConfig.close();
+      }
+    });
+
+    final List<Entry> generated = new ArrayList<>();
+    try (LDIFReader reader = new LDIFReader(new LDIFImportConfig(new ByteArrayInputStream(ldif.toByteArray()))))
+    {
+      Entry entry;
+      while ((entry = reader.readEntry()) != null)
+      {
+        generated.add(entry);
+      }
+    }
+    return generated;
+  }
+
+  /**
+   * Returns the users among the generated entries.
+   *
+   * @return the users among the generated entries
+   * @throws Exception
+   *           if the entries cannot be generated
+   */
+  public static List<Entry> getUsers() throws Exception
+  {
+    final List<Entry> all = getEntries();
+    final List<Entry> users = new ArrayList<>(all.size());
+    for (Entry entry : all)
+    {
+      if (entry.hasObjectClass(DirectoryServer.getObjectClass("inetorgperson", true)))
+      {
+        users.add(entry);
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Creates a new instance of the class with the provided name, as specified
+   * by the java-class property of a configuration.
+   *
+   * @param <T>
+   *          the type of the instance
+   * @param className
+   *          the name of the class to instantiate
+   * @param type
+   *          the type of the instance
+   * @return a new instance of the class
+   * @throws Exception
+   *           if the class cannot be instantiated
+   */
+  public static <T> T newInstance(String className, Class<T> type) throws Exception
+  {
+    return Class.forName(className).asSubclass(type).newInstance();
+  }
+
+  private static void copyDirectory(final File source, final File target) throws IOException
+  {
+    final Path sourcePath = source.toPath();
+    final Path targetPath = target.toPath();
+    Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>()
+    {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+      {
+        Files.createDirectories(targetPath.resolve(sourcePath.relativize(dir)));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+      {
+        Files.copy(file, targetPath.resolve(sourcePath.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks parsing DNs from their string representation. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DNBenchmark
+{
+  private String[] dnStrings;
+  private ByteString[] dnBytes;
+  private int next;
+
+  /**
+   * Collects the DNs of the generated entries.
+   *
+   * @throws Exception
+   *           if the entries cannot be generated
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> entries = BenchmarkServer.getEntries();
+    dnStrings = new String[entries.size()];
+    dnBytes = new ByteString[entries.size()];
+    for (int i = 0; i < dnStrings.length; i++)
+    {
+      dnStrings[i] = entries.get(i).getName().toString();
+      dnBytes[i] = ByteString.valueOfUtf8(dnStrings[i]);
+    }
+  }
+
+  private int nextIndex()
+  {
+    final int index = next;
+    next = index + 1 < dnStrings.length ? index + 1 : 0;
+    return index;
+  }
+
+  /**
+   * Parses a DN from a string.
+   *
+   * @return the parsed DN
+   * @throws Exception
+   *           if the DN cannot be parsed
+   */
+  @Benchmark
+  public DN valueOf() throws Exception
+  {
+    return DN.valueOf(dnStrings[nextIndex()]);
+  }
+
+  /**
+   * Parses a DN from its UTF-8 bytes.
+   *
+   * @return the parsed DN
+   * @throws Exception
+   *           if the DN cannot be parsed
+   */
+  @Benchmark
+  public DN decode() throws Exception
+  {
+    return DN.decode(dnBytes[nextIndex()]);
+  }
+
+  /**
+   * Parses a DN and normalizes it, as done for index and entry cache keys.
+   *
+   * @return the normalized DN
+   * @throws Exception
+   *           if the DN cannot be parsed
+   */
+  @Benchmark
+  public ByteString valueOfAndNormalize() throws Exception
+  {
+    return DN.valueOf(dnStrings[nextIndex()]).toNormalizedByteString();
+  }
+}
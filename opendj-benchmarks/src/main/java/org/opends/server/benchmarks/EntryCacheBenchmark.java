@@ -0,0 +1,154 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.admin.std.server.EntryCacheCfg;
+import org.opends.server.api.EntryCache;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the entry caches, as configured in the default configuration,
+ * from concurrent threads.
+ * <p>
+ * Half of the generated users are cached before measuring, so that half of
+ * the lookups are hits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntryCacheBenchmark
+{
+  private static final String BACKEND_ID = "userRoot";
+
+  /** The name of the entry cache in the configuration. */
+  @Param({ "FIFO", "Soft Reference", "TinyLFU", "Off-Heap" })
+  public String cache;
+
+  private EntryCache<?> entryCache;
+  private Entry[] users;
+
+  /**
+   * Initializes the entry cache from the configuration and caches half of the
+   * generated users.
+   *
+   * @throws Exception
+   *           if the entry cache cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    entryCache = newEntryCache(BenchmarkServer.getRootConfiguration().getEntryCache(cache));
+    final List<Entry> entries = BenchmarkServer.getUsers();
+    users = entries.toArray(new Entry[entries.size()]);
+    for (int i = 0; i < users.length; i += 2)
+    {
+      entryCache.putEntry(users[i], BACKEND_ID, i);
+    }
+  }
+
+  private static <T extends EntryCacheCfg> EntryCache<T> newEntryCache(T configuration) throws Exception
+  {
+    @SuppressWarnings("unchecked")
+    final EntryCache<T> entryCache = BenchmarkServer.newInstance(configuration.getJavaClass(), EntryCache.class);
+    entryCache.initializeEntryCache(configuration);
+    return entryCache;
+  }
+
+  /** Finalizes the entry cache. */
+  @TearDown
+  public void tearDown()
+  {
+    entryCache.finalizeEntryCache();
+  }
+
+  private int randomIndex()
+  {
+    return ThreadLocalRandom.current().nextInt(users.length);
+  }
+
+  /**
+   * Looks up an entry by DN.
+   *
+   * @return the cached entry, or {@code null} on a miss
+   */
+  @Benchmark
+  @Threads(8)
+  public Entry getEntry()
+  {
+    return entryCache.getEntry(users[randomIndex()].getName());
+  }
+
+  /**
+   * Looks up an entry by DN, concurrently with {@link #writer()}.
+   *
+   * @return the cached entry, or {@code null} on a miss
+   */
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(6)
+  public Entry reader()
+  {
+    return entryCache.getEntry(users[randomIndex()].getName());
+  }
+
+  /**
+   * Caches an entry, concurrently with {@link #reader()}.
+   *
+   * @return the DN of the cached entry
+   */
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(2)
+  public DN writer()
+  {
+    final int index = randomIndex();
+    entryCache.putEntry(users[index], BACKEND_ID, index);
+    return users[index].getName();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.api.CompressedSchema;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Entry;
+import org.opends.server.types.EntryEncodeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks encoding entries to and decoding entries from their backend format. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntryCodecBenchmark
+{
+  /** Whether attribute descriptions and object classes are compressed with the compressed schema. */
+  @Param({ "true", "false" })
+  public boolean compressSchema;
+
+  private Entry[] entries;
+  private ByteString[] encodedEntries;
+  private EntryEncodeConfig encodeConfig;
+  private CompressedSchema compressedSchema;
+  private final ByteStringBuilder buffer = new ByteStringBuilder();
+  private int next;
+
+  /**
+   * Encodes the generated entries.
+   *
+   * @throws Exception
+   *           if the entries cannot be generated or encoded
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> generated = BenchmarkServer.getEntries();
+    entries = generated.toArray(new Entry[generated.size()]);
+    compressedSchema = DirectoryServer.getDefaultCompressedSchema();
+    encodeConfig = new EntryEncodeConfig(false, compressSchema, compressSchema, compressedSchema);
+    encodedEntries = new ByteString[entries.length];
+    for (int i = 0; i < entries.length; i++)
+    {
+      buffer.clear();
+      entries[i].encode(buffer, encodeConfig);
+      encodedEntries[i] = buffer.toByteString();
+    }
+  }
+
+  private int nextIndex()
+  {
+    final int index = next;
+    next = index + 1 < entries.length ? index + 1 : 0;
+    return index;
+  }
+
+  /**
+   * Encodes an entry.
+   *
+   * @return the number of bytes of the encoded entry
+   * @throws Exception
+   *           if the entry cannot be encoded
+   */
+  @Benchmark
+  public int encode() throws Exception
+  {
+    buffer.clear();
+    entries[nextIndex()].encode(buffer, encodeConfig);
+    return buffer.length();
+  }
+
+  /**
+   * Decodes an entry with all its values.
+   *
+   * @return the decoded entry
+   * @throws Exception
+   *           if the entry cannot be decoded
+   */
+  @Benchmark
+  public Entry decode() throws Exception
+  {
+    return Entry.decode(encodedEntries[nextIndex()].asReader(), compressedSchema);
+  }
+
+  /**
+   * Decodes an entry without decoding its values.
+   *
+   * @return the decoded entry
+   * @throws Exception
+   *           if the entry cannot be decoded
+   */
+  @Benchmark
+  public Entry decodeLazily() throws Exception
+  {
+    return Entry.decodeLazily(encodedEntries[nextIndex()].asReader(), compressedSchema);
+  }
+}
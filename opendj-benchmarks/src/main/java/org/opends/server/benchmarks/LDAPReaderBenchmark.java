@@ -0,0 +1,135 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.io.ASN1;
+import org.forgerock.opendj.io.ASN1Writer;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DereferenceAliasesPolicy;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.protocols.ldap.AddRequestProtocolOp;
+import org.opends.server.protocols.ldap.LDAPMessage;
+import org.opends.server.protocols.ldap.LDAPReader;
+import org.opends.server.protocols.ldap.ProtocolOp;
+import org.opends.server.protocols.ldap.SearchRequestProtocolOp;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Entry;
+import org.opends.server.types.RawAttribute;
+import org.opends.server.types.RawFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks decoding LDAP messages received from clients. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LDAPReaderBenchmark
+{
+  /** The type of request to decode. */
+  @Param({ "search", "add" })
+  public String request;
+
+  private ByteString[] encodedMessages;
+  private int next;
+
+  /**
+   * Encodes a request for each of the generated users.
+   *
+   * @throws Exception
+   *           if the entries cannot be generated or the requests cannot be
+   *           encoded
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> users = BenchmarkServer.getUsers();
+    encodedMessages = new ByteString[users.size()];
+    final ByteStringBuilder buffer = new ByteStringBuilder();
+    final ASN1Writer writer = ASN1.getWriter(buffer);
+    for (int i = 0; i < encodedMessages.length; i++)
+    {
+      buffer.clear();
+      new LDAPMessage(i + 1, newRequest(users.get(i))).write(writer);
+      writer.flush();
+      encodedMessages[i] = buffer.toByteString();
+    }
+  }
+
+  private ProtocolOp newRequest(Entry user) throws Exception
+  {
+    if ("add".equals(request))
+    {
+      final List<RawAttribute> attributes = new ArrayList<>();
+      attributes.add(RawAttribute.create(user.getObjectClassAttribute()));
+      for (Attribute attribute : user.getAttributes())
+      {
+        attributes.add(RawAttribute.create(attribute));
+      }
+      return new AddRequestProtocolOp(ByteString.valueOfUtf8(user.getName().toString()), attributes);
+    }
+
+    final LinkedHashSet<String> attributes = new LinkedHashSet<>();
+    attributes.add("cn");
+    attributes.add("mail");
+    return new SearchRequestProtocolOp(ByteString.valueOfUtf8("ou=People,dc=example,dc=com"),
+        SearchScope.WHOLE_SUBTREE, DereferenceAliasesPolicy.NEVER, 0, 0, false,
+        RawFilter.create("(&(objectClass=person)(uid=" + user.getName().rdn().getAttributeValue(0) + "))"),
+        attributes);
+  }
+
+  /**
+   * Decodes a message.
+   *
+   * @return the decoded message
+   * @throws Exception
+   *           if the message cannot be decoded
+   */
+  @Benchmark
+  public LDAPMessage readMessage() throws Exception
+  {
+    final int index = next;
+    next = index + 1 < encodedMessages.length ? index + 1 : 0;
+    return LDAPReader.readMessage(ASN1.getReader(encodedMessages[index]));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LockManager;
+import org.opends.server.types.LockManager.DNLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks locking entries from concurrent threads, as done by each
+ * operation on the entries it reads or writes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockManagerBenchmark
+{
+  /** The number of distinct entries locked, the fewer the more contended. */
+  @Param({ "16", "10000" })
+  public int nbEntries;
+
+  private LockManager lockManager;
+  private DN[] dns;
+
+  /**
+   * Creates the lock manager and collects the DNs of the generated entries.
+   *
+   * @throws Exception
+   *           if the entries cannot be generated
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    lockManager = new LockManager();
+    final List<Entry> entries = BenchmarkServer.getEntries();
+    dns = new DN[Math.min(nbEntries, entries.size())];
+    for (int i = 0; i < dns.length; i++)
+    {
+      dns[i] = entries.get(i).getName();
+    }
+  }
+
+  private DN randomDN()
+  {
+    return dns[ThreadLocalRandom.current().nextInt(dns.length)];
+  }
+
+  private static boolean unlock(DNLock lock)
+  {
+    if (lock != null)
+    {
+      lock.unlock();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Read locks then unlocks an entry.
+   *
+   * @return whether the lock could be acquired
+   */
+  @Benchmark
+  @Threads(8)
+  public boolean readLockEntry()
+  {
+    return unlock(lockManager.tryReadLockEntry(randomDN()));
+  }
+
+  /**
+   * Write locks then unlocks an entry.
+   *
+   * @return whether the lock could be acquired
+   */
+  @Benchmark
+  @Threads(8)
+  public boolean writeLockEntry()
+  {
+    return unlock(lockManager.tryWriteLockEntry(randomDN()));
+  }
+
+  /**
+   * Read locks then unlocks an entry, concurrently with {@link #writer()}.
+   *
+   * @return whether the lock could be acquired
+   */
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(6)
+  public boolean reader()
+  {
+    return unlock(lockManager.tryReadLockEntry(randomDN()));
+  }
+
+  /**
+   * Write locks then unlocks an entry, concurrently with {@link #reader()}.
+   *
+   * @return whether the lock could be acquired
+   */
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(2)
+  public boolean writer()
+  {
+    return unlock(lockManager.tryWriteLockEntry(randomDN()));
+  }
+}
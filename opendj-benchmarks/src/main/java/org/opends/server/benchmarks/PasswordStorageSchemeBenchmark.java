@@ -0,0 +1,119 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.admin.std.server.PasswordStorageSchemeCfg;
+import org.opends.server.api.PasswordStorageScheme;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the password storage schemes, as configured in the default
+ * configuration, which are used on each bind and password change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PasswordStorageSchemeBenchmark
+{
+  /** The name of the password storage scheme in the configuration. */
+  @Param({ "Salted SHA-1", "Salted SHA-256", "Salted SHA-512", "PBKDF2", "PKCS5S2", "CRYPT" })
+  public String scheme;
+
+  private final ByteString plaintext = ByteString.valueOfUtf8("5ecret-passw0rd");
+  private PasswordStorageScheme<?> storageScheme;
+  private ByteString storedPassword;
+
+  /**
+   * Initializes the password storage scheme from the configuration.
+   *
+   * @throws Exception
+   *           if the password storage scheme cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    storageScheme = newPasswordStorageScheme(BenchmarkServer.getRootConfiguration().getPasswordStorageScheme(scheme));
+    storedPassword = storageScheme.encodePassword(plaintext);
+  }
+
+  private static <T extends PasswordStorageSchemeCfg> PasswordStorageScheme<T> newPasswordStorageScheme(
+      T configuration) throws Exception
+  {
+    @SuppressWarnings("unchecked")
+    final PasswordStorageScheme<T> storageScheme =
+        BenchmarkServer.newInstance(configuration.getJavaClass(), PasswordStorageScheme.class);
+    storageScheme.initializePasswordStorageScheme(configuration);
+    return storageScheme;
+  }
+
+  /** Finalizes the password storage scheme. */
+  @TearDown
+  public void tearDown()
+  {
+    storageScheme.finalizePasswordStorageScheme();
+  }
+
+  /**
+   * Encodes the password, as done when the password is changed.
+   *
+   * @return the encoded password
+   * @throws Exception
+   *           if the password cannot be encoded
+   */
+  @Benchmark
+  public ByteString encodePassword() throws Exception
+  {
+    return storageScheme.encodePassword(plaintext);
+  }
+
+  /**
+   * Checks the password, as done on each bind.
+   *
+   * @return whether the password matches
+   */
+  @Benchmark
+  public boolean passwordMatches()
+  {
+    return storageScheme.passwordMatches(plaintext, storedPassword);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks parsing search filters and matching them against entries. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchFilterBenchmark
+{
+  /** The filter to parse and match. */
+  @Param({
+    "(uid=user.5000)",
+    "(&(objectClass=person)(sn=A*))",
+    "(|(mail=*@example.com)(telephoneNumber=*5*))",
+    "(employeeNumber>=5000)",
+    "(!(l=Abilene))" })
+  public String filter;
+
+  private SearchFilter searchFilter;
+  private Entry[] users;
+  private int next;
+
+  /**
+   * Parses the filter and collects the generated users.
+   *
+   * @throws Exception
+   *           if the filter cannot be parsed or the entries cannot be
+   *           generated
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> entries = BenchmarkServer.getUsers();
+    users = entries.toArray(new Entry[entries.size()]);
+    searchFilter = SearchFilter.createFilterFromString(filter);
+  }
+
+  /**
+   * Parses the filter.
+   *
+   * @return the parsed filter
+   * @throws Exception
+   *           if the filter cannot be parsed
+   */
+  @Benchmark
+  public SearchFilter createFilterFromString() throws Exception
+  {
+    return SearchFilter.createFilterFromString(filter);
+  }
+
+  /**
+   * Matches the filter against a user.
+   *
+   * @return whether the user matches the filter
+   * @throws Exception
+   *           if the filter cannot be evaluated
+   */
+  @Benchmark
+  public boolean matchesEntry() throws Exception
+  {
+    final int index = next;
+    next = index + 1 < users.length ? index + 1 : 0;
+    return searchFilter.matchesEntry(users[index]);
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.opends.server.admin.std.server.WorkQueueCfg;
+import org.opends.server.api.WorkQueue;
+import org.opends.server.types.Operation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks handing operations from concurrent client threads to the worker
+ * threads of the work queue, as configured in the default configuration.
+ * <p>
+ * The operations do nothing but notify the thread which submitted them, so
+ * that only the work queue is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkQueueBenchmark
+{
+  /** The number of operations submitted at once by {@link #submitBatch(Submitter)}. */
+  private static final int BATCH_SIZE = 64;
+
+  private WorkQueue<?> workQueue;
+
+  /** The operations submitted by a thread. */
+  @State(Scope.Thread)
+  public static class Submitter
+  {
+    private final Semaphore completed = new Semaphore(0);
+    private final Operation operation = (Operation) Proxy.newProxyInstance(
+        Operation.class.getClassLoader(), new Class<?>[] { Operation.class }, new InvocationHandler()
+        {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+          {
+            switch (method.getName())
+            {
+            case "run":
+              completed.release();
+              return null;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "BenchmarkOperation";
+            default:
+              return defaultValue(method.getReturnType());
+            }
+          }
+        });
+  }
+
+  private static Object defaultValue(Class<?> type)
+  {
+    if (type == boolean.class)
+    {
+      return false;
+    }
+    else if (type == int.class)
+    {
+      return 0;
+    }
+    else if (type == long.class)
+    {
+      return 0L;
+    }
+    return null;
+  }
+
+  /**
+   * Initializes the work queue from the configuration, which starts its
+   * worker threads.
+   *
+   * @throws Exception
+   *           if the work queue cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    workQueue = newWorkQueue(BenchmarkServer.getRootConfiguration().getWorkQueue());
+  }
+
+  private static <T extends WorkQueueCfg> WorkQueue<T> newWorkQueue(T configuration) throws Exception
+  {
+    @SuppressWarnings("unchecked")
+    final WorkQueue<T> workQueue = BenchmarkServer.newInstance(configuration.getJavaClass(), WorkQueue.class);
+    workQueue.initializeWorkQueue(configuration);
+    return workQueue;
+  }
+
+  /** Stops the worker threads. */
+  @TearDown
+  public void tearDown()
+  {
+    workQueue.finalizeWorkQueue(LocalizableMessage.raw("End of benchmark"));
+  }
+
+  /**
+   * Submits an operation and waits until a worker thread has run it, as a
+   * synchronous client does.
+   *
+   * @param submitter
+   *          the operations of the current thread
+   * @throws Exception
+   *           if the operation is rejected
+   */
+  @Benchmark
+  @Threads(16)
+  public void submitAndWait(Submitter submitter) throws Exception
+  {
+    workQueue.submitOperation(submitter.operation);
+    submitter.completed.acquire();
+  }
+
+  /**
+   * Submits several operations then waits until worker threads have run them,
+   * as asynchronous clients do.
+   *
+   * @param submitter
+   *          the operations of the current thread
+   * @throws Exception
+   *           if an operation is rejected
+   */
+  @Benchmark
+  @Threads(16)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void submitBatch(Submitter submitter) throws Exception
+  {
+    for (int i = 0; i < BATCH_SIZE; i++)
+    {
+      workQueue.submitOperation(submitter.operation);
+    }
+    submitter.completed.acquire(BATCH_SIZE);
+  }
+}
@@ -121,13 +121,13 @@ public class JavaPropertiesPanel extends StatusGenericPanel
         "backup.offline", "encode-password", "export-ldif.offline",
         "ldif-diff", "ldifmodify", "ldifsearch", "make-ldif",
         "rebuild-index", "restore.offline", "upgrade",
-        "verify-index", "backendstat"
+        "verify-index", "backendstat", "generate-load"
       );
   private final Set<String> relevantScriptNames = newHashSet(
         "start-ds", "import-ldif.offline", "backup.offline",
         "export-ldif.offline",
         "ldif-diff", "make-ldif", "rebuild-index", "restore.offline",
-        "verify-index", "backendstat"
+        "verify-index", "backendstat", "generate-load"
       );
 
   private String readJavaHome;
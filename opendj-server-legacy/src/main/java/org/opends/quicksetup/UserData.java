@@ -922,7 +922,7 @@ public class UserData
         "encode-password", "export-ldif.offline",
         IMPORT_SCRIPT_NAME, "ldif-diff", "ldifmodify", "ldifsearch",
         "make-ldif", "rebuild-index", "restore.offline", SERVER_SCRIPT_NAME,
-        "upgrade", "verify-index", "backendstat"
+        "upgrade", "verify-index", "backendstat", "generate-load"
     };
   }
 
@@ -52,6 +52,7 @@ import org.opends.server.core.ModifyDNOperation;
 import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.PersistentSearch;
 import org.opends.server.core.PersistentSearch.CancellationCallback;
+import org.opends.server.core.PersistentSearchIndex;
 import org.opends.server.core.SearchOperation;
 import org.opends.server.core.ServerContext;
 import org.opends.server.monitors.BackendMonitor;
@@ -112,6 +113,9 @@ public abstract class Backend<C extends Configuration>
   /** The set of persistent searches registered with this backend. */
   private final ConcurrentLinkedQueue<PersistentSearch> persistentSearches = new ConcurrentLinkedQueue<>();
 
+  /** The index of the persistent searches registered with this backend. */
+  private final PersistentSearchIndex persistentSearchIndex = new PersistentSearchIndex();
+
   /**
    * Configure this backend based on the information in the provided configuration.
    * When the method returns, the backend will have been configured (ready to be opened) but still unable
@@ -185,6 +189,7 @@ public abstract class Backend<C extends Configuration>
       psearch.cancel();
     }
     persistentSearches.clear();
+    persistentSearchIndex.clear();
     closeBackend();
   }
 
@@ -813,6 +818,7 @@ public abstract class Backend<C extends Configuration>
   public void registerPersistentSearch(PersistentSearch persistentSearch) throws DirectoryException
   {
     persistentSearches.add(persistentSearch);
+    persistentSearchIndex.add(persistentSearch);
 
     persistentSearch.registerCancellationCallback(new CancellationCallback()
     {
@@ -820,6 +826,7 @@ public abstract class Backend<C extends Configuration>
       public void persistentSearchCancelled(PersistentSearch psearch)
       {
         persistentSearches.remove(psearch);
+        persistentSearchIndex.remove(psearch);
       }
     });
   }
@@ -836,6 +843,19 @@ public abstract class Backend<C extends Configuration>
     return persistentSearches;
   }
 
+  /**
+   * Returns the index of the persistent searches currently active against this
+   * local backend, which finds the persistent searches that may be interested
+   * in a change without evaluating all of them.
+   *
+   * @return the index of the persistent searches currently active against this
+   *         local backend
+   */
+  public PersistentSearchIndex getPersistentSearchIndex()
+  {
+    return persistentSearchIndex;
+  }
+
   /**
    * Sets the backend monitor for this backend.
    *
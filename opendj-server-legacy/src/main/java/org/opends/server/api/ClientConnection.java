@@ -45,6 +45,7 @@ import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.core.AuthenticatedUsers;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.PersistentSearch;
+import org.opends.server.core.PersistentSearchNotificationQueue;
 import org.opends.server.core.PluginConfigManager;
 import org.opends.server.core.SearchOperation;
 import org.opends.server.types.Attribute;
@@ -138,6 +139,10 @@ public abstract class ClientConnection
   /** A set of persistent searches registered for this client. */
   private final CopyOnWriteArrayList<PersistentSearch> persistentSearches = new CopyOnWriteArrayList<>();
 
+  /** The notifications waiting to be sent to the persistent searches registered for this client. */
+  private final PersistentSearchNotificationQueue persistentSearchNotifications =
+      new PersistentSearchNotificationQueue();
+
   /** Performs the appropriate initialization generic to all client connections. */
   protected ClientConnection()
   {
@@ -666,6 +671,20 @@ public abstract class ClientConnection
 
 
 
+  /**
+   * Retrieves the queue of the notifications waiting to be sent to the
+   * persistent searches registered for this client.
+   *
+   * @return  The queue of the notifications waiting to be sent to the
+   *          persistent searches registered for this client.
+   */
+  public final PersistentSearchNotificationQueue getPersistentSearchNotificationQueue()
+  {
+    return persistentSearchNotifications;
+  }
+
+
+
   /**
    * Registers the provided persistent search for this client.
    * Note that this should only be called by
@@ -28,6 +28,8 @@ package org.opends.server.api;
 
 import org.forgerock.i18n.LocalizableMessage;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -40,8 +42,10 @@ import org.opends.server.types.DN;
 import org.opends.server.types.Entry;
 import org.opends.server.types.InitializationException;
 import org.opends.server.types.MemberList;
+import org.opends.server.types.Modification;
 import org.opends.server.types.SearchFilter;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.DN.CompactDn;
 
 /**
  * This class defines the set of methods that must be implemented by a
@@ -242,6 +246,67 @@ public abstract class Group<T extends GroupImplementationCfg>
 
 
 
+  /**
+   * Retrieves the DNs explicitly listed as members of this group,
+   * allowing the group manager to index the memberships of all the
+   * groups.  A listed DN which is the DN of a group makes the members
+   * of that group members of this group.  The DNs are returned in
+   * their compact form so that they need not be decoded, and the
+   * returned set must not change afterwards.
+   * <p>
+   * Group implementations which return {@code null} are not indexed,
+   * their memberships are determined by calling their
+   * {@code isMember} methods.
+   *
+   * @return  The DNs explicitly listed as members of this group, or
+   *          {@code null} if the members of this group are not
+   *          explicitly listed.
+   */
+  public Set<CompactDn> getExplicitMemberDNs()
+  {
+    return null;
+  }
+
+
+
+  /**
+   * Retrieves the DNs of the groups whose members are all members of
+   * this group, although these groups are not members themselves,
+   * such as the target group of a virtual static group.  This is only
+   * used when {@link #getExplicitMemberDNs()} does not return
+   * {@code null}.
+   *
+   * @return  The DNs of the groups whose members are all members of
+   *          this group.
+   */
+  public Collection<DN> getIncludedGroupDNs()
+  {
+    return Collections.emptyList();
+  }
+
+
+
+  /**
+   * Attempts to apply to this group instance the modifications made
+   * to its entry, when they only add or remove members.  This allows
+   * the group manager to update a group without creating it again
+   * from its modified entry.  Implementations applying the
+   * modifications must notify the group manager of the added and
+   * removed members.
+   *
+   * @param  mods  The modifications made to the group entry.
+   *
+   * @return  {@code true} if the modifications have been applied to
+   *          this group instance, or {@code false} if the group
+   *          instance must be created again from the modified entry.
+   */
+  public boolean applyMemberModifications(List<Modification> mods)
+  {
+    return false;
+  }
+
+
+
   /**
    * Attempts to add the provided group DN as a nested group within
    * this group.  The change should be committed to persistent storage
@@ -409,6 +409,23 @@ public class Aci implements Comparable<Aci>
         return dn;
     }
 
+    /**
+     * Indicates whether the result of evaluating this ACI against the entries
+     * of its scope only depends on the client identity, the rights and the
+     * attribute type being checked, so that access control decisions can be
+     * cached. The target and targetscope keywords of global ACIs are checked
+     * when gathering the candidate ACIs of an entry, so they are allowed.
+     *
+     * @param global True if this ACI is a global ACI.
+     * @return True if decisions involving this ACI can be cached.
+     */
+    boolean isDecisionCacheable(boolean global) {
+      return targets != null
+          && (global || targets.isWholeSubtree())
+          && !targets.dependsOnEntryContent()
+          && body.dependsOnlyOnClientIdentity();
+    }
+
     /**
      * Test if the given ACI is applicable using the target match information
      * provided. The ACI target can have seven keywords at this time:
@@ -319,6 +319,20 @@ public class AciBody {
         return res;
     }
 
+  /**
+   * Indicates whether the evaluation of all the bind rules of this body only
+   * depends on the identity of the client and its group memberships.
+   * @return True if all the bind rules only depend on the client identity.
+   */
+  boolean dependsOnlyOnClientIdentity() {
+      for (PermBindRulePair p : getPermBindRulePairs()) {
+          if (!p.getBindRule().dependsOnlyOnClientIdentity()) {
+              return false;
+          }
+      }
+      return true;
+  }
+
   /**
    * Returns the name string.
    * @return The name string.
@@ -445,6 +445,16 @@ implements AciTargetMatchContext, AciEvalContext {
       return null;
     }
 
+  /**
+   * Returns the ACI that decided the last access check.
+   *
+   * @return The deciding ACI, or {@code null} if no ACI decided.
+   */
+  Aci getDecidingAci()
+  {
+    return decidingAci;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void setEvaluationResult(EnumEvalReason reason, Aci decidingAci)
@@ -869,6 +879,29 @@ implements AciTargetMatchContext, AciEvalContext {
     return (evalAllAttributes & aciAttribute) == aciAttribute;
   }
 
+  /**
+   * Returns the flags recording the targetattr rules seen while evaluating
+   * the ACIs.
+   *
+   * @return The targetattr evaluation flags.
+   */
+  int getEvalAttributes()
+  {
+    return evalAllAttributes;
+  }
+
+  /**
+   * Replaces the flags recording the targetattr rules seen while evaluating
+   * the ACIs, when a cached access control decision is reused.
+   *
+   * @param evalAttributes
+   *          The targetattr evaluation flags.
+   */
+  void restoreEvalAttributes(int evalAttributes)
+  {
+    this.evalAllAttributes = evalAttributes;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void clearEvalAttributes(int v) {
@@ -0,0 +1,336 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.authorization.dseecompat;
+
+import static org.opends.server.authorization.dseecompat.Aci.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+
+/**
+ * Caches access control decisions, so that checking access to the attributes
+ * of many entries under the same ACIs, as done by searches, only evaluates the
+ * ACIs once per attribute type.
+ * <p>
+ * Decisions are only cached when all the candidate ACIs only depend on the
+ * client identity, the rights and the attribute type being checked (see
+ * {@link Aci#isDecisionCacheable(boolean)}): they are keyed by the client DN,
+ * the candidate ACIs of the entry, the rights, the attribute type and the
+ * evaluation state of the container. Bind rules depending on the connection,
+ * on the time or on the target entry are never cached.
+ * <p>
+ * Decisions are invalidated by any change of the ACI list generation, which
+ * changes with the ACIs, and by any change of the groups known to the group
+ * manager, which may be updated after the ACI list. The decisions of a client
+ * are also invalidated when the client entry is added, modified, deleted or
+ * renamed. The client entry is besides compared by identity, since it is
+ * replaced on the client connection when it is modified. The changes of the
+ * other entries do not invalidate any decision.
+ */
+final class AciDecisionCache
+{
+  /** The maximum number of decisions cached, the cache is cleared beyond. */
+  private static final int MAX_DECISIONS = 10000;
+
+  /** The inputs of an access control decision. */
+  static final class Key
+  {
+    private final DN clientDN;
+    /** Compared by identity, dynamic group memberships depend on its content. */
+    private final Entry clientEntry;
+    private final boolean anonymous;
+    /** Compared by identity, since subtree ACIs are immutable. */
+    private final AciList.SubtreeAcis subtreeAcis;
+    private final long globalAcisMask;
+    private final int rights;
+    private final AttributeType attributeType;
+    private final boolean firstAttribute;
+    private final boolean entryTestRule;
+    private final int evalAttributes;
+    private final int hashCode;
+
+    /** The state against which the decision is taken, not part of the key. */
+    private final long generation;
+    private final long groupsRefreshToken;
+    private final ClientDecisions clientDecisions;
+
+    private Key(AciContainer container, AciList.Candidates candidates, long groupsRefreshToken,
+        ClientDecisions clientDecisions)
+    {
+      this.generation = candidates.getGeneration();
+      this.groupsRefreshToken = groupsRefreshToken;
+      this.clientDecisions = clientDecisions;
+      this.clientDN = container.getClientDN();
+      this.clientEntry = container.getClientEntry();
+      this.anonymous = container.isAnonymousUser();
+      this.subtreeAcis = candidates.getSubtreeAcis();
+      this.globalAcisMask = candidates.getGlobalAcisMask();
+      this.rights = container.getRights();
+      this.attributeType = container.getCurrentAttributeType();
+      this.firstAttribute = container.isFirstAttribute();
+      this.entryTestRule = container.hasEntryTestRule();
+      this.evalAttributes = container.getEvalAttributes();
+
+      int h = clientDN.hashCode();
+      h = 31 * h + System.identityHashCode(subtreeAcis);
+      h = 31 * h + (int) (globalAcisMask ^ (globalAcisMask >>> 32));
+      h = 31 * h + rights;
+      h = 31 * h + (attributeType != null ? attributeType.hashCode() : 0);
+      h = 31 * h + evalAttributes;
+      h = 31 * h + (anonymous ? 1 : 0) + (firstAttribute ? 2 : 0) + (entryTestRule ? 4 : 0);
+      this.hashCode = h;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this == obj)
+      {
+        return true;
+      }
+      if (!(obj instanceof Key))
+      {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return hashCode == other.hashCode
+          && subtreeAcis == other.subtreeAcis
+          && globalAcisMask == other.globalAcisMask
+          && rights == other.rights
+          && evalAttributes == other.evalAttributes
+          && anonymous == other.anonymous
+          && firstAttribute == other.firstAttribute
+          && entryTestRule == other.entryTestRule
+          && clientEntry == other.clientEntry
+          && (attributeType != null ? attributeType.equals(other.attributeType) : other.attributeType == null)
+          && clientDN.equals(other.clientDN);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hashCode;
+    }
+  }
+
+  /** The outcome of an access control decision, with its side effects on the container. */
+  private static final class Decision
+  {
+    private final long generation;
+    private final long groupsRefreshToken;
+    private final boolean allowed;
+    private final EnumEvalReason evalReason;
+    private final Aci decidingAci;
+    private final boolean entryTestRule;
+    private final int evalAttributes;
+
+    private Decision(Key key, boolean allowed, AciContainer container)
+    {
+      this.generation = key.generation;
+      this.groupsRefreshToken = key.groupsRefreshToken;
+      this.allowed = allowed;
+      this.evalReason = container.getEvalReason();
+      this.decidingAci = container.getDecidingAci();
+      this.entryTestRule = container.hasEntryTestRule();
+      this.evalAttributes = container.getEvalAttributes();
+    }
+
+    private boolean applyTo(AciContainer container)
+    {
+      container.setEvaluationResult(evalReason, decidingAci);
+      container.setEntryTestRule(entryTestRule);
+      container.restoreEvalAttributes(evalAttributes);
+      return allowed;
+    }
+  }
+
+  /**
+   * The decisions cached for a client, replaced when the client entry changes
+   * so that the decisions being taken meanwhile are not cached.
+   */
+  private static final class ClientDecisions
+  {
+    private final ConcurrentMap<Key, Decision> decisions = new ConcurrentHashMap<>();
+  }
+
+  /** The cached decisions, keyed by client DN. */
+  private final ConcurrentMap<DN, ClientDecisions> clients = new ConcurrentHashMap<>();
+  /** The number of cached decisions, approximate under concurrent changes. */
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Returns the key of the decision about to be taken with the provided
+   * container and candidate ACIs.
+   *
+   * @param container
+   *          the container holding the information of the access check
+   * @param candidates
+   *          the candidate ACIs of the entry
+   * @return the key of the decision, or {@code null} if the decision cannot be
+   *         cached
+   */
+  Key newKey(AciContainer container, AciList.Candidates candidates)
+  {
+    if (!candidates.isCacheable()
+        || container.isGetEffectiveRightsEval()
+        // the selfwrite right and targattrfilters depend on the value
+        || container.getCurrentAttributeValue() != null
+        // extended operations and controls are not part of the key
+        || container.hasRights(ACI_EXT_OP | ACI_CONTROL | ACI_SELF))
+    {
+      return null;
+    }
+    // read before evaluating, so that decisions taken with stale groups or
+    // with a stale client entry are invalidated
+    final long groupsRefreshToken = DirectoryServer.getGroupManager().refreshToken();
+    final DN clientDN = container.getClientDN();
+    ClientDecisions clientDecisions = clients.get(clientDN);
+    if (clientDecisions == null)
+    {
+      clientDecisions = new ClientDecisions();
+      final ClientDecisions existing = clients.putIfAbsent(clientDN, clientDecisions);
+      if (existing != null)
+      {
+        clientDecisions = existing;
+      }
+    }
+    return new Key(container, candidates, groupsRefreshToken, clientDecisions);
+  }
+
+  /**
+   * Applies a cached decision to the provided container.
+   *
+   * @param key
+   *          the key returned by {@link #newKey(AciContainer, AciList.Candidates)}
+   * @param container
+   *          the container holding the information of the access check
+   * @return {@code Boolean.TRUE} if access is allowed, {@code Boolean.FALSE}
+   *         if it is denied, or {@code null} if there is no valid decision in
+   *         the cache
+   */
+  Boolean get(Key key, AciContainer container)
+  {
+    if (clients.get(key.clientDN) != key.clientDecisions)
+    {
+      return null;
+    }
+    final Decision decision = key.clientDecisions.decisions.get(key);
+    if (decision == null
+        || decision.generation != key.generation
+        || decision.groupsRefreshToken != key.groupsRefreshToken)
+    {
+      return null;
+    }
+    return decision.applyTo(container);
+  }
+
+  /**
+   * Caches the decision just taken with the provided container.
+   *
+   * @param key
+   *          the key returned by {@link #newKey(AciContainer, AciList.Candidates)}
+   * @param allowed
+   *          whether access is allowed
+   * @param container
+   *          the container holding the information of the access check
+   */
+  void put(Key key, boolean allowed, AciContainer container)
+  {
+    if (size.get() >= MAX_DECISIONS)
+    {
+      clear();
+    }
+    // if the client entry changed meanwhile, the decision is put out of the cache
+    if (key.clientDecisions.decisions.put(key, new Decision(key, allowed, container)) == null)
+    {
+      size.incrementAndGet();
+    }
+  }
+
+  /**
+   * Invalidates the decisions cached for a client whose entry has been added,
+   * modified, deleted or renamed.
+   *
+   * @param entryDN
+   *          the DN of the changed entry
+   * @param subtree
+   *          whether the subordinate entries may have changed as well
+   */
+  void entryChanged(DN entryDN, boolean subtree)
+  {
+    if (clients.isEmpty())
+    {
+      return;
+    }
+    if (!subtree)
+    {
+      discard(clients.remove(entryDN));
+      return;
+    }
+    for (DN clientDN : clients.keySet())
+    {
+      if (clientDN.isDescendantOf(entryDN))
+      {
+        discard(clients.remove(clientDN));
+      }
+    }
+  }
+
+  private void discard(ClientDecisions clientDecisions)
+  {
+    if (clientDecisions != null)
+    {
+      size.addAndGet(-clientDecisions.decisions.size());
+    }
+  }
+
+  /**
+   * Indicates whether decisions are cached for the provided client, since its
+   * entry last changed.
+   *
+   * @param clientDN
+   *          the DN of the client
+   * @return {@code true} if decisions are cached for the client
+   */
+  boolean hasDecisions(DN clientDN)
+  {
+    final ClientDecisions clientDecisions = clients.get(clientDN);
+    return clientDecisions != null && !clientDecisions.decisions.isEmpty();
+  }
+
+  /** Removes all the cached decisions. */
+  void clear()
+  {
+    clients.clear();
+    size.set(0);
+  }
+}
@@ -141,6 +141,9 @@ public final class AciHandler extends
   /** The list that holds that ACIs keyed by the DN of the entry holding the ACI. */
   private AciList aciList;
 
+  /** The access control decisions cached for ACIs only depending on the client identity. */
+  private final AciDecisionCache decisionCache = new AciDecisionCache();
+
   /**
    * The listener that handles ACI changes caused by LDAP operations,
    * ACI decode failure alert logging and backend initialization ACI list adjustment.
@@ -185,6 +188,7 @@ public final class AciHandler extends
   public void finalizeAccessControlHandler()
   {
     aciListenerMgr.finalizeListenerManager();
+    decisionCache.clear();
     AciEffectiveRights.finalizeOnShutdown();
     DirectoryServer.deregisterSupportedControl(OID_GET_EFFECTIVE_RIGHTS);
   }
@@ -198,12 +202,22 @@ public final class AciHandler extends
     initStatics();
     DN configurationDN = configuration.dn();
     aciList = new AciList(configurationDN);
-    aciListenerMgr = new AciListenerManager(aciList, configurationDN);
+    aciListenerMgr = new AciListenerManager(aciList, decisionCache, configurationDN);
     processGlobalAcis(configuration);
     processConfigAcis();
     DirectoryServer.registerSupportedControl(OID_GET_EFFECTIVE_RIGHTS);
   }
 
+  /**
+   * Returns the access control decisions cached by this handler.
+   *
+   * @return the access control decisions cached by this handler
+   */
+  AciDecisionCache getDecisionCache()
+  {
+    return decisionCache;
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean isAllowed(DN entryDN, Operation op, Control control)
@@ -548,14 +562,27 @@ public final class AciHandler extends
     }
 
     // First get all allowed candidate ACIs.
-    List<Aci> candidates = aciList.getCandidateAcis(dn);
+    final AciList.Candidates candidates = aciList.getCandidates(dn);
+    final AciDecisionCache.Key key = decisionCache.newKey(container, candidates);
+    if (key != null)
+    {
+      final Boolean cachedDecision = decisionCache.get(key, container);
+      if (cachedDecision != null)
+      {
+        return cachedDecision;
+      }
+    }
     /*
      * Create an applicable list of ACIs by target matching each
      * candidate ACI against the container's target match view.
      */
-    createApplicableList(candidates, container);
+    createApplicableList(candidates.getAcis(), container);
     // Evaluate the applicable list.
     final boolean ret = testApplicableLists(container);
+    if (key != null)
+    {
+      decisionCache.put(key, ret, container);
+    }
     // Build summary string if doing geteffectiverights eval.
     if (container.isGetEffectiveRightsEval())
     {
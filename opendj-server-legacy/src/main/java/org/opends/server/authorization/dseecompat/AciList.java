@@ -30,6 +30,7 @@ import static org.opends.messages.AccessControlMessages.*;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import static org.opends.server.authorization.dseecompat.AciHandler.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -41,17 +42,129 @@ import org.forgerock.opendj.ldap.ByteString;
 /**
  * The AciList class performs caching of the ACI attribute values
  * using the entry DN as the key.
+ * <p>
+ * After each change, the ACIs are compiled into an immutable snapshot
+ * holding, for each entry containing ACIs, the array of the ACIs of this
+ * entry and of its ancestors, so that gathering the candidate ACIs of an
+ * entry does not take any lock nor walk the ACIs of each ancestor.
  */
 public class AciList {
 
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
+  /** The maximum number of global ACIs for which access control decisions can be cached. */
+  private static final int MAX_CACHEABLE_GLOBAL_ACIS = Long.SIZE;
+
+  /** The ACIs applicable to all the entries of a subtree, except global ACIs. */
+  static final class SubtreeAcis
+  {
+    /** The ACIs of the subtree entry, followed by the ACIs of its ancestors. */
+    private final Aci[] acis;
+    /** Whether access control decisions involving these ACIs can be cached. */
+    private final boolean cacheable;
+
+    private SubtreeAcis(Aci[] acis, boolean cacheable)
+    {
+      this.acis = acis;
+      this.cacheable = cacheable;
+    }
+  }
+
+  /** The ACIs compiled after each change. */
+  private static final class Snapshot
+  {
+    /** The ACIs applicable to each entry containing ACIs, keyed by its DN. */
+    private final Map<DN, SubtreeAcis> subtrees;
+    private final Aci[] globalAcis;
+    private final boolean globalAcisCacheable;
+
+    private Snapshot(Map<DN, SubtreeAcis> subtrees, Aci[] globalAcis, boolean globalAcisCacheable)
+    {
+      this.subtrees = subtrees;
+      this.globalAcis = globalAcis;
+      this.globalAcisCacheable = globalAcisCacheable;
+    }
+  }
+
+  /** The candidate ACIs of an entry. */
+  static final class Candidates
+  {
+    private final List<Aci> acis;
+    private final SubtreeAcis subtree;
+    private final long globalAcisMask;
+    private final boolean cacheable;
+    private final long generation;
+
+    private Candidates(List<Aci> acis, SubtreeAcis subtree, long globalAcisMask, boolean cacheable,
+        long generation)
+    {
+      this.acis = acis;
+      this.subtree = subtree;
+      this.globalAcisMask = globalAcisMask;
+      this.cacheable = cacheable;
+      this.generation = generation;
+    }
+
+    /**
+     * Returns the candidate ACIs.
+     *
+     * @return the candidate ACIs
+     */
+    List<Aci> getAcis()
+    {
+      return acis;
+    }
+
+    /**
+     * Returns the ACIs of the closest entry containing ACIs, which are shared
+     * by all the entries of its subtree.
+     *
+     * @return the ACIs of the closest entry containing ACIs, or {@code null}
+     *         if there is no such entry
+     */
+    SubtreeAcis getSubtreeAcis()
+    {
+      return subtree;
+    }
+
+    /**
+     * Returns the bit mask of the global ACIs whose target matched the entry.
+     *
+     * @return the bit mask of the global ACIs which are candidates
+     */
+    long getGlobalAcisMask()
+    {
+      return globalAcisMask;
+    }
+
+    /**
+     * Indicates whether access control decisions involving these candidates
+     * only depend on the client identity, the rights and the attribute type,
+     * so that they can be cached.
+     *
+     * @return true if access control decisions can be cached
+     */
+    boolean isCacheable()
+    {
+      return cacheable;
+    }
+
+    /**
+     * Returns the generation of the ACI list when the candidates were
+     * gathered.
+     *
+     * @return the generation of the ACI list
+     */
+    long getGeneration()
+    {
+      return generation;
+    }
+  }
 
   /**
-   * A map containing all the ACIs.
-   * We use the copy-on-write technique to avoid locking when reading.
+   * A map containing all the ACIs, only accessed while holding the lock.
    */
-  private volatile DITCacheMap<List<Aci>> aciList = new DITCacheMap<>();
+  private final DITCacheMap<List<Aci>> aciList = new DITCacheMap<>();
 
   /**
    * Lock to protect internal data structures.
@@ -59,6 +172,15 @@ public class AciList {
   private final ReentrantReadWriteLock lock =
           new ReentrantReadWriteLock();
 
+  /** The ACIs compiled from the ACI list, read without locking. */
+  private volatile Snapshot snapshot = new Snapshot(Collections.<DN, SubtreeAcis> emptyMap(), new Aci[0], true);
+
+  /**
+   * Incremented after each change of the ACIs, invalidating the cached access
+   * control decisions.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
   /** The configuration DN used to compare against the global ACI entry DN. */
   private DN configDN;
 
@@ -82,53 +204,113 @@ public class AciList {
    * @return A list of candidate ACIs that might be applicable.
    */
   public List<Aci> getCandidateAcis(DN baseDN) {
-    List<Aci> candidates = new LinkedList<>();
-    if(baseDN == null)
+    return getCandidates(baseDN).getAcis();
+  }
+
+  /**
+   * Returns the candidate ACIs of an entry, as {@link #getCandidateAcis(DN)},
+   * along with the information needed to cache access control decisions.
+   *
+   * @param baseDN  The DN to check.
+   * @return The candidate ACIs of the entry.
+   */
+  Candidates getCandidates(DN baseDN) {
+    // read the generation first, so that decisions cached with it are
+    // invalidated by any later change
+    final long currentGeneration = generation.get();
+    final Snapshot current = snapshot;
+    if (baseDN == null)
     {
-      return candidates;
+      return new Candidates(new LinkedList<Aci>(), null, 0, false, currentGeneration);
     }
 
-    lock.readLock().lock();
-    try
+    SubtreeAcis subtree = null;
+    for (DN dn = baseDN; dn != null && !dn.isRootDN() && subtree == null; dn = dn.parent())
     {
-      //Save the baseDN in case we need to evaluate a global ACI.
-      DN entryDN=baseDN;
-      while (baseDN != null) {
-        List<Aci> acis = aciList.get(baseDN);
-        if (acis != null) {
-          //Check if there are global ACIs. Global ACI has a NULL DN.
-          if (baseDN.isRootDN()) {
-            for (Aci aci : acis) {
-              AciTargets targets = aci.getTargets();
-              //If there is a target, evaluate it to see if this ACI should
-              //be included in the candidate set.
-              if (targets != null
-                  && AciTargets.isTargetApplicable(aci, targets, entryDN))
-              {
-                  candidates.add(aci);  //Add this ACI to the candidates.
-              }
-            }
-          } else {
-            candidates.addAll(acis);
-          }
-        }
-        if(baseDN.isRootDN()) {
-          break;
+      subtree = current.subtrees.get(dn);
+    }
+
+    final List<Aci> candidates = new ArrayList<>();
+    if (subtree != null)
+    {
+      Collections.addAll(candidates, subtree.acis);
+    }
+    //Global ACIs are included in the candidate set only if their target
+    //matches the entry.
+    long globalAcisMask = 0;
+    final Aci[] globalAcis = current.globalAcis;
+    for (int i = 0; i < globalAcis.length; i++)
+    {
+      final Aci aci = globalAcis[i];
+      final AciTargets targets = aci.getTargets();
+      if (targets != null && AciTargets.isTargetApplicable(aci, targets, baseDN))
+      {
+        candidates.add(aci);
+        if (i < MAX_CACHEABLE_GLOBAL_ACIS)
+        {
+          globalAcisMask |= 1L << i;
         }
-        DN parentDN=baseDN.parent();
-        if(parentDN == null) {
-          baseDN=DN.rootDN();
-        } else {
-          baseDN=parentDN;
+      }
+    }
+    final boolean cacheable = (subtree == null || subtree.cacheable) && current.globalAcisCacheable;
+    return new Candidates(candidates, subtree, globalAcisMask, cacheable, currentGeneration);
+  }
+
+  /**
+   * Returns the generation of this ACI list, which changes after each change
+   * of the ACIs.
+   *
+   * @return the generation of this ACI list
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Compiles the ACI list into a new snapshot, the caller must hold the write
+   * lock.
+   */
+  private void compile() {
+    final Map<DN, SubtreeAcis> subtrees = new HashMap<>();
+    for (Map.Entry<DN, List<Aci>> mapEntry : aciList.entrySet())
+    {
+      final DN subtreeDN = mapEntry.getKey();
+      if (subtreeDN.isRootDN())
+      {
+        continue;
+      }
+      final List<Aci> acis = new ArrayList<>();
+      boolean cacheable = true;
+      for (DN dn = subtreeDN; dn != null && !dn.isRootDN(); dn = dn.parent())
+      {
+        final List<Aci> ancestorAcis = aciList.get(dn);
+        if (ancestorAcis != null)
+        {
+          for (Aci aci : ancestorAcis)
+          {
+            acis.add(aci);
+            cacheable &= aci.isDecisionCacheable(false);
+          }
         }
       }
+      subtrees.put(subtreeDN, new SubtreeAcis(acis.toArray(new Aci[acis.size()]), cacheable));
     }
-    finally
+
+    final List<Aci> globalAcis = aciList.get(DN.rootDN());
+    boolean globalAcisCacheable = true;
+    Aci[] globalAcisArray = new Aci[0];
+    if (globalAcis != null)
     {
-      lock.readLock().unlock();
+      globalAcisArray = globalAcis.toArray(globalAcisArray);
+      globalAcisCacheable = globalAcisArray.length <= MAX_CACHEABLE_GLOBAL_ACIS;
+      for (Aci aci : globalAcisArray)
+      {
+        globalAcisCacheable &= aci.isDecisionCacheable(true);
+      }
     }
 
-    return candidates;
+    snapshot = new Snapshot(subtrees, globalAcisArray, globalAcisCacheable);
+    generation.incrementAndGet();
   }
 
   /**
@@ -158,6 +340,7 @@ public class AciList {
     }
     finally
     {
+      compile();
       lock.writeLock().unlock();
     }
 
@@ -181,6 +364,7 @@ public class AciList {
     }
     finally
     {
+      compile();
       lock.writeLock().unlock();
     }
   }
@@ -221,6 +405,7 @@ public class AciList {
     }
     finally
     {
+      compile();
       lock.writeLock().unlock();
     }
 
@@ -314,6 +499,7 @@ public class AciList {
     }
     finally
     {
+      compile();
       lock.writeLock().unlock();
     }
   }
@@ -353,21 +539,32 @@ public class AciList {
                                                       boolean hasGlobalAci) {
     DN entryDN = entry.getName();
 
+    // Called for each deleted entry, so only compile if ACIs were removed
+    boolean removed = false;
     lock.writeLock().lock();
     try
     {
-      if (hasGlobalAci && entryDN.equals(configDN) &&
-          aciList.remove(DN.rootDN()) == null)
+      if (hasGlobalAci && entryDN.equals(configDN))
       {
-        return false;
+        if (aciList.remove(DN.rootDN()) == null)
+        {
+          return false;
+        }
+        removed = true;
       }
       if (hasAci || !hasGlobalAci)
       {
-        return aciList.removeSubtree(entryDN, null);
+        final boolean removedSubtree = aciList.removeSubtree(entryDN, null);
+        removed |= removedSubtree;
+        return removedSubtree;
       }
     }
     finally
     {
+      if (removed)
+      {
+        compile();
+      }
       lock.writeLock().unlock();
     }
 
@@ -397,6 +594,7 @@ public class AciList {
     }
     finally
     {
+      compile();
       lock.writeLock().unlock();
     }
   }
@@ -452,6 +650,7 @@ public class AciList {
     }
     finally
     {
+      compile();
       lock.writeLock().unlock();
     }
   }
@@ -115,7 +115,7 @@ public class AciListenerManager implements
       Entry entry = deleteOperation.getEntryToDelete();
       if (entry != null)
       {
-        doPostDelete(entry);
+        doPostDelete(entry, isSubtreeDelete(deleteOperation));
       }
     }
 
@@ -129,7 +129,7 @@ public class AciListenerManager implements
       Entry entry = modifyDNOperation.getUpdatedEntry();
       if (entry != null)
       {
-        doPostModifyDN(entry.getName(), entry.getName());
+        doPostModifyDN(modifyDNOperation.getEntryDN(), entry.getName());
       }
     }
 
@@ -177,7 +177,8 @@ public class AciListenerManager implements
       // has been a change.
       if (deleteOperation.getResultCode() == ResultCode.SUCCESS)
       {
-        doPostDelete(deleteOperation.getEntryToDelete());
+        doPostDelete(deleteOperation.getEntryToDelete(),
+            isSubtreeDelete(deleteOperation));
       }
 
       // If we've gotten here, then everything is acceptable.
@@ -226,6 +227,9 @@ public class AciListenerManager implements
 
     private void doPostAdd(Entry addedEntry)
     {
+      // Only the decisions of the client with this DN may depend on it, the
+      // groups are tracked by the group manager refresh token
+      decisionCache.entryChanged(addedEntry.getName(), false);
       // This entry might have both global and aci attribute types.
       boolean hasAci = addedEntry.hasOperationalAttribute(AciHandler.aciType);
       boolean hasGlobalAci = addedEntry.hasAttribute(AciHandler.globalAciType);
@@ -241,8 +245,9 @@ public class AciListenerManager implements
 
 
 
-    private void doPostDelete(Entry deletedEntry)
+    private void doPostDelete(Entry deletedEntry, boolean subtree)
     {
+      decisionCache.entryChanged(deletedEntry.getName(), subtree);
       // This entry might have both global and aci attribute types.
       boolean hasAci = deletedEntry.hasOperationalAttribute(
               AciHandler.aciType);
@@ -255,6 +260,7 @@ public class AciListenerManager implements
 
     private void doPostModifyDN(DN fromDN, DN toDN)
     {
+      decisionCache.entryChanged(fromDN, true);
       aciList.renameAci(fromDN, toDN);
     }
 
@@ -263,6 +269,7 @@ public class AciListenerManager implements
     private void doPostModify(List<Modification> mods, Entry oldEntry,
         Entry newEntry)
     {
+      decisionCache.entryChanged(oldEntry.getName(), false);
       // A change to the ACI list is expensive so let's first make sure
       // that the modification included changes to the ACI. We'll check
       // for both "aci" attribute types and global "ds-cfg-global-aci"
@@ -298,6 +305,28 @@ public class AciListenerManager implements
 
 
 
+  /**
+   * Indicates whether a delete operation may have deleted the subordinate
+   * entries of the target entry, that is it has the subtree delete control.
+   */
+  private static boolean isSubtreeDelete(PluginOperation deleteOperation)
+  {
+    List<Control> requestControls = deleteOperation.getRequestControls();
+    if (requestControls != null)
+    {
+      for (Control c : requestControls)
+      {
+        if (OID_SUBTREE_DELETE_CONTROL.equals(c.getOID()))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+
+
   /** The configuration DN. */
   private DN configurationDN;
 
@@ -307,6 +336,9 @@ public class AciListenerManager implements
   /** The AciList caches the ACIs. */
   private AciList aciList;
 
+  /** The access control decisions cached by the ACI handler. */
+  private final AciDecisionCache decisionCache;
+
   /** Search filter used in context search for "aci" attribute types. */
   private static SearchFilter aciFilter;
 
@@ -345,12 +377,15 @@ public class AciListenerManager implements
    *
    * @param aciList
    *          The list object created and loaded by the handler.
+   * @param decisionCache
+   *          The access control decisions cached by the handler.
    * @param cfgDN
    *          The DN of the access control configuration entry.
    */
-  public AciListenerManager(AciList aciList, DN cfgDN)
+  AciListenerManager(AciList aciList, AciDecisionCache decisionCache, DN cfgDN)
   {
     this.aciList = aciList;
+    this.decisionCache = decisionCache;
     this.configurationDN = cfgDN;
     this.plugin = new AciChangeListenerPlugin();
 
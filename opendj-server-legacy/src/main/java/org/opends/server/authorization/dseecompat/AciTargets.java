@@ -231,6 +231,26 @@ public class AciTargets {
       return extOp;
     }
 
+    /**
+     * Indicates whether these targets match all the entries below the entry
+     * containing the ACI, that is there is no target keyword and the
+     * targetscope is the whole subtree.
+     * @return True if these targets match the whole subtree of the ACI.
+     */
+    boolean isWholeSubtree() {
+      return target == null && targetScope == SearchScope.WHOLE_SUBTREE;
+    }
+
+    /**
+     * Indicates whether matching these targets depends on the content of the
+     * target entry, that is there is a targetfilter or a targattrfilters
+     * keyword.
+     * @return True if these targets depend on the content of the target entry.
+     */
+    boolean dependsOnEntryContent() {
+      return targetFilter != null || targAttrFilters != null;
+    }
+
     /**
      * Decode an ACI's target part of the syntax from the string provided.
      * @param input String representing an ACI target part of syntax.
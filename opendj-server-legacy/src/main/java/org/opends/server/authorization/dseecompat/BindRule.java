@@ -481,6 +481,24 @@ public class BindRule {
         return EnumEvalResult.negateIfNeeded(ret, negate);
     }
 
+    /**
+     * Indicates whether the evaluation of this bind rule only depends on the
+     * identity of the client and its group memberships, that is it only
+     * contains userdn bind rules matching DNs, DN patterns, anyone or all
+     * authenticated users, and groupdn bind rules.
+     * @return True if this bind rule only depends on the client identity.
+     */
+    boolean dependsOnlyOnClientIdentity() {
+        if (booleanType == null) {
+            KeywordBindRule rule = keywordRuleMap.get(keyword.toString());
+            return rule instanceof GroupDN
+                || (rule instanceof UserDN
+                    && ((UserDN) rule).dependsOnlyOnClientIdentity());
+        }
+        return left.dependsOnlyOnClientIdentity()
+            && right.dependsOnlyOnClientIdentity();
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -203,6 +203,27 @@ public class UserDN implements KeywordBindRule {
         return matched.getRet(type, undefined);
     }
 
+    /**
+     * Indicates whether the evaluation of this userdn bind rule only depends
+     * on the client DN, and not on the target entry nor on the content of
+     * the client entry.
+     * @return True if all the URLs are DNs, DN patterns, anyone or all.
+     */
+    boolean dependsOnlyOnClientIdentity() {
+        for (UserDNTypeURL dnTypeURL : urlList) {
+            switch (dnTypeURL.getUserDNType()) {
+            case DN:
+            case DNPATTERN:
+            case ANYONE:
+            case ALL:
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Performs an evaluation of a single UserDNTypeURL of a userdn bind
      * rule using the evaluation context provided. This method is called
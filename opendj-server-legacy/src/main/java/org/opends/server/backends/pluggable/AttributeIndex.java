@@ -421,6 +421,33 @@ class AttributeIndex implements ConfigurationChangeListener<BackendIndexCfg>, Cl
     }
   }
 
+  /**
+   * Returns the ordering index whose keys are the values of this attribute
+   * normalized by the provided ordering matching rule, if it is trusted.
+   *
+   * @param orderingRule
+   *          The ordering matching rule.
+   * @return the ordering index, or {@code null} if there is no such index or
+   *         if it is not trusted
+   */
+  MatchingRuleIndex getOrderingIndex(MatchingRule orderingRule)
+  {
+    final MatchingRule indexedRule = config.getAttribute().getOrderingMatchingRule();
+    if (!config.getIndexType().contains(IndexType.ORDERING)
+        || indexedRule == null
+        || !indexedRule.getOID().equals(orderingRule.getOID()))
+    {
+      return null;
+    }
+    final Collection<? extends Indexer> indexers = orderingRule.createIndexers(indexingOptions);
+    if (indexers.size() != 1)
+    {
+      return null;
+    }
+    final MatchingRuleIndex index = indexIdToIndexes.get(indexers.iterator().next().getIndexID());
+    return index != null && index.isTrusted() ? index : null;
+  }
+
   /**
    * Update the attribute index for a new entry.
    *
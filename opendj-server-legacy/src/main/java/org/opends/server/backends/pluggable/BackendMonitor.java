@@ -136,6 +136,16 @@ class BackendMonitor extends MonitorProvider<MonitorProviderCfg>
       monitorAttrs.add(createAttribute("filter-use-unindexed", unindexedSearchCount));
     }
 
+    final PagedResultsCache pagedResultsCache = rootContainer.getPagedResultsCache();
+    if (pagedResultsCache != null)
+    {
+      monitorAttrs.add(createAttribute("paged-results-cache-hits", pagedResultsCache.getHits()));
+      monitorAttrs.add(createAttribute("paged-results-cache-misses", pagedResultsCache.getMisses()));
+      monitorAttrs.add(createAttribute("paged-results-cache-evictions", pagedResultsCache.getEvictions()));
+      monitorAttrs.add(createAttribute("paged-results-cache-searches", pagedResultsCache.size()));
+      monitorAttrs.add(createAttribute("paged-results-cache-bytes", pagedResultsCache.getBytesHeld()));
+    }
+
     return monitorAttrs;
   }
 
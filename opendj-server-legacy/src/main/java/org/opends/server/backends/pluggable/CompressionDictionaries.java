@@ -0,0 +1,365 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Utils.*;
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.InitializationException;
+
+/**
+ * The dictionaries used to compress the entries of a backend, persisted in a
+ * tree.
+ * <p>
+ * Dictionaries are identified by a version number, stored along with each
+ * entry compressed against them. They are never modified nor removed, so that
+ * all the entries remain readable. New entries are compressed against the
+ * latest dictionary.
+ * <p>
+ * The first dictionary is trained from a sample of the first entries
+ * compressed once compression with dictionary has been enabled. It is trained
+ * and stored in its own transaction by a background thread, and only used for
+ * compressing entries once stored: until then, entries are compressed without
+ * dictionary.
+ */
+final class CompressionDictionaries
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The tree used to store the dictionaries, keyed by version. */
+  private static final TreeName dictionariesTreeName = new TreeName("compressed_schema", "compression_dictionaries");
+
+  /** The number of entries sampled to train a dictionary. */
+  private static final int SAMPLE_SIZE = 1000;
+  /** The maximum number of bytes sampled to train a dictionary, bounding memory when entries are large. */
+  private static final int MAX_SAMPLE_BYTES = 4 * 1024 * 1024;
+  private static final String TRAINER_THREAD_NAME = "Compression dictionary trainer";
+
+  /** A dictionary used to compress entries. */
+  static final class Dictionary
+  {
+    private final int version;
+    private final byte[] bytes;
+
+    Dictionary(int version, byte[] bytes)
+    {
+      this.version = version;
+      this.bytes = bytes;
+    }
+
+    int getVersion()
+    {
+      return version;
+    }
+
+    byte[] getBytes()
+    {
+      return bytes;
+    }
+  }
+
+  /** The storage in which the tree is held. */
+  private final Storage storage;
+  private final boolean isWriteable;
+  private final ConcurrentMap<Integer, Dictionary> dictionaries = new ConcurrentHashMap<>();
+  /** The dictionary used to compress new entries, {@code null} until one has been trained. */
+  private volatile Dictionary latest;
+
+  /** The entries sampled to train a dictionary, guarded by itself. */
+  private final List<byte[]> samples = new ArrayList<>();
+  private int sampledBytes;
+  private boolean trainingStarted;
+  /** Trains and stores the dictionaries outside of the transactions of the entries sampled. */
+  private final ExecutorService trainer;
+
+  /**
+   * Creates the dictionaries of a backend, loading the dictionaries already
+   * trained.
+   *
+   * @param storage
+   *          A reference to the storage in which the tree will be held.
+   * @param txn
+   *          a non null transaction
+   * @param accessMode
+   *          specifies how the storage has been opened (read only or read/write)
+   * @throws StorageRuntimeException
+   *           If a problem occurs while loading the dictionaries from the tree.
+   * @throws InitializationException
+   *           If the dictionaries cannot be decoded.
+   */
+  CompressionDictionaries(Storage storage, WriteableTransaction txn, AccessMode accessMode)
+      throws StorageRuntimeException, InitializationException
+  {
+    this(storage, txn, accessMode,
+        Executors.newSingleThreadExecutor(newThreadFactory(null, TRAINER_THREAD_NAME, true)));
+  }
+
+  /**
+   * Creates the dictionaries of a backend, training new dictionaries with the
+   * provided executor.
+   *
+   * @param storage
+   *          A reference to the storage in which the tree will be held.
+   * @param txn
+   *          a non null transaction
+   * @param accessMode
+   *          specifies how the storage has been opened (read only or read/write)
+   * @param trainer
+   *          the executor training and storing new dictionaries
+   * @throws StorageRuntimeException
+   *           If a problem occurs while loading the dictionaries from the tree.
+   * @throws InitializationException
+   *           If the dictionaries cannot be decoded.
+   */
+  CompressionDictionaries(Storage storage, WriteableTransaction txn, AccessMode accessMode, ExecutorService trainer)
+      throws StorageRuntimeException, InitializationException
+  {
+    this.storage = storage;
+    this.isWriteable = accessMode.isWriteable();
+    this.trainer = trainer;
+    load(txn);
+  }
+
+  private void load(WriteableTransaction txn) throws StorageRuntimeException, InitializationException
+  {
+    txn.openTree(dictionariesTreeName, isWriteable);
+    final Cursor<ByteString, ByteString> cursor;
+    try
+    {
+      cursor = txn.openCursor(dictionariesTreeName);
+    }
+    catch (StorageRuntimeException e)
+    {
+      if (isWriteable)
+      {
+        throw e;
+      }
+      // backends created before dictionaries existed, opened read only
+      logger.traceException(e);
+      return;
+    }
+
+    try
+    {
+      while (cursor.next())
+      {
+        final ByteString key = cursor.getKey();
+        if (key.length() != 4)
+        {
+          throw new InitializationException(ERR_COMPRESSION_DICTIONARY_CANNOT_DECODE.get(key.toHexString()));
+        }
+        addDictionary(new Dictionary(key.toInt(), cursor.getValue().toByteArray()));
+      }
+    }
+    finally
+    {
+      cursor.close();
+    }
+  }
+
+  private void addDictionary(Dictionary dictionary)
+  {
+    dictionaries.put(dictionary.version, dictionary);
+    if (latest == null || dictionary.version > latest.version)
+    {
+      latest = dictionary;
+    }
+  }
+
+  /**
+   * Returns the dictionary with the provided version.
+   *
+   * @param version
+   *          the version of the dictionary
+   * @return the dictionary, or {@code null} if there is no such dictionary
+   */
+  Dictionary get(int version)
+  {
+    return dictionaries.get(version);
+  }
+
+  /**
+   * Returns the dictionary to use for compressing the provided encoded entry.
+   * <p>
+   * While no dictionary has been trained yet, the entry is added to the sample
+   * used to train the first dictionary. Once enough entries have been sampled,
+   * the dictionary is trained and stored in the background, and returned by
+   * the subsequent calls once stored.
+   *
+   * @param encodedEntry
+   *          the encoded entry to compress
+   * @return the dictionary to use, or {@code null} if the entry must be
+   *         compressed without dictionary
+   */
+  Dictionary getDictionaryForCompression(ByteSequence encodedEntry)
+  {
+    final Dictionary dictionary = latest;
+    if (dictionary != null || !isWriteable)
+    {
+      return dictionary;
+    }
+    final List<byte[]> trainingSamples = sample(encodedEntry);
+    if (trainingSamples != null)
+    {
+      startTraining(trainingSamples);
+    }
+    // the entry is being stored in the caller's transaction, which the new dictionary must not depend on
+    return null;
+  }
+
+  private void startTraining(final List<byte[]> trainingSamples)
+  {
+    try
+    {
+      trainer.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if (!train(trainingSamples))
+          {
+            trainingFailed();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e)
+    {
+      // the backend is being closed
+      logger.traceException(e);
+      trainingFailed();
+    }
+  }
+
+  /** Lets the entries compressed afterwards be sampled for training a dictionary again. */
+  private void trainingFailed()
+  {
+    synchronized (samples)
+    {
+      trainingStarted = false;
+    }
+  }
+
+  /** Returns the samples to train a dictionary from, if enough entries have been sampled. */
+  private List<byte[]> sample(ByteSequence encodedEntry)
+  {
+    synchronized (samples)
+    {
+      if (trainingStarted)
+      {
+        return null;
+      }
+      samples.add(encodedEntry.toByteArray());
+      sampledBytes += encodedEntry.length();
+      if (samples.size() < SAMPLE_SIZE && sampledBytes < MAX_SAMPLE_BYTES)
+      {
+        return null;
+      }
+      trainingStarted = true;
+      final List<byte[]> trainingSamples = new ArrayList<>(samples);
+      samples.clear();
+      sampledBytes = 0;
+      return trainingSamples;
+    }
+  }
+
+  /** Returns whether a dictionary has been trained and stored, or could not be trained from the samples. */
+  private boolean train(List<byte[]> trainingSamples)
+  {
+    final byte[] bytes = DictionaryTrainer.train(trainingSamples, DictionaryTrainer.MAX_DICTIONARY_SIZE);
+    if (bytes.length == 0)
+    {
+      return true;
+    }
+    final Dictionary dictionary = new Dictionary(latest != null ? latest.version + 1 : 1, bytes);
+    try
+    {
+      // the dictionary must be committed before any entry is compressed against it
+      store(dictionary);
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_COMPRESSION_DICTIONARY_CANNOT_STORE, dictionary.version, stackTraceToSingleLineString(e));
+      return false;
+    }
+    addDictionary(dictionary);
+    logger.info(NOTE_COMPRESSION_DICTIONARY_TRAINED, dictionary.version, bytes.length, trainingSamples.size());
+    return true;
+  }
+
+  private void store(final Dictionary dictionary) throws Exception
+  {
+    final ByteString key = new ByteStringBuilder(4).appendInt(dictionary.version).toByteString();
+    final ByteString value = ByteString.wrap(dictionary.bytes);
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.put(dictionariesTreeName, key, value);
+      }
+    });
+  }
+
+  /**
+   * Stops training dictionaries, waiting for the dictionary being stored, if
+   * any, before the storage is closed.
+   */
+  void close()
+  {
+    trainer.shutdown();
+    try
+    {
+      trainer.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
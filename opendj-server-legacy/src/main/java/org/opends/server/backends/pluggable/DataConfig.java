@@ -39,6 +39,12 @@ final class DataConfig
   /** Indicates whether data should be compressed before writing to the storage. */
   private final boolean compressed;
 
+  /** Indicates whether compressed data should be compressed against a dictionary. */
+  private final boolean compressedWithDictionary;
+
+  /** The dictionaries the data is compressed against, may be {@code null}. */
+  private final CompressionDictionaries compressionDictionaries;
+
   /** The configuration to use when encoding entries in the tree. */
   private final EntryEncodeConfig encodeConfig;
 
@@ -53,7 +59,30 @@ final class DataConfig
    */
   DataConfig(boolean compressed, boolean compactEncoding, CompressedSchema compressedSchema)
   {
+    this(compressed, false, compactEncoding, compressedSchema, null);
+  }
+
+  /**
+   * Construct a new DataConfig object with the specified settings.
+   *
+   * @param compressed true if data should be compressed, false if not.
+   * @param compressedWithDictionary true if compressed data should be
+   * compressed against a dictionary, false if not.
+   * @param compactEncoding true if data should be encoded in compact form,
+   * false if not.
+   * @param compressedSchema the compressed schema manager to use.  It must not
+   * be {@code null} if compactEncoding is {@code true}.
+   * @param compressionDictionaries the dictionaries to use for compressing and
+   * decompressing data.  It must not be {@code null} if compressedWithDictionary
+   * is {@code true}.
+   */
+  DataConfig(boolean compressed, boolean compressedWithDictionary, boolean compactEncoding,
+      CompressedSchema compressedSchema, CompressionDictionaries compressionDictionaries)
+  {
+    Reject.ifTrue(compressedWithDictionary && compressionDictionaries == null);
     this.compressed = compressed;
+    this.compressedWithDictionary = compressed && compressedWithDictionary;
+    this.compressionDictionaries = compressionDictionaries;
 
     if (compressedSchema == null)
     {
@@ -76,6 +105,25 @@ final class DataConfig
     return compressed;
   }
 
+  /**
+   * Determine whether compressed data should be compressed against a dictionary.
+   * @return true if compressed data should be compressed against a dictionary,
+   * false if not.
+   */
+  boolean isCompressedWithDictionary()
+  {
+    return compressedWithDictionary;
+  }
+
+  /**
+   * Get the dictionaries to use for compressing and decompressing data.
+   * @return the dictionaries, or {@code null} if there are none.
+   */
+  CompressionDictionaries getCompressionDictionaries()
+  {
+    return compressionDictionaries;
+  }
+
   /**
    * Get the EntryEncodeConfig object in use by this configuration.
    * @return the EntryEncodeConfig object in use by this configuration.
@@ -95,6 +143,8 @@ final class DataConfig
     final StringBuilder builder = new StringBuilder();
     builder.append("DataConfig(compressed=");
     builder.append(compressed);
+    builder.append(", compressedWithDictionary=");
+    builder.append(compressedWithDictionary);
     builder.append(", ");
     encodeConfig.toString(builder);
     builder.append(")");
@@ -0,0 +1,232 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Trains the dictionaries used to compress entries from a sample of encoded
+ * entries.
+ * <p>
+ * A dictionary is the concatenation of byte sequences, called segments, cut
+ * from the sample entries. A segment is scored by summing, for each of its
+ * distinct k-grams, the number of sample entries containing this k-gram: the
+ * higher the score, the more entries the segment helps compressing. Segments
+ * are greedily selected by decreasing score, and the k-grams of a selected
+ * segment no longer count for the segments selected afterwards so that the
+ * dictionary does not repeat itself.
+ * <p>
+ * Deflate encodes shorter distances with fewer bits, so the best segments are
+ * placed at the end of the dictionary, closest to the compressed data.
+ */
+final class DictionaryTrainer
+{
+  /** The maximum size of a dictionary, which is the size of the deflate window. */
+  static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+  /** The length of the k-grams counted in the sample entries. */
+  private static final int GRAM_LENGTH = 8;
+  /** The length of the segments the dictionary is made of. */
+  private static final int SEGMENT_LENGTH = 64;
+  /** The number of bits of the k-gram hashes, k-grams are counted in a table with this many bits. */
+  private static final int HASH_BITS = 20;
+
+  /** A segment candidate for inclusion in the dictionary. */
+  private static final class Segment implements Comparable<Segment>
+  {
+    private final byte[] sample;
+    private final int start;
+    private final int end;
+    private int score;
+
+    private Segment(byte[] sample, int start, int end)
+    {
+      this.sample = sample;
+      this.start = start;
+      this.end = end;
+    }
+
+    private int length()
+    {
+      return end - start;
+    }
+
+    @Override
+    public int compareTo(Segment o)
+    {
+      // highest scores first
+      return Integer.compare(o.score, score);
+    }
+  }
+
+  private DictionaryTrainer()
+  {
+    // prevent instantiation
+  }
+
+  /**
+   * Trains a dictionary from the provided sample of encoded entries.
+   *
+   * @param samples
+   *          the sample of encoded entries
+   * @param maxDictionarySize
+   *          the maximum size of the dictionary, in bytes
+   * @return the dictionary, which may be empty if the samples have nothing in
+   *         common
+   */
+  static byte[] train(List<byte[]> samples, int maxDictionarySize)
+  {
+    final int[] frequencies = countSampleFrequencies(samples);
+
+    final PriorityQueue<Segment> candidates = new PriorityQueue<>();
+    for (byte[] sample : samples)
+    {
+      // overlapping segments give a chance to content straddling segment boundaries
+      for (int start = 0; start + GRAM_LENGTH <= sample.length; start += SEGMENT_LENGTH / 2)
+      {
+        final Segment segment = new Segment(sample, start, Math.min(start + SEGMENT_LENGTH, sample.length));
+        segment.score = score(segment, frequencies);
+        if (segment.score > 0)
+        {
+          candidates.add(segment);
+        }
+      }
+    }
+
+    final List<Segment> selected = new ArrayList<>();
+    int size = 0;
+    while (size < maxDictionarySize && !candidates.isEmpty())
+    {
+      final Segment best = candidates.poll();
+      // scores only decrease when segments are selected: re-score lazily
+      final int score = score(best, frequencies);
+      if (score < best.score)
+      {
+        best.score = score;
+        if (score > 0)
+        {
+          candidates.add(best);
+        }
+        continue;
+      }
+      selected.add(best);
+      size += best.length();
+      clearFrequencies(best, frequencies);
+    }
+
+    final byte[] dictionary = new byte[Math.min(size, maxDictionarySize)];
+    int end = dictionary.length;
+    for (Segment segment : selected)
+    {
+      final int length = Math.min(segment.length(), end);
+      end -= length;
+      System.arraycopy(segment.sample, segment.end - length, dictionary, end, length);
+    }
+    return dictionary;
+  }
+
+  /** Counts, for each k-gram hash, the number of samples containing it. */
+  private static int[] countSampleFrequencies(List<byte[]> samples)
+  {
+    final int[] frequencies = new int[1 << HASH_BITS];
+    final int[] lastSample = new int[1 << HASH_BITS];
+    for (int i = 0; i < samples.size(); i++)
+    {
+      final byte[] sample = samples.get(i);
+      for (int pos = 0; pos + GRAM_LENGTH <= sample.length; pos++)
+      {
+        final int hash = hashGram(sample, pos);
+        // count a k-gram only once per sample
+        if (lastSample[hash] != i + 1)
+        {
+          lastSample[hash] = i + 1;
+          frequencies[hash]++;
+        }
+      }
+    }
+    return frequencies;
+  }
+
+  private static int score(Segment segment, int[] frequencies)
+  {
+    final int[] hashes = distinctGramHashes(segment);
+    int score = 0;
+    for (int hash : hashes)
+    {
+      // k-grams found in a single sample do not help compressing other entries
+      if (frequencies[hash] > 1)
+      {
+        score += frequencies[hash];
+      }
+    }
+    return score;
+  }
+
+  private static void clearFrequencies(Segment segment, int[] frequencies)
+  {
+    for (int hash : distinctGramHashes(segment))
+    {
+      frequencies[hash] = 0;
+    }
+  }
+
+  private static int[] distinctGramHashes(Segment segment)
+  {
+    final int nbGrams = segment.length() - GRAM_LENGTH + 1;
+    if (nbGrams <= 0)
+    {
+      return new int[0];
+    }
+    final int[] hashes = new int[nbGrams];
+    for (int i = 0; i < nbGrams; i++)
+    {
+      hashes[i] = hashGram(segment.sample, segment.start + i);
+    }
+    Arrays.sort(hashes);
+    int nbDistinct = 1;
+    for (int i = 1; i < nbGrams; i++)
+    {
+      if (hashes[i] != hashes[nbDistinct - 1])
+      {
+        hashes[nbDistinct++] = hashes[i];
+      }
+    }
+    return Arrays.copyOf(hashes, nbDistinct);
+  }
+
+  private static int hashGram(byte[] bytes, int pos)
+  {
+    long gram = 0;
+    for (int i = 0; i < GRAM_LENGTH; i++)
+    {
+      gram = (gram << 8) | (bytes[pos + i] & 0xFF);
+    }
+    return (int) ((gram * 0x9E3779B97F4A7C15L) >>> (64 - HASH_BITS));
+  }
+}
@@ -37,6 +37,7 @@ import static org.opends.server.protocols.ldap.LDAPResultCode.*;
 import static org.opends.server.types.AdditionalLogItem.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -47,6 +48,9 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -448,8 +452,9 @@ public class EntryContainer
     boolean shouldCreate = accessMode.isWriteable();
     try
     {
-      DataConfig entryDataConfig = new DataConfig(
-          config.isEntriesCompressed(), config.isCompactEncoding(), rootContainer.getCompressedSchema());
+      DataConfig entryDataConfig = new DataConfig(config.isEntriesCompressed(),
+          config.isEntriesCompressedWithDictionary(), config.isCompactEncoding(),
+          rootContainer.getCompressedSchema(), rootContainer.getCompressionDictionaries());
 
       id2entry = new ID2Entry(getIndexName(ID2ENTRY_TREE_NAME), entryDataConfig);
       id2entry.open(txn, shouldCreate);
@@ -748,6 +753,29 @@ public class EntryContainer
             }
           }
 
+          // Serve the next pages of a paged search from the candidates cached when processing its first page.
+          final PagedResultsCache pagedResultsCache = rootContainer.getPagedResultsCache();
+          String pagedSearchKey = null;
+          if (pageRequest != null && searchScope != SearchScope.BASE_OBJECT && pagedResultsCache.isEnabled())
+          {
+            pagedSearchKey = pagedSearchKey(searchOperation, sortRequest);
+            final ByteString cookie = pageRequest.getCookie();
+            if (cookie.length() == PagedResultsCache.CACHED_COOKIE_LENGTH)
+            {
+              final PagedResultsCache.Candidates candidates = pagedResultsCache.get(
+                  searchOperation.getClientConnection().getConnectionID(), pagedSearchKey,
+                  PagedResultsCache.decodeCookie(cookie));
+              if (candidates != null)
+              {
+                searchOperation.getResponseControls().addAll(candidates.getResponseControls());
+                rootContainer.getMonitorProvider().incrementIndexedSearchCount();
+                searchIndexed(txn, candidates.getEntryIDs(), candidates.areCandidatesInScope(), searchOperation,
+                    pageRequest, pagedSearchKey, candidates, null);
+                return null;
+              }
+            }
+          }
+
           // Handle base-object search first.
           if (searchScope == SearchScope.BASE_OBJECT)
           {
@@ -807,6 +835,7 @@ public class EntryContainer
           // requires us to use an entryIDSet where the entryIDs are ordered
           // so further paging can restart where it previously stopped
           long[] entryIDReorderedSet;
+          SortedCandidates sortedCandidates = null;
           if (entryIDSet == null)
           {
             if (processSearchWithVirtualAttributeRule(searchOperation, true))
@@ -850,10 +879,24 @@ public class EntryContainer
               try
               {
                 SortOrder sortOrder = sortRequest.getSortOrder();
-                entryIDReorderedSet = sort(txn, entryIDSet, searchOperation, sortOrder, vlvRequest);
+                int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
+                if (vlvRequest == null && pageRequest == null && entryIDSet.isDefined()
+                    && (lookthroughLimit <= 0 || entryIDSet.size() <= lookthroughLimit))
+                {
+                  // The sorted entries are needed one after the other: sort them on demand.
+                  // Not when the lookthrough limit may be exceeded, which must be known before returning entries.
+                  sortedCandidates = new SortedCandidates(txn, entryIDSet, searchOperation, sortOrder);
+                  entryIDReorderedSet = sortedCandidates.next();
+                }
+                else
+                {
+                  entryIDReorderedSet = sort(txn, entryIDSet, searchOperation, sortOrder, vlvRequest);
+                }
               }
               catch (DirectoryException de)
               {
+                closeSilently(sortedCandidates);
+                sortedCandidates = null;
                 entryIDReorderedSet = entryIDSet.toLongArray();
                 serverSideSortControlError(searchOperation, sortRequest, de);
               }
@@ -894,6 +937,7 @@ public class EntryContainer
           // debug information, and no other entries.
           if (debugBuffer != null)
           {
+            closeSilently(sortedCandidates);
             debugBuffer.append(" final=");
             entryIDSet.toString(debugBuffer);
 
@@ -905,7 +949,15 @@ public class EntryContainer
           if (entryIDReorderedSet != null)
           {
             rootContainer.getMonitorProvider().incrementIndexedSearchCount();
-            searchIndexed(txn, entryIDReorderedSet, candidatesAreInScope, searchOperation, pageRequest);
+            try
+            {
+              searchIndexed(txn, entryIDReorderedSet, candidatesAreInScope, searchOperation, pageRequest,
+                  pagedSearchKey, null, sortedCandidates);
+            }
+            finally
+            {
+              closeSilently(sortedCandidates);
+            }
           }
           else
           {
@@ -1006,6 +1058,24 @@ public class EntryContainer
     }
   }
 
+  /**
+   * Returns the key identifying a paged search, so that the candidates cached for a paged search
+   * cannot be returned to a different search presenting the same cookie.
+   */
+  private String pagedSearchKey(SearchOperation searchOperation, ServerSideSortRequestControl sortRequest)
+  {
+    final StringBuilder key = new StringBuilder();
+    key.append(baseDN).append('|').append(searchOperation.getBaseDN());
+    key.append('|').append(searchOperation.getScope()).append('|');
+    searchOperation.getFilter().toString(key);
+    if (sortRequest != null)
+    {
+      key.append('|');
+      sortRequest.toString(key);
+    }
+    return key.toString();
+  }
+
   private static EntryIDSet newIDSetFromCursor(SequentialCursor<?, EntryID> cursor, boolean includeCurrent,
       int idSetLimit)
   {
@@ -1178,43 +1248,53 @@ public class EntryContainer
 
     try (final Cursor<ByteString, ByteString> cursor = txn.openCursor(dn2id.getName()))
     {
+      final CandidateEvaluator evaluator = new CandidateEvaluator(txn, searchOperation, true);
+      final List<Candidate> batch = new ArrayList<>();
+
       // Initialize the cursor very close to the starting value.
       boolean success = cursor.positionToKeyOrNext(begin);
 
       // Step forward until we pass the ending value.
       while (success && cursor.getKey().compareTo(end) < 0)
       {
-        if (lookthroughLimit > 0 && lookthroughCount > lookthroughLimit)
+        batch.clear();
+        for (int batchSize = evaluator.nextBatchSize();
+            success && batch.size() < batchSize && cursor.getKey().compareTo(end) < 0; success = cursor.next())
         {
-          // Lookthrough limit exceeded
-          searchOperation.setResultCode(ResultCode.ADMIN_LIMIT_EXCEEDED);
-          searchOperation.appendErrorMessage(NOTE_LOOKTHROUGH_LIMIT_EXCEEDED.get(lookthroughLimit));
-          return;
+          // We have found a subordinate entry.
+          EntryID entryID = new EntryID(cursor.getValue());
+          boolean isInScope =
+              searchScope != SearchScope.SINGLE_LEVEL
+                  // Check if this entry is an immediate child.
+                  || findDNKeyParent(cursor.getKey()) == baseDNKey.length();
+          batch.add(new Candidate(entryID, cursor.getKey(), isInScope));
         }
+        evaluator.evaluate(batch);
 
-        // We have found a subordinate entry.
-        EntryID entryID = new EntryID(cursor.getValue());
-        boolean isInScope =
-            searchScope != SearchScope.SINGLE_LEVEL
-                // Check if this entry is an immediate child.
-                || findDNKeyParent(cursor.getKey()) == baseDNKey.length();
-        if (isInScope)
+        for (Candidate candidate : batch)
         {
+          if (lookthroughLimit > 0 && lookthroughCount > lookthroughLimit)
+          {
+            // Lookthrough limit exceeded
+            searchOperation.setResultCode(ResultCode.ADMIN_LIMIT_EXCEEDED);
+            searchOperation.appendErrorMessage(NOTE_LOOKTHROUGH_LIMIT_EXCEEDED.get(lookthroughLimit));
+            return;
+          }
+
           // Process the candidate entry.
-          final Entry entry = getEntry(txn, entryID);
+          final Entry entry = candidate.getEntry();
           if (entry != null)
           {
             lookthroughCount++;
 
-            if ((manageDsaIT || entry.getReferralURLs() == null)
-                && searchOperation.getFilter().matchesEntry(entry))
+            if (candidate.matches())
             {
               if (pageRequest != null
                   && searchOperation.getEntriesSent() == pageRequest.getSize())
               {
                 // The current page is full.
                 // Set the cookie to remember where we were.
-                ByteString cookie = cursor.getKey();
+                ByteString cookie = candidate.dnKey;
                 Control control = new PagedResultsControl(pageRequest.isCritical(), 0, cookie);
                 searchOperation.getResponseControls().add(control);
                 return;
@@ -1229,12 +1309,9 @@ public class EntryContainer
               }
             }
           }
-        }
-
-        searchOperation.checkIfCanceled(false);
 
-        // Move to the next record.
-        success = cursor.next();
+          searchOperation.checkIfCanceled(false);
+        }
       }
     }
     catch (StorageRuntimeException e)
@@ -1300,26 +1377,34 @@ public class EntryContainer
    *          The search operation.
    * @param pageRequest
    *          A Paged Results control, or null if none.
+   * @param pagedSearchKey
+   *          The key identifying the paged search in the paged results cache, or null if the cache is not used.
+   * @param cachedCandidates
+   *          The candidates of the paged search retrieved from the paged results cache, or null if none.
+   * @param sortedCandidates
+   *          The candidates sorted on demand, which follow the provided candidate entry IDs, or null if none.
    * @throws DirectoryException
    *           If an error prevented the search from being processed.
    */
   private void searchIndexed(ReadableTransaction txn, long[] entryIDReorderedSet, boolean candidatesAreInScope,
-      SearchOperation searchOperation, PagedResultsControl pageRequest) throws DirectoryException,
-      CanceledOperationException
+      SearchOperation searchOperation, PagedResultsControl pageRequest, String pagedSearchKey,
+      PagedResultsCache.Candidates cachedCandidates, SortedCandidates sortedCandidates)
+      throws DirectoryException, CanceledOperationException
   {
     SearchScope searchScope = searchOperation.getScope();
     DN aBaseDN = searchOperation.getBaseDN();
     boolean manageDsaIT = isManageDsaITOperation(searchOperation);
     boolean continueSearch = true;
+    PagedResultsCache.Candidates candidates = cachedCandidates;
 
     // Set the starting value.
-    Long beginEntryID = null;
+    PagedResultsCache.Position beginPosition = null;
     if (pageRequest != null && pageRequest.getCookie().length() != 0)
     {
       // The cookie contains the ID of the next entry to be returned.
       try
       {
-        beginEntryID = pageRequest.getCookie().toLong();
+        beginPosition = PagedResultsCache.decodeCookie(pageRequest.getCookie());
       }
       catch (Exception e)
       {
@@ -1347,33 +1432,63 @@ public class EntryContainer
     // Iterate through the index candidates.
     if (continueSearch)
     {
-      final SearchFilter filter = searchOperation.getFilter();
-      for (int i = findStartIndex(beginEntryID, entryIDReorderedSet); i < entryIDReorderedSet.length; i++)
+      final CandidateEvaluator evaluator = new CandidateEvaluator(txn, searchOperation, candidatesAreInScope);
+      final List<Candidate> batch = new ArrayList<>();
+      int batchStart = findStartIndex(beginPosition, entryIDReorderedSet);
+      while (continueSearch)
       {
-        EntryID entryID = new EntryID(entryIDReorderedSet[i]);
-        Entry entry;
-        try
+        if (batchStart >= entryIDReorderedSet.length)
         {
-          entry = getEntry(txn, entryID);
+          if (sortedCandidates == null || (entryIDReorderedSet = sortedCandidates.next()).length == 0)
+          {
+            break;
+          }
+          batchStart = 0;
         }
-        catch (Exception e)
+        batch.clear();
+        final int batchEnd = (int) Math.min((long) batchStart + evaluator.nextBatchSize(), entryIDReorderedSet.length);
+        for (int i = batchStart; i < batchEnd; i++)
         {
-          logger.traceException(e);
-          continue;
+          batch.add(new Candidate(new EntryID(entryIDReorderedSet[i]), null, true));
         }
+        evaluator.evaluate(batch);
 
-        // Process the candidate entry.
-        if (entry != null
-              && isInScope(candidatesAreInScope, searchScope, aBaseDN, entry)
-              && (manageDsaIT || entry.getReferralURLs() == null)
-              && filter.matchesEntry(entry))
+        for (int i = batchStart; i < batchEnd; i++)
+        {
+          // Check for each candidate, so that the entries returned do not depend on the size of the batches
+          searchOperation.checkIfCanceled(false);
+
+          final Candidate candidate = batch.get(i - batchStart);
+          Entry entry;
+          try
+          {
+            entry = candidate.getEntry();
+          }
+          catch (Exception e)
+          {
+            logger.traceException(e);
+            continue;
+          }
+
+          // Process the candidate entry.
+          if (entry != null && candidate.matches())
           {
             if (pageRequest != null
                 && searchOperation.getEntriesSent() == pageRequest.getSize())
             {
               // The current page is full.
-              // Set the cookie to remember where we were.
-              ByteString cookie = entryID.toByteString();
+              // Cache the candidates for the next pages, and set the cookie to remember where we were.
+              if (candidates == null && pagedSearchKey != null)
+              {
+                candidates = new PagedResultsCache.Candidates(
+                    searchOperation.getClientConnection().getConnectionID(), pagedSearchKey, entryIDReorderedSet,
+                    candidatesAreInScope, new ArrayList<>(searchOperation.getResponseControls()));
+                if (!rootContainer.getPagedResultsCache().put(candidates))
+                {
+                  candidates = null;
+                }
+              }
+              ByteString cookie = PagedResultsCache.encodeCookie(candidates, i, candidate.entryID);
               Control control = new PagedResultsControl(pageRequest.isCritical(), 0, cookie);
               searchOperation.getResponseControls().add(control);
               return;
@@ -1384,9 +1499,12 @@ public class EntryContainer
               // We have been told to discontinue processing of the
               // search. This could be due to size limit exceeded or
               // operation cancelled.
+              continueSearch = false;
               break;
             }
           }
+        }
+        batchStart = batchEnd;
       }
       searchOperation.checkIfCanceled(false);
     }
@@ -1409,24 +1527,21 @@ public class EntryContainer
       // Indicate no more pages.
       Control control = new PagedResultsControl(pageRequest.isCritical(), 0, null);
       searchOperation.getResponseControls().add(control);
+      if (candidates != null)
+      {
+        rootContainer.getPagedResultsCache().remove(candidates);
+      }
     }
   }
 
-  private int findStartIndex(Long beginEntryID, long[] entryIDReorderedSet)
+  private int findStartIndex(PagedResultsCache.Position beginPosition, long[] entryIDReorderedSet)
   {
-    if (beginEntryID == null)
+    if (beginPosition == null)
     {
       return 0;
     }
-    final long begin = beginEntryID.longValue();
-    for (int i = 0; i < entryIDReorderedSet.length; i++)
-    {
-      if (entryIDReorderedSet[i] == begin)
-      {
-        return i;
-      }
-    }
-    return 0;
+    final int index = beginPosition.indexIn(entryIDReorderedSet);
+    return index >= 0 ? index : 0;
   }
 
   private boolean isInScope(boolean candidatesAreInScope, SearchScope searchScope, DN aBaseDN, Entry entry)
@@ -1462,6 +1577,234 @@ public class EntryContainer
     return false;
   }
 
+  /** A candidate entry of a search, along with the outcome of its evaluation against the search criteria. */
+  private static final class Candidate
+  {
+    private final EntryID entryID;
+    /** The dn2id key of the candidate for unindexed searches, null otherwise. */
+    private final ByteString dnKey;
+    /** Whether the candidate must be fetched and matched against the search criteria. */
+    private final boolean evaluate;
+
+    private ByteString encodedEntry;
+    private Entry entry;
+    private Exception entryError;
+    private boolean matches;
+    private DirectoryException matchError;
+
+    Candidate(EntryID entryID, ByteString dnKey, boolean evaluate)
+    {
+      this.entryID = entryID;
+      this.dnKey = dnKey;
+      this.evaluate = evaluate;
+    }
+
+    /**
+     * Returns the entry of this candidate.
+     *
+     * @return the entry of this candidate, or null if it does not exist or has not been evaluated
+     * @throws DirectoryException
+     *           If the entry could not be read
+     */
+    Entry getEntry() throws DirectoryException
+    {
+      if (entryError instanceof DirectoryException)
+      {
+        throw (DirectoryException) entryError;
+      }
+      else if (entryError instanceof RuntimeException)
+      {
+        throw (RuntimeException) entryError;
+      }
+      return entry;
+    }
+
+    /**
+     * Returns whether the entry of this candidate matches the search criteria.
+     *
+     * @return true if the entry of this candidate matches the search scope and filter
+     * @throws DirectoryException
+     *           If the search filter could not be evaluated against the entry
+     */
+    boolean matches() throws DirectoryException
+    {
+      if (matchError != null)
+      {
+        throw matchError;
+      }
+      return matches;
+    }
+  }
+
+  /**
+   * Fetches the candidate entries of a search and matches them against the search criteria in ordered batches.
+   * <p>
+   * Candidates are fetched from the entry cache or read from id2entry by the thread processing the search, since
+   * transactions cannot be shared between threads. When the search evaluation pool of the root container is enabled,
+   * the candidates read from id2entry are then decoded and matched against the search filter by the threads of the
+   * pool. The caller processes the candidates of each batch in order once they have all been evaluated, so the
+   * results order and the search limits are not affected.
+   */
+  private final class CandidateEvaluator
+  {
+    /** Maximum number of candidates per batch and per thread of the pool. */
+    private static final int MAX_BATCH_SIZE_PER_THREAD = 32;
+
+    private final ReadableTransaction txn;
+    private final ForkJoinPool pool;
+    private final EntryCache<?> entryCache = getEntryCache();
+    private final boolean candidatesAreInScope;
+    private final SearchScope searchScope;
+    private final DN aBaseDN;
+    private final boolean manageDsaIT;
+    private final SearchFilter filter;
+    private int batchSize;
+
+    CandidateEvaluator(ReadableTransaction txn, SearchOperation searchOperation, boolean candidatesAreInScope)
+    {
+      this.txn = txn;
+      this.pool = rootContainer.getSearchEvaluationPool();
+      this.candidatesAreInScope = candidatesAreInScope;
+      this.searchScope = searchOperation.getScope();
+      this.aBaseDN = searchOperation.getBaseDN();
+      this.manageDsaIT = isManageDsaITOperation(searchOperation);
+      this.filter = searchOperation.getFilter();
+      this.batchSize = pool != null ? pool.getParallelism() : 1;
+    }
+
+    /**
+     * Returns the number of candidates to evaluate in the next batch. Batches start small so that searches returning
+     * few entries do not evaluate many useless candidates, and grow to keep all the threads of the pool busy.
+     */
+    int nextBatchSize()
+    {
+      final int size = batchSize;
+      if (pool != null)
+      {
+        batchSize = Math.min(batchSize * 2, pool.getParallelism() * MAX_BATCH_SIZE_PER_THREAD);
+      }
+      return size;
+    }
+
+    void evaluate(List<Candidate> batch)
+    {
+      for (Candidate candidate : batch)
+      {
+        fetch(candidate);
+      }
+      if (pool != null && batch.size() > 1)
+      {
+        try
+        {
+          pool.invoke(new EvaluationTask(batch, 0, batch.size()));
+          return;
+        }
+        catch (RejectedExecutionException e)
+        {
+          // The pool has been shut down by a configuration change or by the closing of the backend
+          logger.traceException(e);
+        }
+      }
+      for (Candidate candidate : batch)
+      {
+        evaluate(candidate);
+      }
+    }
+
+    private void fetch(Candidate candidate)
+    {
+      if (!candidate.evaluate)
+      {
+        return;
+      }
+      try
+      {
+        final Entry cacheEntry = entryCache.getEntry(backendID, candidate.entryID.longValue());
+        if (cacheEntry != null)
+        {
+          candidate.entry = cacheEntry;
+        }
+        else
+        {
+          candidate.encodedEntry = id2entry.getEncoded(txn, candidate.entryID);
+        }
+      }
+      catch (Exception e)
+      {
+        candidate.entryError = e;
+      }
+    }
+
+    private void evaluate(Candidate candidate)
+    {
+      if (candidate.encodedEntry != null)
+      {
+        try
+        {
+          candidate.entry = id2entry.decode(candidate.entryID, candidate.encodedEntry);
+          candidate.encodedEntry = null;
+          if (candidate.entry != null)
+          {
+            // Put the entry in the cache making sure not to overwrite a newer copy
+            // that may have been inserted since the time we read the cache.
+            entryCache.putEntryIfAbsent(candidate.entry, backendID, candidate.entryID.longValue());
+          }
+        }
+        catch (DirectoryException e)
+        {
+          candidate.entryError = e;
+          return;
+        }
+      }
+
+      final Entry entry = candidate.entry;
+      if (entry != null)
+      {
+        try
+        {
+          candidate.matches = isInScope(candidatesAreInScope, searchScope, aBaseDN, entry)
+              && (manageDsaIT || entry.getReferralURLs() == null)
+              && filter.matchesEntry(entry);
+        }
+        catch (DirectoryException e)
+        {
+          candidate.matchError = e;
+        }
+      }
+    }
+
+    /** Evaluates a range of a batch of candidates, splitting it between the threads of the pool. */
+    private final class EvaluationTask extends RecursiveAction
+    {
+      private static final long serialVersionUID = 1L;
+
+      private final List<Candidate> batch;
+      private final int from;
+      private final int to;
+
+      EvaluationTask(List<Candidate> batch, int from, int to)
+      {
+        this.batch = batch;
+        this.from = from;
+        this.to = to;
+      }
+
+      @Override
+      protected void compute()
+      {
+        if (to - from == 1)
+        {
+          evaluate(batch.get(from));
+        }
+        else
+        {
+          final int middle = (from + to) >>> 1;
+          invokeAll(new EvaluationTask(batch, from, middle), new EvaluationTask(batch, middle, to));
+        }
+      }
+    }
+  }
+
   /**
    * Adds the provided entry to this tree.  This method must ensure that the
    * entry is appropriate for the tree and that no entry already exists with
@@ -2507,7 +2850,8 @@ public class EntryContainer
         public void run(WriteableTransaction txn) throws Exception
         {
           DataConfig entryDataConfig = new DataConfig(cfg.isEntriesCompressed(),
-              cfg.isCompactEncoding(), rootContainer.getCompressedSchema());
+              cfg.isEntriesCompressedWithDictionary(), cfg.isCompactEncoding(),
+              rootContainer.getCompressedSchema(), rootContainer.getCompressionDictionaries());
           id2entry.setDataConfig(entryDataConfig);
 
           EntryContainer.this.config = cfg;
@@ -2686,6 +3030,213 @@ public class EntryContainer
     return sortByGreaterThanOrEqualAssertion(searchOperation, vlvRequest, sortOrder, sortMap);
   }
 
+  /**
+   * The candidates of a sorted search, sorted on demand in chunks, so that
+   * sorted searches returning their entries one after the other do not need to
+   * sort all the candidates before returning the first entries.
+   * <p>
+   * When the primary sort key is ascending and its attribute has an ordering
+   * index, the candidates are returned in the order of the ordering index keys,
+   * only sorting the candidates sharing the same primary sort value. The
+   * candidates without a value for the primary sort key, which sort last, are
+   * then sorted like in the absence of ordering index.
+   * <p>
+   * Otherwise, each chunk is made of the first candidates which sort after the
+   * previous chunk, kept in a bounded map while scanning all the candidates. A
+   * single scan is needed when the search has no size limit, or when the entries
+   * of the first chunk are all returned to the client.
+   */
+  private final class SortedCandidates implements Closeable
+  {
+    /** Maximum number of candidates returned at once when walking the ordering index. */
+    private static final int MAX_INDEX_CHUNK_SIZE = 1000;
+    /**
+     * Maximum number of entry IDs read from the ordering index, per candidate, before falling back to scanning the
+     * candidates. Walking the index is slower than scanning the candidates when the candidates are sparse.
+     */
+    private static final int MAX_INDEX_IDS_PER_CANDIDATE = 4;
+
+    private final ReadableTransaction txn;
+    private final EntryIDSet candidates;
+    private final DN baseDN;
+    private final SearchScope scope;
+    private final SearchFilter filter;
+    private final SortOrder sortOrder;
+    /** Maximum number of candidates returned by a chunk when scanning the candidates. */
+    private final int chunkSize;
+
+    /** Cursor on the ordering index of the primary sort key, null when scanning the candidates. */
+    private Cursor<ByteString, EntryIDSet> orderingIndexCursor;
+    /** The candidates already examined while walking the ordering index. */
+    private final EntryIDBitmap examinedCandidates = new EntryIDBitmap();
+    private long nbIndexIDsRead;
+    /** The sort key of the last candidate returned, null if none. */
+    private ByteString lastSortKey;
+    private boolean exhausted;
+
+    private SortedCandidates(ReadableTransaction txn, EntryIDSet candidates, SearchOperation searchOperation,
+        SortOrder sortOrder)
+    {
+      this.txn = txn;
+      this.candidates = candidates;
+      this.baseDN = searchOperation.getBaseDN();
+      this.scope = searchOperation.getScope();
+      this.filter = searchOperation.getFilter();
+      this.sortOrder = sortOrder;
+      final int sizeLimit = searchOperation.getSizeLimit();
+      // One more candidate than the size limit lets the search detect that the size limit is exceeded
+      this.chunkSize = sizeLimit > 0 && sizeLimit < Integer.MAX_VALUE ? sizeLimit + 1 : Integer.MAX_VALUE;
+
+      final SortKey primarySortKey = sortOrder.getSortKeys()[0];
+      final AttributeIndex attributeIndex = attrIndexMap.get(primarySortKey.getAttributeType());
+      if (primarySortKey.ascending()
+          && attributeIndex != null
+          && candidates.size() > Math.min(chunkSize, MAX_INDEX_CHUNK_SIZE))
+      {
+        final Index orderingIndex = attributeIndex.getOrderingIndex(primarySortKey.getEffectiveOrderingRule());
+        if (orderingIndex != null)
+        {
+          orderingIndexCursor = orderingIndex.openCursor(txn);
+        }
+      }
+    }
+
+    /**
+     * Returns the next chunk of sorted candidates.
+     *
+     * @return the entry IDs of the next sorted candidates, empty if there are no more candidates
+     * @throws DirectoryException
+     *           If a candidate entry could not be examined
+     */
+    long[] next() throws DirectoryException
+    {
+      if (orderingIndexCursor != null)
+      {
+        final long[] entryIDs = nextFromOrderingIndex();
+        if (entryIDs.length > 0)
+        {
+          return entryIDs;
+        }
+      }
+      return nextFromCandidates();
+    }
+
+    private long[] nextFromOrderingIndex() throws DirectoryException
+    {
+      final int maxChunkSize = Math.min(chunkSize, MAX_INDEX_CHUNK_SIZE);
+      final long maxIndexIDsRead = candidates.size() * MAX_INDEX_IDS_PER_CANDIDATE;
+      final List<EntryID> entryIDs = new ArrayList<>();
+      while (entryIDs.size() < maxChunkSize)
+      {
+        if (!orderingIndexCursor.next())
+        {
+          stopWalkingOrderingIndex();
+          break;
+        }
+        final EntryIDSet keyEntryIDs = orderingIndexCursor.getValue();
+        nbIndexIDsRead += keyEntryIDs.size();
+        if (!keyEntryIDs.isDefined() || nbIndexIDsRead > maxIndexIDsRead)
+        {
+          // the index cannot tell which entries have this value, or the candidates are too sparse
+          stopWalkingOrderingIndex();
+          break;
+        }
+
+        // The first key of an entry is its lowest value, which is the one used for sorting.
+        // Candidates sharing the same value are sorted on the other sort keys.
+        final TreeMap<ByteString, EntryID> sameValueCandidates = new TreeMap<>();
+        for (EntryID entryID : keyEntryIDs)
+        {
+          if (candidates.contains(entryID) && examinedCandidates.add(entryID.longValue()))
+          {
+            final Entry entry = getMatchingEntry(entryID);
+            if (entry != null)
+            {
+              sameValueCandidates.put(encodeVLVKey(sortOrder, entry, entryID.longValue()), entryID);
+            }
+          }
+        }
+        if (!sameValueCandidates.isEmpty())
+        {
+          entryIDs.addAll(sameValueCandidates.values());
+          lastSortKey = sameValueCandidates.lastKey();
+        }
+      }
+      return toArray(entryIDs);
+    }
+
+    private void stopWalkingOrderingIndex()
+    {
+      closeSilently(orderingIndexCursor);
+      orderingIndexCursor = null;
+    }
+
+    private long[] nextFromCandidates() throws DirectoryException
+    {
+      if (exhausted)
+      {
+        return new long[0];
+      }
+
+      final TreeMap<ByteString, EntryID> firstCandidates = new TreeMap<>();
+      for (EntryID entryID : candidates)
+      {
+        if (examinedCandidates.contains(entryID.longValue()))
+        {
+          // already returned or rejected while walking the ordering index
+          continue;
+        }
+        final Entry entry = getMatchingEntry(entryID);
+        if (entry == null)
+        {
+          continue;
+        }
+        final ByteString sortKey = encodeVLVKey(sortOrder, entry, entryID.longValue());
+        if (lastSortKey == null || sortKey.compareTo(lastSortKey) > 0)
+        {
+          firstCandidates.put(sortKey, entryID);
+          if (firstCandidates.size() > chunkSize)
+          {
+            firstCandidates.pollLastEntry();
+          }
+        }
+      }
+
+      exhausted = firstCandidates.size() < chunkSize;
+      if (!firstCandidates.isEmpty())
+      {
+        lastSortKey = firstCandidates.lastKey();
+      }
+      return toArray(firstCandidates.values());
+    }
+
+    /** Returns the candidate entry if it matches the search, null otherwise. */
+    private Entry getMatchingEntry(EntryID entryID) throws DirectoryException
+    {
+      try
+      {
+        final Entry entry = getEntry(txn, entryID);
+        if (entry != null && entry.matchesBaseAndScope(baseDN, scope) && filter.matchesEntry(entry))
+        {
+          return entry;
+        }
+        return null;
+      }
+      catch (Exception e)
+      {
+        LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(entryID, getExceptionMessage(e));
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+    {
+      stopWalkingOrderingIndex();
+    }
+  }
+
   private static final long[] toArray(Collection<EntryID> entryIDs)
   {
     final long[] array = new long[entryIDs.size()];
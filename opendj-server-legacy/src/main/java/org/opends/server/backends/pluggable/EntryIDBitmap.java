@@ -0,0 +1,1117 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * Compressed bitmap of entry IDs, in the spirit of Roaring bitmaps.
+ * <p>
+ * Entry IDs are partitioned by their high bits (the ID shifted right by 16 bits). Each partition is stored in a
+ * container holding the low 16 bits of its IDs, either as a sorted array of values when the partition is sparse, or as
+ * a 65536 bits bitmap when it holds more than {@value #MAX_ARRAY_CONTAINER_SIZE} IDs. Intersections, unions and
+ * differences are computed container by container, without materializing the IDs.
+ * <p>
+ * This class is not thread safe.
+ */
+final class EntryIDBitmap
+{
+  /** Above this cardinality, a container is stored as a bitmap. */
+  static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+
+  private static final int BITMAP_WORDS = 1 << 10;
+  private static final byte ARRAY_CONTAINER = 0;
+  private static final byte BITMAP_CONTAINER = 1;
+  /** Approximate memory / encoding overhead of a container, in addition to its values. */
+  private static final int CONTAINER_OVERHEAD = 16;
+
+  /** Sorted high bits of the entry IDs of each container. */
+  private long[] keys;
+  private Container[] containers;
+  private int nbContainers;
+  private long cardinality;
+
+  /** Creates an empty bitmap. */
+  EntryIDBitmap()
+  {
+    this(4);
+  }
+
+  private EntryIDBitmap(int capacity)
+  {
+    keys = new long[capacity];
+    containers = new Container[capacity];
+  }
+
+  /**
+   * Creates a bitmap containing the provided entry IDs.
+   *
+   * @param sortedIDs
+   *          the entry IDs, sorted in ascending order and without duplicates
+   * @return a new bitmap containing the provided entry IDs
+   */
+  static EntryIDBitmap valueOf(long... sortedIDs)
+  {
+    final EntryIDBitmap bitmap = new EntryIDBitmap(Math.max(4, countContainers(sortedIDs)));
+    int start = 0;
+    while (start < sortedIDs.length)
+    {
+      final long key = high(sortedIDs[start]);
+      int end = start + 1;
+      while (end < sortedIDs.length && high(sortedIDs[end]) == key)
+      {
+        end++;
+      }
+      bitmap.appendContainer(key, Container.valueOf(sortedIDs, start, end));
+      start = end;
+    }
+    bitmap.cardinality = sortedIDs.length;
+    return bitmap;
+  }
+
+  /**
+   * Returns the number of bytes needed to encode the provided entry IDs as a bitmap, without building it.
+   *
+   * @param sortedIDs
+   *          the entry IDs, sorted in ascending order and without duplicates
+   * @return the number of bytes needed to encode the provided entry IDs as a bitmap
+   */
+  static long getEncodedSize(long[] sortedIDs)
+  {
+    long size = CONTAINER_OVERHEAD;
+    int start = 0;
+    while (start < sortedIDs.length)
+    {
+      final long key = high(sortedIDs[start]);
+      int end = start + 1;
+      while (end < sortedIDs.length && high(sortedIDs[end]) == key)
+      {
+        end++;
+      }
+      size += CONTAINER_OVERHEAD + Container.getEncodedSize(end - start);
+      start = end;
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes needed to encode this bitmap.
+   *
+   * @return the number of bytes needed to encode this bitmap
+   */
+  long getEncodedSize()
+  {
+    long size = CONTAINER_OVERHEAD;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      size += CONTAINER_OVERHEAD + Container.getEncodedSize(containers[i].cardinality());
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of entry IDs in this bitmap.
+   *
+   * @return the number of entry IDs in this bitmap
+   */
+  long cardinality()
+  {
+    return cardinality;
+  }
+
+  boolean isEmpty()
+  {
+    return cardinality == 0;
+  }
+
+  /**
+   * Returns the lowest entry ID of this bitmap.
+   *
+   * @return the lowest entry ID of this bitmap
+   * @throws NoSuchElementException
+   *           if this bitmap is empty
+   */
+  long first()
+  {
+    if (nbContainers == 0)
+    {
+      throw new NoSuchElementException();
+    }
+    return keys[0] << 16 | containers[0].first();
+  }
+
+  /**
+   * Returns the highest entry ID of this bitmap.
+   *
+   * @return the highest entry ID of this bitmap
+   * @throws NoSuchElementException
+   *           if this bitmap is empty
+   */
+  long last()
+  {
+    if (nbContainers == 0)
+    {
+      throw new NoSuchElementException();
+    }
+    return keys[nbContainers - 1] << 16 | containers[nbContainers - 1].last();
+  }
+
+  boolean contains(long id)
+  {
+    final int i = indexOf(high(id));
+    return i >= 0 && containers[i].contains(low(id));
+  }
+
+  boolean add(long id)
+  {
+    final long key = high(id);
+    int i = indexOf(key);
+    if (i < 0)
+    {
+      i = -(i + 1);
+      insertContainer(i, key, new ArrayContainer());
+    }
+    final Container container = containers[i];
+    final int before = container.cardinality();
+    containers[i] = container.add(low(id));
+    if (containers[i].cardinality() == before)
+    {
+      return false;
+    }
+    cardinality++;
+    return true;
+  }
+
+  boolean remove(long id)
+  {
+    final int i = indexOf(high(id));
+    if (i < 0)
+    {
+      return false;
+    }
+    final Container container = containers[i];
+    final int before = container.cardinality();
+    final Container updated = container.remove(low(id));
+    if (updated.cardinality() == before)
+    {
+      return false;
+    }
+    cardinality--;
+    if (updated.cardinality() == 0)
+    {
+      removeContainer(i);
+    }
+    else
+    {
+      containers[i] = updated;
+    }
+    return true;
+  }
+
+  /**
+   * Retains in this bitmap only the entry IDs contained in the provided bitmap.
+   *
+   * @param that
+   *          the entry IDs to retain
+   */
+  void and(EntryIDBitmap that)
+  {
+    int n = 0;
+    long newCardinality = 0;
+    for (int i = 0, j = 0; i < nbContainers && j < that.nbContainers;)
+    {
+      if (keys[i] < that.keys[j])
+      {
+        i++;
+      }
+      else if (keys[i] > that.keys[j])
+      {
+        j++;
+      }
+      else
+      {
+        final Container result = containers[i].and(that.containers[j]);
+        if (result.cardinality() > 0)
+        {
+          keys[n] = keys[i];
+          containers[n++] = result;
+          newCardinality += result.cardinality();
+        }
+        i++;
+        j++;
+      }
+    }
+    Arrays.fill(containers, n, nbContainers, null);
+    nbContainers = n;
+    cardinality = newCardinality;
+  }
+
+  /**
+   * Adds to this bitmap all the entry IDs contained in the provided bitmap.
+   *
+   * @param that
+   *          the entry IDs to add
+   */
+  void or(EntryIDBitmap that)
+  {
+    final int capacity = nbContainers + that.nbContainers;
+    final long[] newKeys = new long[capacity];
+    final Container[] newContainers = new Container[capacity];
+    int n = 0;
+    long newCardinality = 0;
+    int i = 0, j = 0;
+    while (i < nbContainers || j < that.nbContainers)
+    {
+      final Container result;
+      if (j == that.nbContainers || (i < nbContainers && keys[i] < that.keys[j]))
+      {
+        newKeys[n] = keys[i];
+        result = containers[i++];
+      }
+      else if (i == nbContainers || keys[i] > that.keys[j])
+      {
+        newKeys[n] = that.keys[j];
+        result = that.containers[j++].copy();
+      }
+      else
+      {
+        newKeys[n] = keys[i];
+        result = containers[i++].or(that.containers[j++]);
+      }
+      newContainers[n++] = result;
+      newCardinality += result.cardinality();
+    }
+    keys = newKeys;
+    containers = newContainers;
+    nbContainers = n;
+    cardinality = newCardinality;
+  }
+
+  /**
+   * Removes from this bitmap all the entry IDs contained in the provided bitmap.
+   *
+   * @param that
+   *          the entry IDs to remove
+   */
+  void andNot(EntryIDBitmap that)
+  {
+    int n = 0;
+    long newCardinality = 0;
+    for (int i = 0, j = 0; i < nbContainers; i++)
+    {
+      while (j < that.nbContainers && that.keys[j] < keys[i])
+      {
+        j++;
+      }
+      final Container result;
+      if (j < that.nbContainers && that.keys[j] == keys[i])
+      {
+        result = containers[i].andNot(that.containers[j]);
+      }
+      else
+      {
+        result = containers[i];
+      }
+      if (result.cardinality() > 0)
+      {
+        keys[n] = keys[i];
+        containers[n++] = result;
+        newCardinality += result.cardinality();
+      }
+    }
+    Arrays.fill(containers, n, nbContainers, null);
+    nbContainers = n;
+    cardinality = newCardinality;
+  }
+
+  /**
+   * Returns a copy of this bitmap.
+   *
+   * @return a copy of this bitmap
+   */
+  EntryIDBitmap copy()
+  {
+    final EntryIDBitmap copy = new EntryIDBitmap(Math.max(4, nbContainers));
+    for (int i = 0; i < nbContainers; i++)
+    {
+      copy.appendContainer(keys[i], containers[i].copy());
+    }
+    copy.cardinality = cardinality;
+    return copy;
+  }
+
+  /**
+   * Returns the entry IDs of this bitmap in ascending order.
+   *
+   * @return a new array holding the entry IDs of this bitmap in ascending order
+   */
+  long[] toArray()
+  {
+    final long[] ids = new long[(int) cardinality];
+    int offset = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      offset = containers[i].fill(keys[i] << 16, ids, offset);
+    }
+    return ids;
+  }
+
+  /**
+   * Returns an iterator over the entry IDs of this bitmap, in ascending order.
+   *
+   * @return an iterator over the entry IDs of this bitmap
+   */
+  IDIterator iterator()
+  {
+    return new IDIterator();
+  }
+
+  /**
+   * Encodes this bitmap.
+   *
+   * @param builder
+   *          the builder where to append the encoded bitmap
+   * @return the provided builder
+   */
+  ByteStringBuilder writeTo(ByteStringBuilder builder)
+  {
+    builder.appendCompactUnsigned(nbContainers);
+    long previousKey = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      builder.appendCompactUnsigned(keys[i] - previousKey);
+      previousKey = keys[i];
+      containers[i].writeTo(builder);
+    }
+    return builder;
+  }
+
+  /**
+   * Decodes a bitmap encoded with {@link #writeTo(ByteStringBuilder)}.
+   *
+   * @param reader
+   *          the reader positioned at the start of the encoded bitmap
+   * @return the decoded bitmap
+   */
+  static EntryIDBitmap readFrom(ByteSequenceReader reader)
+  {
+    final int nbContainers = reader.readCompactUnsignedInt();
+    final EntryIDBitmap bitmap = new EntryIDBitmap(Math.max(4, nbContainers));
+    long key = 0;
+    for (int i = 0; i < nbContainers; i++)
+    {
+      key += reader.readCompactUnsignedLong();
+      final Container container = Container.readFrom(reader);
+      bitmap.appendContainer(key, container);
+      bitmap.cardinality += container.cardinality();
+    }
+    return bitmap;
+  }
+
+  /** Iterator over the entry IDs of a bitmap, which does not box the entry IDs. */
+  final class IDIterator
+  {
+    private int containerIndex;
+    private int valueIndex = -1;
+    private long next = -1;
+
+    private IDIterator()
+    {
+      advance();
+    }
+
+    boolean hasNext()
+    {
+      return next >= 0;
+    }
+
+    long next()
+    {
+      if (next < 0)
+      {
+        throw new NoSuchElementException();
+      }
+      final long current = next;
+      advance();
+      return current;
+    }
+
+    /**
+     * Positions this iterator on the provided entry ID, or on the first entry ID greater than it.
+     *
+     * @param id
+     *          the entry ID where to position this iterator
+     */
+    void advanceTo(long id)
+    {
+      if (next >= 0 && high(next) < high(id))
+      {
+        // Skip the containers which only hold lower entry IDs
+        while (containerIndex < nbContainers && keys[containerIndex] < high(id))
+        {
+          containerIndex++;
+        }
+        valueIndex = -1;
+        advance();
+      }
+      while (next >= 0 && next < id)
+      {
+        advance();
+      }
+    }
+
+    private void advance()
+    {
+      while (containerIndex < nbContainers)
+      {
+        valueIndex = containers[containerIndex].nextValue(valueIndex);
+        if (valueIndex >= 0)
+        {
+          next = keys[containerIndex] << 16 | containers[containerIndex].valueAt(valueIndex);
+          return;
+        }
+        containerIndex++;
+        valueIndex = -1;
+      }
+      next = -1;
+    }
+  }
+
+  private static long high(long id)
+  {
+    return id >>> 16;
+  }
+
+  private static char low(long id)
+  {
+    return (char) id;
+  }
+
+  private static int countContainers(long[] sortedIDs)
+  {
+    int count = 0;
+    long previousKey = -1;
+    for (long id : sortedIDs)
+    {
+      if (high(id) != previousKey)
+      {
+        previousKey = high(id);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private int indexOf(long key)
+  {
+    // Fast path for appending to the last container
+    if (nbContainers > 0 && keys[nbContainers - 1] == key)
+    {
+      return nbContainers - 1;
+    }
+    return Arrays.binarySearch(keys, 0, nbContainers, key);
+  }
+
+  private void appendContainer(long key, Container container)
+  {
+    ensureCapacity(nbContainers + 1);
+    keys[nbContainers] = key;
+    containers[nbContainers++] = container;
+  }
+
+  private void insertContainer(int index, long key, Container container)
+  {
+    ensureCapacity(nbContainers + 1);
+    System.arraycopy(keys, index, keys, index + 1, nbContainers - index);
+    System.arraycopy(containers, index, containers, index + 1, nbContainers - index);
+    keys[index] = key;
+    containers[index] = container;
+    nbContainers++;
+  }
+
+  private void removeContainer(int index)
+  {
+    System.arraycopy(keys, index + 1, keys, index, nbContainers - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, nbContainers - index - 1);
+    containers[--nbContainers] = null;
+  }
+
+  private void ensureCapacity(int capacity)
+  {
+    if (capacity > keys.length)
+    {
+      final int newCapacity = Math.max(capacity, keys.length * 2);
+      keys = Arrays.copyOf(keys, newCapacity);
+      containers = Arrays.copyOf(containers, newCapacity);
+    }
+  }
+
+  /** Holds the low 16 bits of the entry IDs sharing the same high bits. */
+  private abstract static class Container
+  {
+    static Container valueOf(long[] sortedIDs, int start, int end)
+    {
+      if (end - start > MAX_ARRAY_CONTAINER_SIZE)
+      {
+        final BitmapContainer container = new BitmapContainer();
+        for (int i = start; i < end; i++)
+        {
+          container.set(low(sortedIDs[i]));
+        }
+        container.cardinality = end - start;
+        return container;
+      }
+      final char[] values = new char[end - start];
+      for (int i = start; i < end; i++)
+      {
+        values[i - start] = low(sortedIDs[i]);
+      }
+      return new ArrayContainer(values, values.length);
+    }
+
+    static int getEncodedSize(int cardinality)
+    {
+      return cardinality > MAX_ARRAY_CONTAINER_SIZE ? BITMAP_WORDS * 8 : cardinality * 2;
+    }
+
+    static Container readFrom(ByteSequenceReader reader)
+    {
+      final byte type = reader.readByte();
+      if (type == BITMAP_CONTAINER)
+      {
+        final BitmapContainer container = new BitmapContainer();
+        for (int i = 0; i < BITMAP_WORDS; i++)
+        {
+          container.words[i] = reader.readLong();
+          container.cardinality += Long.bitCount(container.words[i]);
+        }
+        return container;
+      }
+      final int cardinality = reader.readCompactUnsignedInt();
+      final char[] values = new char[cardinality];
+      for (int i = 0; i < cardinality; i++)
+      {
+        values[i] = (char) reader.readShort();
+      }
+      return new ArrayContainer(values, cardinality);
+    }
+
+    abstract int cardinality();
+
+    abstract char first();
+
+    abstract char last();
+
+    abstract boolean contains(char value);
+
+    /** Returns the container holding the added value, which may be this container or a new one. */
+    abstract Container add(char value);
+
+    /** Returns the container without the removed value, which may be this container or a new one. */
+    abstract Container remove(char value);
+
+    abstract Container and(Container that);
+
+    abstract Container or(Container that);
+
+    abstract Container andNot(Container that);
+
+    abstract Container copy();
+
+    /** Copies the values of this container, prefixed with the provided high bits, starting at the offset. */
+    abstract int fill(long highBits, long[] dest, int offset);
+
+    /** Returns the position of the value following the provided position, or -1 if there is none. */
+    abstract int nextValue(int position);
+
+    abstract char valueAt(int position);
+
+    abstract void writeTo(ByteStringBuilder builder);
+  }
+
+  /** Container holding a sorted array of values. */
+  private static final class ArrayContainer extends Container
+  {
+    private char[] values;
+    private int cardinality;
+
+    ArrayContainer()
+    {
+      this(new char[4], 0);
+    }
+
+    ArrayContainer(char[] values, int cardinality)
+    {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality()
+    {
+      return cardinality;
+    }
+
+    @Override
+    char first()
+    {
+      return values[0];
+    }
+
+    @Override
+    char last()
+    {
+      return values[cardinality - 1];
+    }
+
+    @Override
+    boolean contains(char value)
+    {
+      return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    @Override
+    Container add(char value)
+    {
+      int pos = Arrays.binarySearch(values, 0, cardinality, value);
+      if (pos >= 0)
+      {
+        return this;
+      }
+      if (cardinality == MAX_ARRAY_CONTAINER_SIZE)
+      {
+        return toBitmapContainer().add(value);
+      }
+      pos = -(pos + 1);
+      if (cardinality == values.length)
+      {
+        values = Arrays.copyOf(values, Math.min(MAX_ARRAY_CONTAINER_SIZE, Math.max(4, cardinality * 2)));
+      }
+      System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+      values[pos] = value;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(char value)
+    {
+      final int pos = Arrays.binarySearch(values, 0, cardinality, value);
+      if (pos >= 0)
+      {
+        System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+        cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    Container and(Container that)
+    {
+      final char[] result = new char[Math.min(cardinality, that.cardinality())];
+      int n = 0;
+      if (that instanceof ArrayContainer)
+      {
+        final ArrayContainer other = (ArrayContainer) that;
+        for (int i = 0, j = 0; i < cardinality && j < other.cardinality;)
+        {
+          if (values[i] < other.values[j])
+          {
+            i++;
+          }
+          else if (values[i] > other.values[j])
+          {
+            j++;
+          }
+          else
+          {
+            result[n++] = values[i++];
+            j++;
+          }
+        }
+      }
+      else
+      {
+        for (int i = 0; i < cardinality; i++)
+        {
+          if (that.contains(values[i]))
+          {
+            result[n++] = values[i];
+          }
+        }
+      }
+      return new ArrayContainer(result, n);
+    }
+
+    @Override
+    Container or(Container that)
+    {
+      if (that instanceof BitmapContainer)
+      {
+        return that.or(this);
+      }
+      final ArrayContainer other = (ArrayContainer) that;
+      final char[] result = new char[cardinality + other.cardinality];
+      int n = 0;
+      int i = 0, j = 0;
+      while (i < cardinality && j < other.cardinality)
+      {
+        if (values[i] < other.values[j])
+        {
+          result[n++] = values[i++];
+        }
+        else if (values[i] > other.values[j])
+        {
+          result[n++] = other.values[j++];
+        }
+        else
+        {
+          result[n++] = values[i++];
+          j++;
+        }
+      }
+      while (i < cardinality)
+      {
+        result[n++] = values[i++];
+      }
+      while (j < other.cardinality)
+      {
+        result[n++] = other.values[j++];
+      }
+      final ArrayContainer container = new ArrayContainer(result, n);
+      return n > MAX_ARRAY_CONTAINER_SIZE ? container.toBitmapContainer() : container;
+    }
+
+    @Override
+    Container andNot(Container that)
+    {
+      final char[] result = new char[cardinality];
+      int n = 0;
+      for (int i = 0; i < cardinality; i++)
+      {
+        if (!that.contains(values[i]))
+        {
+          result[n++] = values[i];
+        }
+      }
+      return new ArrayContainer(result, n);
+    }
+
+    @Override
+    Container copy()
+    {
+      return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+    }
+
+    @Override
+    int fill(long highBits, long[] dest, int offset)
+    {
+      for (int i = 0; i < cardinality; i++)
+      {
+        dest[offset++] = highBits | values[i];
+      }
+      return offset;
+    }
+
+    @Override
+    int nextValue(int position)
+    {
+      return position + 1 < cardinality ? position + 1 : -1;
+    }
+
+    @Override
+    char valueAt(int position)
+    {
+      return values[position];
+    }
+
+    @Override
+    void writeTo(ByteStringBuilder builder)
+    {
+      builder.appendByte(ARRAY_CONTAINER);
+      builder.appendCompactUnsigned(cardinality);
+      for (int i = 0; i < cardinality; i++)
+      {
+        builder.appendShort((short) values[i]);
+      }
+    }
+
+    private BitmapContainer toBitmapContainer()
+    {
+      final BitmapContainer container = new BitmapContainer();
+      for (int i = 0; i < cardinality; i++)
+      {
+        container.set(values[i]);
+      }
+      container.cardinality = cardinality;
+      return container;
+    }
+  }
+
+  /** Container holding a 65536 bits bitmap of values. */
+  private static final class BitmapContainer extends Container
+  {
+    private final long[] words;
+    private int cardinality;
+
+    BitmapContainer()
+    {
+      this(new long[BITMAP_WORDS], 0);
+    }
+
+    private BitmapContainer(long[] words, int cardinality)
+    {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    private void set(char value)
+    {
+      words[value >>> 6] |= 1L << value;
+    }
+
+    @Override
+    int cardinality()
+    {
+      return cardinality;
+    }
+
+    @Override
+    char first()
+    {
+      return (char) nextValue(-1);
+    }
+
+    @Override
+    char last()
+    {
+      for (int i = BITMAP_WORDS - 1; i >= 0; i--)
+      {
+        if (words[i] != 0)
+        {
+          return (char) (i * 64 + 63 - Long.numberOfLeadingZeros(words[i]));
+        }
+      }
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    boolean contains(char value)
+    {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container add(char value)
+    {
+      if (!contains(value))
+      {
+        set(value);
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(char value)
+    {
+      if (contains(value))
+      {
+        words[value >>> 6] &= ~(1L << value);
+        cardinality--;
+        if (cardinality <= MAX_ARRAY_CONTAINER_SIZE)
+        {
+          return toArrayContainer();
+        }
+      }
+      return this;
+    }
+
+    @Override
+    Container and(Container that)
+    {
+      if (that instanceof ArrayContainer)
+      {
+        return that.and(this);
+      }
+      final BitmapContainer other = (BitmapContainer) that;
+      final long[] result = new long[BITMAP_WORDS];
+      int newCardinality = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        result[i] = words[i] & other.words[i];
+        newCardinality += Long.bitCount(result[i]);
+      }
+      return optimize(result, newCardinality);
+    }
+
+    @Override
+    Container or(Container that)
+    {
+      final long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+      int newCardinality = 0;
+      if (that instanceof ArrayContainer)
+      {
+        final ArrayContainer other = (ArrayContainer) that;
+        for (int i = 0; i < other.cardinality; i++)
+        {
+          final char value = other.values[i];
+          result[value >>> 6] |= 1L << value;
+        }
+        for (long word : result)
+        {
+          newCardinality += Long.bitCount(word);
+        }
+      }
+      else
+      {
+        final BitmapContainer other = (BitmapContainer) that;
+        for (int i = 0; i < BITMAP_WORDS; i++)
+        {
+          result[i] |= other.words[i];
+          newCardinality += Long.bitCount(result[i]);
+        }
+      }
+      return new BitmapContainer(result, newCardinality);
+    }
+
+    @Override
+    Container andNot(Container that)
+    {
+      final long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+      int newCardinality = 0;
+      if (that instanceof ArrayContainer)
+      {
+        final ArrayContainer other = (ArrayContainer) that;
+        for (int i = 0; i < other.cardinality; i++)
+        {
+          final char value = other.values[i];
+          result[value >>> 6] &= ~(1L << value);
+        }
+        for (long word : result)
+        {
+          newCardinality += Long.bitCount(word);
+        }
+      }
+      else
+      {
+        final BitmapContainer other = (BitmapContainer) that;
+        for (int i = 0; i < BITMAP_WORDS; i++)
+        {
+          result[i] &= ~other.words[i];
+          newCardinality += Long.bitCount(result[i]);
+        }
+      }
+      return optimize(result, newCardinality);
+    }
+
+    @Override
+    Container copy()
+    {
+      return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+    }
+
+    @Override
+    int fill(long highBits, long[] dest, int offset)
+    {
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        long word = words[i];
+        while (word != 0)
+        {
+          dest[offset++] = highBits | (i * 64 + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return offset;
+    }
+
+    @Override
+    int nextValue(int position)
+    {
+      final int from = position + 1;
+      if (from >= BITMAP_WORDS * 64)
+      {
+        return -1;
+      }
+      int i = from >>> 6;
+      long word = words[i] & (-1L << from);
+      while (true)
+      {
+        if (word != 0)
+        {
+          return i * 64 + Long.numberOfTrailingZeros(word);
+        }
+        if (++i == BITMAP_WORDS)
+        {
+          return -1;
+        }
+        word = words[i];
+      }
+    }
+
+    @Override
+    char valueAt(int position)
+    {
+      return (char) position;
+    }
+
+    @Override
+    void writeTo(ByteStringBuilder builder)
+    {
+      builder.appendByte(BITMAP_CONTAINER);
+      for (long word : words)
+      {
+        builder.appendLong(word);
+      }
+    }
+
+    private static Container optimize(long[] words, int cardinality)
+    {
+      final BitmapContainer container = new BitmapContainer(words, cardinality);
+      return cardinality > MAX_ARRAY_CONTAINER_SIZE ? container : container.toArrayContainer();
+    }
+
+    private ArrayContainer toArrayContainer()
+    {
+      final char[] values = new char[Math.max(cardinality, 1)];
+      int n = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++)
+      {
+        long word = words[i];
+        while (word != 0)
+        {
+          values[n++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values, n);
+    }
+  }
+}
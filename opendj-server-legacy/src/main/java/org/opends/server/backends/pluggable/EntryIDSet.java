@@ -50,6 +50,13 @@ final class EntryIDSet implements Iterable<EntryID>
 {
   public static final EntryIDSetCodec CODEC_V1 = new EntryIDSetCodecV1();
   public static final EntryIDSetCodec CODEC_V2 = new EntryIDSetCodecV2();
+  public static final EntryIDSetCodec CODEC_V3 = new EntryIDSetCodecV3();
+
+  /**
+   * Minimum number of IDs for a defined set to be represented by a compressed bitmap rather than an array.
+   * Smaller bitmaps are converted back to arrays, leaving some room to avoid converting back and forth.
+   */
+  private static final int BITMAP_MIN_SIZE = 1024;
 
   private static final ByteSequence NO_KEY = ByteString.valueOfUtf8("<none>");
   private static final long[] EMPTY_LONG_ARRAY = new long[0];
@@ -287,6 +294,113 @@ final class EntryIDSet implements Iterable<EntryID>
     }
   }
 
+  /**
+   * Concrete implementation representing a set of EntryIDs as a compressed bitmap. Compared to {@link DefinedImpl},
+   * intersections, unions and differences of large sets do not allocate and copy arrays of all the IDs.
+   */
+  private static final class BitmapImpl implements EntryIDSetImplementor
+  {
+    /** \@NotNull */
+    private final EntryIDBitmap bitmap;
+
+    BitmapImpl(EntryIDBitmap bitmap)
+    {
+      Reject.ifNull(bitmap, "bitmap must not be null");
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    public long size()
+    {
+      return bitmap.cardinality();
+    }
+
+    @Override
+    public void toString(StringBuilder buffer)
+    {
+      buffer.append("[COUNT:").append(size()).append("]");
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return true;
+    }
+
+    @Override
+    public boolean add(EntryID entryID)
+    {
+      return bitmap.add(entryID.longValue());
+    }
+
+    @Override
+    public boolean remove(EntryID entryID)
+    {
+      return bitmap.remove(entryID.longValue());
+    }
+
+    @Override
+    public boolean contains(EntryID entryID)
+    {
+      return bitmap.contains(entryID.longValue());
+    }
+
+    @Override
+    public void addAll(EntryIDSet that)
+    {
+      bitmap.or(toBitmap(that));
+    }
+
+    @Override
+    public void removeAll(EntryIDSet that)
+    {
+      bitmap.andNot(toBitmap(that));
+    }
+
+    @Override
+    public Iterator<EntryID> iterator()
+    {
+      return new BitmapIterator(bitmap.iterator());
+    }
+
+    @Override
+    public Iterator<EntryID> iterator(EntryID begin)
+    {
+      final EntryIDBitmap.IDIterator it = bitmap.iterator();
+      // Same behavior as DefinedImpl: start from the beginning if begin is not in the set
+      if (begin != null && bitmap.contains(begin.longValue()))
+      {
+        it.advanceTo(begin.longValue());
+      }
+      return new BitmapIterator(it);
+    }
+
+    @Override
+    public long[] getRange()
+    {
+      if (!bitmap.isEmpty())
+      {
+        return new long[] { bitmap.first(), bitmap.last() };
+      }
+      return NO_ENTRY_IDS_RANGE;
+    }
+
+    @Override
+    public long[] getIDs()
+    {
+      return bitmap.toArray();
+    }
+
+    private static EntryIDBitmap toBitmap(EntryIDSet that)
+    {
+      if (that.concreteImpl instanceof BitmapImpl)
+      {
+        return ((BitmapImpl) that.concreteImpl).bitmap;
+      }
+      return EntryIDBitmap.valueOf(that.getIDs());
+    }
+  }
+
   /**
    * Concrete implementation where the EntryIDs are not defined, for example when the index entry
    * limit has been exceeded.
@@ -421,6 +535,35 @@ final class EntryIDSet implements Iterable<EntryID>
     }
   }
 
+  /** Iterator over a compressed bitmap of Entry IDs. It returns values in order of ID. */
+  private static final class BitmapIterator implements Iterator<EntryID>
+  {
+    private final EntryIDBitmap.IDIterator delegate;
+
+    BitmapIterator(EntryIDBitmap.IDIterator delegate)
+    {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return delegate.hasNext();
+    }
+
+    @Override
+    public EntryID next()
+    {
+      return new EntryID(delegate.next());
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   /** Legacy EntryIDSet codec implementation. */
   private static final class EntryIDSetCodecV1 implements EntryIDSetCodec
   {
@@ -565,6 +708,94 @@ final class EntryIDSet implements Iterable<EntryID>
     }
   }
 
+  /**
+   * EntryIDSet codec implementation storing large and dense sets as compressed bitmaps. Each set is encoded using the
+   * smaller of the {@link EntryIDSetCodecV2} encoding and of the {@link EntryIDBitmap} encoding, so sets encoded by
+   * {@link EntryIDSetCodecV2} can also be decoded by this codec.
+   */
+  private static final class EntryIDSetCodecV3 implements EntryIDSetCodec
+  {
+    /** Never the first byte of an {@link EntryIDSetCodecV2} encoded set. */
+    private static final byte BITMAP_SET = (byte) 0xFE;
+
+    @Override
+    public ByteString encode(EntryIDSet idSet)
+    {
+      checkNotNull(idSet, "idSet must not be null");
+      final EntryIDBitmap bitmap = getBitmapToEncode(idSet);
+      if (bitmap == null)
+      {
+        return CODEC_V2.encode(idSet);
+      }
+      final ByteStringBuilder builder = new ByteStringBuilder((int) bitmap.getEncodedSize());
+      builder.appendByte(BITMAP_SET);
+      bitmap.writeTo(builder);
+      return ByteString.wrap(builder.getBackingArray(), 0, builder.length());
+    }
+
+    @Override
+    public EntryIDSet decode(ByteSequence key, ByteString value)
+    {
+      checkNotNull(key, "key must not be null");
+      checkNotNull(value, "value must not be null");
+      if (value.length() > 0 && value.byteAt(0) == BITMAP_SET)
+      {
+        final ByteSequenceReader reader = value.asReader();
+        reader.skip(1);
+        return newDefinedSetFromBitmap(EntryIDBitmap.readFrom(reader));
+      }
+      return CODEC_V2.decode(key, value);
+    }
+
+    /** Returns the bitmap to encode if the bitmap encoding is smaller, null otherwise. */
+    private static EntryIDBitmap getBitmapToEncode(EntryIDSet idSet)
+    {
+      if (!idSet.isDefined() || idSet.size() < BITMAP_MIN_SIZE)
+      {
+        return null;
+      }
+      if (idSet.concreteImpl instanceof BitmapImpl)
+      {
+        final EntryIDBitmap bitmap = ((BitmapImpl) idSet.concreteImpl).bitmap;
+        return bitmap.getEncodedSize() < getEncodedSizeV2(bitmap.iterator()) ? bitmap : null;
+      }
+      final long[] ids = idSet.getIDs();
+      return EntryIDBitmap.getEncodedSize(ids) < getEncodedSizeV2(ids) ? EntryIDBitmap.valueOf(ids) : null;
+    }
+
+    private static long getEncodedSizeV2(long[] ids)
+    {
+      long size = INT_SIZE;
+      long basis = 0;
+      for (long value : ids)
+      {
+        size += getCompactSize(value - basis);
+        basis = value;
+      }
+      return size;
+    }
+
+    private static long getEncodedSizeV2(EntryIDBitmap.IDIterator it)
+    {
+      long size = INT_SIZE;
+      long basis = 0;
+      while (it.hasNext())
+      {
+        final long value = it.next();
+        size += getCompactSize(value - basis);
+        basis = value;
+      }
+      return size;
+    }
+
+    /** Each byte of the compact encoding holds 7 bits of the value. */
+    private static int getCompactSize(long value)
+    {
+      final int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+      return Math.max(1, (bits + 6) / 7);
+    }
+  }
+
   static EntryIDSet newUndefinedSet()
   {
     return newUndefinedSetWithKey(NO_KEY);
@@ -592,6 +823,24 @@ final class EntryIDSet implements Iterable<EntryID>
     return new EntryIDSet(new DefinedImpl(entryIDs));
   }
 
+  /**
+   * Creates a new defined entry ID set with the entryIDs of the provided bitmap, choosing the most compact in-memory
+   * representation for the set.
+   *
+   * @param bitmap
+   *          Entry IDs contained in the set. It must not be modified after calling this method.
+   * @return A new defined {@link EntryIDSet} containing the provided entryIDs
+   * @throws NullPointerException
+   *           if bitmap is null
+   */
+  static EntryIDSet newDefinedSetFromBitmap(EntryIDBitmap bitmap)
+  {
+    checkNotNull(bitmap, "bitmap must not be null");
+    final EntryIDSet set = new EntryIDSet(new BitmapImpl(bitmap));
+    set.optimizeRepresentation();
+    return set;
+  }
+
   private static long[] intersection(long[] set1, long[] set2)
   {
     long[] target = new long[Math.min(set1.length, set2.length)];
@@ -653,6 +902,16 @@ final class EntryIDSet implements Iterable<EntryID>
       return newUndefinedSet();
     }
 
+    if (count >= BITMAP_MIN_SIZE || containsBitmapSet(sets))
+    {
+      final EntryIDBitmap union = new EntryIDBitmap();
+      for (EntryIDSet l : sets)
+      {
+        union.or(BitmapImpl.toBitmap(l));
+      }
+      return newDefinedSetFromBitmap(union);
+    }
+
     boolean needSort = false;
     long[] n = new long[count];
     int pos = 0;
@@ -687,6 +946,18 @@ final class EntryIDSet implements Iterable<EntryID>
     return newDefinedSet(Arrays.copyOf(n1, j));
   }
 
+  private static boolean containsBitmapSet(List<EntryIDSet> sets)
+  {
+    for (EntryIDSet set : sets)
+    {
+      if (set.concreteImpl instanceof BitmapImpl)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private EntryIDSetImplementor concreteImpl;
 
   private EntryIDSet(EntryIDSetImplementor concreteImpl)
@@ -814,6 +1085,7 @@ final class EntryIDSet implements Iterable<EntryID>
     checkNotNull(that, "that must not be null");
     Reject.ifFalse(that.isDefined(), "that must be defined");
     concreteImpl.addAll(that);
+    optimizeRepresentation();
   }
 
   /**
@@ -829,7 +1101,9 @@ final class EntryIDSet implements Iterable<EntryID>
     checkNotNull(that, "that must not be null");
     if (!concreteImpl.isDefined())
     {
-      if ( that.isDefined() ) {
+      if (that.concreteImpl instanceof BitmapImpl) {
+        concreteImpl = new BitmapImpl(((BitmapImpl) that.concreteImpl).bitmap.copy());
+      } else if ( that.isDefined() ) {
         // NOTE: It's ok to share the same array instance here thanks to the copy-on-write
         // performed by the implementation.
         concreteImpl = new DefinedImpl(that.getIDs());
@@ -843,6 +1117,23 @@ final class EntryIDSet implements Iterable<EntryID>
       return;
     }
 
+    if (concreteImpl instanceof BitmapImpl && that.concreteImpl instanceof BitmapImpl)
+    {
+      ((BitmapImpl) concreteImpl).bitmap.and(((BitmapImpl) that.concreteImpl).bitmap);
+      optimizeRepresentation();
+      return;
+    }
+    else if (concreteImpl instanceof BitmapImpl)
+    {
+      concreteImpl = new DefinedImpl(retainedIDs(that.getIDs(), concreteImpl));
+      return;
+    }
+    else if (that.concreteImpl instanceof BitmapImpl)
+    {
+      concreteImpl = new DefinedImpl(retainedIDs(concreteImpl.getIDs(), that.concreteImpl));
+      return;
+    }
+
     final boolean thatSetOverlap = compareForOverlap(getRange(), that.getRange()) == 0;
     if (thatSetOverlap)
     {
@@ -869,6 +1160,7 @@ final class EntryIDSet implements Iterable<EntryID>
     checkNotNull(that, "that must not be null");
     Reject.ifFalse(that.isDefined(), "that must be defined");
     concreteImpl.removeAll(that);
+    optimizeRepresentation();
   }
 
   /**
@@ -899,6 +1191,46 @@ final class EntryIDSet implements Iterable<EntryID>
     return concreteImpl.getIDs();
   }
 
+  /**
+   * Switches between the array and the compressed bitmap representations of a defined set, depending on which one
+   * requires less memory for the IDs currently held by this set.
+   */
+  private void optimizeRepresentation()
+  {
+    if (concreteImpl instanceof BitmapImpl)
+    {
+      final EntryIDBitmap bitmap = ((BitmapImpl) concreteImpl).bitmap;
+      final long cardinality = bitmap.cardinality();
+      if (cardinality < BITMAP_MIN_SIZE / 2 || bitmap.getEncodedSize() > cardinality * LONG_SIZE)
+      {
+        concreteImpl = new DefinedImpl(bitmap.toArray());
+      }
+    }
+    else if (concreteImpl instanceof DefinedImpl && concreteImpl.size() >= BITMAP_MIN_SIZE)
+    {
+      final long[] ids = concreteImpl.getIDs();
+      if (EntryIDBitmap.getEncodedSize(ids) < ids.length * LONG_SIZE / 2)
+      {
+        concreteImpl = new BitmapImpl(EntryIDBitmap.valueOf(ids));
+      }
+    }
+  }
+
+  /** Returns the IDs from the provided sorted array which are contained in the provided set. */
+  private static long[] retainedIDs(long[] ids, EntryIDSetImplementor set)
+  {
+    final long[] retained = new long[ids.length];
+    int n = 0;
+    for (long id : ids)
+    {
+      if (set.contains(new EntryID(id)))
+      {
+        retained[n++] = id;
+      }
+    }
+    return n < retained.length ? Arrays.copyOf(retained, n) : retained;
+  }
+
   private long[] getRange()
   {
     return concreteImpl.getRange();
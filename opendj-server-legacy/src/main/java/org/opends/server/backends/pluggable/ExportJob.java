@@ -219,8 +219,9 @@ class ExportJob
         Entry entry = null;
         try
         {
+          RootContainer rootContainer = entryContainer.getRootContainer();
           entry = ID2Entry.entryFromDatabase(value,
-                       entryContainer.getRootContainer().getCompressedSchema());
+                       rootContainer.getCompressedSchema(), rootContainer.getCompressionDictionaries());
         }
         catch (Exception e)
         {
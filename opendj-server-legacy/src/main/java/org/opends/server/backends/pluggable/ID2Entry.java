@@ -33,10 +33,9 @@ import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.backends.pluggable.CursorTransformer.transformKeysAndValues;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.zip.DataFormatException;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.io.ASN1;
@@ -49,6 +48,7 @@ import org.forgerock.opendj.ldap.DecodeException;
 import org.forgerock.util.Function;
 import org.forgerock.util.Reject;
 import org.opends.server.api.CompressedSchema;
+import org.opends.server.backends.pluggable.CompressionDictionaries.Dictionary;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
 import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
@@ -104,13 +104,17 @@ class ID2Entry extends AbstractTree
     if (codec.maxBufferSize != getMaxInternalBufferSize())
     {
       // Setting has changed, so recreate the codec.
+      codec.end();
       codec = new EntryCodec();
       ENTRY_CODEC_CACHE.set(codec);
     }
     return codec;
   }
 
-  /** A cached set of ByteStringBuilder buffers and ASN1Writer used to encode entries. */
+  /**
+   * A cached set of ByteStringBuilder buffers, ASN1Writer and compression state used to encode entries. The
+   * Deflater and Inflater are reset and reused rather than recreated for each entry.
+   */
   private static final class EntryCodec
   {
     /** The ASN1 tag for the ByteString type. */
@@ -120,6 +124,9 @@ class ID2Entry extends AbstractTree
     private final ByteStringBuilder encodedBuffer = new ByteStringBuilder();
     private final ByteStringBuilder entryBuffer = new ByteStringBuilder();
     private final ByteStringBuilder compressedEntryBuffer = new ByteStringBuilder();
+    private final byte[] codecBuffer = new byte[BUFFER_INIT_SIZE];
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
     private final ASN1Writer writer;
     private final int maxBufferSize;
 
@@ -137,8 +144,16 @@ class ID2Entry extends AbstractTree
       compressedEntryBuffer.clearAndTruncate(maxBufferSize, BUFFER_INIT_SIZE);
     }
 
-    private Entry decode(ByteString bytes, CompressedSchema compressedSchema)
-        throws DirectoryException, DecodeException, IOException
+    /** Releases the native resources of the compression state. */
+    private void end()
+    {
+      deflater.end();
+      inflater.end();
+    }
+
+    private Entry decode(ByteString bytes, CompressedSchema compressedSchema,
+        CompressionDictionaries compressionDictionaries)
+        throws DirectoryException, DecodeException, IOException, DataFormatException
     {
       // Get the format version.
       byte formatVersion = bytes.byteAt(0);
@@ -155,31 +170,30 @@ class ID2Entry extends AbstractTree
       int uncompressedSize = (int)reader.readInteger();
       if(uncompressedSize > 0)
       {
-        // It was compressed.
-        reader.readOctetString(compressedEntryBuffer);
-
-        OutputStream decompressor = null;
-        try
+        // It was compressed, maybe against a dictionary.
+        Dictionary dictionary = null;
+        if (reader.peekType() == ASN1.UNIVERSAL_INTEGER_TYPE)
         {
-          // TODO: Should handle the case where uncompress fails
-          decompressor = new InflaterOutputStream(entryBuffer.asOutputStream());
-          compressedEntryBuffer.copyTo(decompressor);
-        }
-        finally {
-          closeSilently(decompressor);
+          final int dictionaryVersion = (int) reader.readInteger();
+          dictionary = compressionDictionaries != null ? compressionDictionaries.get(dictionaryVersion) : null;
+          if (dictionary == null)
+          {
+            throw DecodeException.error(ERR_COMPRESSION_DICTIONARY_UNKNOWN.get(dictionaryVersion));
+          }
         }
+        reader.readOctetString(compressedEntryBuffer);
+        decompress(dictionary);
 
-        // Since we are used the cached buffers (ByteStringBuilders),
-        // the decoded attribute values will not refer back to the
-        // original buffer.
-        return Entry.decode(entryBuffer.asReader(), compressedSchema);
+        // Attribute values are decoded lazily from the decoded entry: copy
+        // the cached buffer (ByteStringBuilder) since it will be reused.
+        return Entry.decodeLazily(entryBuffer.toByteString().asReader(), compressedSchema);
       }
       else
       {
         // Since we don't have to do any decompression, we can just decode
         // the entry directly.
         ByteString encodedEntry = reader.readOctetString();
-        return Entry.decode(encodedEntry.asReader(), compressedSchema);
+        return Entry.decodeLazily(encodedEntry.asReader(), compressedSchema);
       }
     }
 
@@ -204,17 +218,17 @@ class ID2Entry extends AbstractTree
 
         if (dataConfig.isCompressed())
         {
-          OutputStream compressor = null;
-          try {
-            compressor = new DeflaterOutputStream(compressedEntryBuffer.asOutputStream());
-            entryBuffer.copyTo(compressor);
-          }
-          finally {
-            closeSilently(compressor);
-          }
+          final Dictionary dictionary = dataConfig.isCompressedWithDictionary()
+              ? dataConfig.getCompressionDictionaries().getDictionaryForCompression(entryBuffer)
+              : null;
+          compress(dictionary);
 
           // Compression needed and successful.
           writer.writeInteger(entryBuffer.length());
+          if (dictionary != null)
+          {
+            writer.writeInteger(dictionary.getVersion());
+          }
           writer.writeOctetString(compressedEntryBuffer);
         }
         else
@@ -231,6 +245,46 @@ class ID2Entry extends AbstractTree
         logger.traceException(ioe);
       }
     }
+
+    /** Compresses the entry buffer into the compressed entry buffer. */
+    private void compress(Dictionary dictionary)
+    {
+      deflater.reset();
+      if (dictionary != null)
+      {
+        deflater.setDictionary(dictionary.getBytes());
+      }
+      deflater.setInput(entryBuffer.getBackingArray(), 0, entryBuffer.length());
+      deflater.finish();
+      while (!deflater.finished())
+      {
+        final int length = deflater.deflate(codecBuffer);
+        compressedEntryBuffer.appendBytes(codecBuffer, 0, length);
+      }
+    }
+
+    /** Decompresses the compressed entry buffer into the entry buffer. */
+    private void decompress(Dictionary dictionary) throws DataFormatException
+    {
+      inflater.reset();
+      inflater.setInput(compressedEntryBuffer.getBackingArray(), 0, compressedEntryBuffer.length());
+      while (!inflater.finished())
+      {
+        final int length = inflater.inflate(codecBuffer);
+        if (length == 0)
+        {
+          if (inflater.needsDictionary() && dictionary != null)
+          {
+            inflater.setDictionary(dictionary.getBytes());
+          }
+          else if (inflater.needsInput() || inflater.needsDictionary())
+          {
+            throw new DataFormatException("Truncated compressed entry or missing dictionary");
+          }
+        }
+        entryBuffer.appendBytes(codecBuffer, 0, length);
+      }
+    }
   }
 
   /**
@@ -266,6 +320,9 @@ class ID2Entry extends AbstractTree
    * <pre>
    * ByteString ::= [APPLICATION 0] IMPLICIT SEQUENCE {
    *  uncompressedSize      INTEGER,      -- A zero value means not compressed.
+   *  dictionaryVersion     INTEGER OPTIONAL,
+   *                                      -- The dictionary the data bytes are
+   *                                         compressed against, if any.
    *  dataBytes             OCTET STRING  -- Optionally compressed encoding of
    *                                         the data bytes.
    * }
@@ -283,6 +340,8 @@ class ID2Entry extends AbstractTree
    *
    * @param bytes A byte array containing the encoded tree value.
    * @param compressedSchema The compressed schema manager to use when decoding.
+   * @param compressionDictionaries The dictionaries the entry may be compressed
+   * against, may be {@code null}.
    * @return The decoded entry.
    * @throws DecodeException If the data is not in the expected ASN.1 encoding
    * format.
@@ -294,13 +353,13 @@ class ID2Entry extends AbstractTree
    * @throws IOException if an error occurs while reading the ASN1 sequence.
    */
   static Entry entryFromDatabase(ByteString bytes,
-      CompressedSchema compressedSchema) throws DirectoryException,
-      DecodeException, LDAPException, DataFormatException, IOException
+      CompressedSchema compressedSchema, CompressionDictionaries compressionDictionaries)
+      throws DirectoryException, DecodeException, LDAPException, DataFormatException, IOException
   {
     EntryCodec codec = acquireEntryCodec();
     try
     {
-      return codec.decode(bytes, compressedSchema);
+      return codec.decode(bytes, compressedSchema, compressionDictionaries);
     }
     finally
     {
@@ -393,6 +452,48 @@ class ID2Entry extends AbstractTree
     }
   }
 
+  /**
+   * Fetch a record from the entry tree without decoding it, so that it can be decoded by another thread.
+   *
+   * @param txn a non null transaction
+   * @param entryID The desired entry ID which forms the key.
+   * @return The encoded entry, or null if there is no such record.
+   * @throws DirectoryException If a problem occurs while getting the entry.
+   * @see #decode(EntryID, ByteString)
+   */
+  ByteString getEncoded(ReadableTransaction txn, EntryID entryID) throws DirectoryException
+  {
+    try
+    {
+      return txn.read(getName(), entryID.toByteString());
+    }
+    catch (Exception e)
+    {
+      throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), ERR_ENTRY_DATABASE_CORRUPT.get(entryID));
+    }
+  }
+
+  /**
+   * Decodes a record fetched from the entry tree.
+   *
+   * @param entryID The entry ID which forms the key of the record.
+   * @param value The encoded entry, may be null.
+   * @return The decoded entry, or null if value is null.
+   * @throws DirectoryException If a problem occurs while decoding the entry.
+   * @see #getEncoded(ReadableTransaction, EntryID)
+   */
+  Entry decode(EntryID entryID, ByteString value) throws DirectoryException
+  {
+    try
+    {
+      return get0(value);
+    }
+    catch (Exception e)
+    {
+      throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), ERR_ENTRY_DATABASE_CORRUPT.get(entryID));
+    }
+  }
+
   Cursor<EntryID, Entry> openCursor(ReadableTransaction txn)
   {
     return transformKeysAndValues(txn.openCursor(getName()), TO_ENTRY_ID, TO_ENTRY);
@@ -421,7 +522,8 @@ class ID2Entry extends AbstractTree
     {
       return null;
     }
-    final Entry entry = entryFromDatabase(value, dataConfig.getEntryEncodeConfig().getCompressedSchema());
+    final Entry entry = entryFromDatabase(value,
+        dataConfig.getEntryEncodeConfig().getCompressedSchema(), dataConfig.getCompressionDictionaries());
     entry.processVirtualAttributes();
     return entry;
   }
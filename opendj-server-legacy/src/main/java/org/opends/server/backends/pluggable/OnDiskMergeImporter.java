@@ -685,6 +685,7 @@ final class OnDiskMergeImporter
 
     private final EntryContainer entryContainer;
     private final CompressedSchema schema;
+    private final CompressionDictionaries compressionDictionaries;
     private final Importer importer;
     private final ExecutorService executor;
     private final long nbTotalEntries;
@@ -698,6 +699,7 @@ final class OnDiskMergeImporter
       this.entryContainer = entryContainer;
       this.importer = importer;
       this.schema = entryContainer.getRootContainer().getCompressedSchema();
+      this.compressionDictionaries = entryContainer.getRootContainer().getCompressionDictionaries();
       // by default (unfortunately) the ThreadPoolExecutor will throw an exception when queue is full.
       this.executor =
           new ThreadPoolExecutor(nbThread, nbThread, 0, TimeUnit.SECONDS,
@@ -742,7 +744,7 @@ final class OnDiskMergeImporter
               try
               {
                 entryProcessor.processEntry(entryContainer,
-                    new EntryID(key), ID2Entry.entryFromDatabase(value, schema));
+                    new EntryID(key), ID2Entry.entryFromDatabase(value, schema, compressionDictionaries));
                 nbEntriesProcessed.incrementAndGet();
               }
               catch (Exception e)
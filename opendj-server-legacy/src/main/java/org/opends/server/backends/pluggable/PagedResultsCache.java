@@ -0,0 +1,463 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.types.Control;
+import org.opends.server.util.TimeThread;
+
+/**
+ * Caches the candidate entry IDs resolved for Simple Paged Results searches, so that the pages following the first
+ * one are served by slicing the cached array instead of evaluating the indexes (and sorting the candidates) again.
+ * <p>
+ * The cache is bounded by the memory held by the cached arrays, by the number of searches cached per client
+ * connection and by an idle timeout. Least recently used searches are evicted first.
+ * <p>
+ * Paged results cookies referencing a cached search have the following format:
+ *
+ * <pre>
+ * [ next entry ID (8 bytes) | cache ID (8 bytes) | index of the next entry ID (4 bytes) ]
+ * </pre>
+ *
+ * The next entry ID comes first so that a search evicted from the cache can still be resumed like before this cache
+ * existed, by re-evaluating the candidates and looking up the next entry ID.
+ */
+final class PagedResultsCache
+{
+  /** Length of a cookie referencing a cached search. */
+  static final int CACHED_COOKIE_LENGTH = 20;
+
+  /** Approximate memory overhead of one cached search, in addition to its candidate entry IDs. */
+  private static final long CANDIDATES_OVERHEAD = 128;
+
+  /** The candidates of a paged search, shared by all the pages of this search. */
+  static final class Candidates
+  {
+    private final long connectionID;
+    private final String searchKey;
+    private final long[] entryIDs;
+    private final boolean candidatesAreInScope;
+    private final List<Control> responseControls;
+    private long cacheID;
+    private long lastAccessTime;
+
+    /**
+     * Creates the candidates of a paged search.
+     *
+     * @param connectionID
+     *          the ID of the client connection which issued the search
+     * @param searchKey
+     *          the key identifying the search request, so that a cookie cannot be replayed against
+     *          a different search
+     * @param entryIDs
+     *          the ordered candidate entry IDs
+     * @param candidatesAreInScope
+     *          true if it is certain that every candidate entry is in the search scope
+     * @param responseControls
+     *          the response controls produced while computing the candidates, like a server side sort response
+     *          control, to be returned again with each page
+     */
+    Candidates(long connectionID, String searchKey, long[] entryIDs, boolean candidatesAreInScope,
+        List<Control> responseControls)
+    {
+      this.connectionID = connectionID;
+      this.searchKey = searchKey;
+      this.entryIDs = entryIDs;
+      this.candidatesAreInScope = candidatesAreInScope;
+      this.responseControls = responseControls;
+    }
+
+    long[] getEntryIDs()
+    {
+      return entryIDs;
+    }
+
+    boolean areCandidatesInScope()
+    {
+      return candidatesAreInScope;
+    }
+
+    List<Control> getResponseControls()
+    {
+      return responseControls;
+    }
+
+    private long memorySize()
+    {
+      return CANDIDATES_OVERHEAD + 8L * entryIDs.length;
+    }
+  }
+
+  /** The position in the candidates where a paged search must resume, as decoded from a cookie. */
+  static final class Position
+  {
+    private final long nextEntryID;
+    private final long cacheID;
+    private final int index;
+
+    private Position(long nextEntryID, long cacheID, int index)
+    {
+      this.nextEntryID = nextEntryID;
+      this.cacheID = cacheID;
+      this.index = index;
+    }
+
+    /**
+     * Returns the index of the next entry ID in the provided candidates, or -1 if it cannot be found.
+     *
+     * @param entryIDs
+     *          the candidate entry IDs
+     * @return the index of the next entry ID, or -1 if it cannot be found.
+     */
+    int indexIn(long[] entryIDs)
+    {
+      if (isAt(entryIDs))
+      {
+        return index;
+      }
+      for (int i = 0; i < entryIDs.length; i++)
+      {
+        if (entryIDs[i] == nextEntryID)
+        {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private boolean isAt(long[] entryIDs)
+    {
+      return 0 <= index && index < entryIDs.length && entryIDs[index] == nextEntryID;
+    }
+  }
+
+  private final AtomicLong nextCacheID = new AtomicLong();
+
+  /** The cached searches, in least recently used order. Guarded by {@code this}. */
+  private final LinkedHashMap<Long, Candidates> cache = new LinkedHashMap<>(16, 0.75f, true);
+  /** The number of cached searches per connection ID. Guarded by {@code this}. */
+  private final Map<Long, Integer> searchesPerConnection = new HashMap<>();
+  /** The memory held by the cached searches. Guarded by {@code this}. */
+  private long bytesHeld;
+
+  private volatile long maxBytes;
+  private volatile int maxSearchesPerConnection;
+  private volatile long timeoutMillis;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Creates a new paged results cache.
+   *
+   * @param maxBytes
+   *          the maximum memory held by the cached searches, 0 disables the cache
+   * @param maxSearchesPerConnection
+   *          the maximum number of searches cached for a client connection
+   * @param timeoutMillis
+   *          the time after which a search which has not been accessed is evicted
+   */
+  PagedResultsCache(long maxBytes, int maxSearchesPerConnection, long timeoutMillis)
+  {
+    setConfiguration(maxBytes, maxSearchesPerConnection, timeoutMillis);
+  }
+
+  /**
+   * Changes the limits of this cache, evicting the cached searches that no longer fit.
+   *
+   * @param maxBytes
+   *          the maximum memory held by the cached searches, 0 disables the cache
+   * @param maxSearchesPerConnection
+   *          the maximum number of searches cached for a client connection
+   * @param timeoutMillis
+   *          the time after which a search which has not been accessed is evicted
+   */
+  void setConfiguration(long maxBytes, int maxSearchesPerConnection, long timeoutMillis)
+  {
+    this.maxBytes = maxBytes;
+    this.maxSearchesPerConnection = maxSearchesPerConnection;
+    this.timeoutMillis = timeoutMillis;
+    synchronized (this)
+    {
+      evict(0);
+    }
+  }
+
+  /**
+   * Returns whether this cache is enabled.
+   *
+   * @return true if this cache is enabled, false otherwise
+   */
+  boolean isEnabled()
+  {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Decodes a paged results cookie.
+   *
+   * @param cookie
+   *          the cookie to decode
+   * @return the position where the paged search must resume
+   */
+  static Position decodeCookie(ByteString cookie)
+  {
+    if (cookie.length() == CACHED_COOKIE_LENGTH)
+    {
+      final ByteSequenceReader reader = cookie.asReader();
+      return new Position(reader.readLong(), reader.readLong(), reader.readInt());
+    }
+    return new Position(cookie.toLong(), -1, -1);
+  }
+
+  /**
+   * Encodes a paged results cookie.
+   *
+   * @param candidates
+   *          the cached candidates of the paged search, or null if they are not cached
+   * @param index
+   *          the index of the next entry ID to be returned in the candidates
+   * @param nextEntryID
+   *          the next entry ID to be returned
+   * @return the cookie to send back to the client
+   */
+  static ByteString encodeCookie(Candidates candidates, int index, EntryID nextEntryID)
+  {
+    if (candidates == null)
+    {
+      return nextEntryID.toByteString();
+    }
+    return new ByteStringBuilder(CACHED_COOKIE_LENGTH)
+        .appendLong(nextEntryID.longValue())
+        .appendLong(candidates.cacheID)
+        .appendInt(index)
+        .toByteString();
+  }
+
+  /**
+   * Returns the cached candidates of the paged search referenced by the provided position.
+   *
+   * @param connectionID
+   *          the ID of the client connection requesting the next page
+   * @param searchKey
+   *          the key identifying the search request
+   * @param position
+   *          the position decoded from the cookie sent by the client
+   * @return the cached candidates, or null if they are not cached
+   */
+  Candidates get(long connectionID, String searchKey, Position position)
+  {
+    if (position.cacheID < 0)
+    {
+      return null;
+    }
+    synchronized (this)
+    {
+      evictExpired();
+      final Candidates candidates = cache.get(position.cacheID);
+      if (candidates != null
+          && candidates.connectionID == connectionID
+          && candidates.searchKey.equals(searchKey)
+          && position.isAt(candidates.entryIDs))
+      {
+        candidates.lastAccessTime = TimeThread.getTime();
+        hits.incrementAndGet();
+        return candidates;
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Adds the candidates of a paged search to this cache, evicting least recently used searches if needed.
+   *
+   * @param candidates
+   *          the candidates to cache
+   * @return true if the candidates have been cached, false if they do not fit in the cache
+   */
+  boolean put(Candidates candidates)
+  {
+    final long size = candidates.memorySize();
+    if (size > maxBytes)
+    {
+      return false;
+    }
+
+    candidates.cacheID = nextCacheID.incrementAndGet();
+    candidates.lastAccessTime = TimeThread.getTime();
+    synchronized (this)
+    {
+      evictExpired();
+      evictOldestOfConnection(candidates.connectionID);
+      evict(size);
+      cache.put(candidates.cacheID, candidates);
+      bytesHeld += size;
+      incrementSearches(candidates.connectionID, 1);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the candidates of a paged search from this cache, typically after the last page has been returned.
+   *
+   * @param candidates
+   *          the candidates to remove
+   */
+  synchronized void remove(Candidates candidates)
+  {
+    final Candidates removed = cache.remove(candidates.cacheID);
+    if (removed != null)
+    {
+      release(removed);
+    }
+  }
+
+  /** Removes all the cached searches. */
+  synchronized void clear()
+  {
+    cache.clear();
+    searchesPerConnection.clear();
+    bytesHeld = 0;
+  }
+
+  long getHits()
+  {
+    return hits.get();
+  }
+
+  long getMisses()
+  {
+    return misses.get();
+  }
+
+  long getEvictions()
+  {
+    return evictions.get();
+  }
+
+  synchronized long getBytesHeld()
+  {
+    return bytesHeld;
+  }
+
+  synchronized int size()
+  {
+    return cache.size();
+  }
+
+  /** Evicts least recently used searches until {@code sizeToAdd} more bytes fit in this cache. */
+  private void evict(long sizeToAdd)
+  {
+    final Iterator<Candidates> it = cache.values().iterator();
+    while (bytesHeld + sizeToAdd > maxBytes && it.hasNext())
+    {
+      evict(it);
+    }
+  }
+
+  private void evictExpired()
+  {
+    final long oldestAllowed = TimeThread.getTime() - timeoutMillis;
+    final Iterator<Candidates> it = cache.values().iterator();
+    // Access ordered: the least recently accessed searches come first
+    while (it.hasNext())
+    {
+      final Candidates candidates = it.next();
+      if (candidates.lastAccessTime >= oldestAllowed)
+      {
+        return;
+      }
+      it.remove();
+      release(candidates);
+      evictions.incrementAndGet();
+    }
+  }
+
+  private void evictOldestOfConnection(long connectionID)
+  {
+    final Integer nbSearches = searchesPerConnection.get(connectionID);
+    if (nbSearches == null || nbSearches < maxSearchesPerConnection)
+    {
+      return;
+    }
+    final List<Candidates> toEvict = new ArrayList<>();
+    int nbToEvict = nbSearches - maxSearchesPerConnection + 1;
+    for (Iterator<Candidates> it = cache.values().iterator(); it.hasNext() && nbToEvict > 0;)
+    {
+      final Candidates candidates = it.next();
+      if (candidates.connectionID == connectionID)
+      {
+        toEvict.add(candidates);
+        nbToEvict--;
+      }
+    }
+    for (Candidates candidates : toEvict)
+    {
+      cache.remove(candidates.cacheID);
+      release(candidates);
+      evictions.incrementAndGet();
+    }
+  }
+
+  private void evict(Iterator<Candidates> it)
+  {
+    final Candidates candidates = it.next();
+    it.remove();
+    release(candidates);
+    evictions.incrementAndGet();
+  }
+
+  private void release(Candidates candidates)
+  {
+    bytesHeld -= candidates.memorySize();
+    incrementSearches(candidates.connectionID, -1);
+  }
+
+  private void incrementSearches(long connectionID, int delta)
+  {
+    final Integer nbSearches = searchesPerConnection.get(connectionID);
+    final int newValue = (nbSearches != null ? nbSearches : 0) + delta;
+    if (newValue > 0)
+    {
+      searchesPerConnection.put(connectionID, newValue);
+    }
+    else
+    {
+      searchesPerConnection.remove(connectionID);
+    }
+  }
+}
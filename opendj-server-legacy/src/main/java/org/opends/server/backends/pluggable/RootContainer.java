@@ -36,6 +36,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -79,6 +82,10 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
   private final PluggableBackendCfg config;
   /** The monitor for this backend. */
   private BackendMonitor monitor;
+  /** The cache of the candidates of in-progress paged searches. */
+  private final PagedResultsCache pagedResultsCache;
+  /** The pool decoding and filtering search candidates in parallel, or null if disabled. */
+  private volatile ForkJoinPool searchEvaluationPool;
 
   /** The base DNs contained in this root container. */
   private final ConcurrentMap<DN, EntryContainer> entryContainers = new ConcurrentHashMap<>();
@@ -89,6 +96,9 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
   /** The compressed schema manager for this backend. */
   private PersistentCompressedSchema compressedSchema;
 
+  /** The dictionaries used to compress the entries of this backend. */
+  private CompressionDictionaries compressionDictionaries;
+
   /**
    * Creates a new RootContainer object representing a storage.
    *
@@ -106,10 +116,53 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
 
     getMonitorProvider().enableFilterUseStats(config.isIndexFilterAnalyzerEnabled());
     getMonitorProvider().setMaxEntries(config.getIndexFilterAnalyzerMaxFilters());
+    this.pagedResultsCache = new PagedResultsCache(config.getPagedResultsCacheSize(),
+        config.getPagedResultsCacheMaxSearchesPerConnection(), config.getPagedResultsCacheTimeout());
+    this.searchEvaluationPool = newSearchEvaluationPool(config.getSearchEvaluationParallelism());
 
     config.addPluggableChangeListener(this);
   }
 
+  private ForkJoinPool newSearchEvaluationPool(int parallelism)
+  {
+    if (parallelism <= 1)
+    {
+      return null;
+    }
+    final ForkJoinWorkerThreadFactory threadFactory = new ForkJoinWorkerThreadFactory()
+    {
+      @Override
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+      {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Search evaluation worker " + thread.getPoolIndex() + " for backend " + backendId);
+        return thread;
+      }
+    };
+    return new ForkJoinPool(parallelism, threadFactory, null, false);
+  }
+
+  /**
+   * Returns the pool used to decode and filter the candidate entries of searches in parallel.
+   *
+   * @return the pool used to decode and filter the candidate entries of searches in parallel, or null if the
+   *         candidates must be evaluated by the thread processing the search
+   */
+  ForkJoinPool getSearchEvaluationPool()
+  {
+    return searchEvaluationPool;
+  }
+
+  /**
+   * Returns the cache of the candidates of in-progress paged searches.
+   *
+   * @return the cache of the candidates of in-progress paged searches
+   */
+  PagedResultsCache getPagedResultsCache()
+  {
+    return pagedResultsCache;
+  }
+
   /**
    * Returns the underlying storage engine.
    *
@@ -141,6 +194,7 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
         public void run(WriteableTransaction txn) throws Exception
         {
           compressedSchema = new PersistentCompressedSchema(storage, txn, accessMode);
+          compressionDictionaries = new CompressionDictionaries(storage, txn, accessMode);
           openAndRegisterEntryContainers(txn, config.getBaseDN(), accessMode);
         }
       });
@@ -259,6 +313,16 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
     return compressedSchema;
   }
 
+  /**
+   * Retrieves the dictionaries used to compress the entries of this backend.
+   *
+   * @return The dictionaries used to compress the entries of this backend.
+   */
+  CompressionDictionaries getCompressionDictionaries()
+  {
+    return compressionDictionaries;
+  }
+
   /**
    * Get the BackendMonitor object used by this root container.
    *
@@ -337,6 +401,12 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
       }
     }
     config.removePluggableChangeListener(this);
+    pagedResultsCache.clear();
+    replaceSearchEvaluationPool(null);
+    if (compressionDictionaries != null)
+    {
+      compressionDictionaries.close();
+    }
     if (storage != null)
     {
       storage.close();
@@ -455,10 +525,29 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
   {
     getMonitorProvider().enableFilterUseStats(configuration.isIndexFilterAnalyzerEnabled());
     getMonitorProvider().setMaxEntries(configuration.getIndexFilterAnalyzerMaxFilters());
+    pagedResultsCache.setConfiguration(configuration.getPagedResultsCacheSize(),
+        configuration.getPagedResultsCacheMaxSearchesPerConnection(), configuration.getPagedResultsCacheTimeout());
+    final ForkJoinPool pool = searchEvaluationPool;
+    final int parallelism = pool != null ? pool.getParallelism() : 1;
+    if (configuration.getSearchEvaluationParallelism() != parallelism)
+    {
+      replaceSearchEvaluationPool(newSearchEvaluationPool(configuration.getSearchEvaluationParallelism()));
+    }
 
     return new ConfigChangeResult();
   }
 
+  /** Replaces the search evaluation pool, letting the batches already submitted to the previous one complete. */
+  private void replaceSearchEvaluationPool(ForkJoinPool newPool)
+  {
+    final ForkJoinPool oldPool = searchEvaluationPool;
+    searchEvaluationPool = newPool;
+    if (oldPool != null)
+    {
+      oldPool.shutdown();
+    }
+  }
+
   /**
    * Checks the storage has enough resources for an operation.
    *
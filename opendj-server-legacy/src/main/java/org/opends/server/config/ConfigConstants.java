@@ -4280,6 +4280,24 @@ public final class ConfigConstants
    */
   public static final String ATTR_TASK_BACKUP_SIGN_HASH =
        NAME_PREFIX_TASK + "backup-sign-hash";
+
+
+
+  /**
+   * The name of the attribute in a backup task definition that specifies
+   * whether the files should be split into chunks shared between backups.
+   */
+  public static final String ATTR_TASK_BACKUP_CHUNKED =
+       NAME_PREFIX_TASK + "backup-chunked";
+
+
+
+  /**
+   * The name of the attribute in a backup task definition that specifies
+   * the number of threads processing the chunks of a chunked backup.
+   */
+  public static final String ATTR_TASK_BACKUP_THREAD_COUNT =
+       NAME_PREFIX_TASK + "backup-thread-count";
   /**
    * The name of the attribute in the add schema file task definition that
    * specifies the name of the schema file to be added.
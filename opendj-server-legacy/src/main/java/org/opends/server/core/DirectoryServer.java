@@ -149,6 +149,8 @@ import org.opends.server.loggers.TextErrorLogPublisher;
 import org.opends.server.loggers.TextWriter;
 import org.opends.server.monitors.BackendMonitor;
 import org.opends.server.monitors.ConnectionHandlerMonitor;
+import org.opends.server.monitors.OperationLatencyMonitor;
+import org.opends.server.monitors.OperationLatencyStatistics;
 import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.protocols.internal.InternalConnectionHandler;
 import org.opends.server.schema.BooleanEqualityMatchingRuleFactory;
@@ -718,6 +720,9 @@ public final class DirectoryServer
   /** The lock manager which will be used for coordinating access to LDAP entries. */
   private final LockManager lockManager = new LockManager();
 
+  /** The latencies of the client operations processed by the server. */
+  private final OperationLatencyStatistics operationLatencies = new OperationLatencyStatistics();
+
   /** The maximum size that internal buffers will be allowed to grow to until they are trimmed. */
   private int maxInternalBufferSize = DEFAULT_MAX_INTERNAL_BUFFER_SIZE;
 
@@ -1435,6 +1440,7 @@ public final class DirectoryServer
 
       monitorConfigManager = new MonitorConfigManager(serverContext);
       monitorConfigManager.initializeMonitorProviders();
+      registerMonitorProvider(new OperationLatencyMonitor(operationLatencies));
 
       initializeAuthenticationPolicyComponents();
 
@@ -3904,6 +3910,32 @@ public final class DirectoryServer
     }
   }
 
+  /**
+   * Retrieves the buffer writing the password policy state updates of the
+   * users, which may keep some of them in memory for a while.
+   *
+   * @return The password policy state buffer, or {@code null} if the
+   *         authentication policies have not been initialized.
+   */
+  static PasswordPolicyStateBuffer getPasswordPolicyStateBuffer()
+  {
+    PasswordPolicyConfigManager configManager = directoryServer.authenticationPolicyConfigManager;
+    return configManager != null ? configManager.getStateBuffer() : null;
+  }
+
+  /**
+   * Retrieves the cache of the passwords recently verified for the users whose
+   * password policy enables it.
+   *
+   * @return The verified password cache, or {@code null} if the
+   *         authentication policies have not been initialized.
+   */
+  static VerifiedPasswordCache getVerifiedPasswordCache()
+  {
+    PasswordPolicyConfigManager configManager = directoryServer.authenticationPolicyConfigManager;
+    return configManager != null ? configManager.getVerifiedPasswordCache() : null;
+  }
+
   /**
    * Retrieves the log rotation policy registered for the provided configuration
    * entry.
@@ -6187,6 +6219,13 @@ public final class DirectoryServer
       directoryServer.workQueue.waitUntilIdle(ServerShutdownMonitor.WAIT_TIME);
     }
 
+    // Write the pending password policy state updates while they can still be replicated.
+    PasswordPolicyStateBuffer stateBuffer = getPasswordPolicyStateBuffer();
+    if (stateBuffer != null)
+    {
+      stateBuffer.flush(true);
+    }
+
     // shutdown replication
     for (SynchronizationProvider provider :
          directoryServer.synchronizationProviders)
@@ -7740,4 +7779,14 @@ public final class DirectoryServer
   {
     return directoryServer.lockManager;
   }
+
+  /**
+   * Returns the latencies of the client operations processed by the server.
+   *
+   * @return the latencies of the client operations processed by the server.
+   */
+  public static OperationLatencyStatistics getOperationLatencyStatistics()
+  {
+    return directoryServer.operationLatencies;
+  }
 }
@@ -0,0 +1,223 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.api.plugin.PluginResult.PostOperation;
+import org.opends.server.api.plugin.PluginType;
+import org.opends.server.types.Control;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Modification;
+import org.opends.server.types.operation.PluginOperation;
+import org.opends.server.types.operation.PostOperationDeleteOperation;
+import org.opends.server.types.operation.PostOperationModifyDNOperation;
+import org.opends.server.types.operation.PostOperationModifyOperation;
+import org.opends.server.types.operation.PostSynchronizationDeleteOperation;
+import org.opends.server.types.operation.PostSynchronizationModifyDNOperation;
+import org.opends.server.types.operation.PostSynchronizationModifyOperation;
+
+/**
+ * Notifies the password policy components keeping per-user state in memory of
+ * the entries successfully modified, deleted or renamed, whether locally or
+ * through replication.
+ * <p>
+ * A single internal plugin is registered for all the listeners, so that each
+ * operation is only inspected once.
+ */
+final class EntryChangeNotifier extends InternalDirectoryServerPlugin
+{
+  /** Dummy configuration DN for the entry change notifier. */
+  private static final String CONFIG_DN = "cn=Password Policy Entry Change Notifier,cn=config";
+
+  /** A component notified of the changes of the entries. */
+  interface EntryChangeListener
+  {
+    /**
+     * Notifies that an entry has been modified.
+     *
+     * @param operation
+     *          The modify operation.
+     * @param entryDN
+     *          The DN of the modified entry.
+     * @param mods
+     *          The modifications applied to the entry.
+     */
+    void entryModified(PluginOperation operation, DN entryDN, List<Modification> mods);
+
+    /**
+     * Notifies that an entry has been deleted or renamed.
+     *
+     * @param entryDN
+     *          The former DN of the entry.
+     * @param subtree
+     *          Whether the subordinate entries of the entry may have been
+     *          deleted or renamed as well.
+     */
+    void entryRemoved(DN entryDN, boolean subtree);
+  }
+
+  private final List<EntryChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates the entry change notifier, and registers it as an internal plugin.
+   *
+   * @throws DirectoryException
+   *           If a problem occurs while creating the notifier.
+   */
+  EntryChangeNotifier() throws DirectoryException
+  {
+    super(DN.valueOf(CONFIG_DN), EnumSet.of(
+        PluginType.POST_OPERATION_DELETE, PluginType.POST_OPERATION_MODIFY, PluginType.POST_OPERATION_MODIFY_DN,
+        PluginType.POST_SYNCHRONIZATION_DELETE, PluginType.POST_SYNCHRONIZATION_MODIFY,
+        PluginType.POST_SYNCHRONIZATION_MODIFY_DN), true);
+    DirectoryServer.registerInternalPlugin(this);
+  }
+
+  /**
+   * Registers a listener to notify of the changes of the entries.
+   *
+   * @param listener
+   *          The listener to register.
+   */
+  void registerListener(EntryChangeListener listener)
+  {
+    listeners.add(listener);
+  }
+
+  /**
+   * Deregisters a listener.
+   *
+   * @param listener
+   *          The listener to deregister.
+   */
+  void deregisterListener(EntryChangeListener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  /** Deregisters all the listeners, and this notifier as an internal plugin. */
+  void finalizeEntryChangeNotifier()
+  {
+    DirectoryServer.deregisterInternalPlugin(this);
+    listeners.clear();
+  }
+
+  private void modified(PluginOperation operation, DN entryDN, List<Modification> mods)
+  {
+    for (EntryChangeListener listener : listeners)
+    {
+      listener.entryModified(operation, entryDN, mods);
+    }
+  }
+
+  private void removed(DN entryDN, boolean subtree)
+  {
+    for (EntryChangeListener listener : listeners)
+    {
+      listener.entryRemoved(entryDN, subtree);
+    }
+  }
+
+  /** Only a delete with the subtree delete control may delete entries having subordinates. */
+  private static boolean isSubtreeDelete(PluginOperation deleteOperation)
+  {
+    final List<Control> requestControls = deleteOperation.getRequestControls();
+    if (requestControls != null)
+    {
+      for (Control c : requestControls)
+      {
+        if (OID_SUBTREE_DELETE_CONTROL.equals(c.getOID()))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationModifyOperation modifyOperation)
+  {
+    if (modifyOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      modified(modifyOperation, modifyOperation.getEntryDN(), modifyOperation.getModifications());
+    }
+    return PluginResult.PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationDeleteOperation deleteOperation)
+  {
+    if (deleteOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      removed(deleteOperation.getEntryDN(), isSubtreeDelete(deleteOperation));
+    }
+    return PluginResult.PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationModifyDNOperation modifyDNOperation)
+  {
+    if (modifyDNOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      removed(modifyDNOperation.getEntryDN(), true);
+    }
+    return PluginResult.PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationModifyOperation modifyOperation)
+  {
+    modified(modifyOperation, modifyOperation.getEntryDN(), modifyOperation.getModifications());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationDeleteOperation deleteOperation)
+  {
+    removed(deleteOperation.getEntryDN(), isSubtreeDelete(deleteOperation));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationModifyDNOperation modifyDNOperation)
+  {
+    removed(modifyDNOperation.getEntryDN(), true);
+  }
+}
@@ -34,6 +34,8 @@ import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -48,6 +50,8 @@ import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.DN.CompactDn;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.forgerock.util.Utils;
@@ -76,6 +80,7 @@ import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.InitializationException;
+import org.opends.server.types.Modification;
 import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SearchResultEntry;
 import org.opends.server.types.operation.PluginOperation;
@@ -127,6 +132,12 @@ public class GroupManager extends InternalDirectoryServerPlugin
    */
   private DITCacheMap<Group<?>> groupInstances;
 
+  /**
+   * The groups in which each entry is a member, updated along with the group
+   * instances.
+   */
+  private final GroupMembershipIndex membershipIndex = new GroupMembershipIndex();
+
   /** Lock to protect internal data structures. */
   private final ReentrantReadWriteLock lock;
 
@@ -312,6 +323,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
           if (g.getClass().getName().equals(group.getClass().getName()))
           {
             iterator.remove();
+            membershipIndex.remove(g);
           }
         }
       }
@@ -379,6 +391,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
               if (g.getClass().getName().equals(group.getClass().getName()))
               {
                 iterator.remove();
+                membershipIndex.remove(g);
               }
             }
           }
@@ -646,8 +659,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
             try
             {
               Group<?> groupInstance = groupImplementation.newInstance(null, entry);
-              groupInstances.put(entry.getName(), groupInstance);
-              refreshToken++;
+              registerGroup(entry.getName(), groupInstance);
             }
             catch (DirectoryException e)
             {
@@ -684,6 +696,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
         if (backend.handlesEntry(groupEntryDN))
         {
           iterator.remove();
+          membershipIndex.remove(mapEntry.getValue());
         }
       }
     }
@@ -753,8 +766,13 @@ public class GroupManager extends InternalDirectoryServerPlugin
     lock.writeLock().lock();
     try
     {
-      if (groupInstances.removeSubtree(entry.getName(), null))
+      final List<Group<?>> removedGroups = new ArrayList<>();
+      if (groupInstances.removeSubtree(entry.getName(), removedGroups))
       {
+        for (Group<?> group : removedGroups)
+        {
+          membershipIndex.remove(group);
+        }
         refreshToken++;
       }
     }
@@ -768,22 +786,25 @@ public class GroupManager extends InternalDirectoryServerPlugin
 
   /**
    * In this case, if the entry is associated with a registered
-   * group instance, then that instance will be recreated from
-   * the contents of the provided entry and re-registered with
-   * the group manager.
+   * group instance, then the modifications are applied to that
+   * instance when they only add or remove members.  Otherwise that
+   * instance will be recreated from the contents of the provided
+   * entry and re-registered with the group manager.
    */
   private void doPostModify(PluginOperation modifyOperation,
-          Entry oldEntry, Entry newEntry)
+          Entry oldEntry, Entry newEntry, List<Modification> mods)
   {
     if (hasGroupMembershipUpdateControl(modifyOperation))
     {
       return;
     }
 
+    final Group<?> groupInstance;
     lock.readLock().lock();
     try
     {
-      if (!groupInstances.containsKey(oldEntry.getName()))
+      groupInstance = groupInstances.get(oldEntry.getName());
+      if (groupInstance == null)
       {
         // If the modified entry is not in any group instance, it's probably
         // not a group, exit fast
@@ -795,6 +816,15 @@ public class GroupManager extends InternalDirectoryServerPlugin
       lock.readLock().unlock();
     }
 
+    // Adding or removing members must not read all the members again.
+    // The group instance notifies this group manager of the changes.
+    if (mods != null
+        && oldEntry.getName().equals(newEntry.getName())
+        && groupInstance.applyMemberModifications(mods))
+    {
+      return;
+    }
+
     lock.writeLock().lock();
     try
     {
@@ -803,7 +833,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
         if (! oldEntry.getName().equals(newEntry.getName()))
         {
           // This should never happen, but check for it anyway.
-          groupInstances.remove(oldEntry.getName());
+          membershipIndex.remove(groupInstances.remove(oldEntry.getName()));
         }
         createAndRegisterGroup(newEntry);
       }
@@ -840,10 +870,12 @@ public class GroupManager extends InternalDirectoryServerPlugin
       groupInstances.removeSubtree(oldDN, groupSet);
       for (Group<?> group : groupSet)
       {
+        membershipIndex.remove(group);
         final DN groupDN = group.getGroupDN();
         final DN renamedGroupDN = groupDN.rename(oldDN, newDN);
         group.setGroupDN(renamedGroupDN);
         groupInstances.put(renamedGroupDN, group);
+        membershipIndex.add(group);
       }
       if (!groupSet.isEmpty())
       {
@@ -901,7 +933,8 @@ public class GroupManager extends InternalDirectoryServerPlugin
     {
       doPostModify(modifyOperation,
             modifyOperation.getCurrentEntry(),
-            modifyOperation.getModifiedEntry());
+            modifyOperation.getModifiedEntry(),
+            modifyOperation.getModifications());
     }
 
     // If we've gotten here, then everything is acceptable.
@@ -959,7 +992,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
     Entry modEntry = modifyOperation.getModifiedEntry();
     if (entry != null && modEntry != null)
     {
-      doPostModify(modifyOperation, entry, modEntry);
+      doPostModify(modifyOperation, entry, modEntry, modifyOperation.getModifications());
     }
   }
 
@@ -998,8 +1031,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
           lock.writeLock().lock();
           try
           {
-            groupInstances.put(entry.getName(), groupInstance);
-            refreshToken++;
+            registerGroup(entry.getName(), groupInstance);
           }
           finally
           {
@@ -1016,6 +1048,29 @@ public class GroupManager extends InternalDirectoryServerPlugin
 
 
 
+  /**
+   * Registers a group instance, replacing any group instance registered with
+   * the same DN.  The caller must hold the write lock.
+   *
+   * @param  groupDN        The DN of the group entry.
+   * @param  groupInstance  The group instance to register.
+   */
+  private void registerGroup(DN groupDN, Group<?> groupInstance)
+  {
+    Group<?> oldGroupInstance = groupInstances.put(groupDN, groupInstance);
+    if (oldGroupInstance != null)
+    {
+      membershipIndex.replace(oldGroupInstance, groupInstance);
+    }
+    else
+    {
+      membershipIndex.add(groupInstance);
+    }
+    refreshToken++;
+  }
+
+
+
   /**
    * Removes all group instances that might happen to be registered with the
    * group manager.  This method is only intended for testing purposes and
@@ -1027,6 +1082,188 @@ public class GroupManager extends InternalDirectoryServerPlugin
     try
     {
       groupInstances.clear();
+      membershipIndex.clear();
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+  }
+
+
+  /**
+   * Retrieves the DNs of all the groups in which the provided user is a
+   * member, including through nested groups and virtual static groups.
+   * Static and virtual static groups are answered from an index, only the
+   * other groups are asked whether the user is a member.
+   *
+   * @param  userEntry  The entry of the user.
+   *
+   * @return  The DNs of all the groups in which the user is a member.
+   */
+  public Set<DN> getGroupsOf(Entry userEntry)
+  {
+    final CompactDn userDN = GroupMembershipIndex.compact(userEntry.getName());
+    final List<Group<?>> notIndexedGroups;
+    lock.readLock().lock();
+    try
+    {
+      notIndexedGroups = membershipIndex.getNotIndexedGroups();
+      if (notIndexedGroups.isEmpty())
+      {
+        return membershipIndex.getGroups(userDN, Collections.<DN> emptyList());
+      }
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+
+    // do not hold the lock while groups evaluate memberships, which may search
+    final List<DN> notIndexedGroupDNs = getMemberships(notIndexedGroups, userEntry.getName(), userEntry);
+    lock.readLock().lock();
+    try
+    {
+      return membershipIndex.getGroups(userDN, notIndexedGroupDNs);
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+  }
+
+
+
+  /**
+   * Indicates whether the provided user is a member of a group, including
+   * through nested groups and virtual static groups, using the index
+   * maintained by this group manager.
+   *
+   * @param  group      The group instance.
+   * @param  userDN     The DN of the user.
+   * @param  userEntry  The entry of the user, or {@code null} if it has not
+   *                    been read.
+   *
+   * @return  {@link ConditionResult#TRUE} if the user is a member of the
+   *          group, {@link ConditionResult#FALSE} if not, or
+   *          {@link ConditionResult#UNDEFINED} if the membership of the
+   *          provided group instance is not indexed.
+   */
+  public ConditionResult isMember(Group<?> group, DN userDN, Entry userEntry)
+  {
+    final CompactDn compactUserDN = GroupMembershipIndex.compact(userDN);
+    final List<Group<?>> nestedGroups;
+    lock.readLock().lock();
+    try
+    {
+      if (!membershipIndex.isIndexed(group))
+      {
+        return ConditionResult.UNDEFINED;
+      }
+      // only the groups which are not indexed and nested in this group matter
+      nestedGroups = membershipIndex.getNotIndexedGroups(group.getGroupDN());
+      if (nestedGroups.isEmpty())
+      {
+        return ConditionResult.valueOf(
+            membershipIndex.isMember(group.getGroupDN(), compactUserDN, Collections.<DN> emptyList()));
+      }
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+
+    // do not hold the lock while groups evaluate memberships, which may search
+    final List<DN> notIndexedGroupDNs = getMemberships(nestedGroups, userDN, userEntry);
+    lock.readLock().lock();
+    try
+    {
+      return ConditionResult.valueOf(membershipIndex.isMember(group.getGroupDN(), compactUserDN, notIndexedGroupDNs));
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+  }
+
+
+
+  private static List<DN> getMemberships(List<Group<?>> groups, DN userDN, Entry userEntry)
+  {
+    if (groups.isEmpty())
+    {
+      return Collections.emptyList();
+    }
+    final List<DN> groupDNs = new ArrayList<>();
+    for (Group<?> group : groups)
+    {
+      try
+      {
+        if (userEntry != null ? group.isMember(userEntry) : group.isMember(userDN))
+        {
+          groupDNs.add(group.getGroupDN());
+        }
+      }
+      catch (DirectoryException e)
+      {
+        logger.traceException(e);
+      }
+    }
+    return groupDNs;
+  }
+
+
+
+  /**
+   * Notifies this group manager that a member has been added to a group
+   * instance without modifying the group entry through an operation processed
+   * by this group manager.
+   *
+   * @param  group     The group instance.
+   * @param  memberDN  The compact DN of the new member.
+   */
+  public void memberAdded(Group<?> group, CompactDn memberDN)
+  {
+    membersChanged(group, Collections.singletonList(memberDN), Collections.<CompactDn> emptyList());
+  }
+
+
+
+  /**
+   * Notifies this group manager that a member has been removed from a group
+   * instance without modifying the group entry through an operation processed
+   * by this group manager.
+   *
+   * @param  group     The group instance.
+   * @param  memberDN  The compact DN of the removed member.
+   */
+  public void memberRemoved(Group<?> group, CompactDn memberDN)
+  {
+    membersChanged(group, Collections.<CompactDn> emptyList(), Collections.singletonList(memberDN));
+  }
+
+
+
+  /**
+   * Notifies this group manager that members have been added to or removed
+   * from a group instance, without creating the group instance again.
+   *
+   * @param  group             The group instance.
+   * @param  addedMemberDNs    The compact DNs of the new members.
+   * @param  removedMemberDNs  The compact DNs of the removed members.
+   */
+  public void membersChanged(Group<?> group, Collection<CompactDn> addedMemberDNs,
+      Collection<CompactDn> removedMemberDNs)
+  {
+    lock.writeLock().lock();
+    try
+    {
+      if (membershipIndex.isIndexed(group))
+      {
+        membershipIndex.membersChanged(group.getGroupDN(), addedMemberDNs, removedMemberDNs);
+      }
+      // the memberships cached by the clients and the ACI handler are stale
+      refreshToken++;
     }
     finally
     {
@@ -0,0 +1,471 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.opendj.adapter.server3x.Converters;
+import org.forgerock.opendj.ldap.DN.CompactDn;
+import org.opends.server.api.Group;
+import org.opends.server.types.DN;
+
+/**
+ * An index of the groups in which each DN is a member, including through
+ * nested groups and virtual static groups.
+ * <p>
+ * The index maps each member DN to the groups explicitly listing it as a
+ * member, and each group to the groups including its members. Member DNs are
+ * kept in the compact form groups store them in, so that registering or
+ * replacing a group never decodes its members. The index is updated
+ * incrementally as groups are registered, modified and deregistered. The
+ * transitive closure of the groups including each group is computed lazily,
+ * and discarded whenever the nesting of groups may have changed.
+ * <p>
+ * Groups which do not list their members, such as dynamic groups, cannot be
+ * indexed: callers must determine the memberships in these groups, and the
+ * index then provides the groups which include them.
+ * <p>
+ * This class is not thread safe: the group manager must hold its write lock
+ * while updating the index, and its read lock while reading it.
+ */
+final class GroupMembershipIndex
+{
+  /** All the groups known by this index, indexed or not. */
+  private final Map<DN, Group<?>> groups = new HashMap<>();
+  /** The DNs of all the groups known by this index, by their compact DN. */
+  private final Map<CompactDn, DN> groupDNs = new HashMap<>();
+  /** The groups whose members are not listed, in registration order. */
+  private final Map<DN, Group<?>> notIndexedGroups = new LinkedHashMap<>();
+  /** The DNs of the indexed groups explicitly listing each DN as a member. */
+  private final Map<CompactDn, Set<DN>> directGroups = new HashMap<>();
+  /** The DNs of the indexed groups including the members of each group. */
+  private final Map<DN, Set<DN>> includingGroups = new HashMap<>();
+  /**
+   * The transitive closure of the groups including the members of each group,
+   * computed by readers holding the read lock.
+   */
+  private final ConcurrentMap<DN, Set<DN>> ancestors = new ConcurrentHashMap<>();
+  /**
+   * The groups which are not indexed and whose members are members of each
+   * group, computed by readers holding the read lock.
+   */
+  private final ConcurrentMap<DN, List<Group<?>>> notIndexedDescendants = new ConcurrentHashMap<>();
+  /** All the groups which are not indexed, or {@code null} if it must be computed again. */
+  private volatile List<Group<?>> notIndexedGroupList;
+
+  /**
+   * Adds the memberships of a group to this index.
+   *
+   * @param group
+   *          the group to add, which must not already be in this index
+   */
+  void add(Group<?> group)
+  {
+    final DN groupDN = group.getGroupDN();
+    groups.put(groupDN, group);
+    groupDNs.put(compact(groupDN), groupDN);
+    final Set<CompactDn> memberDNs = group.getExplicitMemberDNs();
+    if (memberDNs == null)
+    {
+      notIndexedGroups.put(groupDN, group);
+      notIndexedGroupList = null;
+    }
+    else
+    {
+      for (CompactDn memberDN : memberDNs)
+      {
+        addValue(directGroups, memberDN, groupDN);
+      }
+      for (DN includedGroupDN : group.getIncludedGroupDNs())
+      {
+        addValue(includingGroups, includedGroupDN, groupDN);
+      }
+    }
+    nestingChanged();
+  }
+
+  /**
+   * Removes the memberships of a group from this index.
+   *
+   * @param group
+   *          the group to remove, with the DN it had when it was added
+   */
+  void remove(Group<?> group)
+  {
+    final DN groupDN = group.getGroupDN();
+    if (groups.remove(groupDN) == null)
+    {
+      return;
+    }
+    groupDNs.remove(compact(groupDN));
+    if (notIndexedGroups.remove(groupDN) != null)
+    {
+      notIndexedGroupList = null;
+    }
+    else
+    {
+      for (CompactDn memberDN : group.getExplicitMemberDNs())
+      {
+        removeValue(directGroups, memberDN, groupDN);
+      }
+      for (DN includedGroupDN : group.getIncludedGroupDNs())
+      {
+        removeValue(includingGroups, includedGroupDN, groupDN);
+      }
+    }
+    nestingChanged();
+  }
+
+  /**
+   * Replaces a group by a new version of the same group, only updating the
+   * memberships which changed. The member sets of both versions are compared
+   * as they are, without copying or decoding them.
+   *
+   * @param oldGroup
+   *          the group in this index
+   * @param newGroup
+   *          the group replacing it, with the same DN
+   */
+  void replace(Group<?> oldGroup, Group<?> newGroup)
+  {
+    final Set<CompactDn> oldMemberDNs = oldGroup.getExplicitMemberDNs();
+    final Set<CompactDn> newMemberDNs = newGroup.getExplicitMemberDNs();
+    if (oldMemberDNs == null || newMemberDNs == null || !groups.containsKey(oldGroup.getGroupDN()))
+    {
+      remove(oldGroup);
+      add(newGroup);
+      return;
+    }
+
+    final DN groupDN = newGroup.getGroupDN();
+    groups.put(groupDN, newGroup);
+    boolean nestingChanged = false;
+    for (CompactDn memberDN : oldMemberDNs)
+    {
+      if (!newMemberDNs.contains(memberDN))
+      {
+        nestingChanged |= removeMember(groupDN, memberDN);
+      }
+    }
+    for (CompactDn memberDN : newMemberDNs)
+    {
+      if (!oldMemberDNs.contains(memberDN))
+      {
+        nestingChanged |= addMember(groupDN, memberDN);
+      }
+    }
+    for (DN includedGroupDN : oldGroup.getIncludedGroupDNs())
+    {
+      removeValue(includingGroups, includedGroupDN, groupDN);
+    }
+    for (DN includedGroupDN : newGroup.getIncludedGroupDNs())
+    {
+      addValue(includingGroups, includedGroupDN, groupDN);
+    }
+    if (nestingChanged || !oldGroup.getIncludedGroupDNs().isEmpty() || !newGroup.getIncludedGroupDNs().isEmpty())
+    {
+      nestingChanged();
+    }
+  }
+
+  /**
+   * Records that DNs have been added to or removed from the members of an
+   * indexed group.
+   *
+   * @param groupDN
+   *          the DN of the group
+   * @param addedMemberDNs
+   *          the DNs of the new members
+   * @param removedMemberDNs
+   *          the DNs of the removed members
+   */
+  void membersChanged(DN groupDN, Collection<CompactDn> addedMemberDNs, Collection<CompactDn> removedMemberDNs)
+  {
+    if (groups.containsKey(groupDN) && !notIndexedGroups.containsKey(groupDN))
+    {
+      boolean nestingChanged = false;
+      for (CompactDn memberDN : removedMemberDNs)
+      {
+        nestingChanged |= removeMember(groupDN, memberDN);
+      }
+      for (CompactDn memberDN : addedMemberDNs)
+      {
+        nestingChanged |= addMember(groupDN, memberDN);
+      }
+      if (nestingChanged)
+      {
+        nestingChanged();
+      }
+    }
+  }
+
+  /** Returns whether the added member is a group. */
+  private boolean addMember(DN groupDN, CompactDn memberDN)
+  {
+    addValue(directGroups, memberDN, groupDN);
+    return groupDNs.containsKey(memberDN);
+  }
+
+  /** Returns whether the removed member is a group. */
+  private boolean removeMember(DN groupDN, CompactDn memberDN)
+  {
+    removeValue(directGroups, memberDN, groupDN);
+    return groupDNs.containsKey(memberDN);
+  }
+
+  /** Removes all the groups from this index. */
+  void clear()
+  {
+    groups.clear();
+    groupDNs.clear();
+    notIndexedGroups.clear();
+    directGroups.clear();
+    includingGroups.clear();
+    notIndexedGroupList = null;
+    nestingChanged();
+  }
+
+  private void nestingChanged()
+  {
+    ancestors.clear();
+    notIndexedDescendants.clear();
+  }
+
+  /**
+   * Indicates whether the provided group is the indexed version of the group.
+   *
+   * @param group
+   *          the group
+   * @return {@code true} if the memberships of the provided group instance
+   *         are in this index
+   */
+  boolean isIndexed(Group<?> group)
+  {
+    return groups.get(group.getGroupDN()) == group && !notIndexedGroups.containsKey(group.getGroupDN());
+  }
+
+  /**
+   * Returns all the groups which are not indexed.
+   *
+   * @return the groups which are not indexed, as an immutable list
+   */
+  List<Group<?>> getNotIndexedGroups()
+  {
+    List<Group<?>> results = notIndexedGroupList;
+    if (results == null)
+    {
+      results = immutableList(notIndexedGroups.values());
+      notIndexedGroupList = results;
+    }
+    return results;
+  }
+
+  /**
+   * Returns the groups which are not indexed and whose members are members of
+   * the provided group, through any number of nested groups.
+   *
+   * @param groupDN
+   *          the DN of the group
+   * @return the groups which are not indexed and nested in the provided group,
+   *         as an immutable list
+   */
+  List<Group<?>> getNotIndexedGroups(DN groupDN)
+  {
+    if (notIndexedGroups.isEmpty())
+    {
+      return Collections.emptyList();
+    }
+    List<Group<?>> results = notIndexedDescendants.get(groupDN);
+    if (results == null)
+    {
+      final List<Group<?>> descendants = new ArrayList<>();
+      for (Map.Entry<DN, Group<?>> mapEntry : notIndexedGroups.entrySet())
+      {
+        if (getAncestors(mapEntry.getKey()).contains(groupDN))
+        {
+          descendants.add(mapEntry.getValue());
+        }
+      }
+      results = immutableList(descendants);
+      notIndexedDescendants.put(groupDN, results);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the DNs of all the groups in which the provided DN is a member.
+   *
+   * @param memberDN
+   *          the compact DN of the member
+   * @param notIndexedGroupDNs
+   *          the DNs of the groups which are not indexed and in which the
+   *          member is a member
+   * @return the DNs of all the groups in which the provided DN is a member
+   */
+  Set<DN> getGroups(CompactDn memberDN, Collection<DN> notIndexedGroupDNs)
+  {
+    final Set<DN> results = new LinkedHashSet<>();
+    for (DN groupDN : getMemberships(memberDN, notIndexedGroupDNs))
+    {
+      if (results.add(groupDN))
+      {
+        results.addAll(getAncestors(groupDN));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Indicates whether the provided DN is a member of a group.
+   *
+   * @param groupDN
+   *          the DN of the group
+   * @param memberDN
+   *          the compact DN of the member
+   * @param notIndexedGroupDNs
+   *          the DNs of the groups which are not indexed and in which the
+   *          member is a member
+   * @return {@code true} if the provided DN is a member of the group
+   */
+  boolean isMember(DN groupDN, CompactDn memberDN, Collection<DN> notIndexedGroupDNs)
+  {
+    for (DN directGroupDN : getMemberships(memberDN, notIndexedGroupDNs))
+    {
+      if (directGroupDN.equals(groupDN) || getAncestors(directGroupDN).contains(groupDN))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the groups in which the provided DN is a member, not through other groups. */
+  private Collection<DN> getMemberships(CompactDn memberDN, Collection<DN> notIndexedGroupDNs)
+  {
+    final Set<DN> directGroupDNs = directGroups.get(memberDN);
+    if (notIndexedGroupDNs.isEmpty())
+    {
+      return directGroupDNs != null ? directGroupDNs : Collections.<DN> emptySet();
+    }
+    final List<DN> memberships = new ArrayList<>(notIndexedGroupDNs);
+    if (directGroupDNs != null)
+    {
+      memberships.addAll(directGroupDNs);
+    }
+    return memberships;
+  }
+
+  /** Returns the groups including the members of the provided group, at any depth. */
+  private Set<DN> getAncestors(DN groupDN)
+  {
+    Set<DN> results = ancestors.get(groupDN);
+    if (results == null)
+    {
+      results = new HashSet<>();
+      final Deque<DN> toVisit = new ArrayDeque<>();
+      toVisit.add(groupDN);
+      while (!toVisit.isEmpty())
+      {
+        final DN dn = toVisit.poll();
+        addParents(directGroups.get(compact(dn)), results, toVisit);
+        addParents(includingGroups.get(dn), results, toVisit);
+      }
+      results = Collections.unmodifiableSet(results);
+      ancestors.put(groupDN, results);
+    }
+    return results;
+  }
+
+  private static void addParents(Set<DN> parentDNs, Set<DN> results, Deque<DN> toVisit)
+  {
+    if (parentDNs != null)
+    {
+      for (DN parentDN : parentDNs)
+      {
+        // also prevents infinite loops with circular nesting
+        if (results.add(parentDN))
+        {
+          toVisit.add(parentDN);
+        }
+      }
+    }
+  }
+
+  private static List<Group<?>> immutableList(Collection<Group<?>> groups)
+  {
+    if (groups.isEmpty())
+    {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(new ArrayList<>(groups));
+  }
+
+  /**
+   * Converts the provided DN to the compact form used by groups to store
+   * their members.
+   *
+   * @param dn
+   *          the DN to convert
+   * @return the compact form of the DN
+   */
+  static CompactDn compact(DN dn)
+  {
+    return Converters.from(dn).compact();
+  }
+
+  private static <K> void addValue(Map<K, Set<DN>> map, K key, DN value)
+  {
+    Set<DN> values = map.get(key);
+    if (values == null)
+    {
+      values = new HashSet<>(2);
+      map.put(key, values);
+    }
+    values.add(value);
+  }
+
+  private static <K> void removeValue(Map<K, Set<DN>> map, K key, DN value)
+  {
+    final Set<DN> values = map.get(key);
+    if (values != null && values.remove(value) && values.isEmpty())
+    {
+      map.remove(key);
+    }
+  }
+}
@@ -610,6 +610,56 @@ public abstract class PasswordPolicy extends AuthenticationPolicy
 
 
 
+  /**
+   * Gets the "state-update-write-behind-interval" property.
+   * <p>
+   * Specifies the maximum length of time that the password policy state
+   * updates made by successful bind operations may be kept in memory before
+   * being written to the user entry.
+   * <p>
+   * A value of 0 seconds indicates that all the updates are written
+   * immediately.
+   *
+   * @return Returns the value of the "state-update-write-behind-interval"
+   *         property.
+   */
+  public abstract long getStateUpdateWriteBehindInterval();
+
+
+
+  /**
+   * Gets the "last-login-time-granularity" property.
+   * <p>
+   * Specifies the minimum length of time between two updates of the last login
+   * time of a user.
+   * <p>
+   * A value of 0 seconds indicates that the last login time is updated
+   * whenever its value, in the last login time format, changes.
+   *
+   * @return Returns the value of the "last-login-time-granularity" property.
+   */
+  public abstract long getLastLoginTimeGranularity();
+
+
+
+  /**
+   * Gets the "verified-password-cache-duration" property.
+   * <p>
+   * Specifies the length of time during which a password successfully
+   * verified for a user is remembered, so that the subsequent binds of the
+   * user with the same password do not verify it again with the password
+   * storage scheme.
+   * <p>
+   * A value of 0 seconds indicates that verified passwords are not
+   * remembered.
+   *
+   * @return Returns the value of the "verified-password-cache-duration"
+   *         property.
+   */
+  public abstract long getVerifiedPasswordCacheDuration();
+
+
+
   /** {@inheritDoc} */
   public boolean isPasswordPolicy()
   {
@@ -622,6 +672,13 @@ public abstract class PasswordPolicy extends AuthenticationPolicy
   public PasswordPolicyState createAuthenticationPolicyState(Entry userEntry,
       long time) throws DirectoryException
   {
-    return new PasswordPolicyState(this, userEntry, time);
+    Entry entry = userEntry;
+    PasswordPolicyStateBuffer stateBuffer = DirectoryServer.getPasswordPolicyStateBuffer();
+    if (stateBuffer != null)
+    {
+      // Take into account the state updates which have not been written yet.
+      entry = stateBuffer.applyPendingUpdates(userEntry);
+    }
+    return new PasswordPolicyState(this, entry, time);
   }
 }
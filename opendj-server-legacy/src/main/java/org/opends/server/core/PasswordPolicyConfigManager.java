@@ -48,6 +48,7 @@ import org.opends.server.admin.std.server.RootCfg;
 import org.opends.server.api.AuthenticationPolicy;
 import org.opends.server.api.AuthenticationPolicyFactory;
 import org.opends.server.api.SubentryChangeListener;
+import org.opends.server.monitors.VerifiedPasswordCacheMonitor;
 import org.opends.server.types.*;
 
 /**
@@ -64,6 +65,14 @@ final class PasswordPolicyConfigManager implements SubentryChangeListener,
 
   private final ServerContext serverContext;
 
+  /** Notifies the state buffer and the verified password cache of the changes of the user entries. */
+  private EntryChangeNotifier entryChangeNotifier;
+  /** Writes the password policy state updates of the users. */
+  private PasswordPolicyStateBuffer stateBuffer;
+  /** Remembers the passwords recently verified for the users. */
+  private VerifiedPasswordCache verifiedPasswordCache;
+  private VerifiedPasswordCacheMonitor verifiedPasswordCacheMonitor;
+
   /**
    * Creates a new instance of this password policy config manager.
    *
@@ -92,6 +101,22 @@ final class PasswordPolicyConfigManager implements SubentryChangeListener,
   public void initializeAuthenticationPolicies() throws ConfigException,
       InitializationException
   {
+    try
+    {
+      entryChangeNotifier = new EntryChangeNotifier();
+    }
+    catch (DirectoryException de)
+    {
+      logger.traceException(de);
+      throw new InitializationException(de.getMessageObject());
+    }
+    stateBuffer = new PasswordPolicyStateBuffer();
+    verifiedPasswordCache = new VerifiedPasswordCache();
+    entryChangeNotifier.registerListener(stateBuffer);
+    entryChangeNotifier.registerListener(verifiedPasswordCache);
+    verifiedPasswordCacheMonitor = new VerifiedPasswordCacheMonitor(verifiedPasswordCache);
+    DirectoryServer.registerMonitorProvider(verifiedPasswordCacheMonitor);
+
     // Get the root configuration object.
     ServerManagementContext managementContext = ServerManagementContext
         .getInstance();
@@ -182,6 +207,46 @@ final class PasswordPolicyConfigManager implements SubentryChangeListener,
     RootCfg rootConfiguration = managementContext.getRootConfiguration();
     rootConfiguration.removePasswordPolicyAddListener(this);
     rootConfiguration.removePasswordPolicyDeleteListener(this);
+
+    if (entryChangeNotifier != null)
+    {
+      entryChangeNotifier.finalizeEntryChangeNotifier();
+    }
+    if (stateBuffer != null)
+    {
+      stateBuffer.finalizeStateBuffer();
+    }
+    if (verifiedPasswordCache != null)
+    {
+      DirectoryServer.deregisterMonitorProvider(verifiedPasswordCacheMonitor);
+      verifiedPasswordCache.finalizeVerifiedPasswordCache();
+    }
+  }
+
+
+
+  /**
+   * Returns the buffer writing the password policy state updates of the users.
+   *
+   * @return The password policy state buffer, or {@code null} if the
+   *         authentication policies have not been initialized.
+   */
+  PasswordPolicyStateBuffer getStateBuffer()
+  {
+    return stateBuffer;
+  }
+
+
+
+  /**
+   * Returns the cache of the passwords recently verified for the users.
+   *
+   * @return The verified password cache, or {@code null} if the
+   *         authentication policies have not been initialized.
+   */
+  VerifiedPasswordCache getVerifiedPasswordCache()
+  {
+    return verifiedPasswordCache;
   }
 
 
@@ -394,6 +394,24 @@ public final class PasswordPolicyFactory implements
         }
       }
 
+      // If the last login time is used for idle lockout, then it must be
+      // updated more often than the idle lockout interval.
+      if (configuration.getIdleLockoutInterval() > 0
+          && configuration.getLastLoginTimeGranularity() >= configuration.getIdleLockoutInterval())
+      {
+        LocalizableMessage message = ERR_PWPOLICY_LAST_LOGIN_TIME_GRANULARITY_TOO_LARGE.get(configEntryDN);
+        throw new ConfigException(message);
+      }
+
+      // The updates written behind can no longer make the bind fail, so
+      // they must only be enabled when state update failures are ignored.
+      if (configuration.getStateUpdateWriteBehindInterval() > 0
+          && configuration.getStateUpdateFailurePolicy() != StateUpdateFailurePolicy.IGNORE)
+      {
+        LocalizableMessage message = ERR_PWPOLICY_WRITE_BEHIND_REQUIRES_IGNORE_FAILURE_POLICY.get(configEntryDN);
+        throw new ConfigException(message);
+      }
+
       // If we've got this far then the configuration is good and we can commit
       // the changes if required.
       if (applyChanges)
@@ -777,6 +795,21 @@ public final class PasswordPolicyFactory implements
       buffer.append("Update Failure Policy:                 ");
       buffer.append(configuration.getStateUpdateFailurePolicy());
       buffer.append(EOL);
+
+      buffer.append("Update Write-Behind Interval:          ");
+      buffer.append(configuration.getStateUpdateWriteBehindInterval());
+      buffer.append(" seconds");
+      buffer.append(EOL);
+
+      buffer.append("Last Login Time Granularity:           ");
+      buffer.append(configuration.getLastLoginTimeGranularity());
+      buffer.append(" seconds");
+      buffer.append(EOL);
+
+      buffer.append("Verified Password Cache Duration:      ");
+      buffer.append(configuration.getVerifiedPasswordCacheDuration());
+      buffer.append(" seconds");
+      buffer.append(EOL);
     }
 
     /** {@inheritDoc} */
@@ -968,6 +1001,27 @@ public final class PasswordPolicyFactory implements
       return configuration.getStateUpdateFailurePolicy();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public long getStateUpdateWriteBehindInterval()
+    {
+      return configuration.getStateUpdateWriteBehindInterval();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLastLoginTimeGranularity()
+    {
+      return configuration.getLastLoginTimeGranularity();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getVerifiedPasswordCacheDuration()
+    {
+      return configuration.getVerifiedPasswordCacheDuration();
+    }
+
   }
 
   private ServerContext serverContext;
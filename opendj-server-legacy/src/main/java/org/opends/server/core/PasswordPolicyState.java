@@ -62,8 +62,6 @@ import org.opends.server.api.AuthenticationPolicyState;
 import org.opends.server.api.PasswordGenerator;
 import org.opends.server.api.PasswordStorageScheme;
 import org.opends.server.api.PasswordValidator;
-import org.opends.server.protocols.internal.InternalClientConnection;
-import org.opends.server.protocols.ldap.LDAPAttribute;
 import org.opends.server.schema.AuthPasswordSyntax;
 import org.opends.server.schema.GeneralizedTimeSyntax;
 import org.opends.server.schema.UserPasswordSyntax;
@@ -74,11 +72,11 @@ import org.opends.server.types.Attribute;
 import org.opends.server.types.AttributeBuilder;
 import org.opends.server.types.AttributeType;
 import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Modification;
 import org.opends.server.types.Operation;
-import org.opends.server.types.RawModification;
 
 /**
  * This class provides a data structure for holding password policy state
@@ -1164,6 +1162,18 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
       return;
     }
 
+    long granularity = passwordPolicy.getLastLoginTimeGranularity();
+    if (granularity > 0)
+    {
+      long existingTime = getLastLoginTime();
+      if (existingTime >= 0 && existingTime <= lastLoginTime && lastLoginTime - existingTime < granularity * 1000L)
+      {
+        logger.trace("Not updating last login time for user %s because the existing value is recent enough.",
+            userDNString);
+        return;
+      }
+    }
+
     String timestamp;
     try
     {
@@ -2190,10 +2200,22 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
       return false;
     }
 
+    // Expensive password storage schemes can be skipped for the passwords recently verified.
+    long cacheDuration = passwordPolicy.getVerifiedPasswordCacheDuration();
+    VerifiedPasswordCache verifiedPasswords = cacheDuration > 0 ? DirectoryServer.getVerifiedPasswordCache() : null;
+    DN userDN = userEntry.getName();
+
     for (Attribute a : attrList)
     {
       for (ByteString v : a)
       {
+        if (verifiedPasswords != null && verifiedPasswords.isVerified(userDN, v, password))
+        {
+          logger.trace("Returning true for user %s because the provided password has recently been verified",
+              userDNString);
+          return true;
+        }
+
         try
         {
           String[] pwComponents = getPwComponents(v);
@@ -2218,6 +2240,10 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
                       "encoded with scheme %s", userDNString, schemeName);
             }
 
+            if (verifiedPasswords != null)
+            {
+              verifiedPasswords.put(userDN, v, password, cacheDuration);
+            }
             return true;
           }
         }
@@ -3043,15 +3069,20 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
       return;
     }
 
-    // Convert the set of modifications to a set of LDAP modifications.
-    ArrayList<RawModification> modList = new ArrayList<>();
-    for (Modification m : modifications)
+    // The updates of root users are always written immediately.
+    DN userDN = userEntry.getName();
+    PasswordPolicyStateBuffer stateBuffer = DirectoryServer.getPasswordPolicyStateBuffer();
+    if (stateBuffer != null && !DirectoryServer.isRootDN(userDN)
+        && stateBuffer.defer(passwordPolicy, userDN, modifications))
     {
-      modList.add(RawModification.create(m.getModificationType(), new LDAPAttribute(m.getAttribute())));
+      logger.trace("Deferring the password policy state updates of user %s.", userDNString);
+      return;
     }
 
-    InternalClientConnection conn = getRootConnection();
-    ModifyOperation internalModify = conn.processModify(ByteString.valueOfUtf8(userDNString), modList);
+    // Write the updates along with the previously deferred ones, if any.
+    ModifyOperation internalModify = stateBuffer != null
+        ? stateBuffer.write(userDN, modifications)
+        : getRootConnection().processModify(userDN, modifications);
 
     ResultCode resultCode = internalModify.getResultCode();
     if (resultCode != ResultCode.SUCCESS)
@@ -0,0 +1,501 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.opends.messages.CoreMessages.*;
+import static org.opends.server.config.ConfigConstants.*;
+import static org.opends.server.protocols.internal.InternalClientConnection.*;
+import static org.opends.server.util.CollectionUtils.*;
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ModificationType;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.core.EntryChangeNotifier.EntryChangeListener;
+import org.opends.server.protocols.ldap.LDAPControl;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.Control;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.Modification;
+import org.opends.server.types.operation.PluginOperation;
+
+/**
+ * Writes the password policy state updates of the users to their entries,
+ * keeping the updates made by successful binds in memory for a while when the
+ * password policy of the user has a write-behind interval.
+ * <p>
+ * Only the updates which do not weaken the account lockout are deferred: the
+ * last login time, and the removal of authentication failures or of an
+ * expired failure lockout. They are coalesced per user, so that a user binding
+ * many times within the interval causes a single write to the user entry. Any
+ * other update of the user, such as recording an authentication failure, is
+ * written immediately along with the pending updates of the user.
+ * <p>
+ * The pending updates are applied to the user entries read to build the
+ * password policy states, so that the subsequent authentications see them.
+ * When the user entry is modified by another operation, the pending updates of
+ * the modified attributes are discarded, because the modification is more
+ * recent. The pending updates are discarded as well when the user entry is
+ * deleted or renamed.
+ * <p>
+ * The number of users with pending updates is bounded: once the limit has been
+ * reached, the updates of the other users are written immediately. Once the
+ * buffer has been finalized, all the updates are written immediately.
+ */
+final class PasswordPolicyStateBuffer implements EntryChangeListener
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The attachment marking the operations writing password policy state updates. */
+  private static final String STATE_UPDATE_ATTACHMENT = PasswordPolicyStateBuffer.class.getName();
+
+  /** The maximum number of users with pending updates. */
+  static final int MAX_PENDING_USERS = 100000;
+  /** The interval between two checks for pending updates to write, in milliseconds. */
+  private static final long FLUSH_CHECK_INTERVAL = 1000L;
+
+  /** The state updates of a user which have not been written yet. */
+  private static final class PendingUpdates
+  {
+    /** Serializes the writes of the updates, held while writing. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** The updates to write, guarded by this. */
+    private final List<Modification> modifications = new ArrayList<>();
+    /** The updates being written, guarded by this. */
+    private List<Modification> writing = Collections.emptyList();
+    /** The time after which the updates must be written, guarded by this. */
+    private long writeTime;
+    /** Whether these updates have been removed from the buffer, guarded by this. */
+    private boolean removed;
+    /** The updates to apply to the user entries read, including those being written. */
+    private volatile List<Modification> overlay = Collections.emptyList();
+
+    private void add(List<Modification> mods, long time)
+    {
+      if (modifications.isEmpty())
+      {
+        writeTime = time;
+      }
+      for (Modification mod : mods)
+      {
+        if (mod.getModificationType() == ModificationType.REPLACE)
+        {
+          discard(mod.getAttribute().getAttributeType());
+        }
+        modifications.add(mod);
+      }
+      updateOverlay();
+    }
+
+    private void discard(AttributeType type)
+    {
+      for (Iterator<Modification> it = modifications.iterator(); it.hasNext();)
+      {
+        if (it.next().getAttribute().getAttributeType().equals(type))
+        {
+          it.remove();
+        }
+      }
+    }
+
+    private void updateOverlay()
+    {
+      final List<Modification> mods = new ArrayList<>(writing.size() + modifications.size());
+      mods.addAll(writing);
+      mods.addAll(modifications);
+      overlay = mods;
+    }
+  }
+
+  /** The pending updates, keyed by user DN. */
+  private final ConcurrentMap<DN, PendingUpdates> pendingUpdates = new ConcurrentHashMap<>();
+  /** The scheduler writing the pending updates, started on the first deferred update, guarded by this. */
+  private ScheduledExecutorService scheduler;
+  /** Whether this buffer has been finalized and no longer accepts updates to defer. */
+  private volatile boolean finalized;
+
+  /**
+   * Returns the provided user entry with the pending updates of the user
+   * applied.
+   *
+   * @param userEntry
+   *          The user entry, which is not modified.
+   * @return The user entry with the pending updates applied, or the provided
+   *         entry if the user has no pending updates.
+   */
+  Entry applyPendingUpdates(Entry userEntry)
+  {
+    final PendingUpdates updates = pendingUpdates.isEmpty() ? null : pendingUpdates.get(userEntry.getName());
+    final List<Modification> mods = updates != null ? updates.overlay : null;
+    if (mods == null || mods.isEmpty())
+    {
+      return userEntry;
+    }
+
+    final Entry entry = userEntry.duplicate(false);
+    for (Modification mod : mods)
+    {
+      try
+      {
+        entry.applyModification(mod, true);
+      }
+      catch (DirectoryException e)
+      {
+        logger.traceException(e);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Keeps the provided password policy state updates of a user in memory, if
+   * they can be written behind.
+   *
+   * @param policy
+   *          The password policy of the user.
+   * @param userDN
+   *          The DN of the user entry.
+   * @param mods
+   *          The updates of the password policy state of the user.
+   * @return {@code true} if the updates will be written later, {@code false}
+   *         if they must be written immediately with {@link #write(DN, List)}
+   */
+  boolean defer(PasswordPolicy policy, DN userDN, List<Modification> mods)
+  {
+    final long interval = policy.getStateUpdateWriteBehindInterval();
+    if (finalized || interval <= 0 || !isDeferrable(policy, mods))
+    {
+      return false;
+    }
+
+    final long writeTime = System.currentTimeMillis() + interval * 1000L;
+    while (true)
+    {
+      PendingUpdates updates = pendingUpdates.get(userDN);
+      if (updates == null)
+      {
+        if (pendingUpdates.size() >= MAX_PENDING_USERS)
+        {
+          return false;
+        }
+        final PendingUpdates newUpdates = new PendingUpdates();
+        updates = pendingUpdates.putIfAbsent(userDN, newUpdates);
+        if (updates == null)
+        {
+          updates = newUpdates;
+          startScheduler();
+        }
+      }
+
+      synchronized (updates)
+      {
+        if (finalized)
+        {
+          // the pending updates are being written for the last time
+          removeIfEmpty(userDN, updates);
+          return false;
+        }
+        if (!updates.removed)
+        {
+          updates.add(mods, writeTime);
+          return true;
+        }
+      }
+      // the updates have just been written, retry with new ones
+    }
+  }
+
+  /** Only the updates which cannot unlock an account before its time are deferred. */
+  private boolean isDeferrable(PasswordPolicy policy, List<Modification> mods)
+  {
+    final AttributeType lastLoginTimeType = policy.getLastLoginTimeAttribute();
+    final AttributeType failureTimeType = DirectoryServer.getAttributeTypeOrDefault(
+        OP_ATTR_PWPOLICY_FAILURE_TIME_LC, OP_ATTR_PWPOLICY_FAILURE_TIME);
+    final AttributeType lockedTimeType = DirectoryServer.getAttributeTypeOrDefault(
+        OP_ATTR_PWPOLICY_LOCKED_TIME_LC, OP_ATTR_PWPOLICY_LOCKED_TIME);
+    for (Modification mod : mods)
+    {
+      final AttributeType type = mod.getAttribute().getAttributeType();
+      final ModificationType modType = mod.getModificationType();
+      final boolean isRemoval = modType == ModificationType.DELETE
+          || (modType == ModificationType.REPLACE && mod.getAttribute().isEmpty());
+      if (!(type.equals(lastLoginTimeType) && modType == ModificationType.REPLACE)
+          && !((type.equals(failureTimeType) || type.equals(lockedTimeType)) && isRemoval))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the provided password policy state updates of a user to the user
+   * entry, along with the pending updates of the user.
+   *
+   * @param userDN
+   *          The DN of the user entry.
+   * @param mods
+   *          The updates of the password policy state of the user.
+   * @return The internal modify operation which has written the updates.
+   */
+  ModifyOperation write(DN userDN, List<Modification> mods)
+  {
+    final PendingUpdates updates = pendingUpdates.isEmpty() ? null : pendingUpdates.get(userDN);
+    if (updates == null)
+    {
+      return modify(userDN, mods, false);
+    }
+
+    updates.writeLock.lock();
+    try
+    {
+      final List<Modification> toWrite;
+      synchronized (updates)
+      {
+        toWrite = new ArrayList<>(updates.modifications.size() + mods.size());
+        toWrite.addAll(updates.modifications);
+        toWrite.addAll(mods);
+        updates.writing = toWrite;
+        updates.modifications.clear();
+        updates.updateOverlay();
+      }
+
+      // pending removals may refer to values removed since, do not fail on them
+      final ModifyOperation modifyOperation = modify(userDN, toWrite, toWrite.size() > mods.size());
+
+      synchronized (updates)
+      {
+        updates.writing = Collections.emptyList();
+        updates.updateOverlay();
+        removeIfEmpty(userDN, updates);
+      }
+      return modifyOperation;
+    }
+    finally
+    {
+      updates.writeLock.unlock();
+    }
+  }
+
+  /** Removes the provided pending updates from the buffer if there is nothing left to write, must hold its lock. */
+  private void removeIfEmpty(DN userDN, PendingUpdates updates)
+  {
+    if (updates.modifications.isEmpty() && updates.writing.isEmpty())
+    {
+      updates.removed = true;
+      pendingUpdates.remove(userDN, updates);
+    }
+  }
+
+  private ModifyOperation modify(DN userDN, List<Modification> mods, boolean permissive)
+  {
+    final List<Control> controls = permissive
+        ? newArrayList((Control) new LDAPControl(OID_PERMISSIVE_MODIFY_CONTROL, false))
+        : null;
+    final ModifyOperationBasis modifyOperation =
+        new ModifyOperationBasis(getRootConnection(), nextOperationID(), nextMessageID(), controls, userDN, mods);
+    modifyOperation.setInternalOperation(true);
+    modifyOperation.setAttachment(STATE_UPDATE_ATTACHMENT, Boolean.TRUE);
+    modifyOperation.run();
+    return modifyOperation;
+  }
+
+  /**
+   * Writes the pending updates of all the users whose write-behind interval
+   * has elapsed.
+   *
+   * @param all
+   *          Whether to write the pending updates of all the users, regardless
+   *          of their write-behind interval.
+   */
+  void flush(boolean all)
+  {
+    final long now = System.currentTimeMillis();
+    for (Map.Entry<DN, PendingUpdates> mapEntry : pendingUpdates.entrySet())
+    {
+      final DN userDN = mapEntry.getKey();
+      final PendingUpdates updates = mapEntry.getValue();
+      synchronized (updates)
+      {
+        if (updates.modifications.isEmpty())
+        {
+          removeIfEmpty(userDN, updates);
+          continue;
+        }
+        if (!all && updates.writeTime > now)
+        {
+          continue;
+        }
+      }
+
+      final ModifyOperation modifyOperation = write(userDN, Collections.<Modification> emptyList());
+      if (modifyOperation.getResultCode() != ResultCode.SUCCESS)
+      {
+        logger.error(ERR_PWPSTATE_CANNOT_WRITE_BEHIND_UPDATES, userDN, modifyOperation.getErrorMessage());
+      }
+    }
+  }
+
+  private synchronized void startScheduler()
+  {
+    if (scheduler == null && !finalized)
+    {
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+      {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+          final Thread t = new DirectoryThread(r, "Password Policy State Writer");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      scheduler.scheduleWithFixedDelay(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            flush(false);
+          }
+          catch (RuntimeException e)
+          {
+            logger.traceException(e);
+          }
+        }
+      }, FLUSH_CHECK_INTERVAL, FLUSH_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Writes all the pending updates, and stops writing them in the background.
+   * The updates of the subsequent binds are no longer deferred.
+   */
+  void finalizeStateBuffer()
+  {
+    synchronized (this)
+    {
+      finalized = true;
+      if (scheduler != null)
+      {
+        scheduler.shutdownNow();
+        scheduler = null;
+      }
+    }
+    flush(true);
+  }
+
+  /**
+   * Returns the number of users with pending updates.
+   *
+   * @return The number of users with pending updates.
+   */
+  int getPendingUserCount()
+  {
+    return pendingUpdates.size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void entryModified(PluginOperation operation, DN entryDN, List<Modification> mods)
+  {
+    if (pendingUpdates.isEmpty() || operation.getAttachment(STATE_UPDATE_ATTACHMENT) != null)
+    {
+      return;
+    }
+    final PendingUpdates updates = pendingUpdates.get(entryDN);
+    if (updates != null)
+    {
+      synchronized (updates)
+      {
+        for (Modification mod : mods)
+        {
+          updates.discard(mod.getAttribute().getAttributeType());
+        }
+        updates.updateOverlay();
+        removeIfEmpty(entryDN, updates);
+      }
+    }
+  }
+
+  /**
+   * Discards the pending updates of a deleted or renamed entry, and of its
+   * subordinate entries when it may have some.
+   */
+  @Override
+  public void entryRemoved(DN entryDN, boolean subtree)
+  {
+    if (pendingUpdates.isEmpty())
+    {
+      return;
+    }
+    if (!subtree)
+    {
+      final PendingUpdates updates = pendingUpdates.remove(entryDN);
+      if (updates != null)
+      {
+        discard(updates);
+      }
+      return;
+    }
+    for (Iterator<Map.Entry<DN, PendingUpdates>> it = pendingUpdates.entrySet().iterator(); it.hasNext();)
+    {
+      final Map.Entry<DN, PendingUpdates> mapEntry = it.next();
+      if (mapEntry.getKey().isDescendantOf(entryDN))
+      {
+        discard(mapEntry.getValue());
+        it.remove();
+      }
+    }
+  }
+
+  private static void discard(PendingUpdates updates)
+  {
+    synchronized (updates)
+    {
+      updates.removed = true;
+      updates.modifications.clear();
+      updates.updateOverlay();
+    }
+  }
+}
@@ -133,7 +133,7 @@ public final class PersistentSearch
   private final Set<PersistentSearchChangeType> changeTypes;
 
   /** Indicates whether or not this persistent search has already been aborted. */
-  private boolean isCancelled;
+  private volatile boolean isCancelled;
 
   /**
    * Indicates whether entries returned should include the entry change
@@ -409,7 +409,27 @@ public final class PersistentSearch
     return Collections.emptyList();
   }
 
-  private void sendEntry(Entry entry, List<Control> entryControls)
+  /**
+   * Queues the entry to be sent to the client by the notification queue of the
+   * client connection, so that the thread which processed the change does not
+   * wait for the client to read the entry.
+   */
+  private void sendEntry(final Entry entry, final List<Control> entryControls)
+  {
+    searchOperation.getClientConnection().getPersistentSearchNotificationQueue().enqueue(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (!isCancelled)
+        {
+          returnEntry(entry, entryControls);
+        }
+      }
+    });
+  }
+
+  private void returnEntry(Entry entry, List<Control> entryControls)
   {
     try
     {
@@ -0,0 +1,417 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.schema.MatchingRule;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+
+/**
+ * An index of the persistent searches registered against a backend, used to
+ * find the persistent searches which may be interested in a change without
+ * evaluating the scope and the filter of every registered persistent search.
+ * <p>
+ * Persistent searches are indexed by base DN, then by an equality or presence
+ * component of their filter: either the filter itself or one of the components
+ * of a top level AND filter. Persistent searches whose filter has no such
+ * component, or whose component cannot be indexed, are only indexed by base DN.
+ * <p>
+ * The candidates returned by this index are a superset of the persistent
+ * searches which must be notified of a change: their scope, filter and change
+ * types must still be checked, which is done by {@link PersistentSearch}.
+ * <p>
+ * Registrations are serialized, lookups are lock free.
+ */
+public final class PersistentSearchIndex
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The key indexing a persistent search below its base DN. */
+  private static final class IndexKey
+  {
+    private final AttributeType attributeType;
+    /** The normalized assertion value of an equality filter, {@code null} for a presence filter. */
+    private final ByteString normalizedValue;
+
+    private IndexKey(AttributeType attributeType, ByteString normalizedValue)
+    {
+      this.attributeType = attributeType;
+      this.normalizedValue = normalizedValue;
+    }
+  }
+
+  /** The persistent searches registered with the same base DN. */
+  private static final class BaseDNIndex
+  {
+    private final Set<PersistentSearch> unindexed = newConcurrentSet();
+    private final ConcurrentMap<AttributeType, Set<PersistentSearch>> presence = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AttributeType, ConcurrentMap<ByteString, Set<PersistentSearch>>> equality =
+        new ConcurrentHashMap<>();
+
+    private void add(IndexKey key, PersistentSearch psearch)
+    {
+      if (key == null)
+      {
+        unindexed.add(psearch);
+      }
+      else if (key.normalizedValue == null)
+      {
+        getOrCreate(presence, key.attributeType).add(psearch);
+      }
+      else
+      {
+        ConcurrentMap<ByteString, Set<PersistentSearch>> values = equality.get(key.attributeType);
+        if (values == null)
+        {
+          values = new ConcurrentHashMap<>();
+          equality.put(key.attributeType, values);
+        }
+        getOrCreate(values, key.normalizedValue).add(psearch);
+      }
+    }
+
+    private void remove(IndexKey key, PersistentSearch psearch)
+    {
+      if (key == null)
+      {
+        unindexed.remove(psearch);
+      }
+      else if (key.normalizedValue == null)
+      {
+        removeAndCleanUp(presence, key.attributeType, psearch);
+      }
+      else
+      {
+        final ConcurrentMap<ByteString, Set<PersistentSearch>> values = equality.get(key.attributeType);
+        if (values != null)
+        {
+          removeAndCleanUp(values, key.normalizedValue, psearch);
+          if (values.isEmpty())
+          {
+            equality.remove(key.attributeType);
+          }
+        }
+      }
+    }
+
+    private boolean isEmpty()
+    {
+      return unindexed.isEmpty() && presence.isEmpty() && equality.isEmpty();
+    }
+
+    private void collectCandidates(Entry entry, Set<PersistentSearch> candidates)
+    {
+      candidates.addAll(unindexed);
+      for (Map.Entry<AttributeType, Set<PersistentSearch>> mapEntry : presence.entrySet())
+      {
+        if (entry.hasAttribute(mapEntry.getKey()))
+        {
+          candidates.addAll(mapEntry.getValue());
+        }
+      }
+      for (Map.Entry<AttributeType, ConcurrentMap<ByteString, Set<PersistentSearch>>> mapEntry : equality.entrySet())
+      {
+        final AttributeType attributeType = mapEntry.getKey();
+        final List<Attribute> attributes = entry.getAttribute(attributeType);
+        if (attributes == null)
+        {
+          continue;
+        }
+        final ConcurrentMap<ByteString, Set<PersistentSearch>> values = mapEntry.getValue();
+        for (Attribute attribute : attributes)
+        {
+          for (ByteString value : attribute)
+          {
+            final ByteString normalizedValue = normalize(attributeType, value);
+            if (normalizedValue != null)
+            {
+              final Set<PersistentSearch> psearches = values.get(normalizedValue);
+              if (psearches != null)
+              {
+                candidates.addAll(psearches);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** The persistent searches, by base DN. */
+  private final ConcurrentMap<DN, BaseDNIndex> baseDNs = new ConcurrentHashMap<>();
+
+  /**
+   * Adds the provided persistent search to this index.
+   *
+   * @param psearch
+   *          The persistent search to add.
+   */
+  public synchronized void add(PersistentSearch psearch)
+  {
+    final DN baseDN = psearch.getSearchOperation().getBaseDN();
+    BaseDNIndex index = baseDNs.get(baseDN);
+    if (index == null)
+    {
+      index = new BaseDNIndex();
+      baseDNs.put(baseDN, index);
+    }
+    index.add(getIndexKey(psearch.getSearchOperation().getFilter()), psearch);
+  }
+
+  /**
+   * Removes the provided persistent search from this index.
+   *
+   * @param psearch
+   *          The persistent search to remove.
+   */
+  public synchronized void remove(PersistentSearch psearch)
+  {
+    final DN baseDN = psearch.getSearchOperation().getBaseDN();
+    final BaseDNIndex index = baseDNs.get(baseDN);
+    if (index != null)
+    {
+      index.remove(getIndexKey(psearch.getSearchOperation().getFilter()), psearch);
+      if (index.isEmpty())
+      {
+        baseDNs.remove(baseDN);
+      }
+    }
+  }
+
+  /** Removes all the persistent searches from this index. */
+  public synchronized void clear()
+  {
+    baseDNs.clear();
+  }
+
+  /**
+   * Returns the persistent searches which may be interested in the addition or
+   * the deletion of the provided entry.
+   *
+   * @param entry
+   *          The entry added or deleted.
+   * @return the persistent searches which may be interested in the change
+   */
+  public Set<PersistentSearch> getCandidates(Entry entry)
+  {
+    if (baseDNs.isEmpty())
+    {
+      return Collections.emptySet();
+    }
+    final Set<PersistentSearch> candidates = new LinkedHashSet<>();
+    collectCandidates(entry.getName(), entry, candidates);
+    return candidates;
+  }
+
+  /**
+   * Returns the persistent searches which may be interested in the
+   * modification of the provided entry.
+   *
+   * @param entry
+   *          The entry after it was modified.
+   * @param oldEntry
+   *          The entry before it was modified.
+   * @return the persistent searches which may be interested in the change
+   */
+  public Set<PersistentSearch> getCandidatesForModify(Entry entry, Entry oldEntry)
+  {
+    if (baseDNs.isEmpty())
+    {
+      return Collections.emptySet();
+    }
+    final Set<PersistentSearch> candidates = new LinkedHashSet<>();
+    collectCandidates(oldEntry.getName(), entry, candidates);
+    collectCandidates(oldEntry.getName(), oldEntry, candidates);
+    return candidates;
+  }
+
+  /**
+   * Returns the persistent searches which may be interested in the renaming
+   * of the provided entry.
+   *
+   * @param entry
+   *          The entry after it was renamed.
+   * @param oldDN
+   *          The DN of the entry before it was renamed.
+   * @return the persistent searches which may be interested in the change
+   */
+  public Set<PersistentSearch> getCandidatesForModifyDN(Entry entry, DN oldDN)
+  {
+    if (baseDNs.isEmpty())
+    {
+      return Collections.emptySet();
+    }
+    final Set<PersistentSearch> candidates = new LinkedHashSet<>();
+    collectCandidates(oldDN, entry, candidates);
+    collectCandidates(entry.getName(), entry, candidates);
+    return candidates;
+  }
+
+  /** Collects the candidates registered on the provided DN or any of its ancestors. */
+  private void collectCandidates(DN dn, Entry entry, Set<PersistentSearch> candidates)
+  {
+    for (DN baseDN = dn; baseDN != null; baseDN = baseDN.parent())
+    {
+      collectCandidates(baseDNs.get(baseDN), entry, candidates);
+    }
+    if (!dn.isRootDN())
+    {
+      collectCandidates(baseDNs.get(DN.rootDN()), entry, candidates);
+    }
+  }
+
+  private void collectCandidates(BaseDNIndex index, Entry entry, Set<PersistentSearch> candidates)
+  {
+    if (index != null)
+    {
+      index.collectCandidates(entry, candidates);
+    }
+  }
+
+  /**
+   * Returns the key indexing a persistent search with the provided filter.
+   * Equality components are preferred to presence components as they are more
+   * selective.
+   *
+   * @return the key, or {@code null} if the filter cannot be indexed
+   */
+  private static IndexKey getIndexKey(SearchFilter filter)
+  {
+    switch (filter.getFilterType())
+    {
+    case EQUALITY:
+    case PRESENT:
+      return getComponentIndexKey(filter);
+
+    case AND:
+      IndexKey presenceKey = null;
+      for (SearchFilter component : filter.getFilterComponents())
+      {
+        final IndexKey key = getComponentIndexKey(component);
+        if (key != null)
+        {
+          if (key.normalizedValue != null)
+          {
+            return key;
+          }
+          else if (presenceKey == null)
+          {
+            presenceKey = key;
+          }
+        }
+      }
+      return presenceKey;
+
+    default:
+      return null;
+    }
+  }
+
+  private static IndexKey getComponentIndexKey(SearchFilter component)
+  {
+    final AttributeType attributeType = component.getAttributeType();
+    final Set<String> options = component.getAttributeOptions();
+    if (attributeType == null || (options != null && !options.isEmpty()))
+    {
+      return null;
+    }
+    switch (component.getFilterType())
+    {
+    case EQUALITY:
+      final ByteString normalizedValue = normalize(attributeType, component.getAssertionValue());
+      return normalizedValue != null ? new IndexKey(attributeType, normalizedValue) : null;
+
+    case PRESENT:
+      // every entry has an objectClass: indexing on its presence is useless
+      return !attributeType.isObjectClass() ? new IndexKey(attributeType, null) : null;
+
+    default:
+      return null;
+    }
+  }
+
+  private static ByteString normalize(AttributeType attributeType, ByteString value)
+  {
+    final MatchingRule matchingRule = attributeType.getEqualityMatchingRule();
+    if (matchingRule == null || value == null)
+    {
+      return null;
+    }
+    try
+    {
+      return matchingRule.normalizeAttributeValue(value);
+    }
+    catch (DecodeException e)
+    {
+      logger.traceException(e);
+      return null;
+    }
+  }
+
+  private static <K> Set<PersistentSearch> getOrCreate(ConcurrentMap<K, Set<PersistentSearch>> map, K key)
+  {
+    Set<PersistentSearch> psearches = map.get(key);
+    if (psearches == null)
+    {
+      psearches = newConcurrentSet();
+      map.put(key, psearches);
+    }
+    return psearches;
+  }
+
+  private static <K> void removeAndCleanUp(ConcurrentMap<K, Set<PersistentSearch>> map, K key,
+      PersistentSearch psearch)
+  {
+    final Set<PersistentSearch> psearches = map.get(key);
+    if (psearches != null)
+    {
+      psearches.remove(psearch);
+      if (psearches.isEmpty())
+      {
+        map.remove(key);
+      }
+    }
+  }
+
+  private static Set<PersistentSearch> newConcurrentSet()
+  {
+    return Collections.newSetFromMap(new ConcurrentHashMap<PersistentSearch, Boolean>());
+  }
+}
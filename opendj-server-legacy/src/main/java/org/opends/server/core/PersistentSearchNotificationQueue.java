@@ -0,0 +1,205 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+
+/**
+ * The queue of the notifications waiting to be sent to the persistent
+ * searches of a client connection.
+ * <p>
+ * Notifications are sent by a shared pool of threads rather than by the
+ * threads processing the write operations, so that persistent search clients
+ * reading slowly do not slow down the write operations. The notifications of a
+ * client connection are sent in order, by one thread at a time.
+ * <p>
+ * The queue is bounded: once it is full, the write operations wait for room
+ * before queuing more notifications. This pushes back on writers instead of
+ * accumulating an unbounded amount of notifications for a slow client.
+ */
+public final class PersistentSearchNotificationQueue
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum number of notifications waiting to be sent to a client connection. */
+  private static final int MAX_PENDING_NOTIFICATIONS = 1000;
+
+  /** The maximum number of notifications sent in a row before letting other client connections proceed. */
+  private static final int MAX_NOTIFICATIONS_PER_RUN = 100;
+
+  /** The threads sending the notifications to all the client connections. */
+  private static final ThreadPoolExecutor SENDERS;
+  static
+  {
+    final int nbThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    SENDERS = new ThreadPoolExecutor(nbThreads, nbThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new DirectoryThread.Factory("Persistent Search Notifier"));
+    SENDERS.allowCoreThreadTimeOut(true);
+  }
+
+  /** Whether the current thread is sending notifications. */
+  private static final ThreadLocal<Boolean> IS_SENDER = new ThreadLocal<>();
+
+  private final BlockingQueue<Runnable> notifications = new LinkedBlockingQueue<>(MAX_PENDING_NOTIFICATIONS);
+
+  /** Whether a task sending the notifications has been submitted and has not completed yet. */
+  private final AtomicBoolean senderScheduled = new AtomicBoolean();
+
+  private final Runnable sender = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      IS_SENDER.set(Boolean.TRUE);
+      try
+      {
+        sendNotifications();
+      }
+      finally
+      {
+        IS_SENDER.remove();
+      }
+    }
+  };
+
+  /**
+   * Queues the provided notification, waiting for room if the queue is full.
+   *
+   * @param notification
+   *          The notification to send to the client connection.
+   */
+  void enqueue(Runnable notification)
+  {
+    if (IS_SENDER.get() != null)
+    {
+      // A change made while sending a notification (internal persistent searches
+      // performing writes) must not wait for this thread to make room
+      if (!notifications.offer(notification))
+      {
+        runQuietly(notification);
+        return;
+      }
+    }
+    else
+    {
+      putUninterruptibly(notification);
+    }
+    scheduleSender();
+  }
+
+  private void putUninterruptibly(Runnable notification)
+  {
+    boolean interrupted = false;
+    while (true)
+    {
+      try
+      {
+        notifications.put(notification);
+        break;
+      }
+      catch (InterruptedException e)
+      {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void scheduleSender()
+  {
+    if (senderScheduled.compareAndSet(false, true))
+    {
+      submitSender();
+    }
+  }
+
+  private void submitSender()
+  {
+    try
+    {
+      SENDERS.execute(sender);
+    }
+    catch (RejectedExecutionException e)
+    {
+      logger.traceException(e);
+      senderScheduled.set(false);
+    }
+  }
+
+  private void sendNotifications()
+  {
+    for (int i = 0; i < MAX_NOTIFICATIONS_PER_RUN; i++)
+    {
+      final Runnable notification = notifications.poll();
+      if (notification == null)
+      {
+        senderScheduled.set(false);
+        // a notification may have been queued before the flag was reset
+        if (!notifications.isEmpty())
+        {
+          scheduleSender();
+        }
+        return;
+      }
+      runQuietly(notification);
+    }
+    // let the notifications of other client connections be sent
+    submitSender();
+  }
+
+  private void runQuietly(Runnable notification)
+  {
+    try
+    {
+      notification.run();
+    }
+    catch (RuntimeException e)
+    {
+      logger.traceException(e);
+    }
+  }
+
+  /**
+   * Returns the number of notifications waiting to be sent.
+   *
+   * @return the number of notifications waiting to be sent
+   */
+  public int size()
+  {
+    return notifications.size();
+  }
+}
@@ -603,6 +603,27 @@ public final class SubentryPasswordPolicy extends PasswordPolicy
     return getDefaultPasswordPolicy().getStateUpdateFailurePolicy();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public long getStateUpdateWriteBehindInterval()
+  {
+    return getDefaultPasswordPolicy().getStateUpdateWriteBehindInterval();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getLastLoginTimeGranularity()
+  {
+    return getDefaultPasswordPolicy().getLastLoginTimeGranularity();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getVerifiedPasswordCacheDuration()
+  {
+    return getDefaultPasswordPolicy().getVerifiedPasswordCacheDuration();
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean isAuthPasswordSyntax()
@@ -0,0 +1,362 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.opends.server.config.ConfigConstants.*;
+import static org.opends.server.schema.SchemaConstants.*;
+import static org.opends.server.util.CollectionUtils.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.core.EntryChangeNotifier.EntryChangeListener;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.DN;
+import org.opends.server.types.Modification;
+import org.opends.server.types.operation.PluginOperation;
+
+/**
+ * Remembers for a short time the passwords successfully verified for the
+ * users whose password policy enables it, so that users binding many times
+ * with the same password do not pay the cost of the password storage scheme
+ * on each bind.
+ * <p>
+ * For each user, the cache only holds the last verified password, as a digest
+ * of the user DN and of the password, along with a digest of the stored
+ * password value it matched. A cached verification is therefore only used for
+ * the same user, presenting the same password, while the entry holds the same
+ * password value. The digests are keyed with a random secret generated when the
+ * cache is created and never written anywhere, so that they cannot be used to
+ * recover the passwords once the server has stopped.
+ * <p>
+ * The cached verifications of a user are discarded when the password or the
+ * account state of the user is modified, and when the user entry is deleted or
+ * renamed. The number of cached verifications is bounded: once the limit has
+ * been reached, new verifications are not cached until older ones expire.
+ */
+public final class VerifiedPasswordCache implements EntryChangeListener
+{
+  /** The algorithm used to compute the digests. */
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+  /** The maximum number of cached verifications. */
+  static final int MAX_ENTRIES = 100000;
+
+  /**
+   * The lower case names of the attributes holding the account state, whose
+   * modification discards the cached verifications of the user.
+   */
+  private static final Set<String> ACCOUNT_STATE_ATTRIBUTES = newHashSet(
+      toLowerCase(OP_ATTR_ACCOUNT_DISABLED),
+      toLowerCase(OP_ATTR_ACCOUNT_EXPIRATION_TIME),
+      toLowerCase(OP_ATTR_PWPOLICY_CHANGED_TIME),
+      toLowerCase(OP_ATTR_PWPOLICY_LOCKED_TIME),
+      toLowerCase(OP_ATTR_PWPOLICY_POLICY_DN),
+      toLowerCase(OP_ATTR_PWPOLICY_RESET_REQUIRED));
+
+  /** A password verified for a user. */
+  private static final class Verification
+  {
+    private final byte[] storedValueDigest;
+    private final byte[] passwordDigest;
+    private final long expirationTime;
+
+    private Verification(byte[] storedValueDigest, byte[] passwordDigest, long expirationTime)
+    {
+      this.storedValueDigest = storedValueDigest;
+      this.passwordDigest = passwordDigest;
+      this.expirationTime = expirationTime;
+    }
+
+    private boolean matches(byte[] storedValueDigest, byte[] passwordDigest)
+    {
+      return MessageDigest.isEqual(this.storedValueDigest, storedValueDigest)
+          && MessageDigest.isEqual(this.passwordDigest, passwordDigest);
+    }
+
+    private void clear()
+    {
+      Arrays.fill(storedValueDigest, (byte) 0);
+      Arrays.fill(passwordDigest, (byte) 0);
+    }
+  }
+
+  /** The last verified password of each user, keyed by user DN. */
+  private final ConcurrentMap<DN, Verification> verifications = new ConcurrentHashMap<>();
+  /** The digest function of each thread, keyed with a secret generated for this cache. */
+  private final ThreadLocal<Mac> macs;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /** Creates the verified password cache. */
+  VerifiedPasswordCache()
+  {
+    final byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    final SecretKeySpec secretKey = new SecretKeySpec(secret, MAC_ALGORITHM);
+    Arrays.fill(secret, (byte) 0);
+    macs = new ThreadLocal<Mac>()
+    {
+      @Override
+      protected Mac initialValue()
+      {
+        try
+        {
+          final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+          mac.init(secretKey);
+          return mac;
+        }
+        catch (GeneralSecurityException e)
+        {
+          // HmacSHA256 must be supported by all the Java platforms
+          throw new RuntimeException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Indicates whether the provided password has recently been verified for the
+   * provided user against the provided stored password value.
+   *
+   * @param userDN
+   *          The DN of the user.
+   * @param storedValue
+   *          The encoded password value stored in the user entry.
+   * @param password
+   *          The password presented by the user.
+   * @return {@code true} if the password has been verified, {@code false} if
+   *         it must be verified with the password storage scheme
+   */
+  boolean isVerified(DN userDN, ByteString storedValue, ByteString password)
+  {
+    final Verification verification = verifications.get(userDN);
+    if (verification != null)
+    {
+      if (verification.expirationTime < System.currentTimeMillis())
+      {
+        remove(userDN, verification);
+      }
+      else if (verification.matches(digest(storedValue, null), digest(password, userDN)))
+      {
+        hits.incrementAndGet();
+        return true;
+      }
+    }
+    misses.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Records that the provided password has been verified for the provided user
+   * against the provided stored password value.
+   *
+   * @param userDN
+   *          The DN of the user.
+   * @param storedValue
+   *          The encoded password value stored in the user entry.
+   * @param password
+   *          The password presented by the user.
+   * @param duration
+   *          The number of seconds during which the verification may be used.
+   */
+  void put(DN userDN, ByteString storedValue, ByteString password, long duration)
+  {
+    if (verifications.size() >= MAX_ENTRIES && !verifications.containsKey(userDN))
+    {
+      removeExpired();
+      if (verifications.size() >= MAX_ENTRIES)
+      {
+        return;
+      }
+    }
+    final Verification verification = new Verification(digest(storedValue, null), digest(password, userDN),
+        System.currentTimeMillis() + duration * 1000L);
+    final Verification previous = verifications.put(userDN, verification);
+    if (previous != null)
+    {
+      previous.clear();
+    }
+  }
+
+  /** Computes the digest of the provided value, for the provided user if not {@code null}. */
+  private byte[] digest(ByteString value, DN userDN)
+  {
+    final Mac mac = macs.get();
+    if (userDN != null)
+    {
+      mac.update(userDN.toNormalizedByteString().toByteArray());
+      mac.update((byte) 0);
+    }
+    final byte[] bytes = value.toByteArray();
+    mac.update(bytes);
+    Arrays.fill(bytes, (byte) 0);
+    // also resets the function for the next digest of this thread
+    return mac.doFinal();
+  }
+
+  private void remove(DN userDN, Verification verification)
+  {
+    if (verifications.remove(userDN, verification))
+    {
+      verification.clear();
+    }
+  }
+
+  private void removeExpired()
+  {
+    final long now = System.currentTimeMillis();
+    for (Map.Entry<DN, Verification> mapEntry : verifications.entrySet())
+    {
+      if (mapEntry.getValue().expirationTime < now)
+      {
+        remove(mapEntry.getKey(), mapEntry.getValue());
+      }
+    }
+  }
+
+  /** Discards all the cached verifications. */
+  void finalizeVerifiedPasswordCache()
+  {
+    for (Map.Entry<DN, Verification> mapEntry : verifications.entrySet())
+    {
+      remove(mapEntry.getKey(), mapEntry.getValue());
+    }
+  }
+
+  /**
+   * Returns the number of binds which have used a cached verification.
+   *
+   * @return The number of binds which have used a cached verification.
+   */
+  public long getHits()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of binds which have not found a cached verification,
+   * for the users whose password policy enables the cache.
+   *
+   * @return The number of binds which have not found a cached verification.
+   */
+  public long getMisses()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of cached verifications, including the expired ones
+   * which have not been removed yet.
+   *
+   * @return The number of cached verifications.
+   */
+  public int size()
+  {
+    return verifications.size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void entryModified(PluginOperation operation, DN entryDN, List<Modification> mods)
+  {
+    if (verifications.isEmpty() || !verifications.containsKey(entryDN))
+    {
+      return;
+    }
+    for (Modification mod : mods)
+    {
+      if (isPasswordOrAccountState(mod.getAttribute().getAttributeType()))
+      {
+        final Verification verification = verifications.get(entryDN);
+        if (verification != null)
+        {
+          remove(entryDN, verification);
+        }
+        return;
+      }
+    }
+  }
+
+  private boolean isPasswordOrAccountState(AttributeType type)
+  {
+    final String syntaxOID = type.getSyntax().getOID();
+    if (SYNTAX_USER_PASSWORD_OID.equals(syntaxOID) || SYNTAX_AUTH_PASSWORD_OID.equals(syntaxOID))
+    {
+      return true;
+    }
+    for (String name : ACCOUNT_STATE_ATTRIBUTES)
+    {
+      if (type.hasName(name))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Discards the cached verifications of a deleted or renamed entry, and of its
+   * subordinate entries when it may have some.
+   */
+  @Override
+  public void entryRemoved(DN entryDN, boolean subtree)
+  {
+    if (verifications.isEmpty())
+    {
+      return;
+    }
+    if (!subtree)
+    {
+      final Verification verification = verifications.remove(entryDN);
+      if (verification != null)
+      {
+        verification.clear();
+      }
+      return;
+    }
+    for (Map.Entry<DN, Verification> mapEntry : verifications.entrySet())
+    {
+      if (mapEntry.getKey().isDescendantOf(entryDN))
+      {
+        remove(mapEntry.getKey(), mapEntry.getValue());
+      }
+    }
+  }
+}
@@ -197,7 +197,7 @@ public class DefaultEntryCache
       // The first cache in the order which can take this entry
       // gets it.
       if (entryCache.filtersAllowCaching(entry)) {
-        entryCache.putEntry(entry.duplicate(false), backendID, entryID);
+        entryCache.putEntry(entry.duplicateForEntryCache(), backendID, entryID);
         break;
       }
     }
@@ -211,7 +211,7 @@ public class DefaultEntryCache
       // The first cache in the order which can take this entry
       // gets it.
       if (entryCache.filtersAllowCaching(entry)) {
-        return entryCache.putEntryIfAbsent(entry.duplicate(false),
+        return entryCache.putEntryIfAbsent(entry.duplicateForEntryCache(),
                 backendID, entryID);
       }
     }
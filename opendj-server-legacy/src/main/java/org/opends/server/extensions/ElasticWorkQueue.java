@@ -0,0 +1,534 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ConfigMessages.*;
+import static org.opends.messages.CoreMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.admin.server.ConfigurationChangeListener;
+import org.opends.server.admin.std.server.ElasticWorkQueueCfg;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.WorkQueue;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.monitors.ElasticWorkQueueMonitor;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.DisconnectReason;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.Operation;
+import org.opends.server.util.Platform;
+
+/**
+ * A work queue running each operation on its own thread, so that operations
+ * blocking for a long time, for example on a remote server or on slow storage,
+ * do not prevent the other operations from being processed.
+ * <p>
+ * Threads are pooled: they are created when operations are submitted, up to
+ * the maximum number of concurrent operations, and destroyed after having been
+ * idle for a while. Beyond the maximum number of concurrent operations,
+ * operations wait in a queue bounded by the maximum work queue capacity.
+ */
+public class ElasticWorkQueue
+       extends WorkQueue<ElasticWorkQueueCfg>
+       implements ConfigurationChangeListener<ElasticWorkQueueCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The time after which idle threads are destroyed. */
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  /** An operation submitted to the thread pool. */
+  private final class OperationTask implements Runnable
+  {
+    private final Operation operation;
+
+    private OperationTask(Operation operation)
+    {
+      this.operation = operation;
+    }
+
+    @Override
+    public void run()
+    {
+      // added before leaving the pending operations, so that the work queue never looks idle
+      runningOperations.add(operation);
+      operationStarted();
+      final DirectoryThread thread = (DirectoryThread) Thread.currentThread();
+      thread.startWork();
+      try
+      {
+        if (!shutdownRequested)
+        {
+          operation.run();
+          operation.operationCompleted();
+        }
+      }
+      catch (Throwable t)
+      {
+        handleUncaughtException(operation, t);
+      }
+      finally
+      {
+        runningOperations.remove(operation);
+        thread.stopWork();
+      }
+    }
+  }
+
+  /** The thread pool running the operations. */
+  private ThreadPoolExecutor executor;
+
+  /** The operations being processed. */
+  private final Set<Operation> runningOperations =
+      Collections.newSetFromMap(new ConcurrentHashMap<Operation, Boolean>());
+
+  /** The number of submitted operations which have not started yet. */
+  private final AtomicInteger pendingOperations = new AtomicInteger();
+
+  /** The lock used by submitting threads to wait until the queue is not full. */
+  private final ReentrantLock notFullLock = new ReentrantLock();
+  private final Condition notFull = notFullLock.newCondition();
+  /** The number of threads waiting until the queue is not full. */
+  private final AtomicInteger waitingSubmitters = new AtomicInteger();
+
+  /** The total number of operations submitted since startup. */
+  private final AtomicLong opsSubmitted = new AtomicLong();
+  /** The number of operations rejected because the queue was full. */
+  private final AtomicLong queueFullRejects = new AtomicLong();
+
+  /** Indicates whether the Directory Server is shutting down. */
+  private volatile boolean shutdownRequested;
+
+  /** The maximum number of operations processed concurrently. */
+  private volatile int maxConcurrentOperations;
+
+  /** The maximum number of pending operations. */
+  private volatile int maxCapacity;
+
+  /**
+   * Creates a new instance of this work queue. All initialization should be
+   * performed in the <CODE>initializeWorkQueue</CODE> method.
+   */
+  public ElasticWorkQueue()
+  {
+    // No implementation should be performed here.
+  }
+
+  @Override
+  public void initializeWorkQueue(ElasticWorkQueueCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    shutdownRequested = false;
+
+    // Register to be notified of any configuration changes.
+    configuration.addElasticChangeListener(this);
+
+    maxConcurrentOperations = computeMaxConcurrentOperations(configuration.getMaxConcurrentOperations());
+    maxCapacity = configuration.getMaxWorkQueueCapacity();
+
+    // The queue is not bounded by itself, so that the capacity can be changed on the fly
+    executor = new ThreadPoolExecutor(maxConcurrentOperations, maxConcurrentOperations,
+        THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new DirectoryThread.Factory("Worker Thread"));
+    executor.allowCoreThreadTimeOut(true);
+
+    // Create and register a monitor provider for the work queue.
+    try
+    {
+      ElasticWorkQueueMonitor monitor = new ElasticWorkQueueMonitor(this);
+      monitor.initializeMonitorProvider(null);
+      DirectoryServer.registerMonitorProvider(monitor);
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_CONFIG_WORK_QUEUE_CANNOT_CREATE_MONITOR, ElasticWorkQueueMonitor.class, e);
+    }
+  }
+
+  /**
+   * Returns the maximum number of concurrent operations, which is much larger
+   * than the default number of worker threads since threads are expected to
+   * block.
+   */
+  private int computeMaxConcurrentOperations(Integer configuredMaxConcurrentOperations)
+  {
+    if (configuredMaxConcurrentOperations != null)
+    {
+      return configuredMaxConcurrentOperations;
+    }
+    int value = Platform.computeNumberOfThreads(256, 32.0f);
+    logger.debug(INFO_ERGONOMIC_SIZING_OF_WORKER_THREAD_POOL, value);
+    return value;
+  }
+
+  @Override
+  public void finalizeWorkQueue(LocalizableMessage reason)
+  {
+    shutdownRequested = true;
+    // Do not interrupt the running operations, they are canceled below
+    executor.shutdown();
+
+    // Send responses to any operations in the pending queue to indicate that
+    // they won't be processed because the server is shutting down.
+    CancelRequest cancelRequest = new CancelRequest(true, reason);
+    final List<Runnable> pendingTasks = new ArrayList<>();
+    executor.getQueue().drainTo(pendingTasks);
+    for (Runnable task : pendingTasks)
+    {
+      final Operation o = ((OperationTask) task).operation;
+      try
+      {
+        // The operation has no chance of responding to the cancel
+        // request so avoid waiting for a cancel response.
+        if (o.getCancelResult() == null)
+        {
+          o.abort(cancelRequest);
+        }
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        logger.warn(WARN_QUEUE_UNABLE_TO_CANCEL, o, e);
+      }
+    }
+    signalNotFull();
+
+    // Cancel the operations in progress.
+    CancelRequest shutdownRequest = new CancelRequest(true, INFO_CANCELED_BY_SHUTDOWN.get());
+    for (Operation o : runningOperations)
+    {
+      try
+      {
+        o.cancel(shutdownRequest);
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        logger.warn(WARN_QUEUE_UNABLE_TO_CANCEL, o, e);
+      }
+    }
+  }
+
+  /**
+   * Indicates whether this work queue has received a request to shut down.
+   *
+   * @return <CODE>true</CODE> if the work queue has received a request to shut
+   *         down, or <CODE>false</CODE> if not.
+   */
+  public boolean shutdownRequested()
+  {
+    return shutdownRequested;
+  }
+
+  /**
+   * Submits an operation to be processed on its own thread, blocking while the
+   * queue of operations waiting for a thread is full.
+   *
+   * @param operation
+   *          The operation to be processed.
+   * @throws DirectoryException
+   *           If the provided operation is not accepted for some reason (e.g.,
+   *           if the server is shutting down).
+   */
+  @Override
+  public void submitOperation(Operation operation) throws DirectoryException
+  {
+    submitOperation(operation, true);
+  }
+
+  @Override
+  public boolean trySubmitOperation(Operation operation) throws DirectoryException
+  {
+    try
+    {
+      submitOperation(operation, false);
+      return true;
+    }
+    catch (DirectoryException e)
+    {
+      if (ResultCode.BUSY == e.getResultCode())
+      {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private void submitOperation(Operation operation, boolean blockEnqueuingWhenFull) throws DirectoryException
+  {
+    checkNotShutdown();
+
+    if (!tryReserveCapacity())
+    {
+      if (!blockEnqueuingWhenFull)
+      {
+        queueFullRejects.incrementAndGet();
+        throw new DirectoryException(ResultCode.BUSY, WARN_OP_REJECTED_BY_QUEUE_FULL.get(maxCapacity));
+      }
+      waitForCapacity();
+    }
+
+    try
+    {
+      executor.execute(new OperationTask(operation));
+      opsSubmitted.incrementAndGet();
+    }
+    catch (RejectedExecutionException e)
+    {
+      // the executor has been shut down concurrently
+      logger.traceException(e);
+      pendingOperations.decrementAndGet();
+      throw new DirectoryException(ResultCode.UNAVAILABLE, WARN_OP_REJECTED_BY_SHUTDOWN.get());
+    }
+  }
+
+  private void checkNotShutdown() throws DirectoryException
+  {
+    if (shutdownRequested)
+    {
+      throw new DirectoryException(ResultCode.UNAVAILABLE, WARN_OP_REJECTED_BY_SHUTDOWN.get());
+    }
+  }
+
+  private boolean tryReserveCapacity()
+  {
+    int current;
+    do
+    {
+      current = pendingOperations.get();
+      if (current >= maxCapacity)
+      {
+        return false;
+      }
+    }
+    while (!pendingOperations.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  /** Blocks until an operation can be added to the queue, the slow path. */
+  private void waitForCapacity() throws DirectoryException
+  {
+    waitingSubmitters.incrementAndGet();
+    notFullLock.lock();
+    try
+    {
+      while (!tryReserveCapacity())
+      {
+        notFull.await(1, TimeUnit.SECONDS);
+        checkNotShutdown();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // We cannot handle the interruption here. Reject the request and
+      // re-interrupt this thread.
+      Thread.currentThread().interrupt();
+      queueFullRejects.incrementAndGet();
+      throw new DirectoryException(ResultCode.BUSY, WARN_OP_REJECTED_BY_QUEUE_INTERRUPT.get());
+    }
+    finally
+    {
+      notFullLock.unlock();
+      waitingSubmitters.decrementAndGet();
+    }
+  }
+
+  private void operationStarted()
+  {
+    pendingOperations.decrementAndGet();
+    signalNotFull();
+  }
+
+  private void signalNotFull()
+  {
+    if (waitingSubmitters.get() > 0)
+    {
+      notFullLock.lock();
+      try
+      {
+        notFull.signalAll();
+      }
+      finally
+      {
+        notFullLock.unlock();
+      }
+    }
+  }
+
+  private void handleUncaughtException(Operation operation, Throwable t)
+  {
+    if (logger.isTraceEnabled())
+    {
+      logger.trace("Uncaught exception in worker thread while processing operation %s: %s", operation, t);
+      logger.traceException(t);
+    }
+
+    try
+    {
+      LocalizableMessage message = ERR_UNCAUGHT_WORKER_THREAD_EXCEPTION.get(
+          Thread.currentThread().getName(), operation, stackTraceToSingleLineString(t));
+      logger.error(message);
+
+      operation.setResultCode(DirectoryServer.getServerErrorResultCode());
+      operation.appendErrorMessage(message);
+      operation.getClientConnection().sendResponse(operation);
+      operation.disconnectClient(DisconnectReason.SERVER_ERROR, true, message);
+    }
+    catch (Throwable t2)
+    {
+      logger.traceException(t2);
+    }
+  }
+
+  /**
+   * Retrieves the total number of operations that have been successfully
+   * submitted to this work queue for processing since server startup.
+   *
+   * @return The total number of operations that have been successfully
+   *         submitted to this work queue since startup.
+   */
+  public long getOpsSubmitted()
+  {
+    return opsSubmitted.get();
+  }
+
+  /**
+   * Retrieves the total number of operations that have been rejected because
+   * the work queue was already at its maximum capacity.
+   *
+   * @return The total number of operations that have been rejected because
+   *         the work queue was full.
+   */
+  public long getOpsRejectedDueToQueueFull()
+  {
+    return queueFullRejects.get();
+  }
+
+  /**
+   * Retrieves the number of pending operations in the queue that have not yet
+   * been picked up for processing.
+   *
+   * @return The number of pending operations in the queue that have not yet
+   *         been picked up for processing.
+   */
+  public int size()
+  {
+    return pendingOperations.get();
+  }
+
+  /**
+   * Retrieves the number of operations being processed.
+   *
+   * @return The number of operations being processed.
+   */
+  public int getNumRunningOperations()
+  {
+    return runningOperations.size();
+  }
+
+  /**
+   * Retrieves the number of threads currently in the pool, either processing
+   * an operation or idle.
+   *
+   * @return The number of threads currently in the pool.
+   */
+  public int getPoolSize()
+  {
+    return executor.getPoolSize();
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(ElasticWorkQueueCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    return true;
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(ElasticWorkQueueCfg configuration)
+  {
+    final int newMaxConcurrentOperations =
+        computeMaxConcurrentOperations(configuration.getMaxConcurrentOperations());
+    synchronized (executor)
+    {
+      // the core pool size must never be greater than the maximum pool size
+      if (newMaxConcurrentOperations > executor.getMaximumPoolSize())
+      {
+        executor.setMaximumPoolSize(newMaxConcurrentOperations);
+        executor.setCorePoolSize(newMaxConcurrentOperations);
+      }
+      else
+      {
+        executor.setCorePoolSize(newMaxConcurrentOperations);
+        executor.setMaximumPoolSize(newMaxConcurrentOperations);
+      }
+      maxConcurrentOperations = newMaxConcurrentOperations;
+    }
+
+    maxCapacity = configuration.getMaxWorkQueueCapacity();
+    signalNotFull();
+    return new ConfigChangeResult();
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    return pendingOperations.get() == 0 && runningOperations.isEmpty();
+  }
+
+  /**
+   * Return the maximum number of threads used by this WorkQueue, which is the
+   * maximum number of concurrent operations.
+   *
+   * @return the maximum number of threads used by this WorkQueue
+   */
+  @Override
+  public int getNumWorkerThreads()
+  {
+    return maxConcurrentOperations;
+  }
+}
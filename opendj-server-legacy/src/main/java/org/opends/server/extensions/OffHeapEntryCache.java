@@ -0,0 +1,950 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.util.Utils;
+import org.opends.server.admin.server.ConfigurationChangeListener;
+import org.opends.server.admin.std.server.EntryCacheCfg;
+import org.opends.server.admin.std.server.OffHeapEntryCacheCfg;
+import org.opends.server.api.Backend;
+import org.opends.server.api.EntryCache;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.EntryEncodeConfig;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.util.ServerConstants;
+
+/**
+ * This class defines a Directory Server entry cache that stores the cached
+ * entries in their encoded form, in memory segments allocated outside of the
+ * Java heap, so that caching a large number of entries does not increase the
+ * garbage collection pauses.
+ * <BR><BR>
+ * Entries are encoded with the same encoding as the one used by the backends,
+ * with attribute descriptions and object class sets tokenized by the
+ * compressed schema, and are optionally compressed. They are decoded each time
+ * they are read from the cache. Only a small index mapping DNs and entry IDs
+ * to the location of the encoded entries is kept on the Java heap.
+ * <BR><BR>
+ * The memory segments are filled one after the other like a log. Removed
+ * entries are only removed from the index. When the cache is full, the
+ * oldest segment is emptied and reused, which evicts all the entries it
+ * contains. A set of filters may be used to define criteria for determining
+ * which entries are stored in the cache.
+ */
+public class OffHeapEntryCache
+       extends EntryCache<OffHeapEntryCacheCfg>
+       implements ConfigurationChangeListener<OffHeapEntryCacheCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The cache memory is split in at least this number of segments, so that emptying a segment evicts few entries. */
+  private static final int MIN_NB_SEGMENTS = 16;
+  /** The minimum size of a memory segment. */
+  private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+  /** The maximum size of a memory segment. */
+  private static final int MAX_SEGMENT_SIZE = 256 * 1024 * 1024;
+
+  /** Flag indicating the cached entry is compressed. */
+  private static final byte FLAG_COMPRESSED = 0x01;
+  /** Length of the header of each cached entry: the flags and the uncompressed length. */
+  private static final int HEADER_LENGTH = 5;
+
+  /** Entries are encoded with tokenized attribute descriptions and object class sets. */
+  private static final EntryEncodeConfig ENCODE_CONFIG = new EntryEncodeConfig(false, true, true);
+
+  /** The mapping between DNs and cached entries. */
+  private final ConcurrentMap<DN, Location> dnMap = new ConcurrentHashMap<>();
+  /** The mapping between entry backends/IDs and cached entries. */
+  private final ConcurrentMap<String, ConcurrentMap<Long, Location>> idMap = new ConcurrentHashMap<>();
+
+  /** The lock serializing the writes to the memory segments. */
+  private final Lock writeLock = new ReentrantLock();
+  /* The following fields are guarded by the write lock. */
+  private Segment[] segments = new Segment[0];
+  private int nbAllocatedSegments;
+  private int currentSegment;
+
+  /** The number of bytes used in the memory segments, including removed entries. */
+  private final AtomicLong usedMemory = new AtomicLong();
+  /** The number of entries evicted to make room for new entries. */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /** The maximum amount of memory allocated for the memory segments. */
+  private volatile long maxMemorySize;
+  /** The size of each memory segment. */
+  private volatile int segmentSize;
+  /** Whether to compress the entries before storing them. */
+  private volatile boolean entriesCompressed;
+
+  /** Currently registered configuration object. */
+  private OffHeapEntryCacheCfg registeredConfiguration;
+
+  /** Creates a new instance of this off-heap entry cache. */
+  public OffHeapEntryCache()
+  {
+    super();
+    // All initialization should be performed in the initializeEntryCache.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void initializeEntryCache(OffHeapEntryCacheCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    registeredConfiguration = configuration;
+    configuration.addOffHeapChangeListener(this);
+
+    // Read configuration and apply changes.
+    boolean applyChanges = true;
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler =
+      EntryCacheCommon.getConfigErrorHandler (
+          EntryCacheCommon.ConfigPhase.PHASE_INIT, null, errorMessages
+          );
+    if (!processEntryCacheConfig(configuration, applyChanges, errorHandler)) {
+      String buffer = Utils.joinAsString(".  ", errorMessages);
+      throw new ConfigException(ERR_OFFHEAPCACHE_CANNOT_INITIALIZE.get(buffer));
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void finalizeEntryCache()
+  {
+    registeredConfiguration.removeOffHeapChangeListener(this);
+
+    // Release all memory currently in use by this cache.
+    writeLock.lock();
+    try
+    {
+      clear();
+      segments = new Segment[0];
+      nbAllocatedSegments = 0;
+      maxMemorySize = 0;
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsEntry(DN entryDN)
+  {
+    return entryDN != null && dnMap.containsKey(entryDN);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Entry getEntry(DN entryDN)
+  {
+    return getEntry(dnMap.get(entryDN));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Entry getEntry(String backendID, long entryID)
+  {
+    final Map<Long, Location> backendMap = idMap.get(backendID);
+    return getEntry(backendMap != null ? backendMap.get(entryID) : null);
+  }
+
+  private Entry getEntry(Location location)
+  {
+    final Entry entry = location != null ? read(location) : null;
+    if (entry == null)
+    {
+      // Indicate cache miss.
+      cacheMisses.getAndIncrement();
+      return null;
+    }
+    // Indicate cache hit.
+    cacheHits.getAndIncrement();
+    return entry;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getEntryID(DN entryDN)
+  {
+    final Location location = dnMap.get(entryDN);
+    return location != null ? location.entryID : -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public DN getEntryDN(String backendID, long entryID)
+  {
+    final Map<Long, Location> backendMap = idMap.get(backendID);
+    if (backendMap != null)
+    {
+      final Location location = backendMap.get(entryID);
+      if (location != null)
+      {
+        return location.dn;
+      }
+    }
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void putEntry(Entry entry, String backendID, long entryID)
+  {
+    put(entry, backendID, entryID, false);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean putEntryIfAbsent(Entry entry, String backendID, long entryID)
+  {
+    if (dnMap.containsKey(entry.getName()))
+    {
+      return false;
+    }
+    put(entry, backendID, entryID, true);
+    // We'll always return true in this case, even if we didn't actually add the entry.
+    return true;
+  }
+
+  private void put(Entry entry, String backendID, long entryID, boolean onlyIfAbsent)
+  {
+    final byte[] encodedEntry;
+    try
+    {
+      encodedEntry = encode(entry);
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      return;
+    }
+
+    writeLock.lock();
+    try
+    {
+      if (onlyIfAbsent && dnMap.containsKey(entry.getName()))
+      {
+        return;
+      }
+      final Location location = write(encodedEntry, entry.getName(), backendID, entryID);
+      if (location == null)
+      {
+        // The entry is larger than a memory segment, or no memory could be allocated
+        removeEntry(entry.getName());
+        return;
+      }
+
+      final Location previous = dnMap.put(location.dn, location);
+      if (previous != null)
+      {
+        removeFromIDMap(previous);
+      }
+      final Location previousID = getBackendMap(backendID).put(entryID, location);
+      if (previousID != null && previousID != previous)
+      {
+        // The entry ID was reused for another DN
+        dnMap.remove(previousID.dn, previousID);
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  private ConcurrentMap<Long, Location> getBackendMap(String backendID)
+  {
+    ConcurrentMap<Long, Location> backendMap = idMap.get(backendID);
+    if (backendMap == null)
+    {
+      final ConcurrentMap<Long, Location> newBackendMap = new ConcurrentHashMap<>();
+      backendMap = idMap.putIfAbsent(backendID, newBackendMap);
+      if (backendMap == null)
+      {
+        backendMap = newBackendMap;
+      }
+    }
+    return backendMap;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void removeEntry(DN entryDN)
+  {
+    final Location location = dnMap.remove(entryDN);
+    if (location != null)
+    {
+      removeFromIDMap(location);
+    }
+  }
+
+  private void removeFromIDMap(Location location)
+  {
+    final Map<Long, Location> backendMap = idMap.get(location.backendID);
+    if (backendMap != null)
+    {
+      backendMap.remove(location.entryID, location);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clear()
+  {
+    writeLock.lock();
+    try
+    {
+      dnMap.clear();
+      idMap.clear();
+      for (int i = 0; i < nbAllocatedSegments; i++)
+      {
+        segments[i].recycle();
+      }
+      currentSegment = 0;
+      usedMemory.set(0);
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clearBackend(String backendID)
+  {
+    final Map<Long, Location> backendMap = idMap.remove(backendID);
+    if (backendMap != null)
+    {
+      for (Location location : backendMap.values())
+      {
+        dnMap.remove(location.dn, location);
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clearSubtree(DN baseDN)
+  {
+    // Determine which backend should be used for the provided base DN.  If
+    // there is none, then we don't need to do anything.
+    Backend<?> backend = DirectoryServer.getBackend(baseDN);
+    if (backend != null)
+    {
+      clearSubtree(baseDN, backend);
+    }
+  }
+
+  /**
+   * Clears all entries at or below the specified base DN that are associated
+   * with the given backend.
+   *
+   * @param  baseDN   The base DN below which all entries should be flushed.
+   * @param  backend  The backend for which to remove the appropriate entries.
+   */
+  private void clearSubtree(DN baseDN, Backend<?> backend)
+  {
+    final Map<Long, Location> backendMap = idMap.get(backend.getBackendID());
+    if (backendMap != null)
+    {
+      for (Location location : backendMap.values())
+      {
+        if (location.dn.isDescendantOf(baseDN) && dnMap.remove(location.dn, location))
+        {
+          backendMap.remove(location.entryID, location);
+        }
+      }
+    }
+
+    // See if the backend has any subordinate backends.  If so, then process
+    // them recursively.
+    for (Backend<?> subBackend : backend.getSubordinateBackends())
+    {
+      for (DN subBase : subBackend.getBaseDNs())
+      {
+        if (subBase.isDescendantOf(baseDN))
+        {
+          clearSubtree(baseDN, subBackend);
+          break;
+        }
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void handleLowMemory()
+  {
+    // The cached entries are not stored on the Java heap, only dropping the
+    // index would release heap memory.  Evict the oldest segment to release
+    // some of it without flushing the whole cache.
+    writeLock.lock();
+    try
+    {
+      if (nbAllocatedSegments > 0)
+      {
+        evict(segments[(currentSegment + 1) % nbAllocatedSegments]);
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Encodes the provided entry in the format stored in the memory segments.
+   *
+   * @param entry the entry to encode
+   * @return the encoded entry
+   * @throws DirectoryException if the entry cannot be encoded
+   */
+  private byte[] encode(Entry entry) throws DirectoryException
+  {
+    final ByteStringBuilder buffer = new ByteStringBuilder();
+    entry.encode(buffer, ENCODE_CONFIG);
+
+    if (entriesCompressed)
+    {
+      final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try
+      {
+        deflater.setInput(buffer.getBackingArray(), 0, buffer.length());
+        deflater.finish();
+        final byte[] compressed = new byte[HEADER_LENGTH + buffer.length()];
+        final int compressedLength =
+            deflater.deflate(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH);
+        if (deflater.finished())
+        {
+          writeHeader(compressed, FLAG_COMPRESSED, buffer.length());
+          final byte[] encoded = new byte[HEADER_LENGTH + compressedLength];
+          System.arraycopy(compressed, 0, encoded, 0, encoded.length);
+          return encoded;
+        }
+        // Compression did not reduce the size, store the entry as is
+      }
+      finally
+      {
+        deflater.end();
+      }
+    }
+
+    final byte[] encoded = new byte[HEADER_LENGTH + buffer.length()];
+    writeHeader(encoded, (byte) 0, buffer.length());
+    System.arraycopy(buffer.getBackingArray(), 0, encoded, HEADER_LENGTH, buffer.length());
+    return encoded;
+  }
+
+  private static void writeHeader(byte[] encoded, byte flags, int uncompressedLength)
+  {
+    encoded[0] = flags;
+    encoded[1] = (byte) (uncompressedLength >>> 24);
+    encoded[2] = (byte) (uncompressedLength >>> 16);
+    encoded[3] = (byte) (uncompressedLength >>> 8);
+    encoded[4] = (byte) uncompressedLength;
+  }
+
+  /**
+   * Decodes an entry stored in the memory segments.
+   *
+   * @param encoded the encoded entry
+   * @return the decoded entry
+   * @throws DirectoryException if the entry cannot be decoded
+   * @throws DataFormatException if the entry cannot be decompressed
+   */
+  private static Entry decode(byte[] encoded) throws DirectoryException, DataFormatException
+  {
+    final int uncompressedLength = ((encoded[1] & 0xff) << 24) | ((encoded[2] & 0xff) << 16)
+                                 | ((encoded[3] & 0xff) << 8) | (encoded[4] & 0xff);
+    final ByteString entryBytes;
+    if ((encoded[0] & FLAG_COMPRESSED) != 0)
+    {
+      final Inflater inflater = new Inflater();
+      try
+      {
+        inflater.setInput(encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH);
+        final byte[] uncompressed = new byte[uncompressedLength];
+        inflater.inflate(uncompressed);
+        entryBytes = ByteString.wrap(uncompressed);
+      }
+      finally
+      {
+        inflater.end();
+      }
+    }
+    else
+    {
+      entryBytes = ByteString.wrap(encoded, HEADER_LENGTH, uncompressedLength);
+    }
+    return Entry.decode(entryBytes.asReader(), DirectoryServer.getDefaultCompressedSchema());
+  }
+
+  /**
+   * Reads and decodes the entry stored at the provided location.
+   *
+   * @return the decoded entry, or null if the entry has been evicted meanwhile
+   */
+  private Entry read(Location location)
+  {
+    final byte[] encoded = location.segment.read(location);
+    if (encoded == null)
+    {
+      return null;
+    }
+    try
+    {
+      return decode(encoded);
+    }
+    catch (DirectoryException | DataFormatException e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_OFFHEAPCACHE_CANNOT_DECODE_ENTRY, location.dn, stackTraceToSingleLineString(e));
+      removeEntry(location.dn);
+      return null;
+    }
+  }
+
+  /**
+   * Writes an encoded entry in the memory segments, evicting the oldest
+   * segment if needed. The write lock must be held.
+   *
+   * @return the location of the written entry, or null if the entry cannot be stored
+   */
+  private Location write(byte[] encodedEntry, DN dn, String backendID, long entryID)
+  {
+    if (encodedEntry.length > segmentSize)
+    {
+      return null;
+    }
+    Segment segment = nbAllocatedSegments > 0 ? segments[currentSegment] : null;
+    if (segment == null || segment.remaining() < encodedEntry.length)
+    {
+      segment = nextSegment();
+      if (segment == null)
+      {
+        return null;
+      }
+    }
+    final Location location = segment.write(encodedEntry, dn, backendID, entryID);
+    usedMemory.addAndGet(encodedEntry.length);
+    return location;
+  }
+
+  /**
+   * Moves to the next memory segment, allocating it or evicting its entries.
+   *
+   * @return the next memory segment, or null if no memory segment could be allocated
+   */
+  private Segment nextSegment()
+  {
+    final int next = nbAllocatedSegments > 0 ? currentSegment + 1 : 0;
+    if (next == nbAllocatedSegments && next < segments.length)
+    {
+      try
+      {
+        segments[next] = new Segment(ByteBuffer.allocateDirect(segmentSize));
+        nbAllocatedSegments++;
+        currentSegment = next;
+        return segments[next];
+      }
+      catch (OutOfMemoryError e)
+      {
+        // Direct memory is exhausted, stick with the segments allocated so far
+        logger.traceException(e);
+        logger.warn(WARN_OFFHEAPCACHE_CANNOT_ALLOCATE_SEGMENT, segmentSize, stackTraceToSingleLineString(e),
+            (long) nbAllocatedSegments * segmentSize);
+        final Segment[] allocatedSegments = new Segment[nbAllocatedSegments];
+        System.arraycopy(segments, 0, allocatedSegments, 0, nbAllocatedSegments);
+        segments = allocatedSegments;
+      }
+    }
+    if (nbAllocatedSegments == 0)
+    {
+      return null;
+    }
+
+    currentSegment = next % nbAllocatedSegments;
+    final Segment segment = segments[currentSegment];
+    evict(segment);
+    return segment;
+  }
+
+  /** Evicts all the entries of the provided segment, and makes it available for new entries. */
+  private void evict(Segment segment)
+  {
+    for (Location location : segment.locations)
+    {
+      if (dnMap.remove(location.dn, location))
+      {
+        removeFromIDMap(location);
+        evictions.incrementAndGet();
+      }
+    }
+    usedMemory.addAndGet(-segment.writeOffset);
+    segment.recycle();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isConfigurationAcceptable(EntryCacheCfg configuration,
+                                           List<LocalizableMessage> unacceptableReasons)
+  {
+    OffHeapEntryCacheCfg config = (OffHeapEntryCacheCfg) configuration;
+    return isConfigurationChangeAcceptable(config, unacceptableReasons);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isConfigurationChangeAcceptable(
+      OffHeapEntryCacheCfg configuration,
+      List<LocalizableMessage> unacceptableReasons
+      )
+  {
+    boolean applyChanges = false;
+    EntryCacheCommon.ConfigErrorHandler errorHandler =
+      EntryCacheCommon.getConfigErrorHandler (
+          EntryCacheCommon.ConfigPhase.PHASE_ACCEPTABLE,
+          unacceptableReasons,
+          null
+        );
+    processEntryCacheConfig (configuration, applyChanges, errorHandler);
+
+    return errorHandler.getIsAcceptable();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ConfigChangeResult applyConfigurationChange(OffHeapEntryCacheCfg configuration)
+  {
+    boolean applyChanges = true;
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler =
+      EntryCacheCommon.getConfigErrorHandler (
+          EntryCacheCommon.ConfigPhase.PHASE_APPLY, null, errorMessages
+          );
+
+    // Do not apply changes unless this cache is enabled.
+    if (configuration.isEnabled()) {
+      processEntryCacheConfig (configuration, applyChanges, errorHandler);
+    }
+
+    final ConfigChangeResult changeResult = new ConfigChangeResult();
+    changeResult.setResultCode(errorHandler.getResultCode());
+    changeResult.setAdminActionRequired(errorHandler.getIsAdminActionRequired());
+    changeResult.getMessages().addAll(errorHandler.getErrorMessages());
+    return changeResult;
+  }
+
+  /**
+   * Parses the provided configuration and configure the entry cache.
+   *
+   * @param configuration  The new configuration containing the changes.
+   * @param applyChanges   If true then take into account the new configuration.
+   * @param errorHandler   An handler used to report errors.
+   *
+   * @return  <CODE>true</CODE> if configuration is acceptable,
+   *          or <CODE>false</CODE> otherwise.
+   */
+  private boolean processEntryCacheConfig(
+      OffHeapEntryCacheCfg                configuration,
+      boolean                             applyChanges,
+      EntryCacheCommon.ConfigErrorHandler errorHandler
+      )
+  {
+    // Read configuration.
+    DN newConfigEntryDN = configuration.dn();
+    long newMaxMemorySize = configuration.getMaxMemorySize();
+    boolean newEntriesCompressed = configuration.isEntriesCompressed();
+
+    // Get include and exclude filters.
+    Set<SearchFilter> newIncludeFilters = EntryCacheCommon.getFilters (
+        configuration.getIncludeFilter(),
+        ERR_CACHE_INVALID_INCLUDE_FILTER,
+        errorHandler,
+        newConfigEntryDN
+        );
+    Set<SearchFilter> newExcludeFilters = EntryCacheCommon.getFilters (
+        configuration.getExcludeFilter(),
+        ERR_CACHE_INVALID_EXCLUDE_FILTER,
+        errorHandler,
+        newConfigEntryDN
+        );
+
+    if (applyChanges && errorHandler.getIsAcceptable())
+    {
+      if (newMaxMemorySize != maxMemorySize)
+      {
+        setMaxMemorySize(newMaxMemorySize);
+      }
+      entriesCompressed = newEntriesCompressed;
+      setIncludeFilters(newIncludeFilters);
+      setExcludeFilters(newExcludeFilters);
+      registeredConfiguration = configuration;
+    }
+
+    return errorHandler.getIsAcceptable();
+  }
+
+  /** Resizes the memory segments, which empties the cache. */
+  private void setMaxMemorySize(long newMaxMemorySize)
+  {
+    final long size = Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, newMaxMemorySize / MIN_NB_SEGMENTS));
+    writeLock.lock();
+    try
+    {
+      clear();
+      maxMemorySize = newMaxMemorySize;
+      segmentSize = (int) size;
+      segments = new Segment[(int) Math.max(1, newMaxMemorySize / size)];
+      nbAllocatedSegments = 0;
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Attribute> getMonitorData()
+  {
+    try {
+      return EntryCacheCommon.getGenericMonitorData(
+        Long.valueOf(cacheHits.longValue()),
+        Long.valueOf(cacheMisses.longValue()),
+        Long.valueOf(usedMemory.get()),
+        Long.valueOf(maxMemorySize),
+        Long.valueOf(dnMap.size()),
+        null
+        );
+    } catch (Exception e) {
+      logger.traceException(e);
+      return Collections.emptyList();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long getCacheCount()
+  {
+    return Long.valueOf(dnMap.size());
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for new entries.
+   *
+   * @return the number of entries evicted to make room for new entries
+   */
+  long getEvictions()
+  {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of bytes used in the memory segments.
+   *
+   * @return the number of bytes used in the memory segments
+   */
+  long getUsedMemory()
+  {
+    return usedMemory.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toVerboseString()
+  {
+    StringBuilder sb = new StringBuilder();
+
+    // Check dnMap first.
+    for (Location location : dnMap.values()) {
+      sb.append(location.dn);
+      sb.append(":");
+      sb.append(location.entryID);
+      sb.append(":");
+      sb.append(location.backendID);
+      sb.append(ServerConstants.EOL);
+    }
+
+    // See if there is anything on idMap that is not reflected on
+    // dnMap in case maps went out of sync.
+    for (Map.Entry<String, ConcurrentMap<Long, Location>> backendCache : idMap.entrySet()) {
+      final String backendID = backendCache.getKey();
+      for (Map.Entry<Long, Location> entry : backendCache.getValue().entrySet()) {
+        final Location location = entry.getValue();
+        if (dnMap.get(location.dn) != location) {
+          sb.append(location.dn);
+          sb.append(":");
+          sb.append(entry.getKey());
+          sb.append(":");
+          sb.append(backendID);
+          sb.append(ServerConstants.EOL);
+        }
+      }
+    }
+
+    String verboseString = sb.toString();
+    return verboseString.length() > 0 ? verboseString : null;
+  }
+
+  /** The location of an encoded entry in the memory segments. */
+  private static final class Location
+  {
+    private final DN dn;
+    private final String backendID;
+    private final long entryID;
+    private final Segment segment;
+    private final int generation;
+    private final int offset;
+    private final int length;
+
+    Location(DN dn, String backendID, long entryID, Segment segment, int generation, int offset, int length)
+    {
+      this.dn = dn;
+      this.backendID = backendID;
+      this.entryID = entryID;
+      this.segment = segment;
+      this.generation = generation;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A memory segment allocated outside of the Java heap, where the encoded
+   * entries are appended. Its generation is incremented each time it is
+   * recycled, so that readers can detect that the entry they look for has been
+   * overwritten.
+   */
+  private static final class Segment
+  {
+    private final ByteBuffer buffer;
+    /** Prevents a segment being recycled while an entry is read from it. */
+    private final ReadWriteLock recycleLock = new ReentrantReadWriteLock();
+    /** The locations of the entries written in this segment since it was last recycled. */
+    private final List<Location> locations = new ArrayList<>();
+    private volatile int generation;
+    /** Guarded by the cache write lock. */
+    private int writeOffset;
+
+    Segment(ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    int remaining()
+    {
+      return buffer.capacity() - writeOffset;
+    }
+
+    /** Writes an encoded entry at the end of this segment, the cache write lock must be held. */
+    Location write(byte[] encodedEntry, DN dn, String backendID, long entryID)
+    {
+      final ByteBuffer dup = buffer.duplicate();
+      dup.position(writeOffset);
+      dup.put(encodedEntry);
+      final Location location =
+          new Location(dn, backendID, entryID, this, generation, writeOffset, encodedEntry.length);
+      locations.add(location);
+      writeOffset += encodedEntry.length;
+      return location;
+    }
+
+    /** Returns the encoded entry at the provided location, or null if this segment has been recycled since. */
+    byte[] read(Location location)
+    {
+      final Lock lock = recycleLock.readLock();
+      lock.lock();
+      try
+      {
+        if (generation != location.generation)
+        {
+          return null;
+        }
+        final byte[] encodedEntry = new byte[location.length];
+        final ByteBuffer dup = buffer.duplicate();
+        dup.position(location.offset);
+        dup.get(encodedEntry);
+        return encodedEntry;
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /** Makes this segment available for new entries, the cache write lock must be held. */
+    void recycle()
+    {
+      final Lock lock = recycleLock.writeLock();
+      lock.lock();
+      try
+      {
+        generation++;
+        writeOffset = 0;
+        locations.clear();
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+  }
+}
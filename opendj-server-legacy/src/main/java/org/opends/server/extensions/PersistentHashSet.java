@@ -0,0 +1,544 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable hash set, whose {@link #plus(Object)} and {@link #minus(Object)}
+ * methods return a new set sharing most of its structure with this set.
+ * <p>
+ * The set is a hash array mapped trie: each node holds up to 32 slots indexed
+ * by 5 bits of the element hash, and only allocates the slots in use, so that
+ * adding or removing an element only copies the O(log n) nodes on its path.
+ * Sets may therefore be read and iterated without locking while new versions
+ * are published, each iteration seeing the set it started from.
+ * <p>
+ * Elements are referenced directly from the nodes, without the entry objects
+ * of {@link java.util.HashSet}, which makes the set smaller for large numbers
+ * of elements. Elements must not be {@code null}, and the iteration order is
+ * not specified.
+ *
+ * @param <E>
+ *          the type of the elements
+ */
+final class PersistentHashSet<E> extends AbstractSet<E>
+{
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  /** Nodes deeper than this have consumed all the bits of the hash. */
+  private static final int MAX_SHIFT = 30;
+
+  private static final PersistentHashSet<Object> EMPTY = new PersistentHashSet<>(BitmapNode.EMPTY, 0);
+
+  private final Node root;
+  private final int size;
+
+  private PersistentHashSet(Node root, int size)
+  {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty set.
+   *
+   * @param <E>
+   *          the type of the elements
+   * @return the empty set
+   */
+  @SuppressWarnings("unchecked")
+  static <E> PersistentHashSet<E> empty()
+  {
+    return (PersistentHashSet<E>) EMPTY;
+  }
+
+  /**
+   * Returns a set containing the provided elements.
+   *
+   * @param <E>
+   *          the type of the elements
+   * @param elements
+   *          the elements of the set, which must not be {@code null}
+   * @return a set containing the provided elements
+   */
+  static <E> PersistentHashSet<E> copyOf(Collection<? extends E> elements)
+  {
+    final Object[] array = elements.toArray();
+    if (array.length == 0)
+    {
+      return empty();
+    }
+    final int[] hashes = new int[array.length];
+    for (int i = 0; i < array.length; i++)
+    {
+      hashes[i] = hash(array[i]);
+    }
+    // build the nodes bottom up rather than copying paths for each element
+    final int[] size = new int[1];
+    final Object root = build(array, hashes, 0, array.length, 0, size);
+    if (root instanceof Node)
+    {
+      return new PersistentHashSet<>((Node) root, size[0]);
+    }
+    return new PersistentHashSet<>(new BitmapNode(BitmapNode.bit(hashes[0], 0), new Object[] { root }), 1);
+  }
+
+  /**
+   * Builds the node holding the provided elements, which all have the same
+   * lowest hash bits up to the provided shift.
+   *
+   * @return the node, or the element if there is a single distinct element
+   */
+  private static Object build(Object[] elements, int[] hashes, int from, int to, int shift, int[] size)
+  {
+    if (to - from == 1)
+    {
+      size[0]++;
+      return elements[from];
+    }
+    else if (shift > MAX_SHIFT)
+    {
+      final CollisionNode collisions = new CollisionNode(new Object[0]);
+      Node node = collisions;
+      for (int i = from; i < to; i++)
+      {
+        node = node.plus(hashes[i], elements[i], shift);
+      }
+      size[0] += node.slots.length;
+      return node.slots.length == 1 ? node.slots[0] : node;
+    }
+
+    // sort the elements by their hash bits at this level
+    final int[] starts = new int[MASK + 2];
+    for (int i = from; i < to; i++)
+    {
+      starts[((hashes[i] >>> shift) & MASK) + 1]++;
+    }
+    for (int i = 1; i < starts.length; i++)
+    {
+      starts[i] += starts[i - 1];
+    }
+    final Object[] sortedElements = new Object[to - from];
+    final int[] sortedHashes = new int[to - from];
+    final int[] positions = Arrays.copyOf(starts, MASK + 1);
+    for (int i = from; i < to; i++)
+    {
+      final int position = positions[(hashes[i] >>> shift) & MASK]++;
+      sortedElements[position] = elements[i];
+      sortedHashes[position] = hashes[i];
+    }
+    System.arraycopy(sortedElements, 0, elements, from, sortedElements.length);
+    System.arraycopy(sortedHashes, 0, hashes, from, sortedHashes.length);
+
+    int bitmap = 0;
+    final Object[] slots = new Object[Integer.bitCount(nonEmptyBuckets(starts))];
+    int slotIndex = 0;
+    for (int bucket = 0; bucket <= MASK; bucket++)
+    {
+      if (starts[bucket + 1] > starts[bucket])
+      {
+        Object child = build(elements, hashes, from + starts[bucket], from + starts[bucket + 1], shift + BITS, size);
+        if (child instanceof Node && ((Node) child).singleElement() != null)
+        {
+          child = ((Node) child).singleElement();
+        }
+        bitmap |= 1 << bucket;
+        slots[slotIndex++] = child;
+      }
+    }
+    return new BitmapNode(bitmap, slots);
+  }
+
+  private static int nonEmptyBuckets(int[] starts)
+  {
+    int bitmap = 0;
+    for (int bucket = 0; bucket <= MASK; bucket++)
+    {
+      if (starts[bucket + 1] > starts[bucket])
+      {
+        bitmap |= 1 << bucket;
+      }
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns a set containing the elements of this set and the provided
+   * element.
+   *
+   * @param element
+   *          the element to add, which must not be {@code null}
+   * @return this set if it already contains the element, or a new set
+   */
+  PersistentHashSet<E> plus(E element)
+  {
+    final Node newRoot = root.plus(hash(element), element, 0);
+    return newRoot != root ? new PersistentHashSet<E>(newRoot, size + 1) : this;
+  }
+
+  /**
+   * Returns a set containing the elements of this set except the provided
+   * element.
+   *
+   * @param element
+   *          the element to remove
+   * @return this set if it does not contain the element, or a new set
+   */
+  PersistentHashSet<E> minus(Object element)
+  {
+    if (element == null)
+    {
+      return this;
+    }
+    final Node newRoot = root.minus(hash(element), element, 0);
+    if (newRoot == root)
+    {
+      return this;
+    }
+    return newRoot != null ? new PersistentHashSet<E>(newRoot, size - 1) : PersistentHashSet.<E> empty();
+  }
+
+  @Override
+  public boolean contains(Object element)
+  {
+    return element != null && root.contains(hash(element), element, 0);
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public Iterator<E> iterator()
+  {
+    return new NodeIterator<>(root);
+  }
+
+  /** Spreads the bits of the hash code, since each level only uses 5 bits. */
+  private static int hash(Object element)
+  {
+    final int h = element.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /** A node of the trie. */
+  private abstract static class Node
+  {
+    /** The elements and child nodes of this node. */
+    final Object[] slots;
+
+    Node(Object[] slots)
+    {
+      this.slots = slots;
+    }
+
+    abstract boolean contains(int hash, Object element, int shift);
+
+    /** Returns this node if it already contains the element. */
+    abstract Node plus(int hash, Object element, int shift);
+
+    /**
+     * Returns this node if it does not contain the element, or {@code null}
+     * if the element was its only element.
+     */
+    abstract Node minus(int hash, Object element, int shift);
+
+    /** Returns the element of this node if it is its only content. */
+    final Object singleElement()
+    {
+      return slots.length == 1 && !(slots[0] instanceof Node) ? slots[0] : null;
+    }
+  }
+
+  /** A node holding the elements and nodes whose hash bits at its level are set in its bitmap. */
+  private static final class BitmapNode extends Node
+  {
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+
+    BitmapNode(int bitmap, Object[] slots)
+    {
+      super(slots);
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    boolean contains(int hash, Object element, int shift)
+    {
+      final int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0)
+      {
+        return false;
+      }
+      final Object slot = slots[index(bit)];
+      return slot instanceof Node ? ((Node) slot).contains(hash, element, shift + BITS) : slot.equals(element);
+    }
+
+    @Override
+    Node plus(int hash, Object element, int shift)
+    {
+      final int bit = bit(hash, shift);
+      final int index = index(bit);
+      if ((bitmap & bit) == 0)
+      {
+        final Object[] newSlots = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, newSlots, 0, index);
+        newSlots[index] = element;
+        System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+        return new BitmapNode(bitmap | bit, newSlots);
+      }
+
+      final Object slot = slots[index];
+      final Object newSlot;
+      if (slot instanceof Node)
+      {
+        newSlot = ((Node) slot).plus(hash, element, shift + BITS);
+      }
+      else if (slot.equals(element))
+      {
+        return this;
+      }
+      else
+      {
+        newSlot = newNode(slot, hash(slot), element, hash, shift + BITS);
+      }
+      return newSlot != slot ? withSlot(index, newSlot) : this;
+    }
+
+    @Override
+    Node minus(int hash, Object element, int shift)
+    {
+      final int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0)
+      {
+        return this;
+      }
+      final int index = index(bit);
+      final Object slot = slots[index];
+      if (slot instanceof Node)
+      {
+        final Node child = (Node) slot;
+        final Node newChild = child.minus(hash, element, shift + BITS);
+        if (newChild == child)
+        {
+          return this;
+        }
+        else if (newChild == null)
+        {
+          return withoutSlot(bit, index);
+        }
+        // keep the trie canonical, with nodes holding at least two elements
+        final Object singleElement = newChild.singleElement();
+        return withSlot(index, singleElement != null ? singleElement : newChild);
+      }
+      else if (slot.equals(element))
+      {
+        return withoutSlot(bit, index);
+      }
+      return this;
+    }
+
+    private Node withSlot(int index, Object slot)
+    {
+      final Object[] newSlots = slots.clone();
+      newSlots[index] = slot;
+      return new BitmapNode(bitmap, newSlots);
+    }
+
+    private Node withoutSlot(int bit, int index)
+    {
+      if (slots.length == 1)
+      {
+        return null;
+      }
+      final Object[] newSlots = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, newSlots, 0, index);
+      System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+      return new BitmapNode(bitmap & ~bit, newSlots);
+    }
+
+    private int index(int bit)
+    {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    static int bit(int hash, int shift)
+    {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /** Returns a node holding two different elements. */
+    private static Node newNode(Object element1, int hash1, Object element2, int hash2, int shift)
+    {
+      if (shift > MAX_SHIFT)
+      {
+        return new CollisionNode(new Object[] { element1, element2 });
+      }
+      final int bit1 = bit(hash1, shift);
+      final int bit2 = bit(hash2, shift);
+      if (bit1 == bit2)
+      {
+        return new BitmapNode(bit1, new Object[] { newNode(element1, hash1, element2, hash2, shift + BITS) });
+      }
+      // slots are ordered by hash bits, bits are not since the highest is the sign bit
+      final boolean ordered = ((hash1 >>> shift) & MASK) < ((hash2 >>> shift) & MASK);
+      final Object[] slots = ordered ? new Object[] { element1, element2 } : new Object[] { element2, element1 };
+      return new BitmapNode(bit1 | bit2, slots);
+    }
+  }
+
+  /** A node holding elements whose hashes are all equal. */
+  private static final class CollisionNode extends Node
+  {
+    CollisionNode(Object[] slots)
+    {
+      super(slots);
+    }
+
+    @Override
+    boolean contains(int hash, Object element, int shift)
+    {
+      return indexOf(element) >= 0;
+    }
+
+    @Override
+    Node plus(int hash, Object element, int shift)
+    {
+      if (indexOf(element) >= 0)
+      {
+        return this;
+      }
+      final Object[] newSlots = Arrays.copyOf(slots, slots.length + 1);
+      newSlots[slots.length] = element;
+      return new CollisionNode(newSlots);
+    }
+
+    @Override
+    Node minus(int hash, Object element, int shift)
+    {
+      final int index = indexOf(element);
+      if (index < 0)
+      {
+        return this;
+      }
+      else if (slots.length == 1)
+      {
+        return null;
+      }
+      final Object[] newSlots = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, newSlots, 0, index);
+      System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+      return new CollisionNode(newSlots);
+    }
+
+    private int indexOf(Object element)
+    {
+      for (int i = 0; i < slots.length; i++)
+      {
+        if (slots[i].equals(element))
+        {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /** Iterates depth first over the elements of a trie. */
+  private static final class NodeIterator<E> implements Iterator<E>
+  {
+    /** The nodes being iterated, from the root, and the next slot in each. */
+    private final Node[] nodes = new Node[MAX_SHIFT / BITS + 2];
+    private final int[] indexes = new int[nodes.length];
+    private int depth;
+    private Object next;
+
+    NodeIterator(Node root)
+    {
+      nodes[0] = root;
+      advance();
+    }
+
+    private void advance()
+    {
+      next = null;
+      while (depth >= 0)
+      {
+        final Node node = nodes[depth];
+        if (indexes[depth] == node.slots.length)
+        {
+          depth--;
+          continue;
+        }
+        final Object slot = node.slots[indexes[depth]++];
+        if (slot instanceof Node)
+        {
+          depth++;
+          nodes[depth] = (Node) slot;
+          indexes[depth] = 0;
+        }
+        else
+        {
+          next = slot;
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next()
+    {
+      if (next == null)
+      {
+        throw new NoSuchElementException();
+      }
+      final Object result = next;
+      advance();
+      return (E) result;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -26,6 +26,7 @@
  */
 package org.opends.server.extensions;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -38,6 +39,7 @@ import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.adapter.server3x.Converters;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.DN.CompactDn;
 import org.forgerock.opendj.ldap.ModificationType;
 import org.forgerock.opendj.ldap.ResultCode;
@@ -95,8 +97,11 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   /** The DN of the entry that holds the definition for this group. */
   private DN groupEntryDN;
 
-  /** The set of the DNs of the members for this group. */
-  private LinkedHashSet<CompactDn> memberDNs;
+  /**
+   * The set of the DNs of the members for this group, replaced by a new
+   * version sharing most of its structure when members are added or removed.
+   */
+  private volatile PersistentHashSet<CompactDn> memberDNs;
 
   /** The list of nested group DNs for this group. */
   private LinkedList<DN> nestedGroups = new LinkedList<>();
@@ -126,7 +131,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
    *                              group.
    */
   private StaticGroup(ServerContext serverContext, DN groupEntryDN, AttributeType memberAttributeType,
-      LinkedHashSet<CompactDn> memberDNs)
+      PersistentHashSet<CompactDn> memberDNs)
   {
     super();
     ifNull(groupEntryDN, memberAttributeType, memberDNs);
@@ -205,7 +210,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
         membersCount += a.size();
       }
     }
-    LinkedHashSet<CompactDn> someMemberDNs = new LinkedHashSet<>(membersCount);
+    List<CompactDn> someMemberDNs = new ArrayList<>(membersCount);
     if (memberAttrList != null)
     {
       for (Attribute a : memberAttrList)
@@ -225,7 +230,8 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
         }
       }
     }
-    return new StaticGroup(serverContext, groupEntry.getName(), someMemberAttributeType, someMemberDNs);
+    return new StaticGroup(serverContext, groupEntry.getName(), someMemberAttributeType,
+        PersistentHashSet.copyOf(someMemberDNs));
   }
 
   /** {@inheritDoc} */
@@ -309,6 +315,13 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     return nestedGroups;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Set<CompactDn> getExplicitMemberDNs()
+  {
+    return memberDNs;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void addNestedGroup(DN nestedGroupDN)
@@ -337,9 +350,9 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       newNestedGroups.add(nestedGroupDN);
       nestedGroups = newNestedGroups;
       //Add it to the member DN list.
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
-      newMemberDNs.add(toCompactDn(nestedGroupDN));
-      memberDNs = newMemberDNs;
+      CompactDn compactNestedGroupDN = toCompactDn(nestedGroupDN);
+      memberDNs = memberDNs.plus(compactNestedGroupDN);
+      getGroupManager().memberAdded(this, compactNestedGroupDN);
     }
   }
 
@@ -371,9 +384,9 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       newNestedGroups.remove(nestedGroupDN);
       nestedGroups = newNestedGroups;
       //Remove it from the member DN list.
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
-      newMemberDNs.remove(toCompactDn(nestedGroupDN));
-      memberDNs = newMemberDNs;
+      CompactDn compactNestedGroupDN = toCompactDn(nestedGroupDN);
+      memberDNs = memberDNs.minus(compactNestedGroupDN);
+      getGroupManager().memberRemoved(this, compactNestedGroupDN);
     }
   }
 
@@ -381,6 +394,29 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
   @Override
   public boolean isMember(DN userDN, Set<DN> examinedGroups) throws DirectoryException
   {
+    return isMember(userDN, null, examinedGroups);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isMember(Entry userEntry, Set<DN> examinedGroups)
+         throws DirectoryException
+  {
+    return isMember(userEntry.getName(), userEntry, examinedGroups);
+  }
+
+  private boolean isMember(DN userDN, Entry userEntry, Set<DN> examinedGroups) throws DirectoryException
+  {
+    if (examinedGroups.isEmpty())
+    {
+      // The group manager indexes the nested memberships of registered groups
+      ConditionResult result = getGroupManager().isMember(this, userDN, userEntry);
+      if (result != ConditionResult.UNDEFINED)
+      {
+        return result == ConditionResult.TRUE;
+      }
+    }
+
     reloadIfNeeded();
     CompactDn compactUserDN = toCompactDn(userDN);
     if (memberDNs.contains(compactUserDN))
@@ -405,14 +441,6 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     return false;
   }
 
-  /** {@inheritDoc} */
-  @Override
-  public boolean isMember(Entry userEntry, Set<DN> examinedGroups)
-         throws DirectoryException
-  {
-    return isMember(userEntry.getName(), examinedGroups);
-  }
-
   /**
    * Check if the group manager has registered a new group instance or removed a
    * a group instance that might impact this group's membership list.
@@ -431,7 +459,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
           throw new DirectoryException(ResultCode.NO_SUCH_ATTRIBUTE,
                   ERR_STATICGROUP_GROUP_INSTANCE_INVALID.get(groupEntryDN));
         } else if (thisGroup != this) {
-          LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>();
+          List<CompactDn> newMemberDNs = new ArrayList<>();
           MemberList memberList = thisGroup.getMembers();
           while (memberList.hasMoreMembers())
           {
@@ -444,7 +472,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
               // TODO: should we throw an exception there instead of silently fail ?
             }
           }
-          memberDNs = newMemberDNs;
+          memberDNs = PersistentHashSet.copyOf(newMemberDNs);
         }
         LinkedList<DN> newNestedGroups = new LinkedList<>();
         for (CompactDn compactDn : memberDNs)
@@ -514,9 +542,8 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
             ERR_STATICGROUP_ADD_MEMBER_UPDATE_FAILED.get(userDN, groupEntryDN, modifyOperation.getErrorMessage()));
       }
 
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<CompactDn>(memberDNs);
-      newMemberDNs.add(compactUserDN);
-      memberDNs = newMemberDNs;
+      memberDNs = memberDNs.plus(compactUserDN);
+      getGroupManager().memberAdded(this, compactUserDN);
     }
   }
 
@@ -543,15 +570,106 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
             ERR_STATICGROUP_REMOVE_MEMBER_UPDATE_FAILED.get(userDN, groupEntryDN, modifyOperation.getErrorMessage()));
       }
 
-      LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
-      newMemberDNs.remove(compactUserDN);
-      memberDNs = newMemberDNs;
+      memberDNs = memberDNs.minus(compactUserDN);
       //If it is in the nested group list remove it.
       if(nestedGroups.contains(userDN)) {
         LinkedList<DN> newNestedGroups = new LinkedList<>(nestedGroups);
         newNestedGroups.remove(userDN);
         nestedGroups = newNestedGroups;
       }
+      getGroupManager().memberRemoved(this, compactUserDN);
+    }
+  }
+
+  /**
+   * {@inheritDoc}  Values added to or deleted from the member attribute
+   * are applied to the current set of members.  Modifications of the
+   * object classes, replacing all the members or deleting them all
+   * require to create the group again.
+   */
+  @Override
+  public boolean applyMemberModifications(List<Modification> mods)
+  {
+    ifNull(mods);
+
+    synchronized (this)
+    {
+      final PersistentHashSet<CompactDn> oldMemberDNs = memberDNs;
+      PersistentHashSet<CompactDn> newMemberDNs = oldMemberDNs;
+      final Set<CompactDn> addedCandidates = new LinkedHashSet<>();
+      final Set<CompactDn> removedCandidates = new LinkedHashSet<>();
+      for (Modification mod : mods)
+      {
+        final Attribute attr = mod.getAttribute();
+        final AttributeType attrType = attr.getAttributeType();
+        if (attrType.isObjectClass())
+        {
+          return false;
+        }
+        else if (!attrType.equals(memberAttributeType))
+        {
+          // other attributes do not change this group
+          continue;
+        }
+        else if (attr.hasOptions() || attr.isEmpty())
+        {
+          return false;
+        }
+
+        final ModificationType modType = mod.getModificationType();
+        if (!ModificationType.ADD.equals(modType) && !ModificationType.DELETE.equals(modType))
+        {
+          return false;
+        }
+        for (ByteString v : attr)
+        {
+          final CompactDn memberDN;
+          try
+          {
+            memberDN = org.forgerock.opendj.ldap.DN.valueOf(v.toString()).compact();
+          }
+          catch (LocalizedIllegalArgumentException e)
+          {
+            // let the group be created again, which reports the invalid value
+            logger.traceException(e);
+            return false;
+          }
+          if (ModificationType.ADD.equals(modType))
+          {
+            newMemberDNs = newMemberDNs.plus(memberDN);
+            addedCandidates.add(memberDN);
+          }
+          else
+          {
+            newMemberDNs = newMemberDNs.minus(memberDN);
+            removedCandidates.add(memberDN);
+          }
+        }
+      }
+      if (newMemberDNs == oldMemberDNs)
+      {
+        return true;
+      }
+
+      final List<CompactDn> addedMemberDNs = new ArrayList<>(addedCandidates.size());
+      for (CompactDn memberDN : addedCandidates)
+      {
+        if (newMemberDNs.contains(memberDN) && !oldMemberDNs.contains(memberDN))
+        {
+          addedMemberDNs.add(memberDN);
+        }
+      }
+      final List<CompactDn> removedMemberDNs = new ArrayList<>(removedCandidates.size());
+      for (CompactDn memberDN : removedCandidates)
+      {
+        if (!newMemberDNs.contains(memberDN) && oldMemberDNs.contains(memberDN))
+        {
+          removedMemberDNs.add(memberDN);
+        }
+      }
+      memberDNs = newMemberDNs;
+      getGroupManager().membersChanged(this, addedMemberDNs, removedMemberDNs);
+      return true;
     }
   }
 
@@ -0,0 +1,1167 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.util.Utils;
+import org.opends.server.admin.server.ConfigurationChangeListener;
+import org.opends.server.admin.std.server.EntryCacheCfg;
+import org.opends.server.admin.std.server.TinyLFUEntryCacheCfg;
+import org.opends.server.api.Backend;
+import org.opends.server.api.EntryCache;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.CacheEntry;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.util.ServerConstants;
+
+/**
+ * This class defines a Directory Server entry cache that uses concurrent hash
+ * tables to hold the entries, and a W-TinyLFU admission and eviction policy to
+ * select the entries to keep.
+ * <BR><BR>
+ * Cache hits never block: the entries are looked up in concurrent hash tables
+ * and the accesses are recorded in lossy striped buffers. Additions and
+ * removals are applied to the hash tables immediately and recorded in a queue.
+ * Both are applied to the eviction policy in batches by whichever thread
+ * acquires the eviction lock, without waiting for it.
+ * <BR><BR>
+ * The eviction policy is made of a small LRU window where the new entries are
+ * added, and of a segmented LRU main area holding most of the entries. When the
+ * window overflows, its least recently used entry is only admitted in the main
+ * area if its estimated access frequency is greater than the frequency of the
+ * entry it would evict, so that large scans do not flush the most frequently
+ * accessed entries. Access frequencies are estimated with a count-min sketch of
+ * 4-bit counters, which are halved periodically to forget old accesses.
+ * <BR><BR>
+ * Cache sizing is based on the estimated memory size of the cached entries
+ * rather than on their number. A set of filters may be used to define criteria
+ * for determining which entries are stored in the cache.
+ */
+public class TinyLFUEntryCache
+       extends EntryCache<TinyLFUEntryCacheCfg>
+       implements ConfigurationChangeListener<TinyLFUEntryCacheCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** Percentage of the cache memory dedicated to the admission window. */
+  private static final int WINDOW_PERCENT = 1;
+  /** Percentage of the main area memory dedicated to the protected segment. */
+  private static final int PROTECTED_PERCENT = 80;
+
+  /** Estimated average size of an entry, used to size the frequency sketch. */
+  private static final int AVERAGE_ENTRY_SIZE = 2048;
+  /** Estimated fixed memory overhead of a cached entry. */
+  private static final int ENTRY_OVERHEAD = 256;
+  /** Estimated memory overhead of each attribute of a cached entry. */
+  private static final int ATTRIBUTE_OVERHEAD = 64;
+  /** Estimated memory overhead of each attribute value of a cached entry. */
+  private static final int VALUE_OVERHEAD = 40;
+
+  /** Number of slots of each read buffer, must be a power of two. */
+  private static final int READ_BUFFER_SIZE = 32;
+  /** Number of recorded reads in a read buffer which triggers a drain of the buffers. */
+  private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+  /** Number of read buffers, must be a power of two. */
+  private static final int NB_READ_BUFFERS =
+      Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+  private static final int WINDOW = 1;
+  private static final int PROBATION = 2;
+  private static final int PROTECTED = 3;
+
+  /** The mapping between DNs and cached entries. */
+  private final ConcurrentMap<DN, Node> dnMap = new ConcurrentHashMap<>();
+  /** The mapping between entry backends/IDs and cached entries. */
+  private final ConcurrentMap<String, ConcurrentMap<Long, Node>> idMap = new ConcurrentHashMap<>();
+
+  /** Lossy buffers recording the cache hits, striped by thread. */
+  private final ReadBuffer[] readBuffers = new ReadBuffer[NB_READ_BUFFERS];
+  /** The cached entries added or removed since the eviction policy was last updated. */
+  private final ConcurrentLinkedQueue<Node> writeBuffer = new ConcurrentLinkedQueue<>();
+
+  /** The lock guarding the eviction policy, which is never acquired by cache hits. */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  /* The following fields are guarded by the eviction lock. */
+  private final AccessQueue window = new AccessQueue();
+  private final AccessQueue probation = new AccessQueue();
+  private final AccessQueue protectedQueue = new AccessQueue();
+  private final FrequencySketch sketch = new FrequencySketch();
+  private long windowSize;
+  private long mainSize;
+  private long protectedSize;
+  private long maxWindowSize;
+  private long maxMainSize;
+  private long maxProtectedSize;
+
+  /** The maximum estimated memory size of the cached entries. */
+  private volatile long maxMemorySize;
+  /** The estimated memory size of the cached entries. */
+  private final AtomicLong memorySize = new AtomicLong();
+  /** The number of entries evicted to make room for new entries. */
+  private final AtomicLong evictions = new AtomicLong();
+  /** The number of new entries which were not admitted in the main area of the cache. */
+  private final AtomicLong admissionRejects = new AtomicLong();
+
+  /** Currently registered configuration object. */
+  private TinyLFUEntryCacheCfg registeredConfiguration;
+
+  /** Creates a new instance of this TinyLFU entry cache. */
+  public TinyLFUEntryCache()
+  {
+    super();
+    for (int i = 0; i < readBuffers.length; i++)
+    {
+      readBuffers[i] = new ReadBuffer();
+    }
+    // All initialization should be performed in the initializeEntryCache.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void initializeEntryCache(TinyLFUEntryCacheCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    registeredConfiguration = configuration;
+    configuration.addTinyLFUChangeListener(this);
+
+    // Read configuration and apply changes.
+    boolean applyChanges = true;
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler =
+      EntryCacheCommon.getConfigErrorHandler (
+          EntryCacheCommon.ConfigPhase.PHASE_INIT, null, errorMessages
+          );
+    if (!processEntryCacheConfig(configuration, applyChanges, errorHandler)) {
+      String buffer = Utils.joinAsString(".  ", errorMessages);
+      throw new ConfigException(ERR_TINYLFUCACHE_CANNOT_INITIALIZE.get(buffer));
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void finalizeEntryCache()
+  {
+    registeredConfiguration.removeTinyLFUChangeListener(this);
+
+    // Release all memory currently in use by this cache.
+    clear();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsEntry(DN entryDN)
+  {
+    return entryDN != null && dnMap.containsKey(entryDN);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Entry getEntry(DN entryDN)
+  {
+    return getEntry(dnMap.get(entryDN));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Entry getEntry(String backendID, long entryID)
+  {
+    final Map<Long, Node> backendMap = idMap.get(backendID);
+    return getEntry(backendMap != null ? backendMap.get(entryID) : null);
+  }
+
+  private Entry getEntry(Node node)
+  {
+    if (node == null || !node.isAlive())
+    {
+      // Indicate cache miss.
+      cacheMisses.getAndIncrement();
+      return null;
+    }
+    // Indicate cache hit.
+    cacheHits.getAndIncrement();
+    recordRead(node);
+    return node.cacheEntry.getEntry();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getEntryID(DN entryDN)
+  {
+    final Node node = dnMap.get(entryDN);
+    return node != null ? node.cacheEntry.getEntryID() : -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public DN getEntryDN(String backendID, long entryID)
+  {
+    final Map<Long, Node> backendMap = idMap.get(backendID);
+    if (backendMap != null)
+    {
+      final Node node = backendMap.get(entryID);
+      if (node != null)
+      {
+        return node.dn;
+      }
+    }
+    return null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void putEntry(Entry entry, String backendID, long entryID)
+  {
+    final Node node = new Node(new CacheEntry(entry, backendID, entryID), estimateMemorySize(entry));
+    final Node previous = dnMap.put(node.dn, node);
+    if (previous != null)
+    {
+      retire(previous);
+    }
+    addToIDMap(node);
+    afterWrite(node);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean putEntryIfAbsent(Entry entry, String backendID, long entryID)
+  {
+    final Node node = new Node(new CacheEntry(entry, backendID, entryID), estimateMemorySize(entry));
+    if (dnMap.putIfAbsent(node.dn, node) != null)
+    {
+      return false;
+    }
+    addToIDMap(node);
+    afterWrite(node);
+    // We'll always return true in this case, even if the entry is not admitted by the eviction policy.
+    return true;
+  }
+
+  private void addToIDMap(Node node)
+  {
+    final String backendID = node.cacheEntry.getBackendID();
+    ConcurrentMap<Long, Node> backendMap = idMap.get(backendID);
+    if (backendMap == null)
+    {
+      final ConcurrentMap<Long, Node> newBackendMap = new ConcurrentHashMap<>();
+      backendMap = idMap.putIfAbsent(backendID, newBackendMap);
+      if (backendMap == null)
+      {
+        backendMap = newBackendMap;
+      }
+    }
+    final Node previous = backendMap.put(node.cacheEntry.getEntryID(), node);
+    if (previous != null && previous != node && dnMap.remove(previous.dn, previous))
+    {
+      // The entry ID was reused for another DN
+      retire(previous);
+    }
+    if (!node.isAlive())
+    {
+      // The node was removed concurrently, possibly before it was added to the ID map
+      backendMap.remove(node.cacheEntry.getEntryID(), node);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void removeEntry(DN entryDN)
+  {
+    final Node node = dnMap.remove(entryDN);
+    if (node != null)
+    {
+      retire(node);
+      afterWrite(node);
+    }
+  }
+
+  /**
+   * Marks the provided node, which has just been removed from the DN map, as
+   * removed from the cache and removes it from the ID map.
+   */
+  private void retire(Node node)
+  {
+    node.retire();
+    final Map<Long, Node> backendMap = idMap.get(node.cacheEntry.getBackendID());
+    if (backendMap != null)
+    {
+      backendMap.remove(node.cacheEntry.getEntryID(), node);
+    }
+    writeBuffer.add(node);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clear()
+  {
+    for (Node node : dnMap.values())
+    {
+      if (dnMap.remove(node.dn, node))
+      {
+        retire(node);
+      }
+    }
+    drainBuffers();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clearBackend(String backendID)
+  {
+    final Map<Long, Node> backendMap = idMap.remove(backendID);
+    if (backendMap != null)
+    {
+      for (Node node : backendMap.values())
+      {
+        if (dnMap.remove(node.dn, node))
+        {
+          retire(node);
+        }
+      }
+      drainBuffers();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clearSubtree(DN baseDN)
+  {
+    // Determine which backend should be used for the provided base DN.  If
+    // there is none, then we don't need to do anything.
+    Backend<?> backend = DirectoryServer.getBackend(baseDN);
+    if (backend != null)
+    {
+      clearSubtree(baseDN, backend);
+      drainBuffers();
+    }
+  }
+
+  /**
+   * Clears all entries at or below the specified base DN that are associated
+   * with the given backend.
+   *
+   * @param  baseDN   The base DN below which all entries should be flushed.
+   * @param  backend  The backend for which to remove the appropriate entries.
+   */
+  private void clearSubtree(DN baseDN, Backend<?> backend)
+  {
+    final Map<Long, Node> backendMap = idMap.get(backend.getBackendID());
+    if (backendMap != null)
+    {
+      for (Node node : backendMap.values())
+      {
+        if (node.dn.isDescendantOf(baseDN) && dnMap.remove(node.dn, node))
+        {
+          retire(node);
+        }
+      }
+    }
+
+    // See if the backend has any subordinate backends.  If so, then process
+    // them recursively.
+    for (Backend<?> subBackend : backend.getSubordinateBackends())
+    {
+      for (DN subBase : subBackend.getBaseDNs())
+      {
+        if (subBase.isDescendantOf(baseDN))
+        {
+          clearSubtree(baseDN, subBackend);
+          break;
+        }
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void handleLowMemory()
+  {
+    // See how many entries are in the cache.  If there are less than 1000,
+    // then we'll dump all of them.  Otherwise, we'll dump 10% of the memory
+    // used by the entries, starting with the ones the policy would evict first.
+    if (dnMap.size() < 1000)
+    {
+      clear();
+      return;
+    }
+
+    evictionLock.lock();
+    try
+    {
+      drainBuffersUnderLock();
+      final long target = memorySize.get() - memorySize.get() / 10;
+      while (memorySize.get() > target && evictOne(false))
+      {
+        // Keep on evicting
+      }
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /** Records a cache hit for the provided node, draining the read buffers when they fill up. */
+  private void recordRead(Node node)
+  {
+    final ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (NB_READ_BUFFERS - 1)];
+    if (buffer.record(node) % READ_BUFFER_DRAIN_THRESHOLD == 0)
+    {
+      drainBuffers();
+    }
+  }
+
+  /** Updates the eviction policy after a node was added to or removed from the hash tables. */
+  private void afterWrite(Node node)
+  {
+    if (node.isAlive())
+    {
+      writeBuffer.add(node);
+    }
+    // Writes must eventually be applied to keep the memory bounded
+    drainBuffers();
+  }
+
+  /**
+   * Drains the buffers unless another thread is already doing it, in which
+   * case the other thread will apply the reads and writes recorded so far.
+   */
+  private void drainBuffers()
+  {
+    // Loop in case a write was recorded just before the lock was released
+    do
+    {
+      if (!evictionLock.tryLock())
+      {
+        return;
+      }
+      try
+      {
+        drainBuffersUnderLock();
+      }
+      finally
+      {
+        evictionLock.unlock();
+      }
+    }
+    while (!writeBuffer.isEmpty());
+  }
+
+  /** Applies the recorded reads and writes to the eviction policy. The eviction lock must be held. */
+  private void drainBuffersUnderLock()
+  {
+    for (ReadBuffer buffer : readBuffers)
+    {
+      for (int i = 0; i < READ_BUFFER_SIZE; i++)
+      {
+        final Node node = buffer.slots.getAndSet(i, null);
+        if (node != null)
+        {
+          onAccess(node);
+        }
+      }
+    }
+
+    Node node;
+    while ((node = writeBuffer.poll()) != null)
+    {
+      if (node.isAlive())
+      {
+        onAdd(node);
+      }
+      else
+      {
+        onRemove(node);
+      }
+    }
+    evict();
+  }
+
+  private void onAdd(Node node)
+  {
+    if (node.queue != 0)
+    {
+      // Already added
+      return;
+    }
+    sketch.increment(node.hash);
+    window.addLast(node, WINDOW);
+    windowSize += node.memorySize;
+    memorySize.addAndGet(node.memorySize);
+  }
+
+  private void onRemove(Node node)
+  {
+    switch (node.queue)
+    {
+    case WINDOW:
+      window.remove(node);
+      windowSize -= node.memorySize;
+      break;
+    case PROBATION:
+      probation.remove(node);
+      mainSize -= node.memorySize;
+      break;
+    case PROTECTED:
+      protectedQueue.remove(node);
+      mainSize -= node.memorySize;
+      protectedSize -= node.memorySize;
+      break;
+    default:
+      // Not added yet or already removed
+      return;
+    }
+    memorySize.addAndGet(-node.memorySize);
+  }
+
+  private void onAccess(Node node)
+  {
+    sketch.increment(node.hash);
+    switch (node.queue)
+    {
+    case WINDOW:
+      window.moveToLast(node);
+      break;
+    case PROBATION:
+      // Promote the entry to the protected segment
+      probation.remove(node);
+      protectedQueue.addLast(node, PROTECTED);
+      protectedSize += node.memorySize;
+      while (protectedSize > maxProtectedSize && protectedQueue.head != null)
+      {
+        final Node demoted = protectedQueue.head;
+        protectedQueue.remove(demoted);
+        protectedSize -= demoted.memorySize;
+        probation.addLast(demoted, PROBATION);
+      }
+      break;
+    case PROTECTED:
+      protectedQueue.moveToLast(node);
+      break;
+    default:
+      // The entry has been removed or its addition has not been applied yet
+      break;
+    }
+  }
+
+  /** Moves the entries overflowing the window to the main area if they are admitted, then enforces the maximum size. */
+  private void evict()
+  {
+    while (windowSize > maxWindowSize && window.head != null)
+    {
+      final Node candidate = window.head;
+      window.remove(candidate);
+      windowSize -= candidate.memorySize;
+      admit(candidate);
+    }
+
+    while (memorySize.get() > maxMemorySize && evictOne(true))
+    {
+      // Keep on evicting
+    }
+  }
+
+  /**
+   * Moves the provided candidate from the window to the main area if its
+   * frequency is greater than the frequency of the entries that must be
+   * evicted to make room for it, or evicts the candidate otherwise.
+   */
+  private void admit(Node candidate)
+  {
+    final int candidateFrequency = sketch.frequency(candidate.hash);
+    while (mainSize + candidate.memorySize > maxMainSize)
+    {
+      final Node victim = probation.head != null ? probation.head : protectedQueue.head;
+      if (victim == null)
+      {
+        // The main area is empty
+        break;
+      }
+      if (candidateFrequency <= sketch.frequency(victim.hash))
+      {
+        admissionRejects.incrementAndGet();
+        candidate.queue = 0;
+        memorySize.addAndGet(-candidate.memorySize);
+        removeFromMaps(candidate);
+        return;
+      }
+      evict(victim);
+    }
+    probation.addLast(candidate, PROBATION);
+    mainSize += candidate.memorySize;
+  }
+
+  /**
+   * Evicts the entry that the eviction policy would evict first.
+   *
+   * @param countEviction whether the eviction must be counted in the statistics
+   * @return false if the cache is empty
+   */
+  private boolean evictOne(boolean countEviction)
+  {
+    Node victim = probation.head;
+    if (victim == null)
+    {
+      victim = protectedQueue.head;
+    }
+    if (victim == null)
+    {
+      victim = window.head;
+    }
+    if (victim == null)
+    {
+      return false;
+    }
+    onRemove(victim);
+    if (countEviction)
+    {
+      evictions.incrementAndGet();
+    }
+    removeFromMaps(victim);
+    return true;
+  }
+
+  private void evict(Node victim)
+  {
+    onRemove(victim);
+    evictions.incrementAndGet();
+    removeFromMaps(victim);
+  }
+
+  /** Removes an entry evicted by the eviction policy from the hash tables. */
+  private void removeFromMaps(Node node)
+  {
+    if (dnMap.remove(node.dn, node))
+    {
+      node.retire();
+      final Map<Long, Node> backendMap = idMap.get(node.cacheEntry.getBackendID());
+      if (backendMap != null)
+      {
+        backendMap.remove(node.cacheEntry.getEntryID(), node);
+      }
+    }
+  }
+
+  /**
+   * Estimates the memory used by the provided entry once cached.
+   *
+   * @param entry the entry to be cached
+   * @return the estimated memory size of the entry
+   */
+  static long estimateMemorySize(Entry entry)
+  {
+    long size = ENTRY_OVERHEAD + 2L * entry.getName().toString().length();
+    size += entry.getObjectClasses().size() * (long) VALUE_OVERHEAD;
+    size += estimateMemorySize(entry.getUserAttributes());
+    size += estimateMemorySize(entry.getOperationalAttributes());
+    return size;
+  }
+
+  private static long estimateMemorySize(Map<?, List<Attribute>> attributes)
+  {
+    long size = 0;
+    for (List<Attribute> attributeList : attributes.values())
+    {
+      for (Attribute attribute : attributeList)
+      {
+        size += ATTRIBUTE_OVERHEAD;
+        for (ByteString value : attribute)
+        {
+          size += VALUE_OVERHEAD + value.length();
+        }
+      }
+    }
+    return size;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isConfigurationAcceptable(EntryCacheCfg configuration,
+                                           List<LocalizableMessage> unacceptableReasons)
+  {
+    TinyLFUEntryCacheCfg config = (TinyLFUEntryCacheCfg) configuration;
+    return isConfigurationChangeAcceptable(config, unacceptableReasons);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isConfigurationChangeAcceptable(
+      TinyLFUEntryCacheCfg configuration,
+      List<LocalizableMessage> unacceptableReasons
+      )
+  {
+    boolean applyChanges = false;
+    EntryCacheCommon.ConfigErrorHandler errorHandler =
+      EntryCacheCommon.getConfigErrorHandler (
+          EntryCacheCommon.ConfigPhase.PHASE_ACCEPTABLE,
+          unacceptableReasons,
+          null
+        );
+    processEntryCacheConfig (configuration, applyChanges, errorHandler);
+
+    return errorHandler.getIsAcceptable();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ConfigChangeResult applyConfigurationChange(TinyLFUEntryCacheCfg configuration)
+  {
+    boolean applyChanges = true;
+    List<LocalizableMessage> errorMessages = new ArrayList<>();
+    EntryCacheCommon.ConfigErrorHandler errorHandler =
+      EntryCacheCommon.getConfigErrorHandler (
+          EntryCacheCommon.ConfigPhase.PHASE_APPLY, null, errorMessages
+          );
+
+    // Do not apply changes unless this cache is enabled.
+    if (configuration.isEnabled()) {
+      processEntryCacheConfig (configuration, applyChanges, errorHandler);
+    }
+
+    final ConfigChangeResult changeResult = new ConfigChangeResult();
+    changeResult.setResultCode(errorHandler.getResultCode());
+    changeResult.setAdminActionRequired(errorHandler.getIsAdminActionRequired());
+    changeResult.getMessages().addAll(errorHandler.getErrorMessages());
+    return changeResult;
+  }
+
+  /**
+   * Parses the provided configuration and configure the entry cache.
+   *
+   * @param configuration  The new configuration containing the changes.
+   * @param applyChanges   If true then take into account the new configuration.
+   * @param errorHandler   An handler used to report errors.
+   *
+   * @return  <CODE>true</CODE> if configuration is acceptable,
+   *          or <CODE>false</CODE> otherwise.
+   */
+  private boolean processEntryCacheConfig(
+      TinyLFUEntryCacheCfg                configuration,
+      boolean                             applyChanges,
+      EntryCacheCommon.ConfigErrorHandler errorHandler
+      )
+  {
+    // Read configuration.
+    DN newConfigEntryDN = configuration.dn();
+    long newMaxMemorySize = configuration.getMaxMemorySize();
+
+    // Get include and exclude filters.
+    Set<SearchFilter> newIncludeFilters = EntryCacheCommon.getFilters (
+        configuration.getIncludeFilter(),
+        ERR_CACHE_INVALID_INCLUDE_FILTER,
+        errorHandler,
+        newConfigEntryDN
+        );
+    Set<SearchFilter> newExcludeFilters = EntryCacheCommon.getFilters (
+        configuration.getExcludeFilter(),
+        ERR_CACHE_INVALID_EXCLUDE_FILTER,
+        errorHandler,
+        newConfigEntryDN
+        );
+
+    if (applyChanges && errorHandler.getIsAcceptable())
+    {
+      setMaxMemorySize(newMaxMemorySize);
+      setIncludeFilters(newIncludeFilters);
+      setExcludeFilters(newExcludeFilters);
+      registeredConfiguration = configuration;
+    }
+
+    return errorHandler.getIsAcceptable();
+  }
+
+  private void setMaxMemorySize(long newMaxMemorySize)
+  {
+    evictionLock.lock();
+    try
+    {
+      maxMemorySize = newMaxMemorySize;
+      maxWindowSize = newMaxMemorySize * WINDOW_PERCENT / 100;
+      maxMainSize = newMaxMemorySize - maxWindowSize;
+      maxProtectedSize = maxMainSize * PROTECTED_PERCENT / 100;
+      sketch.ensureCapacity(newMaxMemorySize / AVERAGE_ENTRY_SIZE);
+      drainBuffersUnderLock();
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /** Applies all the pending reads and writes to the eviction policy. */
+  void cleanUp()
+  {
+    evictionLock.lock();
+    try
+    {
+      drainBuffersUnderLock();
+    }
+    finally
+    {
+      evictionLock.unlock();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Attribute> getMonitorData()
+  {
+    try {
+      List<Attribute> attrs = EntryCacheCommon.getGenericMonitorData(
+        Long.valueOf(cacheHits.longValue()),
+        Long.valueOf(cacheMisses.longValue()),
+        Long.valueOf(memorySize.get()),
+        Long.valueOf(maxMemorySize),
+        Long.valueOf(dnMap.size()),
+        null
+        );
+      attrs.add(Attributes.create("entryCacheEvictions", String.valueOf(evictions.get())));
+      attrs.add(Attributes.create("entryCacheAdmissionRejects", String.valueOf(admissionRejects.get())));
+      return attrs;
+    } catch (Exception e) {
+      logger.traceException(e);
+      return Collections.emptyList();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Long getCacheCount()
+  {
+    return Long.valueOf(dnMap.size());
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for new entries.
+   *
+   * @return the number of entries evicted to make room for new entries
+   */
+  long getEvictions()
+  {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of new entries which were not admitted in the main area of the cache.
+   *
+   * @return the number of new entries which were not admitted in the main area of the cache
+   */
+  long getAdmissionRejects()
+  {
+    return admissionRejects.get();
+  }
+
+  /**
+   * Returns the estimated memory size of the cached entries.
+   *
+   * @return the estimated memory size of the cached entries
+   */
+  long getMemorySize()
+  {
+    return memorySize.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toVerboseString()
+  {
+    StringBuilder sb = new StringBuilder();
+
+    // Check dnMap first.
+    for (Node node : dnMap.values()) {
+      sb.append(node.dn);
+      sb.append(":");
+      sb.append(node.cacheEntry.getEntryID());
+      sb.append(":");
+      sb.append(node.cacheEntry.getBackendID());
+      sb.append(ServerConstants.EOL);
+    }
+
+    // See if there is anything on idMap that is not reflected on
+    // dnMap in case maps went out of sync.
+    for (Map.Entry<String, ConcurrentMap<Long, Node>> backendCache : idMap.entrySet()) {
+      final String backendID = backendCache.getKey();
+      for (Map.Entry<Long, Node> entry : backendCache.getValue().entrySet()) {
+        final Node node = entry.getValue();
+        if (dnMap.get(node.dn) != node) {
+          sb.append(node.dn);
+          sb.append(":");
+          sb.append(entry.getKey());
+          sb.append(":");
+          sb.append(backendID);
+          sb.append(ServerConstants.EOL);
+        }
+      }
+    }
+
+    String verboseString = sb.toString();
+    return verboseString.length() > 0 ? verboseString : null;
+  }
+
+  /** A cached entry, along with its position in the eviction policy. */
+  private static final class Node
+  {
+    private final CacheEntry cacheEntry;
+    private final DN dn;
+    private final int hash;
+    private final long memorySize;
+    /** Whether the entry is still in the hash tables. */
+    private volatile boolean alive = true;
+
+    /* The following fields are guarded by the eviction lock. */
+    private int queue;
+    private Node previous;
+    private Node next;
+
+    Node(CacheEntry cacheEntry, long memorySize)
+    {
+      this.cacheEntry = cacheEntry;
+      this.dn = cacheEntry.getDN();
+      this.hash = dn.hashCode();
+      this.memorySize = memorySize;
+    }
+
+    boolean isAlive()
+    {
+      return alive;
+    }
+
+    void retire()
+    {
+      alive = false;
+    }
+  }
+
+  /** An intrusive doubly linked list of nodes ordered from the least to the most recently used. */
+  private static final class AccessQueue
+  {
+    private Node head;
+    private Node tail;
+
+    void addLast(Node node, int queue)
+    {
+      node.queue = queue;
+      node.previous = tail;
+      node.next = null;
+      if (tail == null)
+      {
+        head = node;
+      }
+      else
+      {
+        tail.next = node;
+      }
+      tail = node;
+    }
+
+    void remove(Node node)
+    {
+      if (node.previous == null)
+      {
+        head = node.next;
+      }
+      else
+      {
+        node.previous.next = node.next;
+      }
+      if (node.next == null)
+      {
+        tail = node.previous;
+      }
+      else
+      {
+        node.next.previous = node.previous;
+      }
+      node.previous = null;
+      node.next = null;
+      node.queue = 0;
+    }
+
+    void moveToLast(Node node)
+    {
+      if (node != tail)
+      {
+        final int queue = node.queue;
+        remove(node);
+        addLast(node, queue);
+      }
+    }
+  }
+
+  /**
+   * A lossy buffer recording the cache hits. Hits overwriting a slot which has
+   * not been drained yet are lost, which only makes the policy slightly less
+   * accurate.
+   */
+  private static final class ReadBuffer
+  {
+    private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong writes = new AtomicLong();
+
+    /** Records the provided node and returns the number of reads recorded so far by this buffer. */
+    long record(Node node)
+    {
+      final long count = writes.incrementAndGet();
+      slots.lazySet((int) count & (READ_BUFFER_SIZE - 1), node);
+      return count;
+    }
+  }
+
+  /**
+   * A count-min sketch estimating the access frequencies of the entries with
+   * four 4-bit counters per entry. When the number of recorded accesses reaches
+   * ten times the expected number of entries, all the counters are halved so
+   * that the sketch forgets old accesses. This class is not thread safe.
+   */
+  static final class FrequencySketch
+  {
+    private static final long[] SEEDS =
+        { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_TABLE_SIZE = 1 << 26;
+
+    private long[] table = new long[0];
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Resizes the sketch for the provided number of entries, forgetting the recorded accesses if it is resized.
+     *
+     * @param expectedEntries the expected number of entries
+     */
+    void ensureCapacity(long expectedEntries)
+    {
+      final int tableSize = (int) Math.min(MAX_TABLE_SIZE, Long.highestOneBit(Math.max(expectedEntries, 64) - 1) << 1);
+      if (table.length != tableSize)
+      {
+        table = new long[tableSize];
+        sampleSize = 10 * tableSize;
+        size = 0;
+      }
+    }
+
+    /**
+     * Returns the estimated number of accesses of an entry, between 0 and 15.
+     *
+     * @param hashCode the hash code of the entry
+     * @return the estimated number of accesses of the entry
+     */
+    int frequency(int hashCode)
+    {
+      final int hash = spread(hashCode);
+      final int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++)
+      {
+        final int index = indexOf(hash, i);
+        final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    /**
+     * Records an access to an entry.
+     *
+     * @param hashCode the hash code of the entry
+     */
+    void increment(int hashCode)
+    {
+      final int hash = spread(hashCode);
+      final int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++)
+      {
+        added |= incrementAt(indexOf(hash, i), start + i);
+      }
+      if (added && ++size >= sampleSize)
+      {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(int index, int counter)
+    {
+      final int offset = counter << 2;
+      final long mask = 0xfL << offset;
+      if ((table[index] & mask) != mask)
+      {
+        table[index] += 1L << offset;
+        return true;
+      }
+      return false;
+    }
+
+    /** Halves all the counters. */
+    private void reset()
+    {
+      int oddCounters = 0;
+      for (int i = 0; i < table.length; i++)
+      {
+        oddCounters += Long.bitCount(table[i] & ONE_MASK);
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      size = (size >>> 1) - (oddCounters >>> 2);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int) h & (table.length - 1);
+    }
+
+    private static int spread(int x)
+    {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
+  }
+}
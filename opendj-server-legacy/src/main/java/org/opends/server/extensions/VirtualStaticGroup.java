@@ -28,6 +28,7 @@ package org.opends.server.extensions;
 
 
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -51,6 +52,7 @@ import org.opends.server.types.ObjectClass;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.types.SearchFilter;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.DN.CompactDn;
 
 import static org.opends.messages.ExtensionMessages.*;
 import static org.opends.server.config.ConfigConstants.*;
@@ -252,6 +254,27 @@ public class VirtualStaticGroup
 
 
 
+  /**
+   * {@inheritDoc}  Virtual static groups do not list any member, all
+   * their members are the members of the target group.
+   */
+  @Override
+  public Set<CompactDn> getExplicitMemberDNs()
+  {
+    return Collections.emptySet();
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<DN> getIncludedGroupDNs()
+  {
+    return Collections.singletonList(targetGroupDN);
+  }
+
+
+
   /** {@inheritDoc} */
   @Override
   public void addNestedGroup(DN nestedGroupDN)
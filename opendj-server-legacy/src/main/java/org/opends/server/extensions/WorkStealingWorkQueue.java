@@ -0,0 +1,787 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ConfigMessages.*;
+import static org.opends.messages.CoreMessages.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.admin.server.ConfigurationChangeListener;
+import org.opends.server.admin.std.server.WorkStealingWorkQueueCfg;
+import org.opends.server.api.WorkQueue;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.monitors.WorkStealingWorkQueueMonitor;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.Operation;
+
+/**
+ * A work queue made of several queues, each one preferably serviced by its own
+ * worker threads, so that submitting and picking up operations does not go
+ * through a structure shared by all the threads.
+ * <p>
+ * Operations are submitted to the queue of their client connection, or to a
+ * random queue if connection affinity is disabled. A worker thread picks up
+ * operations from its own queue first, then steals operations from the other
+ * queues, and finally parks until an operation is submitted. Submitting an
+ * operation unparks the worker threads of its queue if they are idle, or any
+ * other idle worker thread.
+ * <p>
+ * Each queue is bounded by an even share of the maximum capacity, the shares
+ * adding up to the maximum capacity: when it is lower than the number of
+ * queues, some queues have no capacity. An operation submitted to a full queue
+ * goes to the next queue which is not full, and the submitting thread is only
+ * blocked when all the queues are full.
+ */
+public class WorkStealingWorkQueue
+       extends WorkQueue<WorkStealingWorkQueueCfg>
+       implements ConfigurationChangeListener<WorkStealingWorkQueueCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /**
+   * The maximum number of times to retry getting the next operation from the
+   * queue if an unexpected failure occurs.
+   */
+  private static final int MAX_RETRY_COUNT = 5;
+
+  /** The maximum time an idle worker thread is parked before checking for shutdown. */
+  private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  /** One of the queues holding the pending operations. */
+  static final class Shard
+  {
+    private final ConcurrentLinkedDeque<Operation> operations = new ConcurrentLinkedDeque<>();
+    /** The number of operations in the deque, which is not constant time to compute. */
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong opsSubmitted = new AtomicLong();
+
+    private boolean offer(Operation operation, int capacity)
+    {
+      int current;
+      do
+      {
+        current = size.get();
+        if (current >= capacity)
+        {
+          return false;
+        }
+      }
+      while (!size.compareAndSet(current, current + 1));
+      operations.addLast(operation);
+      opsSubmitted.incrementAndGet();
+      return true;
+    }
+
+    private Operation poll()
+    {
+      final Operation operation = operations.pollFirst();
+      if (operation != null)
+      {
+        size.decrementAndGet();
+      }
+      return operation;
+    }
+
+    private boolean remove(Operation operation)
+    {
+      if (operations.remove(operation))
+      {
+        size.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+
+    int size()
+    {
+      return size.get();
+    }
+  }
+
+  /** The queues holding the pending operations, fixed for the life of the work queue. */
+  private Shard[] shards;
+  /** For each queue, one of the worker threads whose own queue it is. */
+  private AtomicReferenceArray<WorkStealingWorkerThread> shardOwners;
+
+  /** The worker threads which are parked, waiting for operations. */
+  private final ConcurrentLinkedQueue<WorkStealingWorkerThread> idleThreads = new ConcurrentLinkedQueue<>();
+
+  /** The set of worker threads that will be used to process this work queue, guarded by configLock. */
+  private final ArrayList<WorkStealingWorkerThread> workerThreads = new ArrayList<>();
+
+  /** The lock serializing configuration changes and the removal of worker threads. */
+  private final Object configLock = new Object();
+
+  /** The lock used by submitting threads to wait until the queues are not full. */
+  private final ReentrantLock notFullLock = new ReentrantLock();
+  private final Condition notFull = notFullLock.newCondition();
+  /** The number of threads waiting until the queues are not full. */
+  private final AtomicInteger waitingSubmitters = new AtomicInteger();
+
+  /** The number of operations rejected because all the queues were full. */
+  private final AtomicLong queueFullRejects = new AtomicLong();
+
+  /**
+   * Indicates whether one or more of the worker threads needs to be killed at
+   * the next convenient opportunity.
+   */
+  private volatile boolean killThreads;
+
+  /** Indicates whether the Directory Server is shutting down. */
+  private volatile boolean shutdownRequested;
+
+  /** The thread number used for the last worker thread that was created. */
+  private int lastThreadNumber;
+
+  /**
+   * The number of worker threads that should be active (or will be shortly if a
+   * configuration change has not been completely applied).
+   */
+  private volatile int numWorkerThreads;
+
+  /** The maximum number of pending operations in each queue, adding up to the maximum capacity. */
+  private volatile int[] shardCapacities;
+  /** The maximum number of pending operations in all the queues. */
+  private volatile int maxCapacity;
+
+  /** Whether operations are submitted to the queue of their client connection. */
+  private volatile boolean connectionAffinity;
+
+  /**
+   * Creates a new instance of this work queue. All initialization should be
+   * performed in the <CODE>initializeWorkQueue</CODE> method.
+   */
+  public WorkStealingWorkQueue()
+  {
+    // No implementation should be performed here.
+  }
+
+  @Override
+  public void initializeWorkQueue(WorkStealingWorkQueueCfg configuration)
+      throws ConfigException, InitializationException
+  {
+    synchronized (configLock)
+    {
+      shutdownRequested = false;
+      killThreads = false;
+
+      // Register to be notified of any configuration changes.
+      configuration.addWorkStealingChangeListener(this);
+
+      numWorkerThreads = computeNumWorkerThreads(configuration.getNumWorkerThreads());
+      connectionAffinity = configuration.isConnectionAffinity();
+
+      final int nbShards = Math.max(1, Math.min(numWorkerThreads, Runtime.getRuntime().availableProcessors()));
+      shards = new Shard[nbShards];
+      for (int i = 0; i < nbShards; i++)
+      {
+        shards[i] = new Shard();
+      }
+      shardOwners = new AtomicReferenceArray<>(nbShards);
+      setCapacity(configuration.getMaxWorkQueueCapacity());
+
+      for (lastThreadNumber = 0; lastThreadNumber < numWorkerThreads; lastThreadNumber++)
+      {
+        startWorkerThread(lastThreadNumber);
+      }
+    }
+
+    // Create and register a monitor provider for the work queue.
+    try
+    {
+      WorkStealingWorkQueueMonitor monitor = new WorkStealingWorkQueueMonitor(this);
+      monitor.initializeMonitorProvider(null);
+      DirectoryServer.registerMonitorProvider(monitor);
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_CONFIG_WORK_QUEUE_CANNOT_CREATE_MONITOR, WorkStealingWorkQueueMonitor.class, e);
+    }
+  }
+
+  private void setCapacity(int capacity)
+  {
+    final int[] capacities = new int[shards.length];
+    for (int i = 0; i < capacities.length; i++)
+    {
+      capacities[i] = capacity / capacities.length + (i < capacity % capacities.length ? 1 : 0);
+    }
+    maxCapacity = capacity;
+    shardCapacities = capacities;
+  }
+
+  /** Starts a worker thread, the caller must hold the configuration lock. */
+  private void startWorkerThread(int threadNumber)
+  {
+    final int shard = threadNumber % shards.length;
+    final WorkStealingWorkerThread t = new WorkStealingWorkerThread(this, threadNumber, shard);
+    workerThreads.add(t);
+    shardOwners.compareAndSet(shard, null, t);
+    t.start();
+  }
+
+  @Override
+  public void finalizeWorkQueue(LocalizableMessage reason)
+  {
+    shutdownRequested = true;
+
+    // Send responses to any operations in the pending queues to indicate that
+    // they won't be processed because the server is shutting down.
+    CancelRequest cancelRequest = new CancelRequest(true, reason);
+    for (Shard shard : shards)
+    {
+      Operation o;
+      while ((o = shard.poll()) != null)
+      {
+        try
+        {
+          // The operation has no chance of responding to the cancel
+          // request so avoid waiting for a cancel response.
+          if (o.getCancelResult() == null)
+          {
+            o.abort(cancelRequest);
+          }
+        }
+        catch (Exception e)
+        {
+          logger.traceException(e);
+          logger.warn(WARN_QUEUE_UNABLE_TO_CANCEL, o, e);
+        }
+      }
+    }
+    signalNotFull();
+
+    // Notify all the worker threads of the shutdown.
+    final List<WorkStealingWorkerThread> threads;
+    synchronized (configLock)
+    {
+      threads = new ArrayList<>(workerThreads);
+    }
+    for (WorkStealingWorkerThread t : threads)
+    {
+      try
+      {
+        t.shutDown();
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        logger.warn(WARN_QUEUE_UNABLE_TO_NOTIFY_THREAD, t.getName(), e);
+      }
+    }
+  }
+
+  /**
+   * Indicates whether this work queue has received a request to shut down.
+   *
+   * @return <CODE>true</CODE> if the work queue has received a request to shut
+   *         down, or <CODE>false</CODE> if not.
+   */
+  public boolean shutdownRequested()
+  {
+    return shutdownRequested;
+  }
+
+  /**
+   * Submits an operation to be processed by one of the worker threads
+   * associated with this work queue, blocking while all the queues are full.
+   *
+   * @param operation
+   *          The operation to be processed.
+   * @throws DirectoryException
+   *           If the provided operation is not accepted for some reason (e.g.,
+   *           if the server is shutting down).
+   */
+  @Override
+  public void submitOperation(Operation operation) throws DirectoryException
+  {
+    submitOperation(operation, true);
+  }
+
+  @Override
+  public boolean trySubmitOperation(Operation operation) throws DirectoryException
+  {
+    try
+    {
+      submitOperation(operation, false);
+      return true;
+    }
+    catch (DirectoryException e)
+    {
+      if (ResultCode.BUSY == e.getResultCode())
+      {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private void submitOperation(Operation operation, boolean blockEnqueuingWhenFull) throws DirectoryException
+  {
+    checkNotShutdown();
+
+    final int firstShard = selectShard(operation);
+    if (offer(operation, firstShard))
+    {
+      return;
+    }
+
+    if (!blockEnqueuingWhenFull)
+    {
+      queueFullRejects.incrementAndGet();
+      throw new DirectoryException(ResultCode.BUSY, WARN_OP_REJECTED_BY_QUEUE_FULL.get(maxCapacity));
+    }
+
+    // Slow path: wait until a worker thread picks up an operation.
+    waitingSubmitters.incrementAndGet();
+    notFullLock.lock();
+    try
+    {
+      while (!offer(operation, firstShard))
+      {
+        notFull.await(1, TimeUnit.SECONDS);
+        checkNotShutdown();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // We cannot handle the interruption here. Reject the request and
+      // re-interrupt this thread.
+      Thread.currentThread().interrupt();
+      queueFullRejects.incrementAndGet();
+      throw new DirectoryException(ResultCode.BUSY, WARN_OP_REJECTED_BY_QUEUE_INTERRUPT.get());
+    }
+    finally
+    {
+      notFullLock.unlock();
+      waitingSubmitters.decrementAndGet();
+    }
+  }
+
+  private void checkNotShutdown() throws DirectoryException
+  {
+    if (shutdownRequested)
+    {
+      throw new DirectoryException(ResultCode.UNAVAILABLE, WARN_OP_REJECTED_BY_SHUTDOWN.get());
+    }
+  }
+
+  private int selectShard(Operation operation)
+  {
+    if (shards.length == 1)
+    {
+      return 0;
+    }
+    if (connectionAffinity)
+    {
+      // Spread the sequential connection IDs
+      final long h = operation.getConnectionID() * 0x9E3779B97F4A7C15L;
+      return (int) ((h >>> 32) % shards.length);
+    }
+    return ThreadLocalRandom.current().nextInt(shards.length);
+  }
+
+  /** Adds the operation to the first queue which is not full, starting with the provided one. */
+  private boolean offer(Operation operation, int firstShard)
+  {
+    final int[] capacities = shardCapacities;
+    for (int i = 0; i < shards.length; i++)
+    {
+      final int index = (firstShard + i) % shards.length;
+      if (shards[index].offer(operation, capacities[index]))
+      {
+        wakeUpWorkerThread(index);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Unparks an idle worker thread, preferably one owning the provided queue. */
+  private void wakeUpWorkerThread(int shard)
+  {
+    final WorkStealingWorkerThread owner = shardOwners.get(shard);
+    if (owner != null && owner.wakeUp())
+    {
+      return;
+    }
+    WorkStealingWorkerThread t;
+    while ((t = idleThreads.poll()) != null)
+    {
+      if (t.wakeUp())
+      {
+        return;
+      }
+    }
+  }
+
+  private void signalNotFull()
+  {
+    if (waitingSubmitters.get() > 0)
+    {
+      notFullLock.lock();
+      try
+      {
+        notFull.signalAll();
+      }
+      finally
+      {
+        notFullLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Retrieves the next operation that should be processed by one of the worker
+   * threads, blocking if necessary until a new request arrives. This method
+   * should only be called by a worker thread associated with this work queue.
+   *
+   * @param workerThread
+   *          The worker thread that is requesting the operation.
+   * @return The next operation that should be processed, or <CODE>null</CODE>
+   *         if the server is shutting down and no more operations will be
+   *         processed.
+   */
+  Operation nextOperation(WorkStealingWorkerThread workerThread)
+  {
+    return retryNextOperation(workerThread, 0);
+  }
+
+  private Operation retryNextOperation(WorkStealingWorkerThread workerThread, int numFailures)
+  {
+    if (numFailures > MAX_RETRY_COUNT)
+    {
+      logger.error(ERR_CONFIG_WORK_QUEUE_TOO_MANY_FAILURES,
+          Thread.currentThread().getName(), numFailures, MAX_RETRY_COUNT);
+      return null;
+    }
+
+    try
+    {
+      while (true)
+      {
+        if (shutdownRequested || (killThreads && tryKillThisWorkerThread(workerThread)))
+        {
+          return null;
+        }
+
+        Operation operation = pollOrSteal(workerThread);
+        if (operation != null)
+        {
+          return operation;
+        }
+
+        // Publish that this thread is idle before checking the queues again,
+        // so that an operation submitted concurrently is either seen here or
+        // unparks this thread.
+        workerThread.setIdle();
+        idleThreads.add(workerThread);
+        operation = pollOrSteal(workerThread);
+        if (operation != null)
+        {
+          workerThread.setBusy();
+          idleThreads.remove(workerThread);
+          return operation;
+        }
+        workerThread.park(IDLE_PARK_NANOS);
+        idleThreads.remove(workerThread);
+      }
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+
+      // This should not happen. The only recourse we have is to log a message
+      // and try again.
+      logger.warn(WARN_WORKER_WAITING_UNCAUGHT_EXCEPTION, Thread.currentThread().getName(), e);
+      return retryNextOperation(workerThread, numFailures + 1);
+    }
+  }
+
+  /** Picks up an operation from the own queue of the worker thread, or from the other queues. */
+  private Operation pollOrSteal(WorkStealingWorkerThread workerThread)
+  {
+    final int ownShard = workerThread.getShard();
+    Operation operation = shards[ownShard].poll();
+    if (operation == null)
+    {
+      for (int i = 1; i < shards.length && operation == null; i++)
+      {
+        operation = shards[(ownShard + i) % shards.length].poll();
+      }
+      if (operation != null)
+      {
+        workerThread.incrementOpsStolen();
+      }
+    }
+    if (operation != null)
+    {
+      signalNotFull();
+    }
+    return operation;
+  }
+
+  /**
+   * Kills this worker thread if there are more worker threads than
+   * configured.
+   *
+   * @param workerThread
+   *          The worker thread associated with this thread.
+   * @return {@code true} if this thread was killed
+   */
+  private boolean tryKillThisWorkerThread(WorkStealingWorkerThread workerThread)
+  {
+    synchronized (configLock)
+    {
+      int currentThreads = workerThreads.size();
+      if (currentThreads <= numWorkerThreads)
+      {
+        killThreads = false;
+        return false;
+      }
+
+      workerThreads.remove(workerThread);
+      currentThreads--;
+      if (currentThreads <= numWorkerThreads)
+      {
+        killThreads = false;
+      }
+      replaceShardOwner(workerThread);
+      workerThread.setStoppedByReducedThreadNumber();
+      return true;
+    }
+  }
+
+  /** Gives the queue owned by a stopping worker thread to another worker thread, the caller holds the lock. */
+  private void replaceShardOwner(WorkStealingWorkerThread workerThread)
+  {
+    final int shard = workerThread.getShard();
+    if (shardOwners.get(shard) != workerThread)
+    {
+      return;
+    }
+    WorkStealingWorkerThread newOwner = null;
+    for (WorkStealingWorkerThread t : workerThreads)
+    {
+      if (t.getShard() == shard)
+      {
+        newOwner = t;
+        break;
+      }
+    }
+    shardOwners.set(shard, newOwner);
+  }
+
+  /**
+   * Retrieves the total number of operations that have been successfully
+   * submitted to this work queue for processing since server startup.
+   *
+   * @return The total number of operations that have been successfully
+   *         submitted to this work queue since startup.
+   */
+  public long getOpsSubmitted()
+  {
+    long total = 0;
+    for (Shard shard : shards)
+    {
+      total += shard.opsSubmitted.get();
+    }
+    return total;
+  }
+
+  /**
+   * Retrieves the total number of operations that have been rejected because
+   * all the queues were already at their maximum capacity.
+   *
+   * @return The total number of operations that have been rejected because
+   *         the work queue was full.
+   */
+  public long getOpsRejectedDueToQueueFull()
+  {
+    return queueFullRejects.get();
+  }
+
+  /**
+   * Retrieves the total number of operations that have been processed by a
+   * worker thread which did not own the queue they were submitted to.
+   *
+   * @return The total number of operations that have been stolen.
+   */
+  public long getOpsStolen()
+  {
+    synchronized (configLock)
+    {
+      long total = 0;
+      for (WorkStealingWorkerThread t : workerThreads)
+      {
+        total += t.getOpsStolen();
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Retrieves the number of pending operations in the queues that have not
+   * yet been picked up for processing.
+   *
+   * @return The number of pending operations in the queues that have not yet
+   *         been picked up for processing.
+   */
+  public int size()
+  {
+    int total = 0;
+    for (Shard shard : shards)
+    {
+      total += shard.size();
+    }
+    return total;
+  }
+
+  /**
+   * Retrieves the number of queues the pending operations are spread over.
+   *
+   * @return The number of queues of this work queue.
+   */
+  public int getNumQueues()
+  {
+    return shards.length;
+  }
+
+  /**
+   * Attempts to remove the specified operation from this queue if it has not
+   * yet been picked up for processing by one of the worker threads.
+   *
+   * @param operation
+   *          The operation to remove from the queue.
+   * @return <CODE>true</CODE> if the provided request was present in the queue
+   *         and was removed successfully, or <CODE>false</CODE> it not.
+   */
+  public boolean removeOperation(Operation operation)
+  {
+    for (Shard shard : shards)
+    {
+      if (shard.remove(operation))
+      {
+        signalNotFull();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(WorkStealingWorkQueueCfg configuration,
+      List<LocalizableMessage> unacceptableReasons)
+  {
+    return true;
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(WorkStealingWorkQueueCfg configuration)
+  {
+    final int newNumThreads = computeNumWorkerThreads(configuration.getNumWorkerThreads());
+    synchronized (configLock)
+    {
+      final int threadsToAdd = newNumThreads - workerThreads.size();
+      if (threadsToAdd > 0)
+      {
+        for (int i = 0; i < threadsToAdd; i++)
+        {
+          startWorkerThread(lastThreadNumber++);
+        }
+        killThreads = false;
+      }
+      else if (threadsToAdd < 0)
+      {
+        killThreads = true;
+        // idle threads must notice they should stop
+        for (WorkStealingWorkerThread t : workerThreads)
+        {
+          t.wakeUp();
+        }
+      }
+      numWorkerThreads = newNumThreads;
+    }
+
+    connectionAffinity = configuration.isConnectionAffinity();
+    // The queues are not bounded by themselves, so the new capacity applies to
+    // the next submitted operations, and operations above the capacity remain
+    // queued
+    setCapacity(configuration.getMaxWorkQueueCapacity());
+    signalNotFull();
+    return new ConfigChangeResult();
+  }
+
+  @Override
+  public boolean isIdle()
+  {
+    if (size() != 0)
+    {
+      return false;
+    }
+    synchronized (configLock)
+    {
+      for (WorkStealingWorkerThread t : workerThreads)
+      {
+        if (t.isActive())
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Return the number of worker threads used by this WorkQueue.
+   *
+   * @return the number of worker threads used by this WorkQueue
+   */
+  @Override
+  public int getNumWorkerThreads()
+  {
+    return numWorkerThreads;
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.CoreMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.DisconnectReason;
+import org.opends.server.types.Operation;
+
+/**
+ * A worker thread of the {@link WorkStealingWorkQueue}, preferably processing
+ * the operations of its own queue.
+ */
+public class WorkStealingWorkerThread extends DirectoryThread
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /**
+   * Indicates whether the Directory Server is shutting down and this thread
+   * should stop running.
+   */
+  private volatile boolean shutdownRequested;
+
+  /**
+   * Indicates whether this thread was stopped because the server threadnumber
+   * was reduced.
+   */
+  private volatile boolean stoppedByReducedThreadNumber;
+
+  /** Indicates whether this thread is parked, waiting for work. */
+  private final AtomicBoolean idle = new AtomicBoolean();
+
+  /** The number of operations this thread took from another queue than its own. */
+  private final AtomicLong opsStolen = new AtomicLong();
+
+  /** The operation that this worker thread is currently processing. */
+  private volatile Operation operation;
+
+  /** The work queue that this worker thread will service. */
+  private final WorkStealingWorkQueue workQueue;
+
+  /** The index of the queue of this thread in the work queue. */
+  private final int shard;
+
+  /**
+   * Creates a new worker thread that will service the provided work queue and
+   * process any new requests that are submitted.
+   *
+   * @param workQueue
+   *          The work queue with which this worker thread is associated.
+   * @param threadID
+   *          The thread ID for this worker thread.
+   * @param shard
+   *          The index of the queue this thread services first.
+   */
+  public WorkStealingWorkerThread(WorkStealingWorkQueue workQueue, int threadID, int shard)
+  {
+    super("Worker Thread " + threadID);
+    this.workQueue = workQueue;
+    this.shard = shard;
+  }
+
+  /**
+   * Indicates that this thread is about to be stopped because the Directory
+   * Server configuration has been updated to reduce the number of worker
+   * threads.
+   */
+  public void setStoppedByReducedThreadNumber()
+  {
+    stoppedByReducedThreadNumber = true;
+  }
+
+  /**
+   * Indicates whether this worker thread is actively processing a request.
+   * Note that this is a point-in-time determination and if a reliable answer is
+   * expected then the server should impose some external constraint to ensure
+   * that no new requests are enqueued.
+   *
+   * @return {@code true} if this worker thread is actively processing a
+   *         request, or {@code false} if it is idle.
+   */
+  public boolean isActive()
+  {
+    return isAlive() && operation != null;
+  }
+
+  int getShard()
+  {
+    return shard;
+  }
+
+  long getOpsStolen()
+  {
+    return opsStolen.get();
+  }
+
+  void incrementOpsStolen()
+  {
+    opsStolen.incrementAndGet();
+  }
+
+  /** Marks this thread as about to park, so that submitting threads can unpark it. */
+  void setIdle()
+  {
+    idle.set(true);
+  }
+
+  /** Marks this thread as no longer waiting for work. */
+  void setBusy()
+  {
+    idle.set(false);
+  }
+
+  /**
+   * Parks this thread until it is unparked by {@link #wakeUp()} or the
+   * provided time has elapsed.
+   */
+  void park(long nanos)
+  {
+    if (idle.get() && !shutdownRequested)
+    {
+      LockSupport.parkNanos(this, nanos);
+    }
+    idle.set(false);
+  }
+
+  /**
+   * Unparks this thread if it is idle.
+   *
+   * @return {@code true} if this thread was idle and has been unparked, so it
+   *         will look for operations, {@code false} if it was not idle
+   */
+  boolean wakeUp()
+  {
+    if (idle.compareAndSet(true, false))
+    {
+      LockSupport.unpark(this);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Operates in a loop, retrieving the next request from the work queue,
+   * processing it, and then going back to the queue for more.
+   */
+  @Override
+  public void run()
+  {
+    while (!shutdownRequested)
+    {
+      try
+      {
+        operation = null;
+        operation = workQueue.nextOperation(this);
+        if (operation == null)
+        {
+          // The operation may be null if the server is shutting down. If that
+          // is the case, then break out of the while loop.
+          break;
+        }
+        operation.run();
+        operation.operationCompleted();
+      }
+      catch (Throwable t)
+      {
+        if (logger.isTraceEnabled())
+        {
+          logger.trace("Uncaught exception in worker thread while processing operation %s: %s", operation, t);
+          logger.traceException(t);
+        }
+
+        try
+        {
+          LocalizableMessage message =
+              ERR_UNCAUGHT_WORKER_THREAD_EXCEPTION.get(getName(), operation, stackTraceToSingleLineString(t));
+          logger.error(message);
+
+          operation.setResultCode(DirectoryServer.getServerErrorResultCode());
+          operation.appendErrorMessage(message);
+          operation.getClientConnection().sendResponse(operation);
+          operation.disconnectClient(DisconnectReason.SERVER_ERROR, true, message);
+        }
+        catch (Throwable t2)
+        {
+          logger.traceException(t2);
+        }
+      }
+    }
+    operation = null;
+
+    // If we have gotten here, then we presume that the server thread is
+    // shutting down. However, if that's not the case then that is a problem
+    // and we will want to log a message.
+    if (stoppedByReducedThreadNumber)
+    {
+      logger.debug(INFO_WORKER_STOPPED_BY_REDUCED_THREADNUMBER, getName());
+    }
+    else if (!workQueue.shutdownRequested())
+    {
+      logger.warn(WARN_UNEXPECTED_WORKER_THREAD_EXIT, getName());
+    }
+
+    if (logger.isTraceEnabled())
+    {
+      logger.trace(getName() + " exiting.");
+    }
+  }
+
+  /**
+   * Indicates that the Directory Server has received a request to stop running
+   * and that this thread should stop running as soon as possible.
+   */
+  public void shutDown()
+  {
+    if (logger.isTraceEnabled())
+    {
+      logger.trace(getName() + " being signaled to shut down.");
+    }
+
+    shutdownRequested = true;
+    LockSupport.unpark(this);
+
+    final Operation current = operation;
+    if (current != null)
+    {
+      try
+      {
+        current.cancel(new CancelRequest(true, INFO_CANCELED_BY_SHUTDOWN.get()));
+      }
+      catch (Exception e)
+      {
+        if (logger.isTraceEnabled())
+        {
+          logger.trace("Caught an exception while trying to abandon the "
+              + "operation in progress for the worker thread: %s", e);
+          logger.traceException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Retrieves any relevent debug information with which this tread is
+   * associated so they can be included in debug messages.
+   *
+   * @return debug information about this thread as a string.
+   */
+  @Override
+  public Map<String, String> getDebugProperties()
+  {
+    Map<String, String> properties = super.getDebugProperties();
+    final Operation current = operation;
+    if (current != null)
+    {
+      properties.put("clientConnection", current.getClientConnection().toString());
+      properties.put("operation", current.toString());
+    }
+    return properties;
+  }
+}
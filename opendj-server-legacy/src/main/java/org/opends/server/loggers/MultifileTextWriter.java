@@ -35,6 +35,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -100,6 +102,8 @@ class MultifileTextWriter
   private MeteredStream outputStream;
   /** The underlying buffered writer using the output stream. */
   private BufferedWriter writer;
+  /** The channel of the underlying file, used to write encoded records. */
+  private FileChannel fileChannel;
 
   /**
    * Creates a new instance of MultiFileTextWriter with the supplied policies.
@@ -178,6 +182,7 @@ class MultifileTextWriter
     }
 
     FileOutputStream stream = new FileOutputStream(file, append);
+    fileChannel = stream.getChannel();
     outputStream = new MeteredStream(stream, file.length());
 
     OutputStreamWriter osw = new OutputStreamWriter(outputStream, encoding);
@@ -585,6 +590,38 @@ class MultifileTextWriter
     }
   }
 
+  /**
+   * Writes a batch of log records encoded in UTF-8, each one followed by a
+   * line separator, directly to the file.
+   *
+   * @param records the buffer containing the records to write, between its
+   *                position and its limit.
+   */
+  void writeRecords(ByteBuffer records)
+  {
+    synchronized(this)
+    {
+      if(sizeLimit > 0 && outputStream.written + records.remaining() >= sizeLimit)
+      {
+        rotate();
+      }
+
+      try
+      {
+        // records written through the writer must precede this batch
+        writer.flush();
+        while (records.hasRemaining())
+        {
+          outputStream.written += fileChannel.write(records);
+        }
+      }
+      catch(Exception e)
+      {
+        errorHandler.handleWriteError(null, e);
+      }
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void flush()
@@ -0,0 +1,496 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.loggers;
+
+import static org.opends.messages.LoggerMessages.*;
+import static org.opends.server.util.ServerConstants.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.ServerShutdownListener;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.util.TimeThread;
+
+/**
+ * A Text Writer which writes log records asynchronously to a
+ * {@link MultifileTextWriter}, without locks and with little garbage.
+ * <p>
+ * The threads logging records encode them in UTF-8 directly into a ring of
+ * pre-allocated byte arrays, which is drained by a single writer thread. The
+ * writer thread copies the records into a large buffer written to the log file
+ * at once.
+ * <p>
+ * When the ring is full, new records either wait for room in the ring or are
+ * dropped, depending on the configured policy. Dropped records are counted and
+ * regularly reported in the error log.
+ */
+class RingBufferTextWriter
+    implements ServerShutdownListener, TextWriter
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The initial size of each slot of the ring, which is increased for larger records. */
+  private static final int INITIAL_SLOT_SIZE = 256;
+  /** The minimum size of the buffer used to batch the writes to the log file. */
+  private static final int MIN_BATCH_SIZE = 64 * 1024;
+  /** How long the writer thread waits for new records before checking again. */
+  private static final long WRITER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  /** How long a thread waits for room in a full ring before checking again. */
+  private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  /** The minimum interval between two reports of dropped records. */
+  private static final long DROP_REPORT_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+  private static final byte[] EOL_BYTES = EOL.getBytes();
+
+  /** The wrapped Text Writer. */
+  private final MultifileTextWriter writer;
+  private final String name;
+  private final boolean dropOnOverflow;
+
+  /** The encoded records, indexed by their sequence number modulo the size of the ring. */
+  private final byte[][] slots;
+  private final int[] lengths;
+  /** The sequence number of the record available in each slot, or -1. */
+  private final AtomicLongArray published;
+  private final int mask;
+
+  /** The sequence number of the next record to log. */
+  private final AtomicLong nextSequence = new AtomicLong();
+  /** The sequence number of the next record to write, all the previous ones have been written. */
+  private volatile long writtenSequence;
+
+  private final AtomicLong droppedRecords = new AtomicLong();
+  private final AtomicLong blockedRecords = new AtomicLong();
+  private long reportedDroppedRecords;
+  private long lastDropReportTime;
+
+  private volatile boolean stopRequested;
+  private volatile boolean writerParked;
+  private final WriterThread writerThread;
+
+  /**
+   * Construct a new RingBufferTextWriter wrapper.
+   *
+   * @param name           the name of the thread.
+   * @param capacity       the number of records which can be queued.
+   * @param dropOnOverflow indicates whether records are dropped rather than
+   *                       waiting when the queue is full.
+   * @param batchSize      the size of the buffer used to batch the writes.
+   * @param writer         the writer to which the records are written.
+   */
+  RingBufferTextWriter(String name, int capacity, boolean dropOnOverflow, int batchSize,
+      MultifileTextWriter writer)
+  {
+    this.name = name;
+    this.writer = writer;
+    this.dropOnOverflow = dropOnOverflow;
+
+    final int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    this.slots = new byte[size][];
+    for (int i = 0; i < size; i++)
+    {
+      slots[i] = new byte[INITIAL_SLOT_SIZE];
+    }
+    this.lengths = new int[size];
+    this.published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++)
+    {
+      published.set(i, -1);
+    }
+    this.mask = size - 1;
+
+    writerThread = new WriterThread(Math.max(batchSize, MIN_BATCH_SIZE));
+    writerThread.start();
+
+    DirectoryServer.registerShutdownListener(this);
+  }
+
+  /**
+   * The writer thread is responsible for writing the records of the ring to
+   * the wrapped writer.
+   */
+  private class WriterThread extends DirectoryThread
+  {
+    private final ByteBuffer batch;
+
+    WriterThread(int batchSize)
+    {
+      super(name);
+      batch = ByteBuffer.allocateDirect(batchSize);
+    }
+
+    /** Run until all the records have been written AND we've been asked to terminate. */
+    @Override
+    public void run()
+    {
+      while (!stopRequested || writtenSequence != nextSequence.get())
+      {
+        if (!writeAvailableRecords())
+        {
+          writerParked = true;
+          // check again, a record may have been published before the flag was seen
+          if (!isPublished(writtenSequence))
+          {
+            LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+          }
+          writerParked = false;
+        }
+        reportDroppedRecords(false);
+      }
+    }
+
+    /**
+     * Writes the records published in sequence, by batches.
+     *
+     * @return {@code true} if some records have been written
+     */
+    private boolean writeAvailableRecords()
+    {
+      long sequence = writtenSequence;
+      final long firstSequence = sequence;
+      while (isPublished(sequence))
+      {
+        final int index = (int) sequence & mask;
+        final int length = lengths[index];
+        if (length > batch.remaining())
+        {
+          if (batch.position() > 0)
+          {
+            writeBatch(sequence);
+            continue;
+          }
+          // record larger than the batch buffer: write it directly
+          writer.writeRecords(ByteBuffer.wrap(slots[index], 0, length));
+        }
+        else
+        {
+          batch.put(slots[index], 0, length);
+        }
+        sequence++;
+      }
+      if (batch.position() > 0)
+      {
+        writeBatch(sequence);
+      }
+      else
+      {
+        writtenSequence = sequence;
+      }
+      return sequence != firstSequence;
+    }
+
+    private void writeBatch(long sequence)
+    {
+      // release the slots before writing, the records have been copied
+      writtenSequence = sequence;
+      batch.flip();
+      writer.writeRecords(batch);
+      batch.clear();
+    }
+  }
+
+  private boolean isPublished(long sequence)
+  {
+    return published.get((int) sequence & mask) == sequence;
+  }
+
+  /**
+   * Write the log record asynchronously.
+   *
+   * @param record the log record to write.
+   */
+  @Override
+  public void writeRecord(String record)
+  {
+    writeRecord((CharSequence) record);
+  }
+
+  /**
+   * Write the log record asynchronously. The record is encoded before
+   * returning, so it can be reused by the caller.
+   *
+   * @param record the log record to write.
+   */
+  public void writeRecord(CharSequence record)
+  {
+    if (stopRequested)
+    {
+      // the writer thread may be gone: write directly
+      writer.writeRecord(record.toString());
+      return;
+    }
+
+    final long sequence = claimSequence();
+    if (sequence < 0)
+    {
+      return;
+    }
+    final int index = (int) sequence & mask;
+    byte[] slot = slots[index];
+    if (slot.length < record.length() * 3 + EOL_BYTES.length)
+    {
+      final int requiredLength = encodedLength(record) + EOL_BYTES.length;
+      if (slot.length < requiredLength)
+      {
+        slot = new byte[requiredLength];
+        slots[index] = slot;
+      }
+    }
+    final int length = encode(record, slot);
+    System.arraycopy(EOL_BYTES, 0, slot, length, EOL_BYTES.length);
+    lengths[index] = length + EOL_BYTES.length;
+    published.set(index, sequence);
+
+    if (writerParked)
+    {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Claims a slot of the ring for a new record.
+   *
+   * @return the sequence number of the new record, or -1 if the record must
+   *         be dropped
+   */
+  private long claimSequence()
+  {
+    boolean blocked = false;
+    while (true)
+    {
+      final long sequence = nextSequence.get();
+      if (sequence - writtenSequence < slots.length)
+      {
+        if (nextSequence.compareAndSet(sequence, sequence + 1))
+        {
+          return sequence;
+        }
+      }
+      else if (dropOnOverflow)
+      {
+        droppedRecords.incrementAndGet();
+        return -1;
+      }
+      else
+      {
+        if (!blocked)
+        {
+          blocked = true;
+          blockedRecords.incrementAndGet();
+        }
+        LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+      }
+    }
+  }
+
+  /** Returns the number of bytes of the provided string encoded in UTF-8. */
+  private static int encodedLength(CharSequence s)
+  {
+    int length = 0;
+    for (int i = 0; i < s.length(); i++)
+    {
+      final char c = s.charAt(i);
+      if (c < 0x80)
+      {
+        length++;
+      }
+      else if (c < 0x800)
+      {
+        length += 2;
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1)))
+      {
+        length += 4;
+        i++;
+      }
+      else
+      {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /** Encodes the provided string in UTF-8 into the provided array, and returns the number of bytes. */
+  private static int encode(CharSequence s, byte[] bytes)
+  {
+    int pos = 0;
+    for (int i = 0; i < s.length(); i++)
+    {
+      final char c = s.charAt(i);
+      if (c < 0x80)
+      {
+        bytes[pos++] = (byte) c;
+      }
+      else if (c < 0x800)
+      {
+        bytes[pos++] = (byte) (0xC0 | (c >> 6));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1)))
+      {
+        final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+      else
+      {
+        // unpaired surrogates are encoded as is, like other 3 bytes characters
+        bytes[pos++] = (byte) (0xE0 | (c >> 12));
+        bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return pos;
+  }
+
+  /** Reports the records dropped since the last report, at most every few seconds unless forced. */
+  private void reportDroppedRecords(boolean force)
+  {
+    final long dropped = droppedRecords.get();
+    if (dropped != reportedDroppedRecords
+        && (force || TimeThread.getTime() - lastDropReportTime >= DROP_REPORT_INTERVAL_MS))
+    {
+      logger.warn(WARN_LOGGER_RECORDS_DROPPED, dropped - reportedDroppedRecords, name, dropped);
+      reportedDroppedRecords = dropped;
+      lastDropReportTime = TimeThread.getTime();
+    }
+  }
+
+  /**
+   * Returns the number of records dropped because the queue was full.
+   *
+   * @return the number of records dropped because the queue was full.
+   */
+  long getDroppedRecords()
+  {
+    return droppedRecords.get();
+  }
+
+  /**
+   * Returns the number of records which had to wait because the queue was
+   * full.
+   *
+   * @return the number of records which had to wait because the queue was
+   *         full.
+   */
+  long getBlockedRecords()
+  {
+    return blockedRecords.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush()
+  {
+    writer.flush();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getBytesWritten()
+  {
+    return writer.getBytesWritten();
+  }
+
+  /**
+   * Retrieves the wrapped writer.
+   *
+   * @return The wrapped writer used by this asynchronous writer.
+   */
+  public MultifileTextWriter getWrappedWriter()
+  {
+    return writer;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getShutdownListenerName()
+  {
+    return "RingBufferTextWriter Thread " + name;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void processServerShutdown(LocalizableMessage reason)
+  {
+    // Don't shutdown the wrapped writer on server shutdown as it
+    // might get more write requests before the log publishers are
+    // manually shutdown just before the server process exists.
+    shutdown(false);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void shutdown()
+  {
+    shutdown(true);
+  }
+
+  /**
+   * Releases any resources held by the writer.
+   *
+   * @param shutdownWrapped If the wrapped writer should be closed as well.
+   */
+  public void shutdown(boolean shutdownWrapped)
+  {
+    stopRequested = true;
+
+    // Wait for the writer thread to write the queued records and terminate
+    while (writerThread.isAlive())
+    {
+      try
+      {
+        LockSupport.unpark(writerThread);
+        writerThread.join();
+      }
+      catch (InterruptedException ex)
+      {
+        // Ignore; we gotta wait..
+      }
+    }
+    // Write the records queued while the writer thread was terminating
+    writerThread.writeAvailableRecords();
+    reportDroppedRecords(true);
+    writer.flush();
+
+    // Shutdown the wrapped writer.
+    if (shutdownWrapped)
+    {
+      writer.shutdown();
+    }
+
+    DirectoryServer.deregisterShutdownListener(this);
+  }
+}
@@ -45,6 +45,7 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.util.Utils;
 import org.opends.server.admin.server.ConfigurationChangeListener;
 import org.opends.server.admin.std.meta.FileBasedAccessLogPublisherCfgDefn.LogFormat;
+import org.opends.server.admin.std.meta.FileBasedAccessLogPublisherCfgDefn.QueueOverflowPolicy;
 import org.opends.server.admin.std.server.FileBasedAccessLogPublisherCfg;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.ExtendedOperationHandler;
@@ -85,6 +86,20 @@ public final class TextAccessLogPublisher extends
     return startupPublisher;
   }
 
+  /** The initial capacity of the buffers used to build log records. */
+  private static final int BUFFER_CAPACITY = 256;
+  /** Buffers which have grown larger are not reused, to avoid retaining memory. */
+  private static final int MAX_REUSED_BUFFER_CAPACITY = 8192;
+  /** The buffer used by each thread to build log records, reused to reduce garbage. */
+  private static final ThreadLocal<StringBuilder> BUFFERS = new ThreadLocal<StringBuilder>()
+  {
+    @Override
+    protected StringBuilder initialValue()
+    {
+      return new StringBuilder(BUFFER_CAPACITY);
+    }
+  };
+
   private TextWriter writer;
   private FileBasedAccessLogPublisherCfg cfg;
   private boolean isCombinedMode;
@@ -102,9 +117,9 @@ public final class TextAccessLogPublisher extends
       // Determine the writer we are using. If we were writing asynchronously,
       // we need to modify the underlying writer.
       TextWriter currentWriter;
-      if (writer instanceof AsynchronousTextWriter)
+      if (writer instanceof RingBufferTextWriter)
       {
-        currentWriter = ((AsynchronousTextWriter) writer).getWrappedWriter();
+        currentWriter = ((RingBufferTextWriter) writer).getWrappedWriter();
       }
       else
       {
@@ -118,12 +133,12 @@ public final class TextAccessLogPublisher extends
 
         if (config.isAsynchronous())
         {
-          if (writer instanceof AsynchronousTextWriter)
+          if (writer instanceof RingBufferTextWriter)
           {
             if (hasAsyncConfigChanged(config))
             {
               // reinstantiate
-              final AsynchronousTextWriter previousWriter = (AsynchronousTextWriter) writer;
+              final RingBufferTextWriter previousWriter = (RingBufferTextWriter) writer;
               writer = newAsyncWriter(mfWriter, config);
               previousWriter.shutdown(false);
             }
@@ -136,17 +151,18 @@ public final class TextAccessLogPublisher extends
         }
         else
         {
-          if (writer instanceof AsynchronousTextWriter)
+          if (writer instanceof RingBufferTextWriter)
           {
             // asynchronous is being turned off, remove async text writers.
-            final AsynchronousTextWriter previousWriter = (AsynchronousTextWriter) writer;
+            final RingBufferTextWriter previousWriter = (RingBufferTextWriter) writer;
             writer = mfWriter;
             previousWriter.shutdown(false);
           }
         }
 
         if (cfg.isAsynchronous() && config.isAsynchronous()
-            && cfg.getQueueSize() != config.getQueueSize())
+            && (cfg.getQueueSize() != config.getQueueSize()
+                || cfg.getQueueOverflowPolicy() != config.getQueueOverflowPolicy()))
         {
           ccr.setAdminActionRequired(true);
         }
@@ -273,10 +289,11 @@ public final class TextAccessLogPublisher extends
     return !cfg.dn().equals(newConfig.dn()) && cfg.isAutoFlush() != newConfig.isAutoFlush();
   }
 
-  private AsynchronousTextWriter newAsyncWriter(MultifileTextWriter mfWriter, FileBasedAccessLogPublisherCfg config)
+  private RingBufferTextWriter newAsyncWriter(MultifileTextWriter mfWriter, FileBasedAccessLogPublisherCfg config)
   {
     String name = "Asynchronous Text Writer for " + config.dn();
-    return new AsynchronousTextWriter(name, config.getQueueSize(), config.isAutoFlush(), mfWriter);
+    return new RingBufferTextWriter(name, config.getQueueSize(),
+        config.getQueueOverflowPolicy() == QueueOverflowPolicy.DROP, (int) config.getBufferSize(), mfWriter);
   }
 
   @Override
@@ -334,10 +351,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(abandonOperation, "ABANDON", CATEGORY_REQUEST, buffer);
     appendAbandonRequest(abandonOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -348,7 +365,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(abandonOperation, "ABANDON", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -357,7 +374,7 @@ public final class TextAccessLogPublisher extends
     appendResultCodeAndMessage(buffer, abandonOperation);
     logAdditionalLogItems(abandonOperation, buffer);
     appendEtime(buffer, abandonOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -368,10 +385,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(addOperation, "ADD", CATEGORY_REQUEST, buffer);
     appendAddRequest(addOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -382,7 +399,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(addOperation, "ADD", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -392,7 +409,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(addOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", addOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, addOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -403,10 +420,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(bindOperation, "BIND", CATEGORY_REQUEST, buffer);
     appendBindRequest(bindOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -417,7 +434,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(bindOperation, "BIND", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -469,7 +486,7 @@ public final class TextAccessLogPublisher extends
 
     appendEtime(buffer, bindOperation);
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -480,10 +497,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(compareOperation, "COMPARE", CATEGORY_REQUEST, buffer);
     appendCompareRequest(compareOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -494,7 +511,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(compareOperation, "COMPARE", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -504,7 +521,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(compareOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", compareOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, compareOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -516,14 +533,14 @@ public final class TextAccessLogPublisher extends
     }
 
     final long connectionID = clientConnection.getConnectionID();
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     buffer.append('[').append(TimeThread.getUserDefinedTime(timeStampFormat)).append(']');
     buffer.append(" CONNECT conn=").append(connectionID);
     buffer.append(" from=").append(clientConnection.getClientHostPort());
     buffer.append(" to=").append(clientConnection.getServerHostPort());
     buffer.append(" protocol=").append(clientConnection.getProtocol());
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -534,10 +551,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(deleteOperation, "DELETE", CATEGORY_REQUEST, buffer);
     appendDeleteRequest(deleteOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -548,7 +565,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(deleteOperation, "DELETE", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -558,7 +575,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(deleteOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", deleteOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, deleteOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -571,13 +588,13 @@ public final class TextAccessLogPublisher extends
     }
 
     final long connectionID = clientConnection.getConnectionID();
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     buffer.append('[').append(TimeThread.getUserDefinedTime(timeStampFormat)).append(']');
     buffer.append(" DISCONNECT conn=").append(connectionID);
     appendLabel(buffer, "reason", disconnectReason);
     appendLabelIfNotNull(buffer, "msg", message);
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -588,10 +605,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(extendedOperation, "EXTENDED", CATEGORY_REQUEST, buffer);
     appendExtendedRequest(extendedOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -602,7 +619,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(extendedOperation, "EXTENDED", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -625,7 +642,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(extendedOperation, buffer);
     appendEtime(buffer, extendedOperation);
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -636,10 +653,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(modifyDNOperation, "MODIFYDN", CATEGORY_REQUEST, buffer);
     appendModifyDNRequest(modifyDNOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -650,7 +667,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(modifyDNOperation, "MODIFYDN", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -660,7 +677,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(modifyDNOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", modifyDNOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, modifyDNOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -671,10 +688,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(modifyOperation, "MODIFY", CATEGORY_REQUEST, buffer);
     appendModifyRequest(modifyOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -685,7 +702,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(modifyOperation, "MODIFY", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -695,7 +712,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(modifyOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", modifyOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, modifyOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -706,10 +723,10 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(192);
+    final StringBuilder buffer = getBuffer();
     appendHeader(searchOperation, "SEARCH", CATEGORY_REQUEST, buffer);
     appendSearchRequest(searchOperation, buffer);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -720,7 +737,7 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(128);
+    final StringBuilder buffer = getBuffer();
     appendHeader(searchOperation, "SEARCH", CATEGORY_RESPONSE, buffer);
     if (isCombinedMode)
     {
@@ -731,7 +748,7 @@ public final class TextAccessLogPublisher extends
     logAdditionalLogItems(searchOperation, buffer);
     appendLabelIfNotNull(buffer, "authzDN", searchOperation.getProxiedAuthorizationDN());
     appendEtime(buffer, searchOperation);
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -742,14 +759,14 @@ public final class TextAccessLogPublisher extends
       return;
     }
 
-    final StringBuilder buffer = new StringBuilder(100);
+    final StringBuilder buffer = getBuffer();
     appendHeader(unbindOperation, "UNBIND", CATEGORY_REQUEST, buffer);
     if (unbindOperation.isSynchronizationOperation())
     {
       buffer.append(" type=synchronization");
     }
 
-    writer.writeRecord(buffer.toString());
+    writeRecord(buffer);
   }
 
   @Override
@@ -763,6 +780,31 @@ public final class TextAccessLogPublisher extends
     }
   }
 
+  private static StringBuilder getBuffer()
+  {
+    StringBuilder buffer = BUFFERS.get();
+    if (buffer.capacity() > MAX_REUSED_BUFFER_CAPACITY)
+    {
+      buffer = new StringBuilder(BUFFER_CAPACITY);
+      BUFFERS.set(buffer);
+    }
+    buffer.setLength(0);
+    return buffer;
+  }
+
+  private void writeRecord(final StringBuilder buffer)
+  {
+    if (writer instanceof RingBufferTextWriter)
+    {
+      // the record is encoded without creating a String
+      ((RingBufferTextWriter) writer).writeRecord(buffer);
+    }
+    else
+    {
+      writer.writeRecord(buffer.toString());
+    }
+  }
+
   private void appendAbandonRequest(final AbandonOperation abandonOperation, final StringBuilder buffer)
   {
     buffer.append(" idToAbandon=");
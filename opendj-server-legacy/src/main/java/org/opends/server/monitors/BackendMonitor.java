@@ -63,6 +63,8 @@ public class BackendMonitor
 
   /** The backend with which this monitor is associated. */
   private Backend<?> backend;
+  /** The latencies of the operations processed by the backend. */
+  private final OperationLatencyStatistics operationLatencies = new OperationLatencyStatistics();
 
   /** The name for this monitor. */
   private String monitorName;
@@ -93,6 +95,16 @@ public class BackendMonitor
     writabilityModeType = DirectoryServer.getAttributeTypeOrDefault(ATTR_MONITOR_BACKEND_WRITABILITY_MODE);
   }
 
+  /**
+   * Retrieves the latencies of the client operations processed by the backend.
+   *
+   * @return  The latencies of the client operations processed by the backend.
+   */
+  public OperationLatencyStatistics getOperationLatencyStatistics()
+  {
+    return operationLatencies;
+  }
+
   @Override
   public String getMonitorInstanceName()
   {
@@ -161,6 +173,8 @@ public class BackendMonitor
     attrs.add(Attributes.create(writabilityModeType, String
         .valueOf(backend.getWritabilityMode())));
 
+    operationLatencies.addMonitorData(attrs);
+
     return attrs;
   }
 }
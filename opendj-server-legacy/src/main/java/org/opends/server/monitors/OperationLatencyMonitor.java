@@ -0,0 +1,87 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.monitors;
+
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.DirectoryConfig;
+import org.opends.server.types.ObjectClass;
+
+/**
+ * This class implements a monitor provider reporting the latencies of the
+ * client operations processed by the server, per operation type.
+ *
+ * @see OperationLatencyStatistics
+ */
+public class OperationLatencyMonitor
+       extends MonitorProvider<MonitorProviderCfg>
+{
+  /** The latencies reported by this monitor. */
+  private final OperationLatencyStatistics statistics;
+
+  /**
+   * Creates a new operation latency monitor.
+   *
+   * @param statistics
+   *          The latencies to report.
+   */
+  public OperationLatencyMonitor(OperationLatencyStatistics statistics)
+  {
+    this.statistics = statistics;
+  }
+
+  @Override
+  public void initializeMonitorProvider(MonitorProviderCfg configuration)
+  {
+    // No initialization is required.
+  }
+
+  @Override
+  public String getMonitorInstanceName()
+  {
+    return "Operation Latency";
+  }
+
+  @Override
+  public ObjectClass getMonitorObjectClass()
+  {
+    return DirectoryConfig.getObjectClass(OC_MONITOR_OPERATION_LATENCY, true);
+  }
+
+  @Override
+  public List<Attribute> getMonitorData()
+  {
+    final List<Attribute> attrs = new ArrayList<>();
+    statistics.addMonitorData(attrs);
+    return attrs;
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.monitors;
+
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.schema.GeneralizedTimeSyntax;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeBuilder;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.OperationType;
+import org.opends.server.util.LatencyHistogram;
+
+/**
+ * The latencies of the operations processed by the server or by a backend,
+ * recorded per operation type in histograms, without locking.
+ * <p>
+ * Three latencies are recorded for each operation, in microseconds:
+ * <ul>
+ * <li>the queue wait time, between the request being read and a worker thread
+ * starting to process it,</li>
+ * <li>the processing time, between the start of the processing and the
+ * response being sent,</li>
+ * <li>the response time, which is the sum of both.</li>
+ * </ul>
+ * Each latency is reported in two views: since the server started or the
+ * statistics were last reset, and over the last {@link #WINDOW_DURATION_MS}
+ * milliseconds, which is a sliding window made of {@link #WINDOW_SLOTS}
+ * intervals. Each view is a multi-valued attribute with one value per operation
+ * type, like {@code search count=120 mean=350 p50=310 p90=520 p99=1200
+ * p99.9=4100 max=9050}.
+ * <p>
+ * Histograms are only allocated for the operation types which have been
+ * recorded, so that backends receiving few kinds of operations do not use much
+ * memory.
+ */
+public final class OperationLatencyStatistics
+{
+  /** The number of intervals of the sliding window. */
+  private static final int WINDOW_SLOTS = 3;
+  /** The duration of an interval of the sliding window in milliseconds. */
+  private static final long SLOT_DURATION_MS = TimeUnit.SECONDS.toMillis(20);
+  /** The maximum duration covered by the sliding window in milliseconds. */
+  static final long WINDOW_DURATION_MS = WINDOW_SLOTS * SLOT_DURATION_MS;
+
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+  private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+  /** The latencies that are recorded for each operation. */
+  private enum Metric
+  {
+    QUEUE_WAIT_TIME(ATTR_MONITOR_OPERATION_QUEUE_WAIT_TIME, ATTR_MONITOR_RECENT_OPERATION_QUEUE_WAIT_TIME),
+    PROCESSING_TIME(ATTR_MONITOR_OPERATION_PROCESSING_TIME, ATTR_MONITOR_RECENT_OPERATION_PROCESSING_TIME),
+    RESPONSE_TIME(ATTR_MONITOR_OPERATION_RESPONSE_TIME, ATTR_MONITOR_RECENT_OPERATION_RESPONSE_TIME);
+
+    private final String cumulativeAttributeName;
+    private final String windowAttributeName;
+
+    private Metric(String cumulativeAttributeName, String windowAttributeName)
+    {
+      this.cumulativeAttributeName = cumulativeAttributeName;
+      this.windowAttributeName = windowAttributeName;
+    }
+  }
+
+  /** A histogram recording values since the last reset and over the sliding window. */
+  static final class WindowedHistogram
+  {
+    private final LatencyHistogram cumulative = new LatencyHistogram();
+    private final LatencyHistogram[] slots = new LatencyHistogram[WINDOW_SLOTS];
+    /** The interval counted by each slot, as a number of intervals since the epoch. */
+    private final AtomicLong[] slotIntervals = new AtomicLong[WINDOW_SLOTS];
+
+    WindowedHistogram()
+    {
+      for (int i = 0; i < WINDOW_SLOTS; i++)
+      {
+        slots[i] = new LatencyHistogram();
+        slotIntervals[i] = new AtomicLong(-1);
+      }
+    }
+
+    void record(long value, long nowMillis)
+    {
+      cumulative.recordValue(value);
+      final long interval = nowMillis / SLOT_DURATION_MS;
+      final int slot = (int) (interval % WINDOW_SLOTS);
+      final long slotInterval = slotIntervals[slot].get();
+      // The first thread recording a value in a new interval recycles the slot.
+      // Values recorded concurrently by other threads may be lost,
+      // which is acceptable for statistics.
+      if (slotInterval < interval && slotIntervals[slot].compareAndSet(slotInterval, interval))
+      {
+        slots[slot].reset();
+      }
+      slots[slot].recordValue(value);
+    }
+
+    LatencyHistogram getCumulative()
+    {
+      return cumulative;
+    }
+
+    LatencyHistogram getWindow(long nowMillis)
+    {
+      final long oldestInterval = nowMillis / SLOT_DURATION_MS - WINDOW_SLOTS + 1;
+      final LatencyHistogram window = new LatencyHistogram();
+      for (int i = 0; i < WINDOW_SLOTS; i++)
+      {
+        if (slotIntervals[i].get() >= oldestInterval)
+        {
+          window.add(slots[i]);
+        }
+      }
+      return window;
+    }
+
+    void reset()
+    {
+      cumulative.reset();
+    }
+  }
+
+  /** The histograms of an operation type, indexed by metric ordinal. */
+  private final AtomicReferenceArray<WindowedHistogram[]> histograms =
+      new AtomicReferenceArray<>(OperationType.values().length);
+  private volatile long resetTime = System.currentTimeMillis();
+
+  /**
+   * Records the latencies of an operation.
+   *
+   * @param operationType
+   *          the type of the operation, abandon and unbind operations are
+   *          ignored since they have no response
+   * @param nowMillis
+   *          the current time in milliseconds
+   * @param queueWaitMicros
+   *          the time in microseconds the operation waited before being
+   *          processed
+   * @param processingMicros
+   *          the time in microseconds taken to process the operation
+   */
+  public void record(OperationType operationType, long nowMillis, long queueWaitMicros, long processingMicros)
+  {
+    if (operationType == OperationType.ABANDON || operationType == OperationType.UNBIND)
+    {
+      return;
+    }
+    final WindowedHistogram[] metrics = getOrCreateHistograms(operationType);
+    metrics[Metric.QUEUE_WAIT_TIME.ordinal()].record(queueWaitMicros, nowMillis);
+    metrics[Metric.PROCESSING_TIME.ordinal()].record(processingMicros, nowMillis);
+    metrics[Metric.RESPONSE_TIME.ordinal()].record(queueWaitMicros + processingMicros, nowMillis);
+  }
+
+  private WindowedHistogram[] getOrCreateHistograms(OperationType operationType)
+  {
+    final int index = operationType.ordinal();
+    final WindowedHistogram[] metrics = histograms.get(index);
+    if (metrics != null)
+    {
+      return metrics;
+    }
+    final WindowedHistogram[] newMetrics = new WindowedHistogram[Metric.values().length];
+    for (int i = 0; i < newMetrics.length; i++)
+    {
+      newMetrics[i] = new WindowedHistogram();
+    }
+    return histograms.compareAndSet(index, null, newMetrics) ? newMetrics : histograms.get(index);
+  }
+
+  /**
+   * Forgets the latencies recorded since the server started or since the last
+   * reset. The sliding window is not affected.
+   */
+  public void reset()
+  {
+    for (int i = 0; i < histograms.length(); i++)
+    {
+      final WindowedHistogram[] metrics = histograms.get(i);
+      if (metrics != null)
+      {
+        for (WindowedHistogram histogram : metrics)
+        {
+          histogram.reset();
+        }
+      }
+    }
+    resetTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Adds the monitor attributes reporting the recorded latencies to the
+   * provided list.
+   *
+   * @param attrs
+   *          the list of monitor attributes where to add the latencies
+   */
+  public void addMonitorData(List<Attribute> attrs)
+  {
+    final long now = System.currentTimeMillis();
+    for (Metric metric : Metric.values())
+    {
+      final AttributeBuilder cumulative = new AttributeBuilder(getType(metric.cumulativeAttributeName));
+      final AttributeBuilder window = new AttributeBuilder(getType(metric.windowAttributeName));
+      for (OperationType operationType : OperationType.values())
+      {
+        final WindowedHistogram[] metrics = histograms.get(operationType.ordinal());
+        if (metrics != null)
+        {
+          final WindowedHistogram histogram = metrics[metric.ordinal()];
+          cumulative.add(toString(operationType, histogram.getCumulative()));
+          window.add(toString(operationType, histogram.getWindow(now)));
+        }
+      }
+      if (!cumulative.isEmpty())
+      {
+        attrs.add(cumulative.toAttribute());
+        attrs.add(window.toAttribute());
+      }
+    }
+    attrs.add(Attributes.create(getType(ATTR_MONITOR_OPERATION_LATENCY_RESET_TIME),
+        GeneralizedTimeSyntax.format(resetTime)));
+  }
+
+  private static AttributeType getType(String name)
+  {
+    return DirectoryServer.getAttributeTypeOrDefault(name);
+  }
+
+  /** Formats a histogram as an attribute value, prefixed with the operation type. */
+  static String toString(OperationType operationType, LatencyHistogram histogram)
+  {
+    final StringBuilder builder = new StringBuilder();
+    builder.append(operationType.getOperationName().toLowerCase());
+    builder.append(" count=").append(histogram.getTotalCount());
+    builder.append(" mean=").append(Math.round(histogram.getMean()));
+    for (int i = 0; i < PERCENTILES.length; i++)
+    {
+      builder.append(' ').append(PERCENTILE_NAMES[i]);
+      builder.append('=').append(histogram.getValueAtPercentile(PERCENTILES[i]));
+    }
+    builder.append(" max=").append(histogram.getMax());
+    return builder.toString();
+  }
+}
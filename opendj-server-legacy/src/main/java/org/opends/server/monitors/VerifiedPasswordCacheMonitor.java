@@ -0,0 +1,104 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.monitors;
+
+import static org.opends.server.core.DirectoryServer.*;
+
+import java.util.ArrayList;
+
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.VerifiedPasswordCache;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.Attributes;
+
+/**
+ * This class defines a Directory Server monitor that can be used to provide
+ * information about the use of the verified password cache.
+ */
+public class VerifiedPasswordCacheMonitor
+       extends MonitorProvider<MonitorProviderCfg>
+{
+  /**
+   * The name to use for the monitor attribute that provides the number of
+   * binds which have used a cached password verification.
+   */
+  public static final String ATTR_HITS = "verifiedPasswordCacheHits";
+  /**
+   * The name to use for the monitor attribute that provides the number of
+   * binds which have not found a cached password verification.
+   */
+  public static final String ATTR_MISSES = "verifiedPasswordCacheMisses";
+  /**
+   * The name to use for the monitor attribute that provides the number of
+   * cached password verifications.
+   */
+  public static final String ATTR_COUNT = "currentVerifiedPasswordCacheCount";
+
+  /** The verified password cache with which this monitor is associated. */
+  private final VerifiedPasswordCache cache;
+
+  /**
+   * Creates a new verified password cache monitor.
+   *
+   * @param cache
+   *          The verified password cache with which this monitor is
+   *          associated.
+   */
+  public VerifiedPasswordCacheMonitor(VerifiedPasswordCache cache)
+  {
+    this.cache = cache;
+  }
+
+  @Override
+  public void initializeMonitorProvider(MonitorProviderCfg configuration)
+  {
+    // No initialization is required.
+  }
+
+  @Override
+  public String getMonitorInstanceName()
+  {
+    return "Verified Password Cache";
+  }
+
+  @Override
+  public ArrayList<Attribute> getMonitorData()
+  {
+    ArrayList<Attribute> monitorAttrs = new ArrayList<>();
+    putAttribute(monitorAttrs, ATTR_HITS, cache.getHits());
+    putAttribute(monitorAttrs, ATTR_MISSES, cache.getMisses());
+    putAttribute(monitorAttrs, ATTR_COUNT, cache.size());
+    return monitorAttrs;
+  }
+
+  private void putAttribute(ArrayList<Attribute> monitorAttrs, String attrName, Object value)
+  {
+    AttributeType attrType = getAttributeTypeOrDefault(attrName, attrName, getDefaultIntegerSyntax());
+    monitorAttrs.add(Attributes.create(attrType, String.valueOf(value)));
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.replication.plugin;
+
+import static org.opends.messages.ReplicationMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.api.Backend;
+import org.opends.server.tasks.TaskUtils;
+import org.opends.server.types.BackupConfig;
+import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.RestoreConfig;
+import org.opends.server.util.DynamicConstants;
+
+/**
+ * Transfers a consistent binary snapshot of a backend through a stream, for
+ * initializing a replica faster than with an LDIF export.
+ * <p>
+ * The snapshot is a backup of the backend, so that the files are consistent
+ * with each other while the backend keeps serving operations. The files of the
+ * backup directory are sent one after the other, followed by a digest of the
+ * whole stream, which is checked before restoring the backup.
+ * <p>
+ * A backup can only be restored in a backend of the same type, using the same
+ * storage format, which the stream identifies with the snapshot format. The
+ * stream format is:
+ * <pre>
+ * magic (int), version (byte), snapshot format (UTF), backup ID (UTF),
+ * number of files (int),
+ * then for each file: name (UTF), length (long), content,
+ * then the SHA-1 digest of all the above.
+ * </pre>
+ */
+final class BackendSnapshot
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private static final int MAGIC = 0x4f444a53;
+  private static final byte VERSION = 1;
+  private static final String DIGEST_ALGORITHM = "SHA-1";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private BackendSnapshot()
+  {
+    // prevent instantiation
+  }
+
+  /**
+   * Returns the format of the snapshots of the provided backend. Snapshots can
+   * only be restored in a backend with the same format.
+   * <p>
+   * The format is made of the backend class, which determines the storage
+   * engine and the layout of its files, and of the server version, since the
+   * storage format of a backend only changes between versions.
+   *
+   * @param backend
+   *          the backend
+   * @return the format of the snapshots of the provided backend
+   */
+  static String getFormat(Backend<?> backend)
+  {
+    return backend.getClass().getName() + "/" + DynamicConstants.VERSION_NUMBER_STRING;
+  }
+
+  /**
+   * Backs up the provided backend and writes the backup to the provided
+   * output. The output is closed.
+   *
+   * @param backend
+   *          the backend to snapshot, which must support backups
+   * @param baseDN
+   *          the base DN of the replication domain
+   * @param output
+   *          the output where to write the snapshot
+   * @throws DirectoryException
+   *           if the backup cannot be created or written
+   */
+  static void write(Backend<?> backend, DN baseDN, OutputStream output) throws DirectoryException
+  {
+    File backupPath = null;
+    try
+    {
+      backupPath = createTemporaryDirectory();
+      final String backupID = "replication-" + System.currentTimeMillis();
+      final BackupDirectory backupDir =
+          new BackupDirectory(backupPath.getPath(), TaskUtils.getConfigEntry(backend).dn());
+      final BackupConfig backupConfig = new BackupConfig(backupDir, backupID, false);
+      backupConfig.setHashData(true);
+      backend.createBackup(backupConfig);
+
+      writeFiles(backupPath, backupID, getFormat(backend), output);
+    }
+    catch (DirectoryException e)
+    {
+      throw newDirectoryException(ERR_SNAPSHOT_CANNOT_EXPORT.get(baseDN, e.getMessageObject()), e);
+    }
+    catch (Exception e)
+    {
+      throw newDirectoryException(ERR_SNAPSHOT_CANNOT_EXPORT.get(baseDN, stackTraceToSingleLineString(e)), e);
+    }
+    finally
+    {
+      close(output);
+      deleteTemporaryDirectory(backupPath);
+    }
+  }
+
+  /**
+   * Reads a snapshot written by {@link #write(Backend, DN, OutputStream)} and
+   * restores it in the provided backend, which must have been disabled. The
+   * snapshot is rejected before the backend is modified if it has been taken
+   * from a backend with another format.
+   *
+   * @param backend
+   *          the backend to restore, which must support restoring backups
+   * @param baseDN
+   *          the base DN of the replication domain
+   * @param input
+   *          the input from which to read the snapshot
+   * @throws DirectoryException
+   *           if the snapshot is corrupted, has another format or cannot be
+   *           restored
+   */
+  static void restore(Backend<?> backend, DN baseDN, InputStream input) throws DirectoryException
+  {
+    File backupPath = null;
+    try
+    {
+      backupPath = createTemporaryDirectory();
+      final String backupID = readFiles(input, backupPath, baseDN, getFormat(backend));
+
+      final BackupDirectory backupDir = BackupDirectory.readBackupDirectoryDescriptor(backupPath.getPath());
+      backend.restoreBackup(new RestoreConfig(backupDir, backupID, false));
+    }
+    catch (DirectoryException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      throw newDirectoryException(ERR_SNAPSHOT_CANNOT_IMPORT.get(baseDN, stackTraceToSingleLineString(e)), e);
+    }
+    finally
+    {
+      deleteTemporaryDirectory(backupPath);
+    }
+  }
+
+  /**
+   * Writes the files of a backup directory to the provided output, followed by
+   * their digest.
+   *
+   * @param backupPath
+   *          the backup directory
+   * @param backupID
+   *          the ID of the backup in the backup directory
+   * @param format
+   *          the format of the backend which has been backed up
+   * @param output
+   *          the output where to write the files
+   * @throws IOException
+   *           if the files cannot be read or written
+   * @throws NoSuchAlgorithmException
+   *           if the digest algorithm is not available
+   */
+  static void writeFiles(File backupPath, String backupID, String format, OutputStream output)
+      throws IOException, NoSuchAlgorithmException
+  {
+    final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    final DataOutputStream out = new DataOutputStream(new DigestOutputStream(output, digest));
+    final File[] files = backupPath.listFiles();
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeUTF(format);
+    out.writeUTF(backupID);
+    out.writeInt(files.length);
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    for (File file : files)
+    {
+      out.writeUTF(file.getName());
+      out.writeLong(file.length());
+      try (InputStream in = new FileInputStream(file))
+      {
+        copy(in, out, file.length(), buffer);
+      }
+    }
+    out.flush();
+    output.write(digest.digest());
+    output.flush();
+  }
+
+  /**
+   * Reads the files written by
+   * {@link #writeFiles(File, String, String, OutputStream)} into the provided
+   * directory, and checks their digest.
+   *
+   * @param input
+   *          the input from which to read the files
+   * @param backupPath
+   *          the directory where to write the files
+   * @param baseDN
+   *          the base DN of the replication domain
+   * @param expectedFormat
+   *          the format of the backend where the backup will be restored
+   * @return the ID of the backup
+   * @throws DirectoryException
+   *           if the files read are corrupted, or have been backed up from a
+   *           backend with another format
+   * @throws IOException
+   *           if the files cannot be read or written
+   * @throws NoSuchAlgorithmException
+   *           if the digest algorithm is not available
+   */
+  static String readFiles(InputStream input, File backupPath, DN baseDN, String expectedFormat)
+      throws DirectoryException, IOException, NoSuchAlgorithmException
+  {
+    final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    final DigestInputStream digestInput = new DigestInputStream(new BufferedInputStream(input, BUFFER_SIZE), digest);
+    final DataInputStream in = new DataInputStream(digestInput);
+    if (in.readInt() != MAGIC || in.readByte() != VERSION)
+    {
+      throw newCorruptedException(baseDN, "unknown format");
+    }
+    final String format = in.readUTF();
+    if (!format.equals(expectedFormat))
+    {
+      throw new DirectoryException(ResultCode.OTHER, ERR_SNAPSHOT_INCOMPATIBLE.get(baseDN, format, expectedFormat));
+    }
+    final String backupID = in.readUTF();
+    final int nbFiles = in.readInt();
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    for (int i = 0; i < nbFiles; i++)
+    {
+      final String name = in.readUTF();
+      final long length = in.readLong();
+      if (!isValidFileName(name) || length < 0)
+      {
+        throw newCorruptedException(baseDN, "invalid file " + name);
+      }
+      try (OutputStream out = new FileOutputStream(new File(backupPath, name)))
+      {
+        copy(in, out, length, buffer);
+      }
+    }
+
+    final byte[] expectedDigest = digest.digest();
+    digestInput.on(false);
+    final byte[] actualDigest = new byte[expectedDigest.length];
+    in.readFully(actualDigest);
+    if (!MessageDigest.isEqual(expectedDigest, actualDigest))
+    {
+      throw newCorruptedException(baseDN, "digest mismatch");
+    }
+    return backupID;
+  }
+
+  /** Files are written in the backup directory, prevent writing anywhere else. */
+  private static boolean isValidFileName(String name)
+  {
+    return !name.isEmpty() && !name.equals(".") && !name.equals("..")
+        && name.indexOf('/') == -1 && name.indexOf('\\') == -1;
+  }
+
+  private static void copy(InputStream in, OutputStream out, long length, byte[] buffer) throws IOException
+  {
+    long remaining = length;
+    while (remaining > 0)
+    {
+      final int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (read < 0)
+      {
+        throw new IOException("Unexpected end of stream, " + remaining + " bytes missing");
+      }
+      out.write(buffer, 0, read);
+      remaining -= read;
+    }
+  }
+
+  private static File createTemporaryDirectory() throws IOException
+  {
+    final File parent = getFileForPath("bak");
+    if (!parent.exists() && !parent.mkdirs())
+    {
+      throw new IOException("Cannot create directory " + parent);
+    }
+    return Files.createTempDirectory(parent.toPath(), "replication-snapshot-").toFile();
+  }
+
+  private static void deleteTemporaryDirectory(File backupPath)
+  {
+    if (backupPath != null && !recursiveDelete(backupPath))
+    {
+      logger.warn(LocalizableMessage.raw("Could not delete the temporary directory %s", backupPath));
+    }
+  }
+
+  private static DirectoryException newCorruptedException(DN baseDN, String reason)
+  {
+    return new DirectoryException(ResultCode.OTHER, ERR_SNAPSHOT_CORRUPTED.get(baseDN, reason));
+  }
+
+  private static DirectoryException newDirectoryException(LocalizableMessage message, Exception cause)
+  {
+    logger.traceException(cause);
+    return new DirectoryException(ResultCode.OTHER, message, cause);
+  }
+}
@@ -3373,28 +3373,7 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
       throws DirectoryException
   {
     Backend<?> backend = getBackend();
-
-    //  Acquire a shared lock for the backend.
-    try
-    {
-      String lockFile = LockFileManager.getBackendLockFileName(backend);
-      StringBuilder failureReason = new StringBuilder();
-      if (! LockFileManager.acquireSharedLock(lockFile, failureReason))
-      {
-        LocalizableMessage message =
-            ERR_LDIFEXPORT_CANNOT_LOCK_BACKEND.get(backend.getBackendID(), failureReason);
-        logger.error(message);
-        throw new DirectoryException(ResultCode.OTHER, message);
-      }
-    }
-    catch (Exception e)
-    {
-      LocalizableMessage message =
-          ERR_LDIFEXPORT_CANNOT_LOCK_BACKEND.get(backend.getBackendID(),
-              stackTraceToSingleLineString(e));
-      logger.error(message);
-      throw new DirectoryException(ResultCode.OTHER, message);
-    }
+    acquireSharedLock(backend);
 
     long numberOfEntries = backend.getNumberOfEntriesInBaseDN(getBaseDN());
     long entryCount = Math.min(numberOfEntries, 1000);
@@ -3466,29 +3445,139 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
         genID = ros.getChecksumValue();
       }
 
-      //  Release the shared lock on the backend.
-      try
+      releaseSharedLock(backend);
+    }
+    return genID;
+  }
+
+  /**
+   * Acquires a shared lock for the backend, preventing imports and restores
+   * while it is being exported.
+   *
+   * @param backend
+   *          The backend.
+   * @throws DirectoryException
+   *           If the backend could not be locked.
+   */
+  private void acquireSharedLock(Backend<?> backend) throws DirectoryException
+  {
+    try
+    {
+      String lockFile = LockFileManager.getBackendLockFileName(backend);
+      StringBuilder failureReason = new StringBuilder();
+      if (! LockFileManager.acquireSharedLock(lockFile, failureReason))
       {
-        String lockFile = LockFileManager.getBackendLockFileName(backend);
-        StringBuilder failureReason = new StringBuilder();
-        if (! LockFileManager.releaseLock(lockFile, failureReason))
-        {
-          LocalizableMessage message =
-              WARN_LDIFEXPORT_CANNOT_UNLOCK_BACKEND.get(backend.getBackendID(), failureReason);
-          logger.warn(message);
-          throw new DirectoryException(ResultCode.OTHER, message);
-        }
+        LocalizableMessage message =
+            ERR_LDIFEXPORT_CANNOT_LOCK_BACKEND.get(backend.getBackendID(), failureReason);
+        logger.error(message);
+        throw new DirectoryException(ResultCode.OTHER, message);
       }
-      catch (Exception e)
+    }
+    catch (DirectoryException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      LocalizableMessage message =
+          ERR_LDIFEXPORT_CANNOT_LOCK_BACKEND.get(backend.getBackendID(),
+              stackTraceToSingleLineString(e));
+      logger.error(message);
+      throw new DirectoryException(ResultCode.OTHER, message);
+    }
+  }
+
+  /**
+   * Releases the shared lock acquired for the backend.
+   *
+   * @param backend
+   *          The backend.
+   * @throws DirectoryException
+   *           If the lock could not be released.
+   */
+  private void releaseSharedLock(Backend<?> backend) throws DirectoryException
+  {
+    try
+    {
+      String lockFile = LockFileManager.getBackendLockFileName(backend);
+      StringBuilder failureReason = new StringBuilder();
+      if (! LockFileManager.releaseLock(lockFile, failureReason))
       {
         LocalizableMessage message =
-            WARN_LDIFEXPORT_CANNOT_UNLOCK_BACKEND.get(backend.getBackendID(),
-                stackTraceToSingleLineString(e));
+            WARN_LDIFEXPORT_CANNOT_UNLOCK_BACKEND.get(backend.getBackendID(), failureReason);
         logger.warn(message);
         throw new DirectoryException(ResultCode.OTHER, message);
       }
     }
-    return genID;
+    catch (DirectoryException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      LocalizableMessage message =
+          WARN_LDIFEXPORT_CANNOT_UNLOCK_BACKEND.get(backend.getBackendID(),
+              stackTraceToSingleLineString(e));
+      logger.warn(message);
+      throw new DirectoryException(ResultCode.OTHER, message);
+    }
+  }
+
+  /**
+   * Returns whether the backend of this domain can be copied as a binary
+   * snapshot: the snapshot contains the whole backend, so it must only hold
+   * this domain, and fractional replicas hold partial entries.
+   *
+   * @return whether the backend of this domain can be copied as a binary
+   *         snapshot.
+   */
+  private boolean canUseSnapshot()
+  {
+    final Backend<?> backend = getBackend();
+    return config.isSnapshotInitialization()
+        && !fractionalConfig.isFractional()
+        && backend != null
+        && backend.supports(BackendOperation.BACKUP)
+        && backend.supports(BackendOperation.RESTORE)
+        && backend.getBaseDNs().length == 1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected String getSnapshotFormat()
+  {
+    return canUseSnapshot() ? BackendSnapshot.getFormat(getBackend()) : null;
+  }
+
+  /**
+   * This method triggers an export of a binary snapshot of the backend. The
+   * server state and the generation ID are stored in the base entry, so they
+   * are part of the snapshot.
+   *
+   * @param output               The OutputStream where the snapshot should
+   *                             be produced.
+   * @throws DirectoryException  When needed.
+   */
+  @Override
+  protected void exportSnapshot(OutputStream output) throws DirectoryException
+  {
+    Backend<?> backend = getBackend();
+    acquireSharedLock(backend);
+    try
+    {
+      // the importer must not replay again the updates already in the snapshot
+      state.save();
+      BackendSnapshot.write(backend, getBaseDN(), output);
+    }
+    catch (DirectoryException e)
+    {
+      logger.error(e.getMessageObject());
+      throw e;
+    }
+    finally
+    {
+      releaseSharedLock(backend);
+    }
   }
 
   /**
@@ -3613,6 +3702,72 @@ private boolean solveNamingConflict(ModifyDNOperation op, LDAPUpdateMsg msg)
     }
   }
 
+  /**
+   * This method triggers an import of a binary snapshot of the backend.
+   *
+   * @param input                The InputStream from which the snapshot is
+   *                             read.
+   * @throws DirectoryException  When needed.
+   */
+  @Override
+  protected void importSnapshot(InputStream input) throws DirectoryException
+  {
+    Backend<?> backend = getBackend();
+
+    boolean backendDisabled = false;
+    ImportExportContext ieCtx = getImportExportContext();
+    try
+    {
+      backendDisabled = true;
+      preBackendImport(backend);
+      BackendSnapshot.restore(backend, getBaseDN(), input);
+
+      stateSavingDisabled = false;
+    }
+    catch (DirectoryException e)
+    {
+      ieCtx.setExceptionIfNoneSet(new DirectoryException(ResultCode.OTHER,
+          ERR_INIT_IMPORT_FAILURE.get(e.getMessageObject()), e));
+    }
+    catch (Exception e)
+    {
+      ieCtx.setExceptionIfNoneSet(new DirectoryException(ResultCode.OTHER,
+          ERR_INIT_IMPORT_FAILURE.get(stackTraceToSingleLineString(e))));
+    }
+    finally
+    {
+      try
+      {
+        if (backendDisabled)
+        {
+          closeBackendImport(backend); // Re-enable backend
+        }
+
+        // Reads the server state and generation ID restored with the snapshot
+        loadDataState();
+
+        if (ieCtx.getException() != null)
+        {
+          // the backend may be partially restored
+          generationId = computeGenerationId();
+          saveGenerationId(generationId);
+        }
+      }
+      catch (DirectoryException fe)
+      {
+        // see importBackend()
+        ieCtx.setExceptionIfNoneSet(new DirectoryException(
+            ResultCode.OTHER,
+            ERR_INIT_IMPORT_FAILURE.get(stackTraceToSingleLineString(fe))));
+      }
+    }
+
+    if (ieCtx.getException() != null)
+    {
+      throw ieCtx.getException();
+    }
+  }
+
   /**
    * Make post import operations.
    * @param backend The backend implied in the import.
@@ -40,6 +40,11 @@ public class InitializeRequestMsg extends RoutableMsg
 {
   private final DN baseDN;
   private int initWindow;
+  /**
+   * The format of the binary snapshots of the backend from which the requester
+   * accepts to be initialized rather than from an LDIF export, null if none.
+   */
+  private String snapshotFormat;
 
   /**
    * Creates a InitializeRequestMsg message.
@@ -80,6 +85,11 @@ public class InitializeRequestMsg extends RoutableMsg
     if (version >= ProtocolVersion.REPLICATION_PROTOCOL_V4)
     {
       initWindow = scanner.nextIntUTF8();
+      // optional, absent from messages sent by older servers
+      if (!scanner.isEmpty())
+      {
+        snapshotFormat = scanner.nextString();
+      }
     }
   }
 
@@ -109,6 +119,7 @@ public class InitializeRequestMsg extends RoutableMsg
     if (version >= ProtocolVersion.REPLICATION_PROTOCOL_V4)
     {
       builder.appendIntUTF8(initWindow);
+      builder.appendString(snapshotFormat);
     }
     return builder.toByteArray();
   }
@@ -121,7 +132,8 @@ public class InitializeRequestMsg extends RoutableMsg
   public String toString()
   {
     return "InitializeRequestMessage: baseDN=" + baseDN + " senderId="
-       + senderID + " destination=" + destination + " initWindow=" + initWindow;
+       + senderID + " destination=" + destination + " initWindow=" + initWindow
+       + " snapshotFormat=" + snapshotFormat;
   }
 
   /**
@@ -141,4 +153,31 @@ public class InitializeRequestMsg extends RoutableMsg
   {
     this.initWindow = initWindow;
   }
+
+  /**
+   * Returns the format of the binary snapshots of the backend from which the
+   * requester accepts to be initialized.
+   *
+   * @return the format of the binary snapshots of the backend from which the
+   *         requester accepts to be initialized, or {@code null} if it only
+   *         accepts to be initialized from an LDIF export.
+   */
+  public String getSnapshotFormat()
+  {
+    return snapshotFormat;
+  }
+
+  /**
+   * Sets the format of the binary snapshots of the backend from which the
+   * requester accepts to be initialized.
+   *
+   * @param snapshotFormat
+   *          the format of the binary snapshots of the backend from which the
+   *          requester accepts to be initialized, or {@code null} if it only
+   *          accepts to be initialized from an LDIF export.
+   */
+  public void setSnapshotFormat(String snapshotFormat)
+  {
+    this.snapshotFormat = snapshotFormat;
+  }
 }
@@ -51,6 +51,12 @@ public class InitializeTargetMsg extends RoutableMsg
 
   private int initWindow;
 
+  /**
+   * The format of the binary snapshot of the backend replacing the entries,
+   * null if the entries are sent.
+   */
+  private String snapshotFormat;
+
   /**
    * Creates a InitializeTargetMsg.
    *
@@ -96,6 +102,11 @@ public class InitializeTargetMsg extends RoutableMsg
     if (version >= ProtocolVersion.REPLICATION_PROTOCOL_V4)
     {
       initWindow = scanner.nextIntUTF8();
+      // optional, absent from messages sent by older servers
+      if (!scanner.isEmpty())
+      {
+        snapshotFormat = scanner.nextString();
+      }
     }
   }
 
@@ -158,6 +169,7 @@ public class InitializeTargetMsg extends RoutableMsg
     if (version >= ProtocolVersion.REPLICATION_PROTOCOL_V4)
     {
       builder.appendIntUTF8(initWindow);
+      builder.appendString(snapshotFormat);
     }
     return builder.toByteArray();
   }
@@ -170,4 +182,41 @@ public class InitializeTargetMsg extends RoutableMsg
   {
     this.initWindow = initWindow;
   }
+
+  /**
+   * Returns whether the entries are replaced by a binary snapshot of the
+   * backend, sent in the subsequent entry messages.
+   *
+   * @return whether the entries are replaced by a binary snapshot of the
+   *         backend.
+   */
+  public boolean isSnapshot()
+  {
+    return snapshotFormat != null;
+  }
+
+  /**
+   * Returns the format of the binary snapshot of the backend replacing the
+   * entries.
+   *
+   * @return the format of the binary snapshot of the backend replacing the
+   *         entries, or {@code null} if the entries are sent.
+   */
+  public String getSnapshotFormat()
+  {
+    return snapshotFormat;
+  }
+
+  /**
+   * Sets the format of the binary snapshot of the backend replacing the
+   * entries.
+   *
+   * @param snapshotFormat
+   *          the format of the binary snapshot of the backend replacing the
+   *          entries, or {@code null} if the entries are sent.
+   */
+  public void setSnapshotFormat(String snapshotFormat)
+  {
+    this.snapshotFormat = snapshotFormat;
+  }
 }
@@ -31,7 +31,9 @@ import static org.opends.server.types.Attributes.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -70,14 +72,22 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
 
   private static final int MINIMUM_TRESHOLD_MSG_QUEUE_SIZE = 5;
 
-  /** UpdateMsg queue. */
+  /** UpdateMsg queue. Producers and the consumer access it without locking. */
   private final MsgQueue msgQueue = new MsgQueue();
   /**
    * Late queue. All access to the lateQueue in getNextMessage() is
-   * single-threaded. However, reads from threads calling getOlderUpdateCN()
-   * need protecting against removals performed using getNextMessage().
+   * single-threaded. Reads from threads calling getOlderUpdateCSN() rely on
+   * the lateQueue being thread safe.
    */
   private final MsgQueue lateQueue = new MsgQueue();
+  /**
+   * Serializes the changes of the following flag: trimming the msgQueue
+   * (which stops following) must not interleave with the consumer catching
+   * up with the msgQueue (which starts following).
+   */
+  private final Object followingLock = new Object();
+  /** The consumer thread waiting for updates to be added to the msgQueue, if any. */
+  private volatile Thread waitingConsumer;
   /** Local hosting RS. */
   protected final ReplicationServer replicationServer;
   /** Specifies the related replication server domain based on baseDN. */
@@ -91,7 +101,7 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
   /** Specifies the max queue size in bytes for this handler. */
   private final int maxQueueBytesSize;
   /** Specifies whether the consumer is following the producer (is not late). */
-  private boolean following;
+  private volatile boolean following;
   /** Specifies the current serverState of this handler. */
   private ServerState serverState;
   /** Specifies the baseDN of the domain. */
@@ -127,25 +137,34 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    */
   void add(UpdateMsg update)
   {
-    synchronized (msgQueue)
+    msgQueue.add(update);
+
+    if (isMsgQueueAboveThreshold())
     {
-      /*
-       * If queue was empty the writer thread was probably asleep
-       * waiting for some changes, wake it up
-       */
-      if (msgQueue.isEmpty())
+      synchronized (followingLock)
       {
-        msgQueue.notify();
+        // TODO : size should be configurable and larger than max-receive-queue-size
+        while (isMsgQueueAboveThreshold())
+        {
+          following = false;
+          if (msgQueue.removeFirst() == null)
+          {
+            break;
+          }
+        }
       }
+    }
 
-      msgQueue.add(update);
+    // If the writer thread was asleep waiting for some changes, wake it up
+    wakeUpConsumer();
+  }
 
-      // TODO : size should be configurable and larger than max-receive-queue-size
-      while (isMsgQueueAboveThreshold())
-      {
-        following = false;
-        msgQueue.removeFirst();
-      }
+  private void wakeUpConsumer()
+  {
+    final Thread consumer = waitingConsumer;
+    if (consumer != null)
+    {
+      LockSupport.unpark(consumer);
     }
   }
 
@@ -216,6 +235,10 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
     attributes.add(create("handler", getMonitorInstanceName()));
     attributes.add(create("queue-size", String.valueOf(msgQueue.count())));
     attributes.add(create("queue-size-bytes", String.valueOf(msgQueue.bytesCount())));
+    attributes.add(create("queue-average-time-ms", String.valueOf(msgQueue.getAverageTimeInQueue())));
+    attributes.add(create("queue-max-time-ms", String.valueOf(msgQueue.getMaxTimeInQueue())));
+    attributes.add(create("queue-oldest-time-ms", String.valueOf(msgQueue.getOldestTimeInQueue())));
+    attributes.add(create("late-queue-size", String.valueOf(lateQueue.count())));
     attributes.add(create("following", String.valueOf(following)));
     return attributes;
   }
@@ -277,7 +300,7 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
           {
             // we could not find any messages in the changelog
             // so the remote server is not late anymore.
-            synchronized (msgQueue)
+            synchronized (followingLock)
             {
               // Ensure we are below threshold so this server will follow the
               // msgQueue without fearing the msgQueue gets trimmed
@@ -295,7 +318,8 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
              * -> set following to true and empty the lateQueue.
              */
             UpdateMsg msg = lateQueue.first();
-            synchronized (msgQueue)
+            boolean caughtUp = false;
+            synchronized (followingLock)
             {
               if (msgQueue.contains(msg))
               {
@@ -303,23 +327,20 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
                 following = true;
                 lateQueue.clear();
                 msgQueue.consumeUpTo(msg);
-                if (updateServerState(msg))
-                {
-                  return msg;
-                }
+                caughtUp = true;
               }
             }
+            if (caughtUp && updateServerState(msg))
+            {
+              return msg;
+            }
           }
         }
         else
         {
           // get the next change from the lateQueue
-          UpdateMsg msg;
-          synchronized (msgQueue) // TODO JNR why synchronize(msgQueue) here?
-          {
-            msg = lateQueue.removeFirst();
-          }
-          if (updateServerState(msg))
+          UpdateMsg msg = lateQueue.removeFirst();
+          if (msg != null && updateServerState(msg))
           {
             return msg;
           }
@@ -327,34 +348,27 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
         }
       }
 
-      synchronized (msgQueue)
+      if (following)
       {
-        if (following)
+        UpdateMsg msg = msgQueue.removeFirst();
+        if (msg == null)
         {
-          try
-          {
-            while (msgQueue.isEmpty() && following)
-            {
-              msgQueue.wait(500);
-              if (!activeConsumer)
-              {
-                return null;
-              }
-            }
-          } catch (InterruptedException e)
+          if (!waitForUpdates())
           {
             return null;
           }
-          UpdateMsg msg = msgQueue.removeFirst();
-          if (updateServerState(msg))
-          {
-            /*
-             * Only push the message if it has not yet been seen
-             * by the other server.
-             * Otherwise just loop to select the next message.
-             */
-            return msg;
-          }
+        }
+        else if (following && updateServerState(msg))
+        {
+          /*
+           * Only push the message if it has not yet been seen
+           * by the other server.
+           * Otherwise just loop to select the next message.
+           * If the msgQueue was trimmed concurrently, the message is dropped:
+           * the serverState was not updated, so it will be read again from the
+           * changelogDB along with the trimmed messages.
+           */
+          return msg;
         }
       }
       /*
@@ -366,6 +380,32 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
     return null;
   }
 
+  /**
+   * Waits for updates to be added to the msgQueue while following it.
+   *
+   * @return false if the consumer became inactive or was interrupted while waiting
+   */
+  private boolean waitForUpdates()
+  {
+    waitingConsumer = Thread.currentThread();
+    try
+    {
+      while (msgQueue.isEmpty() && following)
+      {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(500));
+        if (!activeConsumer || Thread.interrupted())
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+    finally
+    {
+      waitingConsumer = null;
+    }
+  }
+
   /**
    * Fills the late queue with the most recent changes, accepting only the
    * messages from provided replica ids.
@@ -393,32 +433,31 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    */
   public CSN getOlderUpdateCSN()
   {
-    synchronized (msgQueue)
+    if (following)
     {
-      if (following)
+      final UpdateMsg first = msgQueue.first();
+      if (first != null)
       {
-        if (!msgQueue.isEmpty())
-        {
-          return msgQueue.first().getCSN();
-        }
+        return first.getCSN();
+      }
+    }
+    else
+    {
+      final UpdateMsg first = lateQueue.first();
+      if (first != null)
+      {
+        return first.getCSN();
       }
       else
       {
-        if (!lateQueue.isEmpty())
-        {
-          return lateQueue.first().getCSN();
-        }
-        else
-        {
-          /*
-          following is false AND lateQueue is empty
-          We may be at the very moment when the writer has emptied the
-          lateQueue when it sent the last update. The writer will fill again
-          the lateQueue when it will send the next update but we are not yet
-          there. So let's take the last change not sent directly from the db.
-          */
-          return findOldestCSNFromReplicaDBs();
-        }
+        /*
+        following is false AND lateQueue is empty
+        We may be at the very moment when the writer has emptied the
+        lateQueue when it sent the last update. The writer will fill again
+        the lateQueue when it will send the next update but we are not yet
+        there. So let's take the last change not sent directly from the db.
+        */
+        return findOldestCSNFromReplicaDBs();
       }
     }
     return null;
@@ -459,27 +498,24 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
    */
   public int getRcvMsgQueueSize()
   {
-    synchronized (msgQueue)
+    /*
+     * When the server is up to date or close to be up to date,
+     * the number of updates to be sent is the size of the receive queue.
+     */
+    if (following)
     {
-      /*
-       * When the server is up to date or close to be up to date,
-       * the number of updates to be sent is the size of the receive queue.
-       */
-      if (following)
-      {
-        return msgQueue.count();
-      }
-
-      /*
-       * When the server is not able to follow, the msgQueue may become too
-       * large and therefore won't contain all the changes. Some changes may
-       * only be stored in the backing DB of the servers.
-       * The total size of the receive queue is calculated by doing the sum of
-       * the number of missing changes for every replicaDB.
-       */
-      ServerState latestState = replicationServerDomain.getLatestServerState();
-      return ServerState.diffChanges(latestState, serverState);
+      return msgQueue.count();
     }
+
+    /*
+     * When the server is not able to follow, the msgQueue may become too
+     * large and therefore won't contain all the changes. Some changes may
+     * only be stored in the backing DB of the servers.
+     * The total size of the receive queue is calculated by doing the sum of
+     * the number of missing changes for every replicaDB.
+     */
+    ServerState latestState = replicationServerDomain.getLatestServerState();
+    return ServerState.diffChanges(latestState, serverState);
   }
 
   /**
@@ -578,12 +614,8 @@ class MessageHandler extends MonitorProvider<MonitorProviderCfg>
   /** Shutdown this handler. */
   public void shutdown()
   {
-    synchronized (msgQueue)
-    {
-      msgQueue.clear();
-      msgQueue.notify();
-      msgQueue.notifyAll();
-    }
+    msgQueue.clear();
+    wakeUpConsumer();
 
     DirectoryServer.deregisterMonitorProvider(this);
   }
@@ -26,7 +26,12 @@
  */
 package org.opends.server.replication.server;
 
-import java.util.TreeMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.opends.server.replication.common.CSN;
@@ -37,36 +42,52 @@ import static org.opends.messages.ReplicationMessages.*;
 /**
  * This class is used to build ordered lists of UpdateMsg.
  * The order is defined by the order of the CSN of the UpdateMsg.
+ * <p>
+ * The queue is backed by a concurrent skip list so producers and consumers
+ * never block each other. The number of messages and of bytes are maintained
+ * with atomic counters, and the time spent by the messages in the queue is
+ * recorded when they are removed from it.
  * @ThreadSafe
  */
 public class MsgQueue
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
-  private TreeMap<CSN, UpdateMsg> map = new TreeMap<>();
-  /**
-   * FIXME JNR to be investigated:
-   * I strongly suspect that we could replace this field
-   * by using the synchronized keyword on each method.
-   * However, MessageHandler is weirdly synchronizing on msgQueue field
-   * even though it is touching the lateQueue field (?!?).
-   */
-  private final Object lock = new Object();
+  private final ConcurrentNavigableMap<CSN, QueuedMsg> map = new ConcurrentSkipListMap<>();
 
+  /** The total number of messages in the queue. */
+  private final AtomicInteger count = new AtomicInteger();
   /** The total number of bytes for all the message in the queue. */
-  private int bytesCount;
+  private final AtomicInteger bytesCount = new AtomicInteger();
+
+  /** The number of messages removed from the head of the queue. */
+  private final AtomicLong removedCount = new AtomicLong();
+  /** The total time spent in the queue by the messages removed from its head, in nanoseconds. */
+  private final AtomicLong totalTimeInQueue = new AtomicLong();
+  /** The maximum time spent in the queue by a message removed from its head, in nanoseconds. */
+  private final AtomicLong maxTimeInQueue = new AtomicLong();
+
+  /** An UpdateMsg along with the time it was added to the queue. */
+  private static final class QueuedMsg
+  {
+    private final UpdateMsg update;
+    private final long enqueueTime = System.nanoTime();
+
+    private QueuedMsg(UpdateMsg update)
+    {
+      this.update = update;
+    }
+  }
 
   /**
    * Return the first UpdateMsg in the MsgQueue.
    *
-   * @return The first UpdateMsg in the MsgQueue.
+   * @return The first UpdateMsg in the MsgQueue, or {@code null} if it is empty.
    */
   public UpdateMsg first()
   {
-    synchronized (lock)
-    {
-      return map.get(map.firstKey());
-    }
+    final Map.Entry<CSN, QueuedMsg> first = map.firstEntry();
+    return first != null ? first.getValue().update : null;
   }
 
   /**
@@ -76,10 +97,7 @@ public class MsgQueue
    */
   public int count()
   {
-    synchronized (lock)
-    {
-      return map.size();
-    }
+    return count.get();
   }
 
   /**
@@ -89,10 +107,7 @@ public class MsgQueue
    */
   public int bytesCount()
   {
-    synchronized (lock)
-    {
-      return bytesCount;
-    }
+    return bytesCount.get();
   }
 
   /**
@@ -102,10 +117,7 @@ public class MsgQueue
    */
   public boolean isEmpty()
   {
-    synchronized (lock)
-    {
-      return map.isEmpty();
-    }
+    return map.isEmpty();
   }
 
   /**
@@ -115,56 +127,66 @@ public class MsgQueue
    */
   public void add(UpdateMsg update)
   {
-    synchronized (lock)
+    final QueuedMsg msgSameCSN = map.put(update.getCSN(), new QueuedMsg(update));
+    if (msgSameCSN != null)
     {
-      final UpdateMsg msgSameCSN = map.put(update.getCSN(), update);
-      if (msgSameCSN != null)
+      try
       {
-        try
-        {
-          if (msgSameCSN.getBytes().length != update.getBytes().length
-              || msgSameCSN.isAssured() != update.isAssured()
-              || msgSameCSN.getVersion() != update.getVersion())
-          {
-            // Adding 2 msgs with the same CSN is ok only when the 2 msgs are the same
-            bytesCount += update.size() - msgSameCSN.size();
-            logger.error(ERR_RSQUEUE_DIFFERENT_MSGS_WITH_SAME_CSN, msgSameCSN.getCSN(), msgSameCSN, update);
-          }
-        }
-        catch (Exception e)
+        final UpdateMsg previous = msgSameCSN.update;
+        if (previous.getBytes().length != update.getBytes().length
+            || previous.isAssured() != update.isAssured()
+            || previous.getVersion() != update.getVersion())
         {
-          logger.traceException(e);
+          // Adding 2 msgs with the same CSN is ok only when the 2 msgs are the same
+          bytesCount.addAndGet(update.size() - previous.size());
+          logger.error(ERR_RSQUEUE_DIFFERENT_MSGS_WITH_SAME_CSN, previous.getCSN(), previous, update);
         }
       }
-      else
+      catch (Exception e)
       {
-        // it is really an ADD
-        bytesCount += update.size();
+        logger.traceException(e);
       }
     }
+    else
+    {
+      // it is really an ADD
+      count.incrementAndGet();
+      bytesCount.addAndGet(update.size());
+    }
   }
 
   /**
    * Get and remove the first UpdateMsg in this MessageQueue.
    *
-   * @return The first UpdateMsg in this MessageQueue.
+   * @return The first UpdateMsg in this MessageQueue, or {@code null} if it is empty.
    */
   public UpdateMsg removeFirst()
   {
-    synchronized (lock)
+    final Map.Entry<CSN, QueuedMsg> first = map.pollFirstEntry();
+    if (first == null)
     {
-      // FIXME JNR replace next 2 lines with just that one:
-      // final UpdateMsg update = map.pollFirstEntry().getValue();
-      final UpdateMsg update = map.get(map.firstKey());
-      map.remove(update.getCSN());
-      bytesCount -= update.size();
-      if (map.isEmpty() && bytesCount != 0)
-      {
-        // should never happen
-        logger.error(ERR_BYTE_COUNT, bytesCount);
-        bytesCount = 0;
-      }
-      return update;
+      return null;
+    }
+    final QueuedMsg queued = first.getValue();
+    removed(queued);
+    recordTimeInQueue(System.nanoTime() - queued.enqueueTime);
+    return queued.update;
+  }
+
+  private void removed(QueuedMsg queued)
+  {
+    count.decrementAndGet();
+    bytesCount.addAndGet(-queued.update.size());
+  }
+
+  private void recordTimeInQueue(long timeInQueue)
+  {
+    removedCount.incrementAndGet();
+    totalTimeInQueue.addAndGet(timeInQueue);
+    long max;
+    while (timeInQueue > (max = maxTimeInQueue.get()) && !maxTimeInQueue.compareAndSet(max, timeInQueue))
+    {
+      // Retry
     }
   }
 
@@ -179,52 +201,85 @@ public class MsgQueue
    */
   public boolean contains(UpdateMsg msg)
   {
-    synchronized (lock)
-    {
-      return map.containsKey(msg.getCSN());
-    }
+    return map.containsKey(msg.getCSN());
   }
 
   /** Removes all UpdateMsg form this queue. */
   public void clear()
   {
-    synchronized (lock)
+    Map.Entry<CSN, QueuedMsg> first;
+    while ((first = map.pollFirstEntry()) != null)
     {
-      map.clear();
-      bytesCount = 0;
+      removed(first.getValue());
     }
   }
 
   /**
    * Consumes all the messages in this queue up to and including the passed in
-   * message. If the passed in message is not contained in the current queue,
-   * then all messages will be removed from it.
+   * message. Messages with a greater CSN, including messages concurrently
+   * added to the queue, are left in it.
    *
    * @param finalMsg
    *          the final message to reach when consuming messages from this queue
    */
   public void consumeUpTo(UpdateMsg finalMsg)
   {
-    // FIXME this code could be more efficient if the msgQueue could call the
-    // following code (to be tested):
-    // if (!map.containsKey(finalMsg.getCSN())) {
-    // map.clear();
-    // } else {
-    // map.headMap(finalMsg.getCSN(), true).clear();
-    // }
-
     final CSN finalCSN = finalMsg.getCSN();
-    UpdateMsg msg;
-    do
+    Map.Entry<CSN, QueuedMsg> first;
+    while ((first = map.firstEntry()) != null && first.getKey().compareTo(finalCSN) <= 0)
     {
-      msg = removeFirst();
+      if (map.remove(first.getKey(), first.getValue()))
+      {
+        removed(first.getValue());
+      }
     }
-    while (!finalCSN.equals(msg.getCSN()));
+  }
+
+  /**
+   * Returns the average time spent in this queue by the messages removed from its head.
+   *
+   * @return the average time spent in this queue by the messages removed from its head, in milliseconds
+   */
+  public long getAverageTimeInQueue()
+  {
+    final long removed = removedCount.get();
+    return removed != 0 ? TimeUnit.NANOSECONDS.toMillis(totalTimeInQueue.get() / removed) : 0;
+  }
+
+  /**
+   * Returns the maximum time spent in this queue by a message removed from its head.
+   *
+   * @return the maximum time spent in this queue by a message removed from its head, in milliseconds
+   */
+  public long getMaxTimeInQueue()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(maxTimeInQueue.get());
+  }
+
+  /**
+   * Returns the time spent in this queue so far by its first message.
+   *
+   * @return the time spent in this queue so far by its first message, in milliseconds
+   */
+  public long getOldestTimeInQueue()
+  {
+    final Map.Entry<CSN, QueuedMsg> first = map.firstEntry();
+    return first != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - first.getValue().enqueueTime) : 0;
   }
 
   @Override
   public String toString()
   {
-    return getClass().getSimpleName() + " bytesCount=" + bytesCount + " queue=" + map.values();
+    final StringBuilder sb = new StringBuilder("[");
+    for (QueuedMsg queued : map.values())
+    {
+      if (sb.length() > 1)
+      {
+        sb.append(", ");
+      }
+      sb.append(queued.update);
+    }
+    sb.append("]");
+    return getClass().getSimpleName() + " bytesCount=" + bytesCount + " queue=" + sb;
   }
 }
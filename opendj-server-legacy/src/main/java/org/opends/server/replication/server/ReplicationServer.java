@@ -877,6 +877,13 @@ public class ReplicationServer
         ccr.setResultCode(ResultCode.OPERATIONS_ERROR);
       }
     }
+    if (config.isChangelogGroupCommitEnabled() != oldConfig.isChangelogGroupCommitEnabled()
+        || config.getChangelogGroupCommitInterval() != oldConfig.getChangelogGroupCommitInterval()
+        || config.getChangelogGroupCommitMaxSize() != oldConfig.getChangelogGroupCommitMaxSize())
+    {
+      this.changelogDB.setGroupCommit(isChangelogGroupCommitEnabled(),
+          getChangelogGroupCommitInterval(), getChangelogGroupCommitMaxSize());
+    }
 
     // changing the listen port requires to stop the listen thread
     // and restart it.
@@ -1338,6 +1345,50 @@ public class ReplicationServer
     return config.isComputeChangeNumber();
   }
 
+  /**
+   * Returns whether the read-only changelog files are read through a memory mapping.
+   *
+   * @return {@code true} if the read-only changelog files are read through a
+   *         memory mapping, {@code false} otherwise.
+   */
+  public boolean isChangelogMemoryMappedReadsEnabled()
+  {
+    return config.isChangelogMemoryMappedReads();
+  }
+
+  /**
+   * Returns whether the changes written in the changelog are synchronized to
+   * the file system in batches.
+   *
+   * @return {@code true} if changelog group commit is enabled, {@code false} otherwise.
+   */
+  public boolean isChangelogGroupCommitEnabled()
+  {
+    return config.isChangelogGroupCommitEnabled();
+  }
+
+  /**
+   * Returns the maximum time a change written in the changelog waits before
+   * being synchronized to the file system, when group commit is enabled.
+   *
+   * @return the group commit interval in milliseconds
+   */
+  public long getChangelogGroupCommitInterval()
+  {
+    return config.getChangelogGroupCommitInterval();
+  }
+
+  /**
+   * Returns the size of changes written in the changelog which triggers a
+   * synchronization to the file system, when group commit is enabled.
+   *
+   * @return the group commit maximum size in bytes
+   */
+  public long getChangelogGroupCommitMaxSize()
+  {
+    return config.getChangelogGroupCommitMaxSize();
+  }
+
   /**
    * Returns whether the external change-log contains data from at least a domain.
    * @return whether the external change-log contains data from at least a domain
@@ -339,6 +339,12 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
       return;
     }
 
+    if (preparedAssuredInfo != null && preparedAssuredInfo.ackOnceStored)
+    {
+      // Safe data ack can only be sent once the update is stored in the changelog
+      sourceHandler.send(new AckMsg(updateMsg.getCSN()));
+    }
+
     final List<Integer> assuredServers = getAssuredServers(updateMsg, preparedAssuredInfo);
 
     /**
@@ -583,6 +589,12 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
        * received. Null if expectedServers is null.
        */
       public ExpectedAcksInfo expectedAcksInfo;
+
+      /**
+       * Whether an ack must be sent back to the requester as soon as the
+       * update is stored in the changelog, without waiting for other acks.
+       */
+      public boolean ackOnceStored;
   }
 
   /**
@@ -670,7 +682,9 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
 
   /**
    * Process a just received assured update message in Safe Data mode. If the
-   * ack can be sent immediately, it is done here. This will also determine to
+   * ack can be sent without waiting for other acks, this is recorded so that the
+   * put method sends it as soon as the update is stored in the changelog, which
+   * is when the update is safe. This will also determine to
    * which suitable servers an ack should be requested from, and which ones are
    * not eligible for an ack request.
    * This method is an helper method for the put method. Have a look at the put
@@ -680,14 +694,13 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
    *        update was received
    * @return A suitable PreparedAssuredInfo object that contains every needed
    * info to proceed with post to server writers.
-   * @throws IOException When an IO exception happens during the update
-   *         processing.
    */
   private PreparedAssuredInfo processSafeDataUpdateMsg(
-    UpdateMsg update, ServerHandler sourceHandler) throws IOException
+    UpdateMsg update, ServerHandler sourceHandler)
   {
     CSN csn = update.getCSN();
     boolean interestedInAcks = false;
+    boolean ackOnceStored = false;
     byte safeDataLevel = update.getSafeDataLevel();
     byte groupId = localReplicationServer.getGroupId();
     byte sourceGroupId = sourceHandler.getGroupId();
@@ -706,11 +719,11 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
           if (safeDataLevel == (byte) 1)
           {
             /**
-             * Immediately return the ack for an assured message in safe data
-             * mode with safe data level 1, coming from a DS. No need to wait
-             * for more acks
+             * Return the ack for an assured message in safe data mode with
+             * safe data level 1, coming from a DS, as soon as it is stored.
+             * No need to wait for more acks
              */
-            sourceHandler.send(new AckMsg(csn));
+            ackOnceStored = true;
           } else
           {
             /**
@@ -730,7 +743,7 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
            */
           if (safeDataLevel > (byte) 1)
           {
-            sourceHandler.send(new AckMsg(csn));
+            ackOnceStored = true;
           }
         }
     }
@@ -764,11 +777,12 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
       } else
       {
         // level > 1 and source is a DS but no eligible servers found, send the
-        // ack immediately
-        sourceHandler.send(new AckMsg(csn));
+        // ack as soon as the update is stored
+        ackOnceStored = true;
       }
     }
 
+    preparedAssuredInfo.ackOnceStored = ackOnceStored;
     return preparedAssuredInfo;
   }
 
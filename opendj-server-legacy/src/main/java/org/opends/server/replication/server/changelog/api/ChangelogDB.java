@@ -68,6 +68,24 @@ public interface ChangelogDB
   void setComputeChangeNumber(boolean computeChangeNumber)
       throws ChangelogException;
 
+  /**
+   * Sets whether the replication database must synchronize the replicated
+   * changes to the file system, batching the synchronizations of the changes
+   * received concurrently. Can be called while the database is running.
+   * <p>
+   * When enabled, publishing an assured update only returns once the update
+   * has been synchronized to the file system.
+   *
+   * @param enabled
+   *          whether to synchronize the replicated changes to the file system
+   * @param intervalInMillis
+   *          the maximum time a change waits before being synchronized
+   * @param maxSizeInBytes
+   *          the size of changes triggering a synchronization before the
+   *          interval elapses
+   */
+  void setGroupCommit(boolean enabled, long intervalInMillis, long maxSizeInBytes);
+
   /**
    * Shutdown the replication database.
    *
@@ -0,0 +1,451 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.opends.messages.ReplicationMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.replication.server.changelog.api.ChangelogException;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.InitializationException;
+
+/**
+ * Thread synchronizing to the file system the changes appended to the replica
+ * DBs, so that the changes appended concurrently to several replica DBs, for
+ * any domain, are synchronized together.
+ * <p>
+ * Changes appended while a synchronization is in progress are batched and
+ * synchronized by the next synchronization, which starts at most after the
+ * configured interval, or as soon as the configured maximum size of changes
+ * has been appended.
+ * <p>
+ * Threads which must know their change has been persisted, for example to
+ * acknowledge an assured update, wait for the synchronization covering their
+ * change. Other threads only register their change and do not wait. Once the
+ * group committer has stopped, waiting threads synchronize their change
+ * themselves, so that a thread still using a group committer being replaced
+ * never returns before its change has been persisted.
+ */
+class ChangelogGroupCommitter extends DirectoryThread
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private final long intervalInMillis;
+  private final long maxSizeInBytes;
+
+  /**
+   * The replica DBs with changes appended since the last synchronization started.
+   * <p>
+   * @GuardedBy("this")
+   */
+  private Set<FileReplicaDB> pendingReplicaDBs = new HashSet<>();
+  /** @GuardedBy("this") */
+  private long pendingBytes;
+  /** @GuardedBy("this") */
+  private long pendingRecords;
+  /** Time at which the first pending change was appended. @GuardedBy("this") */
+  private long pendingSinceMillis;
+  /** Number of the batch the pending changes belong to. @GuardedBy("this") */
+  private long currentBatch = 1;
+  /** Number of the last batch synchronized. @GuardedBy("this") */
+  private long lastSyncedBatch;
+  /** Number of threads waiting for the synchronization of the current batch. @GuardedBy("this") */
+  private int currentBatchWaiters;
+  /**
+   * The failed batches that threads are still waiting for, keyed by batch number.
+   * <p>
+   * @GuardedBy("this")
+   */
+  private final Map<Long, BatchFailure> failedBatches = new HashMap<>();
+  /** Whether this thread has stopped synchronizing changes. @GuardedBy("this") */
+  private boolean stopped;
+
+  /** Statistics. @GuardedBy("this") */
+  private long nbSyncs;
+  private long totalSyncedRecords;
+  private long totalSyncedBytes;
+  private long maxBatchRecords;
+  private long totalSyncTimeNanos;
+  private long maxSyncTimeNanos;
+
+  private final GroupCommitMonitorProvider monitor;
+
+  /** The failure of a batch, kept until all the threads waiting for this batch have been notified. */
+  private static final class BatchFailure
+  {
+    private final ChangelogException error;
+    private int remainingWaiters;
+
+    private BatchFailure(ChangelogException error, int waiters)
+    {
+      this.error = error;
+      this.remainingWaiters = waiters;
+    }
+  }
+
+  /**
+   * Creates a new group committer.
+   *
+   * @param intervalInMillis
+   *          the maximum time a change waits before being synchronized
+   * @param maxSizeInBytes
+   *          the size of pending changes triggering a synchronization before
+   *          the interval elapses
+   * @param monitorInstanceNamePrefix
+   *          the prefix of the name of the monitor entry of the group committer,
+   *          or {@code null} if no monitor entry must be published
+   */
+  ChangelogGroupCommitter(long intervalInMillis, long maxSizeInBytes, String monitorInstanceNamePrefix)
+  {
+    super("Changelog group committer");
+    this.intervalInMillis = intervalInMillis;
+    this.maxSizeInBytes = maxSizeInBytes;
+    if (monitorInstanceNamePrefix != null)
+    {
+      this.monitor = new GroupCommitMonitorProvider(monitorInstanceNamePrefix);
+      DirectoryServer.deregisterMonitorProvider(monitor);
+      DirectoryServer.registerMonitorProvider(monitor);
+    }
+    else
+    {
+      this.monitor = null;
+    }
+  }
+
+  /**
+   * Registers a change which has been appended to the provided replica DB, so
+   * that it is synchronized by the next synchronization. This method does not
+   * wait for the synchronization.
+   *
+   * @param replicaDB
+   *          the replica DB the change has been appended to
+   * @param sizeInBytes
+   *          the size of the change
+   * @return the number of the batch synchronizing the change, or 0 if the
+   *         group committer is stopped
+   */
+  synchronized long changeAppended(FileReplicaDB replicaDB, int sizeInBytes)
+  {
+    if (stopped)
+    {
+      // the change will be synchronized when the replica DB is closed
+      return 0;
+    }
+    if (pendingReplicaDBs.isEmpty())
+    {
+      pendingSinceMillis = System.currentTimeMillis();
+    }
+    pendingReplicaDBs.add(replicaDB);
+    pendingRecords++;
+    pendingBytes += sizeInBytes;
+    if (pendingRecords == 1 || pendingBytes >= maxSizeInBytes)
+    {
+      notifyAll();
+    }
+    return currentBatch;
+  }
+
+  /**
+   * Registers a change which has been appended to the provided replica DB and
+   * waits until the synchronization covering this change completes. If this
+   * group committer stops before synchronizing the change, the change is
+   * directly synchronized by the calling thread.
+   *
+   * @param replicaDB
+   *          the replica DB the change has been appended to
+   * @param sizeInBytes
+   *          the size of the change
+   * @throws ChangelogException
+   *           If the synchronization covering this change failed
+   */
+  void changeAppendedAndAwaitSync(FileReplicaDB replicaDB, int sizeInBytes) throws ChangelogException
+  {
+    synchronized (this)
+    {
+      final long batch = changeAppended(replicaDB, sizeInBytes);
+      if (batch != 0)
+      {
+        currentBatchWaiters++;
+      }
+      boolean interrupted = false;
+      while (batch != 0 && lastSyncedBatch < batch && !stopped)
+      {
+        try
+        {
+          wait();
+        }
+        catch (InterruptedException e)
+        {
+          interrupted = true;
+        }
+      }
+      if (interrupted)
+      {
+        Thread.currentThread().interrupt();
+      }
+      final BatchFailure failure = failedBatches.get(batch);
+      if (failure != null)
+      {
+        if (--failure.remainingWaiters == 0)
+        {
+          failedBatches.remove(batch);
+        }
+        throw failure.error;
+      }
+      if (batch != 0 && lastSyncedBatch >= batch)
+      {
+        return;
+      }
+    }
+    // this group committer stopped without synchronizing the change,
+    // for example because it has been replaced by another one
+    replicaDB.syncToFileSystem();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void run()
+  {
+    try
+    {
+      while (true)
+      {
+        final Set<FileReplicaDB> toSync;
+        final long batch;
+        final long nbRecords;
+        final long nbBytes;
+        final int nbWaiters;
+        synchronized (this)
+        {
+          waitForBatch();
+          if (pendingReplicaDBs.isEmpty())
+          { // shutdown initiated and nothing left to synchronize:
+            // stop accepting changes before releasing the lock
+            stopped = true;
+            return;
+          }
+          toSync = pendingReplicaDBs;
+          batch = currentBatch;
+          nbRecords = pendingRecords;
+          nbBytes = pendingBytes;
+          nbWaiters = currentBatchWaiters;
+          pendingReplicaDBs = new HashSet<>();
+          currentBatchWaiters = 0;
+          pendingRecords = 0;
+          pendingBytes = 0;
+          currentBatch++;
+        }
+
+        final long startNanos = System.nanoTime();
+        final ChangelogException failure = sync(toSync);
+        final long syncTimeNanos = System.nanoTime() - startNanos;
+
+        synchronized (this)
+        {
+          lastSyncedBatch = batch;
+          if (failure != null && nbWaiters > 0)
+          {
+            failedBatches.put(batch, new BatchFailure(failure, nbWaiters));
+          }
+          nbSyncs++;
+          totalSyncedRecords += nbRecords;
+          totalSyncedBytes += nbBytes;
+          maxBatchRecords = Math.max(maxBatchRecords, nbRecords);
+          totalSyncTimeNanos += syncTimeNanos;
+          maxSyncTimeNanos = Math.max(maxSyncTimeNanos, syncTimeNanos);
+          notifyAll();
+        }
+        if (failure != null)
+        {
+          logger.error(ERR_CHANGELOG_GROUP_COMMIT_FAILED, stackTraceToSingleLineString(failure));
+        }
+      }
+    }
+    finally
+    {
+      synchronized (this)
+      {
+        stopped = true;
+        notifyAll();
+      }
+      if (monitor != null)
+      {
+        DirectoryServer.deregisterMonitorProvider(monitor);
+      }
+    }
+  }
+
+  /**
+   * Waits until a batch of changes must be synchronized, or until shutdown is
+   * initiated.
+   */
+  private void waitForBatch()
+  {
+    while (!isShutdownInitiated())
+    {
+      try
+      {
+        if (pendingReplicaDBs.isEmpty())
+        {
+          wait();
+          continue;
+        }
+        final long remaining = pendingSinceMillis + intervalInMillis - System.currentTimeMillis();
+        if (remaining <= 0 || pendingBytes >= maxSizeInBytes)
+        {
+          return;
+        }
+        wait(remaining);
+      }
+      catch (InterruptedException e)
+      {
+        // shutdown initiated?
+      }
+    }
+  }
+
+  private ChangelogException sync(final Set<FileReplicaDB> replicaDBs)
+  {
+    ChangelogException firstFailure = null;
+    for (FileReplicaDB replicaDB : replicaDBs)
+    {
+      try
+      {
+        replicaDB.syncToFileSystem();
+      }
+      catch (ChangelogException e)
+      {
+        if (firstFailure == null)
+        {
+          firstFailure = e;
+        }
+        else
+        {
+          logger.traceException(e);
+        }
+      }
+    }
+    return firstFailure;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void initiateShutdown()
+  {
+    super.initiateShutdown();
+    synchronized (this)
+    {
+      notifyAll(); // wake up the group committer thread for faster shutdown
+    }
+  }
+
+  /**
+   * Returns the number of synchronizations performed.
+   *
+   * @return the number of synchronizations performed
+   */
+  synchronized long getNumberOfSyncs()
+  {
+    return nbSyncs;
+  }
+
+  /**
+   * Returns the number of changes synchronized.
+   *
+   * @return the number of changes synchronized
+   */
+  synchronized long getNumberOfSyncedChanges()
+  {
+    return totalSyncedRecords;
+  }
+
+  /** Implements monitoring capabilities of the group committer. */
+  private final class GroupCommitMonitorProvider extends MonitorProvider<MonitorProviderCfg>
+  {
+    private final String monitorInstanceNamePrefix;
+
+    private GroupCommitMonitorProvider(String monitorInstanceNamePrefix)
+    {
+      this.monitorInstanceNamePrefix = monitorInstanceNamePrefix;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      final List<Attribute> attributes = new ArrayList<>();
+      synchronized (ChangelogGroupCommitter.this)
+      {
+        create(attributes, "group-commit-syncs", nbSyncs);
+        create(attributes, "group-commit-synced-changes", totalSyncedRecords);
+        create(attributes, "group-commit-synced-bytes", totalSyncedBytes);
+        create(attributes, "group-commit-average-batch-size", nbSyncs != 0 ? totalSyncedRecords / nbSyncs : 0);
+        create(attributes, "group-commit-max-batch-size", maxBatchRecords);
+        create(attributes, "group-commit-average-sync-time-us",
+            nbSyncs != 0 ? NANOSECONDS.toMicros(totalSyncTimeNanos / nbSyncs) : 0);
+        create(attributes, "group-commit-max-sync-time-us", NANOSECONDS.toMicros(maxSyncTimeNanos));
+        create(attributes, "group-commit-pending-changes", pendingRecords);
+      }
+      return attributes;
+    }
+
+    private void create(final List<Attribute> attributes, final String name, final long value)
+    {
+      attributes.add(Attributes.create(name, String.valueOf(value)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return "Changelog group commit,cn=" + monitorInstanceNamePrefix;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void initializeMonitorProvider(MonitorProviderCfg configuration)
+        throws ConfigException, InitializationException
+    {
+      // Nothing to do for now
+    }
+  }
+}
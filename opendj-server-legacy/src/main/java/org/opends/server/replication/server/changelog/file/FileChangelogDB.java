@@ -117,6 +117,9 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
   private volatile long purgeDelayInMillis;
   private final AtomicReference<ChangelogDBPurger> cnPurger = new AtomicReference<>();
 
+  /** Synchronizes the replica DBs to the file system when group commit is enabled, {@code null} otherwise. */
+  private final AtomicReference<ChangelogGroupCommitter> groupCommitter = new AtomicReference<>();
+
   /** The local replication server. */
   private final ReplicationServer replicationServer;
   private final AtomicBoolean shutdown = new AtomicBoolean();
@@ -294,6 +297,8 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
         startIndexer();
       }
       setPurgeDelay(replicationServer.getPurgeDelay());
+      setGroupCommit(replicationServer.isChangelogGroupCommitEnabled(),
+          replicationServer.getChangelogGroupCommitInterval(), replicationServer.getChangelogGroupCommitMaxSize());
     }
     catch (ChangelogException e)
     {
@@ -338,6 +343,7 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
 
     shutdownCNIndexerAndPurger();
+    stopGroupCommitter(groupCommitter.getAndSet(null));
 
     // Remember the first exception because :
     // - we want to try to remove everything we want to remove
@@ -601,6 +607,36 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
   }
 
+  @Override
+  public void setGroupCommit(final boolean enabled, final long intervalInMillis, final long maxSizeInBytes)
+  {
+    ChangelogGroupCommitter newCommitter = null;
+    if (enabled && !shutdown.get())
+    {
+      newCommitter = new ChangelogGroupCommitter(intervalInMillis, maxSizeInBytes,
+          replicationServer.getMonitorInstanceName());
+      newCommitter.start();
+    }
+    // the previous group committer synchronizes its pending changes before stopping
+    stopGroupCommitter(groupCommitter.getAndSet(newCommitter));
+  }
+
+  private void stopGroupCommitter(final ChangelogGroupCommitter committer)
+  {
+    if (committer != null)
+    {
+      committer.initiateShutdown();
+      try
+      {
+        committer.join();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   @Override
   public void setComputeChangeNumber(final boolean computeChangeNumber)
       throws ChangelogException
@@ -814,6 +850,20 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     final FileReplicaDB replicaDB = pair.getFirst();
     replicaDB.add(updateMsg);
 
+    final ChangelogGroupCommitter committer = groupCommitter.get();
+    if (committer != null)
+    {
+      if (updateMsg.isAssured())
+      {
+        // the update must be persisted before it is acknowledged
+        committer.changeAppendedAndAwaitSync(replicaDB, updateMsg.size());
+      }
+      else
+      {
+        committer.changeAppended(replicaDB, updateMsg.size());
+      }
+    }
+
     ChangelogBackend.getInstance().notifyCookieEntryAdded(baseDN, updateMsg);
 
     final ChangeNumberIndexer indexer = cnIndexer.get();
@@ -181,6 +181,18 @@ class FileReplicaDB
     }
   }
 
+  /**
+   * Synchronizes the messages added with the file system, ensuring that they
+   * are effectively persisted.
+   *
+   * @throws ChangelogException
+   *           If the synchronization fails.
+   */
+  void syncToFileSystem() throws ChangelogException
+  {
+    log.syncToFileSystem();
+  }
+
   /**
    * Get the oldest CSN that has not been purged yet.
    *
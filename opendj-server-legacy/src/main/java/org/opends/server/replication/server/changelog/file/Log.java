@@ -507,20 +507,32 @@ final class Log<K extends Comparable<K>, V> implements Closeable
    * <p>
    * After a successful call to this method, it is guaranteed that all records
    * added to the log are persisted to the file system.
+   * <p>
+   * Only the shared lock of the log is held, which prevents a concurrent rotation.
+   * Appends to the head log file still wait for the synchronization, because the
+   * head log file is synchronized under its own shared lock while appends take its
+   * exclusive lock. Older log files do not need to be synchronized as they are
+   * synchronized when rotated.
    *
    * @throws ChangelogException
    *           If the synchronization fails.
    */
   public void syncToFileSystem() throws ChangelogException
   {
-    exclusiveLock.lock();
+    // Shared lock is enough to prevent a concurrent rotation
+    sharedLock.lock();
     try
     {
+      if (isClosed)
+      {
+        // records have been synchronized when closing the log files
+        return;
+      }
       getHeadLogFile().syncToFileSystem();
     }
     finally
     {
-      exclusiveLock.unlock();
+      sharedLock.unlock();
     }
   }
 
@@ -1106,7 +1118,8 @@ final class Log<K extends Comparable<K>, V> implements Closeable
 
   private void openReadOnlyLogFile(final File logFilePath) throws ChangelogException
   {
-    final LogFile<K, V> logFile = LogFile.newReadOnlyLogFile(logFilePath, recordParser);
+    final LogFile<K, V> logFile =
+        LogFile.newReadOnlyLogFile(logFilePath, recordParser, replicationEnv.isMemoryMappedReadEnabled());
     final Pair<K, K> bounds = getKeyBounds(logFile);
     logFiles.put(bounds.getSecond(), logFile);
   }
@@ -104,11 +104,14 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
    * @param isWriteEnabled
    *          {@code true} if this changelog is write-enabled, {@code false}
    *          otherwise.
+   * @param memoryMapped
+   *          {@code true} if a read-only log file must be read through a memory
+   *          mapping, {@code false} otherwise.
    * @throws ChangelogException
    *            If a problem occurs during initialization.
    */
-  private LogFile(final File logFilePath, final RecordParser<K, V> parser, boolean isWriteEnabled)
-      throws ChangelogException
+  private LogFile(final File logFilePath, final RecordParser<K, V> parser, boolean isWriteEnabled,
+      boolean memoryMapped) throws ChangelogException
   {
     Reject.ifNull(logFilePath, parser);
     this.logfile = logFilePath;
@@ -118,7 +121,7 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
     sharedLock = rwLock.readLock();
     createLogFileIfNotExists();
 
-    readerPool = new LogReaderPool<>(logfile, parser);
+    readerPool = new LogReaderPool<>(logfile, parser, memoryMapped && !isWriteEnabled);
     if (isWriteEnabled)
     {
       ensureLogFileIsValid(parser);
@@ -151,7 +154,32 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
   static <K extends Comparable<K>, V> LogFile<K, V> newReadOnlyLogFile(final File logFilePath,
       final RecordParser<K, V> parser) throws ChangelogException
   {
-    return new LogFile<>(logFilePath, parser, false);
+    return newReadOnlyLogFile(logFilePath, parser, false);
+  }
+
+  /**
+   * Creates a read-only log file with the provided root path and record parser,
+   * optionally read through a memory mapping of the file.
+   *
+   * @param <K>
+   *            Type of the key of a record, which must be comparable.
+   * @param <V>
+   *            Type of the value of a record.
+   * @param logFilePath
+   *          Path of the log file.
+   * @param parser
+   *          Parser of records.
+   * @param memoryMapped
+   *          {@code true} if the log file must be read through a memory
+   *          mapping, {@code false} if it must be read with random access files.
+   * @return a read-only log file
+   * @throws ChangelogException
+   *            If a problem occurs during initialization.
+   */
+  static <K extends Comparable<K>, V> LogFile<K, V> newReadOnlyLogFile(final File logFilePath,
+      final RecordParser<K, V> parser, final boolean memoryMapped) throws ChangelogException
+  {
+    return new LogFile<>(logFilePath, parser, false, memoryMapped);
   }
 
   /**
@@ -173,7 +201,7 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
   static <K extends Comparable<K>, V> LogFile<K, V> newAppendableLogFile(final File logFilePath,
       final RecordParser<K, V> parser) throws ChangelogException
   {
-    return new LogFile<>(logFilePath, parser, true);
+    return new LogFile<>(logFilePath, parser, true, false);
   }
 
   /**
@@ -405,7 +433,8 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
 
   private void initializeNewestRecord() throws ChangelogException
   {
-    try (BlockLogReader<K, V> reader = getReader())
+    final BlockLogReader<K, V> reader = getReader();
+    try
     {
       sharedLock.lock();
       try
@@ -422,6 +451,11 @@ final class LogFile<K extends Comparable<K>, V> implements Closeable
       throw new ChangelogException(ERR_CHANGELOG_CANNOT_READ_NEWEST_RECORD.get(logfile.getAbsolutePath() + "- " +
           StaticUtils.stackTraceToSingleLineString(ioe) + "-" + Thread.currentThread()), ioe);
     }
+    finally
+    {
+      // release the reader to the pool, so that the pool knows when the file can be unmapped
+      releaseReader(reader);
+    }
   }
 
   /**
@@ -0,0 +1,102 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS.
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * A random access input on the bytes of a log file, used by {@code BlockLogReader}.
+ */
+interface LogFileInput extends Closeable
+{
+  /**
+   * Returns the length of the log file.
+   *
+   * @return the length of the log file in bytes
+   * @throws IOException
+   *           If an error occurs.
+   */
+  long length() throws IOException;
+
+  /**
+   * Returns the current position in the log file.
+   *
+   * @return the offset from the beginning of the file, in bytes
+   * @throws IOException
+   *           If an error occurs.
+   */
+  long getFilePointer() throws IOException;
+
+  /**
+   * Moves the current position in the log file.
+   *
+   * @param position
+   *          The offset from the beginning of the file, in bytes.
+   * @throws IOException
+   *           If an error occurs.
+   */
+  void seek(long position) throws IOException;
+
+  /**
+   * Reads exactly {@code bytes.length} bytes from the current position.
+   *
+   * @param bytes
+   *          The array to fill.
+   * @throws EOFException
+   *           If the end of file is reached before reading all the bytes.
+   * @throws IOException
+   *           If an error occurs.
+   */
+  void readFully(byte[] bytes) throws IOException;
+
+  /**
+   * Skips bytes from the current position, without going beyond the end of file.
+   *
+   * @param length
+   *          The number of bytes to skip.
+   * @throws IOException
+   *           If an error occurs.
+   */
+  void skipBytes(int length) throws IOException;
+
+  /**
+   * Appends exactly {@code length} bytes read from the current position to the provided builder.
+   *
+   * @param builder
+   *          The builder to append the bytes to.
+   * @param length
+   *          The number of bytes to read.
+   * @throws EOFException
+   *           If the end of file is reached before reading all the bytes.
+   * @throws IOException
+   *           If an error occurs.
+   */
+  void appendBytes(ByteStringBuilder builder, int length) throws IOException;
+}
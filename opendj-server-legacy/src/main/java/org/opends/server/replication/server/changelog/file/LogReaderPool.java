@@ -26,16 +26,27 @@
 package org.opends.server.replication.server.changelog.file;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import org.opends.server.replication.server.changelog.api.ChangelogException;
 import org.opends.server.util.StaticUtils;
 
+import com.forgerock.opendj.util.OperatingSystem;
+
 import static org.opends.messages.ReplicationMessages.*;
 
 /**
  * A Pool of readers to a log file.
-
+ * <p>
+ * Readers on a read-only log file can be backed by a memory mapping of the
+ * file, shared by all the readers of the pool. The mapping is released once
+ * the pool has been shut down and all its readers have been released, so
+ * that the file can be deleted.
  *
  * @param <K>
  *          Type of the key of a record, which must be comparable.
@@ -50,6 +61,16 @@ class LogReaderPool<K extends Comparable<K>, V>
 
   private final RecordParser<K, V> parser;
 
+  /** Indicates if the readers read a memory mapping of the file. */
+  private final boolean memoryMapped;
+
+  /** The memory mapping of the file, lazily created on first read. */
+  private ByteBuffer mapping;
+  /** The readers reading the memory mapping, which must be released before unmapping the file. */
+  private final Set<BlockLogReader<K, V>> mappedReaders =
+      Collections.newSetFromMap(new IdentityHashMap<BlockLogReader<K, V>, Boolean>());
+  private boolean isShutdown;
+
   /**
    * Creates a pool of readers for provided file.
    *
@@ -57,11 +78,18 @@ class LogReaderPool<K extends Comparable<K>, V>
    *          The file to read.
    * @param parser
    *          The parser to decode the records read.
+   * @param memoryMapped
+   *          Indicates if the readers must read a memory mapping of the file,
+   *          which must only be requested for files which are no longer written.
+   *          It is ignored on Windows, where a mapped file cannot be deleted:
+   *          the readers of aborted cursors may keep the mapping while the file
+   *          is purged.
    */
-  LogReaderPool(File file, RecordParser<K, V> parser)
+  LogReaderPool(File file, RecordParser<K, V> parser, boolean memoryMapped)
   {
     this.file = file;
     this.parser = parser;
+    this.memoryMapped = memoryMapped && !OperatingSystem.isWindows();
   }
 
   /**
@@ -91,6 +119,13 @@ class LogReaderPool<K extends Comparable<K>, V>
   void release(BlockLogReader<K, V> reader)
   {
     StaticUtils.close(reader);
+    synchronized (this)
+    {
+      if (mappedReaders.remove(reader) && isShutdown && mappedReaders.isEmpty())
+      {
+        unmap();
+      }
+    }
   }
 
   /** Returns a random access file to read this log. */
@@ -98,6 +133,14 @@ class LogReaderPool<K extends Comparable<K>, V>
   {
     try
     {
+      if (memoryMapped)
+      {
+        final BlockLogReader<K, V> reader = getMappedReader();
+        if (reader != null)
+        {
+          return reader;
+        }
+      }
       return BlockLogReader.newReader(file, new RandomAccessFile(file, "r"), parser) ;
     }
     catch (Exception e)
@@ -106,13 +149,68 @@ class LogReaderPool<K extends Comparable<K>, V>
     }
   }
 
+  /**
+   * Returns a reader on the memory mapping of the file, mapping it if not done yet.
+   *
+   * @return a reader on the memory mapping of the file, or {@code null} if the file is too large to be mapped
+   *         or the pool has been shut down
+   */
+  private synchronized BlockLogReader<K, V> getMappedReader() throws IOException
+  {
+    if (isShutdown)
+    {
+      return null;
+    }
+    if (mapping == null && file.length() <= Integer.MAX_VALUE)
+    {
+      mapping = MappedLogFileInput.map(file);
+    }
+    if (mapping == null)
+    {
+      return null;
+    }
+    final BlockLogReader<K, V> reader = BlockLogReader.newMappedReader(file, mapping, parser);
+    mappedReaders.add(reader);
+    return reader;
+  }
+
   /**
    * Shutdown this pool, releasing all files handles opened
    * on the file.
+   * <p>
+   * No file handle is kept opened. The memory mapping is released now if no
+   * reader is still reading it, or else when the last reader is released.
    */
   void shutdown()
   {
-    // Nothing to do yet as no file handle is kept opened.
+    synchronized (this)
+    {
+      isShutdown = true;
+      if (mappedReaders.isEmpty())
+      {
+        unmap();
+      }
+    }
+  }
+
+  /** @GuardedBy("this") */
+  private void unmap()
+  {
+    if (mapping != null)
+    {
+      MappedLogFileInput.unmap(mapping);
+      mapping = null;
+    }
+  }
+
+  /**
+   * Indicates if the file is currently memory mapped, for tests only.
+   *
+   * @return {@code true} if the file is currently memory mapped
+   */
+  synchronized boolean isMappedForTests()
+  {
+    return mapping != null;
   }
 
 }
@@ -0,0 +1,187 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS.
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * A log file input reading a memory-mapped log file.
+ * <p>
+ * It is only used for read-only log files, whose content never changes once
+ * mapped. Reading from the mapping does not involve any system call, so
+ * cursors reading many small records do not pay the cost of one system call
+ * per record, block offset or record length read.
+ * <p>
+ * Each input has its own position on a mapping shared by all the inputs on the
+ * same log file.
+ */
+class MappedLogFileInput implements LogFileInput
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private final ByteBuffer buffer;
+
+  /**
+   * Creates an input on the provided mapping.
+   *
+   * @param mapping
+   *          The memory-mapped content of the log file, which is not modified
+   *          by this input.
+   */
+  MappedLogFileInput(ByteBuffer mapping)
+  {
+    this.buffer = mapping.duplicate();
+    this.buffer.clear();
+  }
+
+  /**
+   * Maps the provided log file in memory, read-only.
+   *
+   * @param file
+   *          The log file to map, which size must be lower than 2GB.
+   * @return the memory-mapped content of the log file
+   * @throws IOException
+   *           If the file cannot be mapped.
+   */
+  static ByteBuffer map(File file) throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel())
+    {
+      // The mapping remains valid after the channel is closed
+      return channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Releases the provided memory mapping without waiting for it to be garbage
+   * collected, so that the address space is released and the file can be
+   * deleted on all platforms.
+   * <p>
+   * The mapping must not be read any more by any input, since reading it
+   * afterwards may crash the JVM.
+   *
+   * @param mapping
+   *          The memory mapping to release, obtained with {@link #map(File)}.
+   */
+  static void unmap(ByteBuffer mapping)
+  {
+    try
+    {
+      // There is no public API for unmapping, use the cleaner of the mapped buffer
+      final Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      final Object cleaner = cleanerMethod.invoke(mapping);
+      if (cleaner != null)
+      {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    }
+    catch (Exception e)
+    {
+      // The mapping will be released when garbage collected
+      logger.traceException(e);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long length()
+  {
+    return buffer.limit();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getFilePointer()
+  {
+    return buffer.position();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void seek(long position)
+  {
+    // Like RandomAccessFile, seeking beyond the end of file is allowed: it results in reads hitting end of file
+    buffer.position((int) Math.min(position, buffer.limit()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void readFully(byte[] bytes) throws IOException
+  {
+    ensureRemaining(bytes.length);
+    buffer.get(bytes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void skipBytes(int length)
+  {
+    buffer.position(Math.min(buffer.position() + length, buffer.limit()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void appendBytes(ByteStringBuilder builder, int length) throws IOException
+  {
+    ensureRemaining(length);
+    builder.appendBytes(buffer, length);
+  }
+
+  private void ensureRemaining(int length) throws EOFException
+  {
+    if (buffer.remaining() < length)
+    {
+      buffer.position(buffer.limit());
+      throw new EOFException();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close()
+  {
+    // Nothing to do, the mapping is released by the pool of readers sharing it
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "(position=" + buffer.position() + ", length=" + buffer.limit() + ")";
+  }
+}
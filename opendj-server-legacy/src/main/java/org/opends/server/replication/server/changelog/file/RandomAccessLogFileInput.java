@@ -0,0 +1,108 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS.
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+
+/**
+ * A log file input reading the log file with a {@code RandomAccessFile}.
+ * <p>
+ * It is used for the head log file, which is still written to.
+ */
+class RandomAccessLogFileInput implements LogFileInput
+{
+  private final RandomAccessFile reader;
+
+  /**
+   * Creates an input on the provided random access file.
+   *
+   * @param reader
+   *          The random access file to read.
+   */
+  RandomAccessLogFileInput(RandomAccessFile reader)
+  {
+    this.reader = reader;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long length() throws IOException
+  {
+    return reader.length();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getFilePointer() throws IOException
+  {
+    return reader.getFilePointer();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void seek(long position) throws IOException
+  {
+    reader.seek(position);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void readFully(byte[] bytes) throws IOException
+  {
+    reader.readFully(bytes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void skipBytes(int length) throws IOException
+  {
+    reader.skipBytes(length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void appendBytes(ByteStringBuilder builder, int length) throws IOException
+  {
+    builder.appendBytes(reader, length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException
+  {
+    reader.close();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return reader.toString();
+  }
+}
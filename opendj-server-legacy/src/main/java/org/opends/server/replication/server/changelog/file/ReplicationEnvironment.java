@@ -338,6 +338,17 @@ class ReplicationEnvironment implements ChangelogStateProvider
     return cnIndexDBLastRotationTime;
   }
 
+  /**
+   * Indicates whether the read-only log files must be read through a memory mapping.
+   *
+   * @return {@code true} if the read-only log files must be read through a
+   *         memory mapping, {@code false} otherwise.
+   */
+  boolean isMemoryMappedReadEnabled()
+  {
+    return replicationServer != null && replicationServer.isChangelogMemoryMappedReadsEnabled();
+  }
+
   /**
    * Finds or creates the log used to store changes from the replication server
    * with the given serverId and the given baseDN.
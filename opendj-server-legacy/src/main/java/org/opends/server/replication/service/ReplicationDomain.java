@@ -92,7 +92,10 @@ import org.opends.server.types.DirectoryException;
  *   If the Full Initialization process is needed then implementation
  *   for {@code importBackend(InputStream)} and
  *   {@code exportBackend(OutputStream)} must be
- *   provided.
+ *   provided. Implementations able to copy their repository faster as a
+ *   binary snapshot may also override {@link #getSnapshotFormat()},
+ *   {@code exportSnapshot(OutputStream)} and
+ *   {@code importSnapshot(InputStream)}.
  * <p>
  *   Full Initialization of a replica can be triggered by LDAP clients
  *   by creating InitializeTasks or InitializeTargetTask.
@@ -863,7 +866,8 @@ public abstract class ReplicationDomain
       {
         // Do this work in a thread to allow replay thread continue working
         ExportThread exportThread = new ExportThread(
-            initReqMsg.getSenderID(), initReqMsg.getInitWindow());
+            initReqMsg.getSenderID(), initReqMsg.getInitWindow(),
+            isSnapshotFormatSupported(initReqMsg.getSnapshotFormat()));
         exportThread.start();
       }
     }
@@ -1027,6 +1031,8 @@ public abstract class ReplicationDomain
     /** Id of server that will be initialized. */
     private final int serverIdToInitialize;
     private final int initWindow;
+    /** Whether a binary snapshot is exported instead of the entries. */
+    private final boolean snapshot;
 
 
 
@@ -1038,13 +1044,17 @@ public abstract class ReplicationDomain
      * @param initWindow
      *          The value of the initialization window for flow control between
      *          the importer and the exporter.
+     * @param snapshot
+     *          Whether a binary snapshot is exported instead of the entries.
      */
-    public ExportThread(int serverIdToInitialize, int initWindow)
+    public ExportThread(int serverIdToInitialize, int initWindow,
+        boolean snapshot)
     {
       super("Export thread from serverId=" + getServerId() + " to serverId="
           + serverIdToInitialize);
       this.serverIdToInitialize = serverIdToInitialize;
       this.initWindow = initWindow;
+      this.snapshot = snapshot;
     }
 
 
@@ -1062,7 +1072,7 @@ public abstract class ReplicationDomain
       try
       {
         initializeRemote(serverIdToInitialize, serverIdToInitialize, null,
-            initWindow);
+            initWindow, snapshot);
       } catch (DirectoryException de)
       {
         /*
@@ -1148,6 +1158,12 @@ public abstract class ReplicationDomain
     /** Number of attempt already done for this initialization. */
     private short attemptCnt;
 
+    /**
+     * Whether a binary snapshot is exchanged instead of the entries, in which
+     * case the messages exchanged are not counted as entries.
+     */
+    private boolean snapshot;
+
     /**
      * Creates a new IEContext.
      *
@@ -1430,6 +1446,33 @@ public abstract class ReplicationDomain
   protected void initializeRemote(int serverToInitialize,
       int serverRunningTheTask, Task initTask, int initWindow)
   throws DirectoryException
+  {
+    initializeRemote(serverToInitialize, serverRunningTheTask, initTask,
+        initWindow, false);
+  }
+
+  /**
+   * Process the initialization of some other server or servers in the topology
+   * specified by the target argument when this initialization specifying the
+   * server that requests the initialization.
+   *
+   * @param serverToInitialize The target server that should be initialized.
+   * @param serverRunningTheTask The server that initiated the export. It can
+   * be the serverID of this server, or the serverID of a remote server.
+   * @param initTask The task in this server that triggers this initialization
+   * and that should be updated with its progress. Null when the export is done
+   * following a request coming from a remote server (task is remote).
+   * @param initWindow The value of the initialization window for flow control
+   * between the importer and the exporter.
+   * @param snapshot Whether a binary snapshot of the repository is exported
+   * instead of the entries. Only set when the server to initialize accepted it.
+   *
+   * @exception DirectoryException When an error occurs. No exception raised
+   * means success.
+   */
+  private void initializeRemote(int serverToInitialize,
+      int serverRunningTheTask, Task initTask, int initWindow, boolean snapshot)
+  throws DirectoryException
   {
     final ImportExportContext ieCtx = acquireIEContext(false);
 
@@ -1492,11 +1535,13 @@ public abstract class ReplicationDomain
         ieCtx.msgCnt = 0;
         ieCtx.initNumLostConnections = broker.getNumLostConnections();
         ieCtx.initWindow = initWindow;
+        ieCtx.snapshot = snapshot;
 
         // Send start message to the peer
         InitializeTargetMsg initTargetMsg = new InitializeTargetMsg(
             getBaseDN(), getServerId(), serverToInitialize,
             serverRunningTheTask, ieCtx.entryCount, initWindow);
+        initTargetMsg.setSnapshotFormat(snapshot ? getSnapshotFormat() : null);
 
         broker.publish(initTargetMsg);
 
@@ -1512,7 +1557,16 @@ public abstract class ReplicationDomain
               ERR_INIT_NO_SUCCESS_START_FROM_SERVERS.get(getBaseDN(), ieCtx.failureList));
         }
 
-        exportBackend(new BufferedOutputStream(new ReplOutputStream(this)));
+        if (snapshot)
+        {
+          logger.info(NOTE_FULL_UPDATE_FROM_SNAPSHOT, getBaseDN(),
+              getServerId(), serverToInitialize);
+          exportSnapshot(new BufferedOutputStream(new ReplOutputStream(this)));
+        }
+        else
+        {
+          exportBackend(new BufferedOutputStream(new ReplOutputStream(this)));
+        }
 
         // Notify the peer of the success
         broker.publish(
@@ -1901,7 +1955,10 @@ public abstract class ReplicationDomain
         {
           EntryMsg entryMsg = (EntryMsg)msg;
           byte[] entryBytes = entryMsg.getEntryBytes();
-          ieCtx.updateCounters(countEntryLimits(entryBytes));
+          if (!ieCtx.snapshot)
+          {
+            ieCtx.updateCounters(countEntryLimits(entryBytes));
+          }
 
           if (ieCtx.exporterProtocolVersion >=
             ProtocolVersion.REPLICATION_PROTOCOL_V4)
@@ -2126,7 +2183,10 @@ public abstract class ReplicationDomain
     // publish succeeded
     try
     {
-      ieCtx.updateCounters(countEntryLimits(lDIFEntry, pos, length));
+      if (!ieCtx.snapshot)
+      {
+        ieCtx.updateCounters(countEntryLimits(lDIFEntry, pos, length));
+      }
     }
     catch (DirectoryException de)
     {
@@ -2192,6 +2252,7 @@ public abstract class ReplicationDomain
       ieCtx.attemptCnt = 0;
       ieCtx.initReqMsgSent = new InitializeRequestMsg(
           getBaseDN(), getServerId(), source, getInitWindow());
+      ieCtx.initReqMsgSent.setSnapshotFormat(getSnapshotFormat());
       broker.publish(ieCtx.initReqMsgSent);
 
       /*
@@ -2269,10 +2330,25 @@ public abstract class ReplicationDomain
       ieCtx.initializeCounters(initTargetMsgReceived.getEntryCount());
       ieCtx.initWindow = initTargetMsgReceived.getInitWindow();
       ieCtx.exporterProtocolVersion = getProtocolVersion(source);
+      ieCtx.snapshot = initTargetMsgReceived.isSnapshot();
       initFromTask = (InitializeTask) ieCtx.initializeTask;
 
       // Launch the import
-      importBackend(new ReplInputStream(this));
+      if (ieCtx.snapshot)
+      {
+        final String snapshotFormat = initTargetMsgReceived.getSnapshotFormat();
+        if (!isSnapshotFormatSupported(snapshotFormat))
+        {
+          // the exporter sends a snapshot only when the formats match
+          throw new DirectoryException(ResultCode.OTHER, ERR_SNAPSHOT_INCOMPATIBLE.get(
+              getBaseDN(), snapshotFormat, getSnapshotFormat()));
+        }
+        importSnapshot(new ReplInputStream(this));
+      }
+      else
+      {
+        importBackend(new ReplInputStream(this));
+      }
     }
     catch (DirectoryException e)
     {
@@ -3130,6 +3206,79 @@ public abstract class ReplicationDomain
   protected abstract void importBackend(InputStream input)
            throws DirectoryException;
 
+  /**
+   * Returns the format of the binary snapshots of the replicated data that
+   * this domain can export with {@link #exportSnapshot(OutputStream)} and
+   * import with {@link #importSnapshot(InputStream)}, which are usually faster
+   * to transfer and to import than the entries.
+   * <p>
+   * The format identifies the type and the storage format version of the
+   * repository: the importer sends it to the exporter, which only exports a
+   * snapshot when it has the same format, and exports the entries otherwise.
+   * <p>
+   * The default implementation returns {@code null}.
+   *
+   * @return the format of the binary snapshots of the replicated data, or
+   *         {@code null} if this domain cannot export nor import snapshots.
+   */
+  protected String getSnapshotFormat()
+  {
+    return null;
+  }
+
+  /**
+   * Returns whether a binary snapshot with the provided format can be
+   * exchanged with this domain.
+   *
+   * @param snapshotFormat
+   *          the format of the snapshots of the remote domain, may be null
+   * @return whether a binary snapshot with the provided format can be
+   *         exchanged with this domain
+   */
+  private boolean isSnapshotFormatSupported(String snapshotFormat)
+  {
+    final String format = getSnapshotFormat();
+    return format != null && format.equals(snapshotFormat);
+  }
+
+  /**
+   * This method should trigger an export of a consistent binary snapshot of
+   * the replicated data, including the replication state, to the provided
+   * outputStream. When finished the outputStream should be flushed and closed.
+   * <p>
+   * Only called when {@link #getSnapshotFormat()} returns the format of the
+   * snapshots the importer accepts. The default implementation throws a
+   * {@link DirectoryException}.
+   *
+   * @param output               The OutputStream where the snapshot should
+   *                             be produced.
+   * @throws DirectoryException  When needed.
+   */
+  protected void exportSnapshot(OutputStream output) throws DirectoryException
+  {
+    throw new DirectoryException(ResultCode.UNWILLING_TO_PERFORM,
+        ERR_SNAPSHOT_NOT_SUPPORTED.get(getBaseDN()));
+  }
+
+  /**
+   * This method should trigger an import of a binary snapshot of the
+   * replicated data produced by {@link #exportSnapshot(OutputStream)}.
+   * <p>
+   * Only called when {@link #getSnapshotFormat()} returns the format of the
+   * snapshot sent by the exporter. The default implementation throws a
+   * {@link DirectoryException}.
+   *
+   * @param input                The InputStream from which
+   *                             the import should be reading the snapshot.
+   *
+   * @throws DirectoryException  When needed.
+   */
+  protected void importSnapshot(InputStream input) throws DirectoryException
+  {
+    throw new DirectoryException(ResultCode.UNWILLING_TO_PERFORM,
+        ERR_SNAPSHOT_NOT_SUPPORTED.get(getBaseDN()));
+  }
+
   /**
    * This method should return the total number of objects in the
    * replicated domain.
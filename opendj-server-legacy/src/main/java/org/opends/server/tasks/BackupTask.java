@@ -91,6 +91,8 @@ public class BackupTask extends Task
     argDisplayMap.put(ATTR_BACKUP_ID, INFO_BACKUP_ARG_BACKUP_ID.get());
     argDisplayMap.put(ATTR_BACKUP_DIRECTORY_PATH, INFO_BACKUP_ARG_BACKUP_DIR.get());
     argDisplayMap.put(ATTR_TASK_BACKUP_INCREMENTAL_BASE_ID, INFO_BACKUP_ARG_INC_BASE_ID.get());
+    argDisplayMap.put(ATTR_TASK_BACKUP_CHUNKED, INFO_BACKUP_ARG_CHUNKED.get());
+    argDisplayMap.put(ATTR_TASK_BACKUP_THREAD_COUNT, INFO_BACKUP_ARG_THREAD_COUNT.get());
   }
 
 
@@ -101,6 +103,8 @@ public class BackupTask extends Task
   private boolean hash;
   private boolean incremental;
   private boolean signHash;
+  private boolean chunked;
+  private int threadCount;
   private List<String>  backendIDList;
   private String  backupID;
   private File    backupDirectory;
@@ -159,6 +163,8 @@ public class BackupTask extends Task
     AttributeType typeBackupID = getAttributeTypeOrDefault(ATTR_BACKUP_ID);
     AttributeType typeBackupDirectory = getAttributeTypeOrDefault(ATTR_BACKUP_DIRECTORY_PATH);
     AttributeType typeIncrementalBaseID = getAttributeTypeOrDefault(ATTR_TASK_BACKUP_INCREMENTAL_BASE_ID);
+    AttributeType typeChunked = getAttributeTypeOrDefault(ATTR_TASK_BACKUP_CHUNKED);
+    AttributeType typeThreadCount = getAttributeTypeOrDefault(ATTR_TASK_BACKUP_THREAD_COUNT);
 
 
     List<Attribute> attrList;
@@ -181,6 +187,12 @@ public class BackupTask extends Task
     attrList = taskEntry.getAttribute(typeSignHash);
     signHash = TaskUtils.getBoolean(attrList, false);
 
+    attrList = taskEntry.getAttribute(typeChunked);
+    chunked = TaskUtils.getBoolean(attrList, false);
+
+    attrList = taskEntry.getAttribute(typeThreadCount);
+    threadCount = TaskUtils.getSingleValueInteger(attrList, 0);
+
     attrList = taskEntry.getAttribute(typeBackendID);
     backendIDList = TaskUtils.getMultiValueString(attrList);
 
@@ -413,6 +425,8 @@ public class BackupTask extends Task
     backupConfig.setHashData(hash);
     backupConfig.setSignHash(signHash);
     backupConfig.setIncrementalBaseID(incrementalBase);
+    backupConfig.setChunked(chunked);
+    backupConfig.setThreadCount(threadCount);
 
 
     // Perform the backup.
@@ -0,0 +1,65 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tasks;
+
+import static org.opends.messages.TaskMessages.*;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.opends.server.api.Backend;
+import org.opends.server.backends.task.Task;
+import org.opends.server.backends.task.TaskState;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.monitors.BackendMonitor;
+
+/**
+ * This class provides an implementation of a Directory Server task that can be
+ * used to reset the operation latencies reported by the server and backend
+ * monitor entries. The latencies reported over the recent sliding window are
+ * not affected.
+ */
+public class ResetOperationLatencyTask extends Task
+{
+  @Override
+  public LocalizableMessage getDisplayName()
+  {
+    return INFO_TASK_RESET_OPERATION_LATENCY_NAME.get();
+  }
+
+  @Override
+  protected TaskState runTask()
+  {
+    DirectoryServer.getOperationLatencyStatistics().reset();
+    for (Backend<?> backend : DirectoryServer.getBackends().values())
+    {
+      final BackendMonitor monitor = backend.getBackendMonitor();
+      if (monitor != null)
+      {
+        monitor.getOperationLatencyStatistics().reset();
+      }
+    }
+    return TaskState.COMPLETED_SUCCESSFULLY;
+  }
+}
@@ -78,6 +78,7 @@ import com.forgerock.opendj.cli.ArgumentException;
 import com.forgerock.opendj.cli.BooleanArgument;
 import com.forgerock.opendj.cli.ClientException;
 import com.forgerock.opendj.cli.CommonArguments;
+import com.forgerock.opendj.cli.IntegerArgument;
 import com.forgerock.opendj.cli.StringArgument;
 
 /**
@@ -148,6 +149,8 @@ public class BackUpDB extends TaskTool
   private BooleanArgument hash;
   private BooleanArgument incremental;
   private BooleanArgument signHash;
+  private BooleanArgument chunked;
+  private IntegerArgument threadCount;
   private StringArgument  backendID;
   private StringArgument  backupIDString;
   private StringArgument  configClass;
@@ -264,6 +267,21 @@ public class BackUpDB extends TaskTool
       argParser.addArgument(signHash);
 
 
+      chunked = new BooleanArgument(
+                  "chunked", null, "chunked",
+                  INFO_BACKUPDB_DESCRIPTION_CHUNKED.get());
+      argParser.addArgument(chunked);
+
+
+      threadCount = new IntegerArgument("threadCount", null, "threadCount",
+              false, false, true,
+              INFO_LDIFIMPORT_THREAD_COUNT_PLACEHOLDER.get(),
+              0, null,
+              true, 0, true, Integer.MAX_VALUE,
+              INFO_BACKUPDB_DESCRIPTION_THREAD_COUNT.get());
+      argParser.addArgument(threadCount);
+
+
       displayUsage = CommonArguments.getShowUsage();
       argParser.addArgument(displayUsage);
       argParser.setUsageArgument(displayUsage);
@@ -402,6 +420,8 @@ public class BackUpDB extends TaskTool
     addIfHasValue(attributes, ATTR_TASK_BACKUP_HASH, hash);
     addIfHasValue(attributes, ATTR_TASK_BACKUP_INCREMENTAL, incremental);
     addIfHasValue(attributes, ATTR_TASK_BACKUP_SIGN_HASH, signHash);
+    addIfHasValue(attributes, ATTR_TASK_BACKUP_CHUNKED, chunked);
+    addIfHasValue(attributes, ATTR_TASK_BACKUP_THREAD_COUNT, threadCount);
 
     List<String> backendIDs = backendID.getValues();
     if (backendIDs != null && !backendIDs.isEmpty()) {
@@ -445,6 +465,17 @@ public class BackUpDB extends TaskTool
                            PrintStream out,
                            PrintStream err) {
 
+    final int backupThreadCount;
+    try
+    {
+      backupThreadCount = threadCount.getIntValue();
+    }
+    catch (ArgumentException e)
+    {
+      printWrappedText(err, e.getMessageObject());
+      return 1;
+    }
+
     // Make sure that the backup directory exists.  If not, then create it.
     File backupDirFile = new File(backupDirectory.getValue());
     if (! backupDirFile.exists())
@@ -812,6 +843,8 @@ public class BackUpDB extends TaskTool
       backupConfig.setHashData(hash.isPresent());
       backupConfig.setSignHash(signHash.isPresent());
       backupConfig.setIncrementalBaseID(incrementalBase);
+      backupConfig.setChunked(chunked.isPresent());
+      backupConfig.setThreadCount(backupThreadCount);
 
       if (!b.supports(BackendOperation.BACKUP))
       {
@@ -0,0 +1,205 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.tools.makeldif.EntryWriter;
+import org.opends.server.tools.makeldif.TemplateEntry;
+import org.opends.server.tools.makeldif.TemplateFile;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFExportConfig;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.types.RDN;
+import org.opends.server.util.LDIFException;
+import org.opends.server.util.LDIFReader;
+
+/**
+ * The entries targeted by the load generator, generated in memory from a
+ * MakeLDIF template.
+ * <p>
+ * The entries generated by templates are the targets of the operations, while
+ * the branches only provide the default search base. The same seed always
+ * generates the same entries, so that runs against the same data can be
+ * compared.
+ */
+final class EntryPool
+{
+  private final List<Entry> entries;
+  private final List<DN> branchDNs;
+  /** Makes the DNs of the added entries unique across runs. */
+  private final String addedRDNSuffix = "-loadgen-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+  private final AtomicLong nbAddedEntries = new AtomicLong();
+
+  private EntryPool(List<Entry> entries, List<DN> branchDNs)
+  {
+    this.entries = entries;
+    this.branchDNs = branchDNs;
+  }
+
+  /**
+   * Generates the entries from a MakeLDIF template.
+   *
+   * @param resourcePath
+   *          the path of the MakeLDIF resources used by the template
+   * @param templatePath
+   *          the path of the template file
+   * @param seed
+   *          the seed of the random values of the template
+   * @param maxEntries
+   *          the maximum number of entries to generate, not including branches
+   * @param warnings
+   *          the list where to add the warnings raised while parsing the
+   *          template
+   * @return the generated entries
+   * @throws Exception
+   *           if the template cannot be parsed or the entries cannot be
+   *           generated
+   */
+  static EntryPool generate(String resourcePath, String templatePath, long seed, final int maxEntries,
+      List<LocalizableMessage> warnings) throws Exception
+  {
+    final TemplateFile templateFile = new TemplateFile(resourcePath, new Random(seed));
+    templateFile.parse(templatePath, warnings);
+
+    final ByteArrayOutputStream ldif = new ByteArrayOutputStream();
+    final LDIFExportConfig exportConfig = new LDIFExportConfig(ldif);
+    final List<DN> branchDNs = new ArrayList<>();
+    templateFile.generateLDIF(new EntryWriter()
+    {
+      private int nbEntries;
+
+      @Override
+      public boolean writeEntry(TemplateEntry entry) throws IOException
+      {
+        if (entry.getDN() == null)
+        {
+          // the template did not provide a value for the RDN
+          return true;
+        }
+        if (entry.getTemplate() == null)
+        {
+          branchDNs.add(entry.getDN());
+          return true;
+        }
+        try
+        {
+          entry.toLDIF(exportConfig);
+        }
+        catch (LDIFException e)
+        {
+          throw new IOException(e);
+        }
+        return ++nbEntries < maxEntries;
+      }
+
+      @Override
+      public void closeEntryWriter()
+      {
+        exportConfig.close();
+      }
+    });
+
+    final List<Entry> entries = new ArrayList<>();
+    try (LDIFReader reader = new LDIFReader(new LDIFImportConfig(new ByteArrayInputStream(ldif.toByteArray()))))
+    {
+      Entry entry;
+      while ((entry = reader.readEntry()) != null)
+      {
+        entries.add(entry);
+      }
+    }
+    return new EntryPool(entries, branchDNs);
+  }
+
+  /**
+   * Returns the number of entries generated by templates.
+   *
+   * @return the number of entries generated by templates
+   */
+  int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Returns the DN to search from when none has been provided, which is the
+   * DN of the first branch of the template.
+   *
+   * @return the DN of the first branch of the template, or the root DN if the
+   *         template has no branch
+   */
+  DN getDefaultBaseDN()
+  {
+    return !branchDNs.isEmpty() ? branchDNs.get(0) : DN.rootDN();
+  }
+
+  /**
+   * Returns a random entry generated by a template.
+   *
+   * @param random
+   *          the random number generator to use
+   * @return a random entry, which must not be modified
+   */
+  Entry getRandomEntry(Random random)
+  {
+    return entries.get(random.nextInt(entries.size()));
+  }
+
+  /**
+   * Returns a new entry, which is a copy of a random generated entry with a
+   * unique RDN value, so that it can be added next to the generated entries.
+   *
+   * @param random
+   *          the random number generator to use
+   * @return a new entry with a unique DN
+   */
+  Entry newEntryToAdd(Random random)
+  {
+    final Entry template = getRandomEntry(random);
+    final DN templateDN = template.getName();
+    final RDN templateRDN = templateDN.rdn();
+    final String value =
+        templateRDN.getAttributeValue(0) + addedRDNSuffix + nbAddedEntries.incrementAndGet();
+
+    final Entry entry = template.duplicate(false);
+    final RDN rdn = new RDN(templateRDN.getAttributeType(0), templateRDN.getAttributeName(0),
+        ByteString.valueOfUtf8(value));
+    entry.setDN(templateDN.parent().child(rdn));
+    entry.replaceAttribute(Attributes.create(templateRDN.getAttributeType(0), value));
+    return entry;
+  }
+}
@@ -0,0 +1,813 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import static com.forgerock.opendj.cli.ArgumentConstants.*;
+import static com.forgerock.opendj.cli.Utils.*;
+
+import static org.forgerock.opendj.ldap.LDAPConnectionFactory.*;
+import static org.opends.messages.ToolMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.LocalizedIllegalArgumentException;
+import org.forgerock.opendj.adapter.server3x.Adapters;
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.LDAPConnectionFactory;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.util.Options;
+import org.forgerock.util.time.Duration;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.DirectoryServer.DirectoryServerVersionHandler;
+import org.opends.server.extensions.ConfigFileHandler;
+import org.opends.server.loggers.JDKLogging;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.DirectoryEnvironmentConfig;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.NullOutputStream;
+import org.opends.server.util.BuildVersion;
+import org.opends.server.util.EmbeddedUtils;
+import org.opends.server.util.LatencyHistogram;
+
+import com.forgerock.opendj.cli.ArgumentException;
+import com.forgerock.opendj.cli.ArgumentParser;
+import com.forgerock.opendj.cli.BooleanArgument;
+import com.forgerock.opendj.cli.CliConstants;
+import com.forgerock.opendj.cli.CommonArguments;
+import com.forgerock.opendj.cli.IntegerArgument;
+import com.forgerock.opendj.cli.MultiChoiceArgument;
+import com.forgerock.opendj.cli.StringArgument;
+
+/**
+ * This class defines a program that puts a Directory Server under load and
+ * reports the throughput and the latency percentiles of the operations over
+ * time.
+ * <p>
+ * The operations target entries generated from a MakeLDIF template, which must
+ * have been imported in the server. They are sent either through LDAP, with
+ * the asynchronous connections of the SDK, or in-process through internal
+ * client connections, which takes the network out of the measurement and
+ * gives repeatable numbers, for example in continuous integration.
+ * <p>
+ * Latencies are measured from the time an operation should have been started
+ * to achieve the target rate, so that they account for the time spent waiting
+ * for a server which cannot keep up with the target rate.
+ */
+public final class LoadGenerator
+{
+  /** The fully-qualified name of this class. */
+  private static final String CLASS_NAME = "org.opends.server.tools.loadgen.LoadGenerator";
+
+  private static final String PROFILE_SEARCH = "search";
+  private static final String PROFILE_MODIFY = "modify";
+  private static final String PROFILE_ADD_DELETE = "addDelete";
+  private static final String PROFILE_BIND = "bind";
+  private static final String PROFILE_MIXED = "mixed";
+  private static final String DEFAULT_MIX =
+      PROFILE_SEARCH + ":60," + PROFILE_MODIFY + ":20," + PROFILE_ADD_DELETE + ":10," + PROFILE_BIND + ":10";
+
+  private static final String SCOPE_BASE = "base";
+  private static final String SCOPE_ONE = "one";
+  private static final String SCOPE_SUB = "sub";
+  private static final String SCOPE_SUBORDINATE = "subordinate";
+
+  /** The template generating the entries when none has been provided. */
+  private static final String DEFAULT_TEMPLATE = "example.template";
+
+  /** The percentiles displayed in statistics. */
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+  private static final String TEXT_FORMAT = "%-8s %-8s %12s %8s %10s %10s %10s %10s %10s %10s";
+
+  private final PrintStream out;
+  private final PrintStream err;
+
+  private StringArgument configFile;
+  private StringArgument configClass;
+  private StringArgument hostName;
+  private IntegerArgument port;
+  private StringArgument bindDN;
+  private StringArgument bindPassword;
+  private BooleanArgument embedded;
+  private MultiChoiceArgument<String> profile;
+  private StringArgument mix;
+  private StringArgument templateFile;
+  private StringArgument resourcePath;
+  private IntegerArgument randomSeed;
+  private IntegerArgument maxEntries;
+  private StringArgument baseDN;
+  private MultiChoiceArgument<String> searchScope;
+  private StringArgument filter;
+  private StringArgument attributes;
+  private StringArgument modifyAttribute;
+  private StringArgument bindDNTemplate;
+  private StringArgument bindPasswordTemplate;
+  private IntegerArgument numConnections;
+  private IntegerArgument maxInFlight;
+  private IntegerArgument targetRate;
+  private IntegerArgument duration;
+  private IntegerArgument warmUp;
+  private IntegerArgument statsInterval;
+  private BooleanArgument csv;
+
+  private final List<Connection> connections = new ArrayList<>();
+  private LDAPConnectionFactory connectionFactory;
+
+  private LoadGenerator(OutputStream outStream, OutputStream errStream)
+  {
+    out = NullOutputStream.wrapOrNullStream(outStream);
+    err = NullOutputStream.wrapOrNullStream(errStream);
+  }
+
+  /**
+   * Invokes the load generator with the provided set of arguments.
+   *
+   * @param args
+   *          The command-line arguments provided for this program.
+   */
+  public static void main(String[] args)
+  {
+    final int returnCode = mainLoadGenerator(args, true, System.out, System.err);
+    if (returnCode != 0)
+    {
+      System.exit(filterExitCode(returnCode));
+    }
+  }
+
+  /**
+   * Processes the provided set of command-line arguments and puts the server
+   * under load.
+   *
+   * @param args
+   *          The command-line arguments provided for this program.
+   * @param initializeServer
+   *          Indicates whether to initialize the server: when {@code false},
+   *          the server must already be running in this JVM, or its
+   *          configuration and schema must already be initialized.
+   * @param outStream
+   *          The output stream to use for standard output, or {@code null} if
+   *          standard output is not needed.
+   * @param errStream
+   *          The output stream to use for standard error, or {@code null} if
+   *          standard error is not needed.
+   * @return A result code of zero if all processing completed properly, or a
+   *         nonzero result if a problem occurred.
+   */
+  public static int mainLoadGenerator(String[] args, boolean initializeServer, OutputStream outStream,
+      OutputStream errStream)
+  {
+    return new LoadGenerator(outStream, errStream).run(args, initializeServer);
+  }
+
+  private int run(String[] args, boolean initializeServer)
+  {
+    JDKLogging.disableLogging();
+
+    final ArgumentParser argParser = new ArgumentParser(CLASS_NAME, INFO_LOADGEN_TOOL_DESCRIPTION.get(), false);
+    argParser.setShortToolDescription(REF_SHORT_DESC_GENERATE_LOAD.get());
+    argParser.setVersionHandler(new DirectoryServerVersionHandler());
+    try
+    {
+      initializeArguments(argParser);
+    }
+    catch (ArgumentException ae)
+    {
+      printWrappedText(err, ERR_CANNOT_INITIALIZE_ARGS.get(ae.getMessage()));
+      return 1;
+    }
+
+    final OperationType[] operationMix;
+    try
+    {
+      argParser.parseArguments(args);
+      operationMix = getOperationMix();
+    }
+    catch (ArgumentException ae)
+    {
+      argParser.displayMessageAndUsageReference(err, ERR_ERROR_PARSING_ARGS.get(ae.getMessage()));
+      return 1;
+    }
+
+    if (argParser.usageOrVersionDisplayed())
+    {
+      return 0;
+    }
+
+    // Checks the version - if upgrade required, the tool is unusable
+    try
+    {
+      BuildVersion.checkVersionMismatch();
+    }
+    catch (InitializationException e)
+    {
+      printWrappedText(err, e.getMessage());
+      return 1;
+    }
+
+    boolean stopServer = false;
+    try
+    {
+      if (initializeServer)
+      {
+        try
+        {
+          stopServer = initializeServer();
+        }
+        catch (Exception e)
+        {
+          printWrappedText(err, ERR_LOADGEN_CANNOT_INITIALIZE_SERVER.get(configFile.getValue(),
+              getExceptionMessage(e)));
+          return 1;
+        }
+      }
+      return generateLoad(operationMix);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return 1;
+    }
+    finally
+    {
+      closeConnections();
+      if (stopServer)
+      {
+        EmbeddedUtils.stopServer(CLASS_NAME, INFO_LOADGEN_STOP_REASON.get());
+      }
+    }
+  }
+
+  private void initializeArguments(ArgumentParser argParser) throws ArgumentException
+  {
+    configFile = new StringArgument("configfile", 'c', "configFile", false, false, true,
+        INFO_CONFIGFILE_PLACEHOLDER.get(), null, null, INFO_DESCRIPTION_CONFIG_FILE.get());
+    configFile.setHidden(true);
+    argParser.addArgument(configFile);
+
+    configClass = new StringArgument("configclass", OPTION_SHORT_CONFIG_CLASS, OPTION_LONG_CONFIG_CLASS, false,
+        false, true, INFO_CONFIGCLASS_PLACEHOLDER.get(), ConfigFileHandler.class.getName(), null,
+        INFO_DESCRIPTION_CONFIG_CLASS.get());
+    configClass.setHidden(true);
+    argParser.addArgument(configClass);
+
+    hostName = new StringArgument("host", OPTION_SHORT_HOST, OPTION_LONG_HOST, false, false, true,
+        INFO_HOST_PLACEHOLDER.get(), "localhost", null, INFO_DESCRIPTION_HOST.get());
+    argParser.addArgument(hostName);
+
+    port = new IntegerArgument("port", OPTION_SHORT_PORT, OPTION_LONG_PORT, false, false, true,
+        INFO_PORT_PLACEHOLDER.get(), 389, null, true, 1, true, 65535, INFO_DESCRIPTION_PORT.get());
+    argParser.addArgument(port);
+
+    bindDN = new StringArgument("bindDN", OPTION_SHORT_BINDDN, OPTION_LONG_BINDDN, false, false, true,
+        INFO_BINDDN_PLACEHOLDER.get(), null, null, INFO_DESCRIPTION_BINDDN.get());
+    argParser.addArgument(bindDN);
+
+    bindPassword = new StringArgument("bindPassword", OPTION_SHORT_BINDPWD, OPTION_LONG_BINDPWD, false, false, true,
+        INFO_BINDPWD_PLACEHOLDER.get(), null, null, INFO_DESCRIPTION_BINDPASSWORD.get());
+    argParser.addArgument(bindPassword);
+
+    embedded = new BooleanArgument("embedded", null, "embedded", INFO_LOADGEN_DESCRIPTION_EMBEDDED.get());
+    argParser.addArgument(embedded);
+
+    final LinkedHashSet<String> profiles = new LinkedHashSet<>(Arrays.asList(
+        PROFILE_SEARCH, PROFILE_MODIFY, PROFILE_ADD_DELETE, PROFILE_BIND, PROFILE_MIXED));
+    profile = new MultiChoiceArgument<>("profile", null, "profile", false, false, true,
+        INFO_LOADGEN_PROFILE_PLACEHOLDER.get(), PROFILE_SEARCH, null, profiles, false,
+        INFO_LOADGEN_DESCRIPTION_PROFILE.get());
+    argParser.addArgument(profile);
+
+    mix = new StringArgument("mix", null, "mix", false, false, true, INFO_LOADGEN_MIX_PLACEHOLDER.get(),
+        DEFAULT_MIX, null, INFO_LOADGEN_DESCRIPTION_MIX.get());
+    argParser.addArgument(mix);
+
+    templateFile = new StringArgument("templatefile", 't', "templateFile", false, false, true,
+        INFO_TEMPLATE_FILE_PLACEHOLDER.get(), null, null, INFO_LOADGEN_DESCRIPTION_TEMPLATE.get());
+    argParser.addArgument(templateFile);
+
+    resourcePath = new StringArgument("resourcepath", 'r', "resourcePath", false, false, true,
+        INFO_PATH_PLACEHOLDER.get(), null, null, INFO_MAKELDIF_DESCRIPTION_RESOURCE_PATH.get());
+    resourcePath.setHidden(true);
+    argParser.addArgument(resourcePath);
+
+    randomSeed = new IntegerArgument("randomseed", OPTION_SHORT_RANDOM_SEED, OPTION_LONG_RANDOM_SEED, false, false,
+        true, INFO_SEED_PLACEHOLDER.get(), 0, null, INFO_LOADGEN_DESCRIPTION_SEED.get());
+    argParser.addArgument(randomSeed);
+
+    maxEntries = new IntegerArgument("maxentries", null, "maxEntries", false, false, true,
+        INFO_NUM_ENTRIES_PLACEHOLDER.get(), 100000, null, true, 1, false, 0,
+        INFO_LOADGEN_DESCRIPTION_MAX_ENTRIES.get());
+    argParser.addArgument(maxEntries);
+
+    baseDN = new StringArgument("basedn", OPTION_SHORT_BASEDN, OPTION_LONG_BASEDN, false, false, true,
+        INFO_BASEDN_PLACEHOLDER.get(), null, null, INFO_LOADGEN_DESCRIPTION_BASEDN.get());
+    argParser.addArgument(baseDN);
+
+    final LinkedHashSet<String> scopes = new LinkedHashSet<>(Arrays.asList(
+        SCOPE_BASE, SCOPE_ONE, SCOPE_SUB, SCOPE_SUBORDINATE));
+    searchScope = new MultiChoiceArgument<>("searchScope", null, "searchScope", false, false, true,
+        INFO_SCOPE_PLACEHOLDER.get(), SCOPE_SUB, null, scopes, false, INFO_SEARCH_DESCRIPTION_SEARCH_SCOPE.get());
+    argParser.addArgument(searchScope);
+
+    filter = new StringArgument("filter", null, "filter", false, false, true, INFO_FILTER_PLACEHOLDER.get(),
+        "(uid={uid})", null, INFO_LOADGEN_DESCRIPTION_FILTER.get());
+    argParser.addArgument(filter);
+
+    attributes = new StringArgument("attribute", null, "attribute", false, true, true,
+        INFO_ATTRIBUTE_PLACEHOLDER.get(), null, null, INFO_LOADGEN_DESCRIPTION_ATTRIBUTE.get());
+    argParser.addArgument(attributes);
+
+    modifyAttribute = new StringArgument("modifyattribute", null, "modifyAttribute", false, false, true,
+        INFO_ATTRIBUTE_PLACEHOLDER.get(), "description", null, INFO_LOADGEN_DESCRIPTION_MODIFY_ATTRIBUTE.get());
+    argParser.addArgument(modifyAttribute);
+
+    bindDNTemplate = new StringArgument("binddntemplate", null, "bindDNTemplate", false, false, true,
+        INFO_BINDDN_PLACEHOLDER.get(), "{dn}", null, INFO_LOADGEN_DESCRIPTION_BIND_DN_TEMPLATE.get());
+    argParser.addArgument(bindDNTemplate);
+
+    bindPasswordTemplate = new StringArgument("bindpasswordtemplate", null, "bindPasswordTemplate", false, false,
+        true, INFO_BINDPWD_PLACEHOLDER.get(), "{userPassword}", null,
+        INFO_LOADGEN_DESCRIPTION_BIND_PASSWORD_TEMPLATE.get());
+    argParser.addArgument(bindPasswordTemplate);
+
+    numConnections = new IntegerArgument("numconnections", null, "numConnections", false, false, true,
+        INFO_LOADGEN_COUNT_PLACEHOLDER.get(), 4, null, true, 1, false, 0,
+        INFO_LOADGEN_DESCRIPTION_NUM_CONNECTIONS.get());
+    argParser.addArgument(numConnections);
+
+    maxInFlight = new IntegerArgument("maxinflight", null, "maxInFlight", false, false, true,
+        INFO_LOADGEN_COUNT_PLACEHOLDER.get(), 1, null, true, 1, false, 0,
+        INFO_LOADGEN_DESCRIPTION_MAX_IN_FLIGHT.get());
+    argParser.addArgument(maxInFlight);
+
+    targetRate = new IntegerArgument("targetrate", null, "targetRate", false, false, true,
+        INFO_LOADGEN_RATE_PLACEHOLDER.get(), 0, null, true, 0, false, 0,
+        INFO_LOADGEN_DESCRIPTION_TARGET_RATE.get());
+    argParser.addArgument(targetRate);
+
+    duration = new IntegerArgument("duration", null, "duration", false, false, true,
+        INFO_SECONDS_PLACEHOLDER.get(), 60, null, true, 1, false, 0, INFO_LOADGEN_DESCRIPTION_DURATION.get());
+    argParser.addArgument(duration);
+
+    warmUp = new IntegerArgument("warmup", null, "warmUp", false, false, true,
+        INFO_SECONDS_PLACEHOLDER.get(), 10, null, true, 0, false, 0, INFO_LOADGEN_DESCRIPTION_WARM_UP.get());
+    argParser.addArgument(warmUp);
+
+    statsInterval = new IntegerArgument("statsinterval", null, "statsInterval", false, false, true,
+        INFO_SECONDS_PLACEHOLDER.get(), 5, null, true, 1, false, 0,
+        INFO_LOADGEN_DESCRIPTION_STATS_INTERVAL.get());
+    argParser.addArgument(statsInterval);
+
+    csv = new BooleanArgument("csv", null, "csv", INFO_LOADGEN_DESCRIPTION_CSV.get());
+    argParser.addArgument(csv);
+
+    final BooleanArgument showUsage = CommonArguments.getShowUsage();
+    argParser.addArgument(showUsage);
+    argParser.setUsageArgument(showUsage, out);
+  }
+
+  /** Returns the types of operations to perform, each type appearing as many times as its weight. */
+  private OperationType[] getOperationMix() throws ArgumentException
+  {
+    final String profileName = profile.getValue();
+    if (!PROFILE_MIXED.equals(profileName))
+    {
+      return new OperationType[] { getOperationType(profileName) };
+    }
+
+    final List<OperationType> operationMix = new ArrayList<>();
+    try
+    {
+      for (String element : mix.getValue().split(","))
+      {
+        final int colon = element.indexOf(':');
+        final OperationType type = getOperationType(element.substring(0, colon).trim());
+        final int weight = Integer.parseInt(element.substring(colon + 1).trim());
+        if (type == null || weight < 0 || weight > 1000)
+        {
+          throw new IllegalArgumentException(element);
+        }
+        operationMix.addAll(Collections.nCopies(weight, type));
+      }
+    }
+    catch (RuntimeException e)
+    {
+      throw new ArgumentException(ERR_LOADGEN_INVALID_MIX.get(mix.getValue()), e);
+    }
+    if (operationMix.isEmpty())
+    {
+      throw new ArgumentException(ERR_LOADGEN_INVALID_MIX.get(mix.getValue()));
+    }
+    return operationMix.toArray(new OperationType[operationMix.size()]);
+  }
+
+  private static OperationType getOperationType(String profileName)
+  {
+    switch (profileName)
+    {
+    case PROFILE_SEARCH:
+      return OperationType.SEARCH;
+    case PROFILE_MODIFY:
+      return OperationType.MODIFY;
+    case PROFILE_ADD_DELETE:
+      return OperationType.ADD;
+    case PROFILE_BIND:
+      return OperationType.BIND;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Initializes the server configuration and schema needed for parsing the
+   * template, or starts the server when generating load in-process.
+   *
+   * @return {@code true} if the server has been started and must be stopped
+   */
+  private boolean initializeServer() throws Exception
+  {
+    if (embedded.isPresent())
+    {
+      if (EmbeddedUtils.isRunning())
+      {
+        return false;
+      }
+      final DirectoryEnvironmentConfig environmentConfig = new DirectoryEnvironmentConfig();
+      environmentConfig.setConfigFile(new File(configFile.getValue()));
+      environmentConfig.setConfigClass(Class.forName(configClass.getValue()));
+      environmentConfig.setDisableConnectionHandlers(true);
+      EmbeddedUtils.startServer(environmentConfig);
+      return true;
+    }
+
+    final DirectoryServer directoryServer = DirectoryServer.getInstance();
+    DirectoryServer.bootstrapClient();
+    DirectoryServer.initializeJMX();
+    directoryServer.initializeConfiguration(configClass.getValue(), configFile.getValue());
+    directoryServer.initializeSchema();
+    return false;
+  }
+
+  private int generateLoad(OperationType[] operationMix) throws InterruptedException
+  {
+    final EntryPool entryPool = generateEntries();
+    if (entryPool == null)
+    {
+      return 1;
+    }
+
+    final RequestFactory requests;
+    try
+    {
+      requests = new RequestFactory(entryPool,
+          baseDN.isPresent() ? DN.valueOf(baseDN.getValue()) : entryPool.getDefaultBaseDN(),
+          getSearchScope(), filter.getValue(), attributes.getValues(), modifyAttribute.getValue(),
+          bindDNTemplate.getValue(), bindPasswordTemplate.getValue());
+    }
+    catch (DirectoryException e)
+    {
+      printWrappedText(err, ERR_ERROR_PARSING_ARGS.get(e.getMessageObject()));
+      return 1;
+    }
+
+    final Map<OperationType, OperationStatistics> statistics = new EnumMap<>(OperationType.class);
+    for (OperationType type : OperationType.values())
+    {
+      statistics.put(type, new OperationStatistics());
+    }
+
+    final boolean needsBindConnection = Arrays.asList(operationMix).contains(OperationType.BIND);
+    final int nbWorkers = numConnections.getIntValue();
+    final Connection[] workerConnections = new Connection[nbWorkers];
+    final Connection[] bindConnections = new Connection[nbWorkers];
+    try
+    {
+      for (int i = 0; i < nbWorkers; i++)
+      {
+        workerConnections[i] = openConnection(false);
+        bindConnections[i] = needsBindConnection ? openConnection(true) : null;
+      }
+    }
+    catch (LdapException | LocalizedIllegalArgumentException e)
+    {
+      printWrappedText(err, ERR_LOADGEN_CANNOT_CONNECT.get(getExceptionMessage(e)));
+      return 1;
+    }
+
+    final Pacer pacer = new Pacer(targetRate.getIntValue());
+    final List<LoadWorker> workers = new ArrayList<>(nbWorkers);
+    for (int i = 0; i < nbWorkers; i++)
+    {
+      workers.add(new LoadWorker(i, workerConnections[i], bindConnections[i], requests, operationMix, pacer,
+          maxInFlight.getIntValue(), statistics, randomSeed.getIntValue() + i));
+    }
+    for (LoadWorker worker : workers)
+    {
+      worker.start();
+    }
+    try
+    {
+      measure(statistics, getDisplayedTypes(operationMix));
+    }
+    finally
+    {
+      for (LoadWorker worker : workers)
+      {
+        worker.shutdown();
+      }
+      for (LoadWorker worker : workers)
+      {
+        worker.join();
+      }
+    }
+    return 0;
+  }
+
+  private EntryPool generateEntries()
+  {
+    final String resourceDir = getResourcePath();
+    if (!new File(resourceDir).exists())
+    {
+      printWrappedText(err, ERR_MAKELDIF_NO_SUCH_RESOURCE_DIRECTORY.get(resourceDir));
+      return null;
+    }
+    final String templatePath = templateFile.isPresent()
+        ? templateFile.getValue() : new File(resourceDir, DEFAULT_TEMPLATE).getPath();
+
+    final List<LocalizableMessage> warnings = new ArrayList<>();
+    final EntryPool entryPool;
+    try
+    {
+      entryPool = EntryPool.generate(resourceDir, templatePath, randomSeed.getIntValue(),
+          maxEntries.getIntValue(), warnings);
+    }
+    catch (Exception e)
+    {
+      printWrappedText(err, ERR_LOADGEN_CANNOT_GENERATE_ENTRIES.get(templatePath, getExceptionMessage(e)));
+      return null;
+    }
+    for (LocalizableMessage warning : warnings)
+    {
+      printWrappedText(err, warning);
+    }
+    if (entryPool.size() == 0)
+    {
+      printWrappedText(err, ERR_LOADGEN_NO_ENTRIES.get(templatePath));
+      return null;
+    }
+    return entryPool;
+  }
+
+  private String getResourcePath()
+  {
+    if (resourcePath.isPresent())
+    {
+      return resourcePath.getValue();
+    }
+    final File configDir = configFile.isPresent()
+        ? new File(configFile.getValue()).getAbsoluteFile().getParentFile()
+        : new File(DirectoryServer.getInstanceRoot(), "config");
+    return new File(configDir, "MakeLDIF").getPath();
+  }
+
+  private SearchScope getSearchScope()
+  {
+    switch (searchScope.getValue())
+    {
+    case SCOPE_BASE:
+      return SearchScope.BASE_OBJECT;
+    case SCOPE_ONE:
+      return SearchScope.SINGLE_LEVEL;
+    case SCOPE_SUBORDINATE:
+      return SearchScope.SUBORDINATES;
+    default:
+      return SearchScope.WHOLE_SUBTREE;
+    }
+  }
+
+  /**
+   * Opens a connection, in-process or through LDAP.
+   *
+   * @param forBinds
+   *          whether the connection is used for binds, in which case it is
+   *          not authenticated upfront
+   */
+  private Connection openConnection(boolean forBinds) throws LdapException
+  {
+    final Connection connection;
+    if (embedded.isPresent())
+    {
+      if (forBinds)
+      {
+        connection = Adapters.newAnonymousConnection();
+      }
+      else if (bindDN.isPresent())
+      {
+        connection = Adapters.newConnectionForUser(org.forgerock.opendj.ldap.DN.valueOf(bindDN.getValue()));
+      }
+      else
+      {
+        connection = Adapters.newRootConnection();
+      }
+      connections.add(connection);
+      return connection;
+    }
+
+    if (connectionFactory == null)
+    {
+      final Options options = Options.defaultOptions();
+      options.set(CONNECT_TIMEOUT,
+          new Duration((long) CliConstants.DEFAULT_LDAP_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS));
+      connectionFactory = new LDAPConnectionFactory(hostName.getValue(), port.getIntValue(), options);
+    }
+    connection = connectionFactory.getConnection();
+    connections.add(connection);
+    if (!forBinds && bindDN.isPresent())
+    {
+      final String password = bindPassword.getValue();
+      connection.bind(bindDN.getValue(), password != null ? password.toCharArray() : new char[0]);
+    }
+    return connection;
+  }
+
+  private void closeConnections()
+  {
+    for (Connection connection : connections)
+    {
+      connection.close();
+    }
+    connections.clear();
+    close(connectionFactory);
+  }
+
+  /** Returns the types of operations whose statistics are displayed. */
+  private List<OperationType> getDisplayedTypes(OperationType[] operationMix)
+  {
+    final List<OperationType> types = new ArrayList<>();
+    final List<OperationType> mixTypes = Arrays.asList(operationMix);
+    for (OperationType type : OperationType.values())
+    {
+      if (mixTypes.contains(type) || (type == OperationType.DELETE && mixTypes.contains(OperationType.ADD)))
+      {
+        types.add(type);
+      }
+    }
+    return types;
+  }
+
+  private void measure(Map<OperationType, OperationStatistics> statistics, List<OperationType> types)
+      throws InterruptedException
+  {
+    if (warmUp.getIntValue() > 0)
+    {
+      if (!csv.isPresent())
+      {
+        printWrappedText(out, INFO_LOADGEN_WARMING_UP.get(warmUp.getIntValue()));
+      }
+      Thread.sleep(TimeUnit.SECONDS.toMillis(warmUp.getIntValue()));
+    }
+    for (OperationStatistics operationStatistics : statistics.values())
+    {
+      operationStatistics.reset();
+    }
+
+    printHeader();
+    final long startTime = System.nanoTime();
+    final long endTime = startTime + TimeUnit.SECONDS.toNanos(duration.getIntValue());
+    final long intervalNanos = TimeUnit.SECONDS.toNanos(statsInterval.getIntValue());
+    long intervalStart = startTime;
+    long now = startTime;
+    while (now < endTime)
+    {
+      final long intervalEnd = Math.min(intervalStart + intervalNanos, endTime);
+      while ((now = System.nanoTime()) < intervalEnd)
+      {
+        TimeUnit.NANOSECONDS.sleep(intervalEnd - now);
+      }
+      final String time = Long.toString(TimeUnit.NANOSECONDS.toSeconds(now - startTime + 500000000L));
+      for (OperationType type : types)
+      {
+        final OperationStatistics operationStatistics = statistics.get(type);
+        final LatencyHistogram histogram = operationStatistics.collectInterval();
+        printStatistics(time, type, histogram, operationStatistics.collectIntervalErrors(), now - intervalStart);
+      }
+      intervalStart = now;
+    }
+
+    if (!csv.isPresent())
+    {
+      out.println();
+      printWrappedText(out, INFO_LOADGEN_SUMMARY.get(duration.getIntValue()));
+      printHeader();
+    }
+    for (OperationType type : types)
+    {
+      final OperationStatistics operationStatistics = statistics.get(type);
+      printStatistics("total", type, operationStatistics.getTotal(), operationStatistics.getTotalErrors(),
+          now - startTime);
+    }
+  }
+
+  private void printHeader()
+  {
+    final String[] columns = new String[6 + PERCENTILES.length];
+    int i = 0;
+    columns[i++] = "time";
+    columns[i++] = "op";
+    columns[i++] = "throughput";
+    columns[i++] = "errors";
+    columns[i++] = "mean";
+    for (double percentile : PERCENTILES)
+    {
+      columns[i++] = "p" + formatPercentile(percentile);
+    }
+    columns[i++] = "max";
+    printRow(columns);
+  }
+
+  private void printStatistics(String time, OperationType type, LatencyHistogram histogram, long errors,
+      long elapsedNanos)
+  {
+    final String[] columns = new String[6 + PERCENTILES.length];
+    int i = 0;
+    columns[i++] = time;
+    columns[i++] = type.getName();
+    columns[i++] = String.format(Locale.ROOT, "%.1f", histogram.getTotalCount() * 1e9 / Math.max(elapsedNanos, 1));
+    columns[i++] = Long.toString(errors);
+    columns[i++] = formatMillis(histogram.getMean());
+    for (double percentile : PERCENTILES)
+    {
+      columns[i++] = formatMillis(histogram.getValueAtPercentile(percentile));
+    }
+    columns[i++] = formatMillis(histogram.getMax());
+    printRow(columns);
+  }
+
+  private void printRow(String[] columns)
+  {
+    if (csv.isPresent())
+    {
+      final StringBuilder row = new StringBuilder();
+      for (String column : columns)
+      {
+        if (row.length() > 0)
+        {
+          row.append(',');
+        }
+        row.append(column);
+      }
+      out.println(row);
+    }
+    else
+    {
+      out.println(String.format(TEXT_FORMAT, (Object[]) columns));
+    }
+  }
+
+  private static String formatPercentile(double percentile)
+  {
+    return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+  }
+
+  /** Latencies are recorded in microseconds, and displayed in milliseconds. */
+  private static String formatMillis(double micros)
+  {
+    return String.format(Locale.ROOT, "%.3f", micros / 1000);
+  }
+}
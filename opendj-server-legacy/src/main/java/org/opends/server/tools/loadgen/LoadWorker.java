@@ -0,0 +1,265 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.LdapPromise;
+import org.forgerock.opendj.ldap.SearchResultHandler;
+import org.forgerock.opendj.ldap.requests.AddRequest;
+import org.forgerock.opendj.ldap.requests.BindRequest;
+import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.opendj.ldap.responses.SearchResultReference;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * A thread sending operations through one connection, without waiting for
+ * their results, up to a maximum number of operations in flight.
+ * <p>
+ * Binds change the authorization of their connection: they are sent through a
+ * separate connection, one at a time.
+ */
+final class LoadWorker extends Thread
+{
+  /** Ignores the entries returned by searches, which are only counted by the server. */
+  private static final SearchResultHandler IGNORE_ENTRIES = new SearchResultHandler()
+  {
+    @Override
+    public boolean handleEntry(SearchResultEntry entry)
+    {
+      return true;
+    }
+
+    @Override
+    public boolean handleReference(SearchResultReference reference)
+    {
+      return true;
+    }
+  };
+
+  private final Connection connection;
+  private final Connection bindConnection;
+  private final RequestFactory requests;
+  /** The types of operations to perform, each type appearing as many times as its weight. */
+  private final OperationType[] mix;
+  private final Pacer pacer;
+  private final Map<OperationType, OperationStatistics> statistics;
+  private final long seed;
+  private final int maxInFlight;
+  private final Semaphore inFlight;
+  private final Semaphore bindInProgress = new Semaphore(1);
+  private volatile boolean stopRequested;
+
+  /** Records the completion of an operation. */
+  private class Completion implements ResultHandler<Result>, ExceptionHandler<LdapException>
+  {
+    private final OperationType type;
+    private final long startTime;
+
+    Completion(OperationType type, long startTime)
+    {
+      this.type = type;
+      this.startTime = startTime;
+    }
+
+    @Override
+    public void handleResult(Result result)
+    {
+      complete(true);
+    }
+
+    @Override
+    public void handleException(LdapException exception)
+    {
+      complete(false);
+    }
+
+    final void complete(boolean success)
+    {
+      statistics.get(type).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime), success);
+      onCompletion(success);
+    }
+
+    /**
+     * Invoked once the operation has been recorded.
+     *
+     * @param success
+     *          whether the operation succeeded
+     */
+    void onCompletion(boolean success)
+    {
+      inFlight.release();
+    }
+  }
+
+  /**
+   * Creates a worker.
+   *
+   * @param id
+   *          the identifier of the worker
+   * @param connection
+   *          the connection used for all the operations but binds
+   * @param bindConnection
+   *          the connection used for binds, {@code null} if the mix does not
+   *          contain binds
+   * @param requests
+   *          the factory of the requests to send
+   * @param mix
+   *          the types of operations to perform, each type appearing as many
+   *          times as its weight
+   * @param pacer
+   *          the pacer shared by all the workers
+   * @param maxInFlight
+   *          the maximum number of operations waiting for their result
+   * @param statistics
+   *          the statistics of each type of operations
+   * @param seed
+   *          the seed of the random choices of the worker
+   */
+  LoadWorker(int id, Connection connection, Connection bindConnection, RequestFactory requests,
+      OperationType[] mix, Pacer pacer, int maxInFlight, Map<OperationType, OperationStatistics> statistics,
+      long seed)
+  {
+    super("Load Generator Worker " + id);
+    this.connection = connection;
+    this.bindConnection = bindConnection;
+    this.requests = requests;
+    this.mix = mix;
+    this.pacer = pacer;
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.statistics = statistics;
+    this.seed = seed;
+  }
+
+  /** Asks this worker to stop sending operations, and to wait for the operations in flight. */
+  void shutdown()
+  {
+    stopRequested = true;
+  }
+
+  @Override
+  public void run()
+  {
+    final Random random = new Random(seed);
+    try
+    {
+      while (!stopRequested)
+      {
+        if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS))
+        {
+          continue;
+        }
+        final long startTime = pacer.acquire();
+        if (stopRequested)
+        {
+          inFlight.release();
+          break;
+        }
+        final OperationType type = mix[random.nextInt(mix.length)];
+        try
+        {
+          execute(type, random, startTime);
+        }
+        catch (RuntimeException e)
+        {
+          // the request could not be created, for example from an invalid filter template
+          statistics.get(type).record(0, false);
+          inFlight.release();
+        }
+      }
+      inFlight.acquire(maxInFlight);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void execute(OperationType type, Random random, long startTime)
+  {
+    final Completion completion;
+    switch (type)
+    {
+    case ADD:
+      final AddRequest addRequest = requests.newAddRequest(random);
+      completion = new Completion(OperationType.ADD, startTime)
+      {
+        @Override
+        void onCompletion(boolean success)
+        {
+          if (success)
+          {
+            // keep the permit until the entry has been deleted
+            final Completion deleteCompletion = new Completion(OperationType.DELETE, System.nanoTime());
+            send(connection.deleteAsync(requests.newDeleteRequest(addRequest)), deleteCompletion);
+          }
+          else
+          {
+            super.onCompletion(success);
+          }
+        }
+      };
+      send(connection.addAsync(addRequest), completion);
+      break;
+
+    case BIND:
+      final BindRequest bindRequest = requests.newBindRequest(random);
+      bindInProgress.acquireUninterruptibly();
+      completion = new Completion(OperationType.BIND, startTime)
+      {
+        @Override
+        void onCompletion(boolean success)
+        {
+          bindInProgress.release();
+          super.onCompletion(success);
+        }
+      };
+      send(bindConnection.bindAsync(bindRequest), completion);
+      break;
+
+    case MODIFY:
+      send(connection.modifyAsync(requests.newModifyRequest(random)), new Completion(type, startTime));
+      break;
+
+    default:
+      send(connection.searchAsync(requests.newSearchRequest(random), IGNORE_ENTRIES), new Completion(type, startTime));
+      break;
+    }
+  }
+
+  private void send(LdapPromise<? extends Result> promise, Completion completion)
+  {
+    promise.thenOnResult(completion).thenOnException(completion);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opends.server.util.LatencyHistogram;
+
+/**
+ * The statistics of one type of operations, recorded concurrently by the
+ * workers and periodically collected by the reporter.
+ * <p>
+ * Latencies are in microseconds.
+ */
+final class OperationStatistics
+{
+  private final LatencyHistogram interval = new LatencyHistogram();
+  private final AtomicLong intervalErrors = new AtomicLong();
+  /** The statistics collected so far, only accessed by the reporter. */
+  private final LatencyHistogram total = new LatencyHistogram();
+  private long totalErrors;
+
+  /**
+   * Records a completed operation.
+   *
+   * @param latencyMicros
+   *          the time between the intended start of the operation and its
+   *          completion, in microseconds
+   * @param success
+   *          whether the operation succeeded
+   */
+  void record(long latencyMicros, boolean success)
+  {
+    interval.recordValue(latencyMicros);
+    if (!success)
+    {
+      intervalErrors.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the operations recorded since the previous call, and adds them to
+   * the total.
+   *
+   * @return the latencies of the operations recorded since the previous call
+   */
+  LatencyHistogram collectInterval()
+  {
+    final LatencyHistogram snapshot = interval.snapshotAndReset();
+    total.add(snapshot);
+    return snapshot;
+  }
+
+  /**
+   * Returns the number of failed operations recorded since the previous call,
+   * and adds them to the total. Must be called right after
+   * {@link #collectInterval()}.
+   *
+   * @return the number of failed operations recorded since the previous call
+   */
+  long collectIntervalErrors()
+  {
+    final long errors = intervalErrors.getAndSet(0);
+    totalErrors += errors;
+    return errors;
+  }
+
+  /** Forgets all the operations recorded so far, for example once warmed up. */
+  void reset()
+  {
+    interval.reset();
+    intervalErrors.set(0);
+    total.reset();
+    totalErrors = 0;
+  }
+
+  /**
+   * Returns the latencies of all the operations collected.
+   *
+   * @return the latencies of all the operations collected
+   */
+  LatencyHistogram getTotal()
+  {
+    return total;
+  }
+
+  /**
+   * Returns the number of failed operations collected.
+   *
+   * @return the number of failed operations collected
+   */
+  long getTotalErrors()
+  {
+    return totalErrors;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import static org.opends.server.util.StaticUtils.*;
+
+/** The types of operations performed by the load generator. */
+enum OperationType
+{
+  /** A search for a generated entry. */
+  SEARCH,
+  /** A modification of a generated entry. */
+  MODIFY,
+  /** An addition of a new entry, always followed by its deletion. */
+  ADD,
+  /** The deletion of an entry previously added. */
+  DELETE,
+  /** A simple bind as a generated entry. */
+  BIND;
+
+  /**
+   * Returns the name of this operation type, as displayed in statistics.
+   *
+   * @return the name of this operation type
+   */
+  String getName()
+  {
+    return toLowerCase(name());
+  }
+}
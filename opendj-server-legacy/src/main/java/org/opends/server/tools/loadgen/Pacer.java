@@ -0,0 +1,80 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spreads the start of the operations of all the workers evenly in time to
+ * achieve a target rate.
+ * <p>
+ * Each operation is given an intended start time. When the server cannot keep
+ * up, intended start times fall behind and the operations are started as soon
+ * as possible: their latency is measured from their intended start time, so
+ * that the time spent waiting for the server is not omitted from the
+ * statistics.
+ */
+final class Pacer
+{
+  private final long intervalNanos;
+  private final AtomicLong nextStartTime = new AtomicLong();
+
+  /**
+   * Creates a pacer.
+   *
+   * @param targetRate
+   *          the number of operations to start per second, or 0 to start
+   *          operations as fast as possible
+   */
+  Pacer(int targetRate)
+  {
+    this.intervalNanos = targetRate > 0 ? TimeUnit.SECONDS.toNanos(1) / targetRate : 0;
+    this.nextStartTime.set(System.nanoTime());
+  }
+
+  /**
+   * Waits until the intended start time of the next operation.
+   *
+   * @return the intended start time of the next operation, as given by
+   *         {@link System#nanoTime()}
+   */
+  long acquire()
+  {
+    if (intervalNanos == 0)
+    {
+      return System.nanoTime();
+    }
+    final long startTime = nextStartTime.getAndAdd(intervalNanos);
+    long delay;
+    while ((delay = startTime - System.nanoTime()) > 0)
+    {
+      LockSupport.parkNanos(delay);
+    }
+    return startTime;
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import static org.forgerock.opendj.adapter.server3x.Converters.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.opendj.ldap.Filter;
+import org.forgerock.opendj.ldap.ModificationType;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.requests.AddRequest;
+import org.forgerock.opendj.ldap.requests.BindRequest;
+import org.forgerock.opendj.ldap.requests.DeleteRequest;
+import org.forgerock.opendj.ldap.requests.ModifyRequest;
+import org.forgerock.opendj.ldap.requests.Requests;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+
+/**
+ * Creates the requests sent by the load generator, targeting random entries
+ * of an {@link EntryPool}.
+ * <p>
+ * Search filters, bind DNs and bind passwords are templates where
+ * <code>{dn}</code> is replaced with the DN of the targeted entry, and
+ * <code>{attr}</code> with the first value of the attribute {@code attr} of the
+ * targeted entry, or with an empty string if the entry has no such attribute.
+ * For example, the filter template <code>(uid={uid})</code> searches the
+ * targeted entry by its user ID.
+ */
+final class RequestFactory
+{
+  private final EntryPool entryPool;
+  private final String baseDN;
+  private final SearchScope scope;
+  private final String filterTemplate;
+  private final String[] attributes;
+  private final String modifyAttribute;
+  private final String bindDNTemplate;
+  private final String bindPasswordTemplate;
+
+  /**
+   * Creates a request factory.
+   *
+   * @param entryPool
+   *          the entries targeted by the requests
+   * @param baseDN
+   *          the base DN of the searches
+   * @param scope
+   *          the scope of the searches
+   * @param filterTemplate
+   *          the template of the search filters
+   * @param attributes
+   *          the attributes to return from searches
+   * @param modifyAttribute
+   *          the attribute whose value is replaced by modifications
+   * @param bindDNTemplate
+   *          the template of the bind DNs
+   * @param bindPasswordTemplate
+   *          the template of the bind passwords
+   */
+  RequestFactory(EntryPool entryPool, DN baseDN, SearchScope scope, String filterTemplate, List<String> attributes,
+      String modifyAttribute, String bindDNTemplate, String bindPasswordTemplate)
+  {
+    this.entryPool = entryPool;
+    this.baseDN = baseDN.toString();
+    this.scope = scope;
+    this.filterTemplate = filterTemplate;
+    this.attributes = attributes.toArray(new String[attributes.size()]);
+    this.modifyAttribute = modifyAttribute;
+    this.bindDNTemplate = bindDNTemplate;
+    this.bindPasswordTemplate = bindPasswordTemplate;
+  }
+
+  /**
+   * Creates a search request for a random entry.
+   *
+   * @param random
+   *          the random number generator to use
+   * @return a new search request
+   */
+  SearchRequest newSearchRequest(Random random)
+  {
+    final Entry entry = entryPool.getRandomEntry(random);
+    return Requests.newSearchRequest(baseDN, scope, resolve(filterTemplate, entry, true), attributes);
+  }
+
+  /**
+   * Creates a request replacing the value of the modified attribute of a
+   * random entry.
+   *
+   * @param random
+   *          the random number generator to use
+   * @return a new modify request
+   */
+  ModifyRequest newModifyRequest(Random random)
+  {
+    final Entry entry = entryPool.getRandomEntry(random);
+    return Requests.newModifyRequest(entry.getName().toString())
+        .addModification(ModificationType.REPLACE, modifyAttribute, "load " + Long.toHexString(random.nextLong()));
+  }
+
+  /**
+   * Creates a request adding a new entry, copied from a random entry.
+   *
+   * @param random
+   *          the random number generator to use
+   * @return a new add request
+   */
+  AddRequest newAddRequest(Random random)
+  {
+    final Entry entry = entryPool.newEntryToAdd(random);
+    final AddRequest request = Requests.newAddRequest(entry.getName().toString());
+    request.addAttribute(from(entry.getObjectClassAttribute()));
+    for (Attribute attribute : entry.getAttributes())
+    {
+      request.addAttribute(from(attribute));
+    }
+    return request;
+  }
+
+  /**
+   * Creates a request deleting the entry added by the provided request.
+   *
+   * @param addRequest
+   *          the request which added the entry to delete
+   * @return a new delete request
+   */
+  DeleteRequest newDeleteRequest(AddRequest addRequest)
+  {
+    return Requests.newDeleteRequest(addRequest.getName());
+  }
+
+  /**
+   * Creates a simple bind request as a random entry.
+   *
+   * @param random
+   *          the random number generator to use
+   * @return a new bind request
+   */
+  BindRequest newBindRequest(Random random)
+  {
+    final Entry entry = entryPool.getRandomEntry(random);
+    return Requests.newSimpleBindRequest(resolve(bindDNTemplate, entry, false),
+        resolve(bindPasswordTemplate, entry, false).toCharArray());
+  }
+
+  /**
+   * Replaces the placeholders of a template with the values of an entry.
+   *
+   * @param template
+   *          the template to resolve
+   * @param entry
+   *          the entry providing the values
+   * @param isFilter
+   *          whether the template is a search filter, in which case the values
+   *          are escaped
+   * @return the resolved template
+   */
+  static String resolve(String template, Entry entry, boolean isFilter)
+  {
+    final StringBuilder builder = new StringBuilder(template.length() + 32);
+    int start = 0;
+    int open;
+    while ((open = template.indexOf('{', start)) >= 0)
+    {
+      final int close = template.indexOf('}', open);
+      if (close < 0)
+      {
+        break;
+      }
+      builder.append(template, start, open);
+      final String value = getValue(entry, template.substring(open + 1, close));
+      builder.append(isFilter ? Filter.escapeAssertionValue(value) : value);
+      start = close + 1;
+    }
+    builder.append(template, start, template.length());
+    return builder.toString();
+  }
+
+  private static String getValue(Entry entry, String name)
+  {
+    if ("dn".equalsIgnoreCase(name))
+    {
+      return entry.getName().toString();
+    }
+    final List<Attribute> attributes = entry.getAttribute(toLowerCase(name));
+    if (attributes != null)
+    {
+      for (Attribute attribute : attributes)
+      {
+        if (!attribute.isEmpty())
+        {
+          return attribute.iterator().next().toString();
+        }
+      }
+    }
+    return "";
+  }
+}
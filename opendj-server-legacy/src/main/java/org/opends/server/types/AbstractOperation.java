@@ -26,6 +26,8 @@
  */
 package org.opends.server.types;
 
+import static java.util.concurrent.TimeUnit.*;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -38,10 +40,12 @@ import org.forgerock.i18n.LocalizableMessageBuilder;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.util.Reject;
+import org.opends.server.api.Backend;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.plugin.PluginResult.OperationResult;
 import org.opends.server.controls.ControlDecoder;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.monitors.BackendMonitor;
 import org.opends.server.protocols.ldap.LDAPControl;
 import org.opends.server.types.operation.PostResponseOperation;
 import org.opends.server.types.operation.PreParseOperation;
@@ -143,6 +147,10 @@ public abstract class AbstractOperation
   private long processingStartNanoTime;
   /** The time that processing ended on this operation in nanoseconds. */
   private long processingStopNanoTime;
+  /** The time that this operation was created in nanoseconds, used to compute the time it waited in the queue. */
+  private final long creationNanoTime = System.nanoTime();
+  /** The backend in which this operation has been processed, if any. */
+  private Backend<?> processingBackend;
 
   /** The callbacks to be invoked once a response has been sent. */
   private List<Runnable> postResponseCallbacks;
@@ -596,10 +604,7 @@ public abstract class AbstractOperation
   public final void setProcessingStartTime()
   {
     processingStartTime = System.currentTimeMillis();
-    if(useNanoTime)
-    {
-      processingStartNanoTime = System.nanoTime();
-    }
+    processingStartNanoTime = System.nanoTime();
   }
 
   @Override
@@ -616,9 +621,43 @@ public abstract class AbstractOperation
   public final void setProcessingStopTime()
   {
     this.processingStopTime = System.currentTimeMillis();
-    if(useNanoTime)
+    this.processingStopNanoTime = System.nanoTime();
+    if (!isInternalOperation && processingStartNanoTime != 0)
+    {
+      recordLatencies();
+    }
+  }
+
+  /** Records the latencies of this operation in the server and backend statistics. */
+  private void recordLatencies()
+  {
+    final OperationType operationType = getOperationType();
+    final long queueWaitMicros = NANOSECONDS.toMicros(processingStartNanoTime - creationNanoTime);
+    final long processingMicros = NANOSECONDS.toMicros(processingStopNanoTime - processingStartNanoTime);
+    DirectoryServer.getOperationLatencyStatistics().record(
+        operationType, processingStopTime, queueWaitMicros, processingMicros);
+
+    final BackendMonitor backendMonitor = processingBackend != null ? processingBackend.getBackendMonitor() : null;
+    if (backendMonitor != null)
+    {
+      backendMonitor.getOperationLatencyStatistics().record(
+          operationType, processingStopTime, queueWaitMicros, processingMicros);
+    }
+  }
+
+  /**
+   * Sets the backend in which this operation is processed, so that its
+   * latencies are also reported by the backend monitor. Only the first backend
+   * is kept for operations processed in several backends.
+   *
+   * @param backend
+   *          The backend in which this operation is processed.
+   */
+  public final void setProcessingBackend(Backend<?> backend)
+  {
+    if (processingBackend == null)
     {
-      this.processingStopNanoTime = System.nanoTime();
+      processingBackend = backend;
     }
   }
 
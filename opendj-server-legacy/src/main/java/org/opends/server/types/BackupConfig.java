@@ -90,6 +90,18 @@ public final class BackupConfig extends OperationConfig
    */
   private String incrementalBaseID;
 
+  /**
+   * Indicates whether the files should be split into chunks shared
+   * with the other backups in the same directory.
+   */
+  private boolean chunked;
+
+  /**
+   * The number of threads processing the chunks, or zero to use the
+   * number of available processors.
+   */
+  private int threadCount;
+
 
   /**
    * Creates a new backup configuration that will create a full or
@@ -307,5 +319,65 @@ public final class BackupConfig extends OperationConfig
   {
     this.signHash = signHash;
   }
-}
 
+
+
+  /**
+   * Indicates whether the backup process should split the files into
+   * content-defined chunks, which are compressed, encrypted and
+   * hashed in parallel, and stored only once in the backup directory
+   * whatever the number of backups containing them. Such a backup
+   * only writes the data changed since the previous backups, but
+   * does not depend on them: the incremental settings are ignored.
+   *
+   * @return  <CODE>true</CODE> if the backup process should split the
+   *          files into chunks, or <CODE>false</CODE> if not.
+   */
+  public boolean isChunked()
+  {
+    return chunked;
+  }
+
+
+
+  /**
+   * Specifies whether the backup process should split the files into
+   * content-defined chunks.
+   *
+   * @param  chunked  Specifies whether the backup process should
+   *                  split the files into chunks.
+   */
+  public void setChunked(boolean chunked)
+  {
+    this.chunked = chunked;
+  }
+
+
+
+  /**
+   * Retrieves the number of threads processing the chunks of a
+   * chunked backup.
+   *
+   * @return  The number of threads processing the chunks, or zero to
+   *          use the number of available processors.
+   */
+  public int getThreadCount()
+  {
+    return threadCount;
+  }
+
+
+
+  /**
+   * Specifies the number of threads processing the chunks of a
+   * chunked backup.
+   *
+   * @param  threadCount  The number of threads processing the chunks,
+   *                      or zero to use the number of available
+   *                      processors.
+   */
+  public void setThreadCount(int threadCount)
+  {
+    this.threadCount = threadCount;
+  }
+}
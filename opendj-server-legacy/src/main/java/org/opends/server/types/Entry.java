@@ -2458,6 +2458,45 @@ public class Entry
 
 
 
+  /**
+   * Creates a duplicate of this entry to be kept in an entry cache.
+   * The attributes decoded lazily get their own copy of their encoded
+   * values, so that the cached entry does not keep the whole encoded
+   * entry it has been decoded from.
+   *
+   * @return  A duplicate of this entry that may be altered without
+   *          impacting the information in this entry.
+   */
+  public Entry duplicateForEntryCache()
+  {
+    Entry e = duplicate(false);
+    detachLazyAttributes(e.userAttributes);
+    detachLazyAttributes(e.operationalAttributes);
+    return e;
+  }
+
+
+
+  private static void detachLazyAttributes(Map<AttributeType, List<Attribute>> attributes)
+  {
+    for (Map.Entry<AttributeType, List<Attribute>> mapEntry : attributes.entrySet())
+    {
+      // the lists of suppressed attributes are shared with the original entry
+      List<Attribute> attrList = new ArrayList<>(mapEntry.getValue());
+      for (int i = 0; i < attrList.size(); i++)
+      {
+        Attribute a = attrList.get(i);
+        if (a instanceof LazyAttribute)
+        {
+          attrList.set(i, ((LazyAttribute) a).detach());
+        }
+      }
+      mapEntry.setValue(attrList);
+    }
+  }
+
+
+
   /**
    * Creates a duplicate of this entry that may be altered without
    * impacting the information in this entry.
@@ -3473,6 +3512,48 @@ public class Entry
   public static Entry decode(ByteSequenceReader entryBuffer,
                              CompressedSchema compressedSchema)
          throws DirectoryException
+  {
+    return decode(entryBuffer, compressedSchema, false);
+  }
+
+
+
+  /**
+   * Decodes the provided byte array as an entry using the V3
+   * encoding, deferring the decoding of the attribute values until
+   * they are first accessed.
+   * <p>
+   * Only the values of the attributes encoded with a compressed
+   * attribute description are decoded lazily. The decoded entry keeps
+   * references to the provided buffer, which must therefore not be
+   * modified afterwards: the attributes and their values share the
+   * bytes of the buffer when it is backed by a {@code ByteString}.
+   * Use {@link #duplicateForEntryCache()} before keeping the entry for
+   * long.
+   *
+   * @param  entryBuffer       The byte buffer containing the data to
+   *                           be decoded.
+   * @param  compressedSchema  The compressed schema manager to use
+   *                           when decoding tokenized schema
+   *                           elements.
+   *
+   * @return  The decoded entry.
+   *
+   * @throws  DirectoryException  If the provided byte array cannot be
+   *                              decoded as an entry.
+   */
+  public static Entry decodeLazily(ByteSequenceReader entryBuffer,
+                                   CompressedSchema compressedSchema)
+         throws DirectoryException
+  {
+    return decode(entryBuffer, compressedSchema, true);
+  }
+
+
+
+  private static Entry decode(ByteSequenceReader entryBuffer,
+      CompressedSchema compressedSchema, boolean lazyValues)
+      throws DirectoryException
   {
     try
     {
@@ -3533,9 +3614,9 @@ public class Entry
       // Now, we should iterate through the user and operational attributes and
       // decode each one.
       Map<AttributeType, List<Attribute>> userAttributes =
-          decodeAttributes(version, entryBuffer, config);
+          decodeAttributes(version, entryBuffer, config, lazyValues);
       Map<AttributeType, List<Attribute>> operationalAttributes =
-          decodeAttributes(version, entryBuffer, config);
+          decodeAttributes(version, entryBuffer, config, lazyValues);
 
 
       // We've got everything that we need, so create and return the entry.
@@ -3659,6 +3740,8 @@ public class Entry
    *                     entry.
    * @param  config  The configuration that may be used to control how
    *                 the entry is encoded.
+   * @param  lazyValues  Whether the values of the attributes with a
+   *                     compressed description should be decoded lazily.
    *
    * @return  A map of the decoded object classes.
    * @throws  DirectoryException  If a problem occurs while attempting
@@ -3666,7 +3749,8 @@ public class Entry
    */
   private static Map<AttributeType, List<Attribute>>
   decodeAttributes(Byte ver, ByteSequenceReader entryBuffer,
-                   EntryEncodeConfig config) throws DirectoryException
+                   EntryEncodeConfig config, boolean lazyValues)
+      throws DirectoryException
   {
     // Next is the total number of attributes.  It may be a
     // single byte or multiple bytes.
@@ -3685,7 +3769,9 @@ public class Entry
           entryBuffer.readBERLength();
         }
         // Decode the attribute.
-        Attribute a = config.getCompressedSchema().decodeAttribute(entryBuffer);
+        Attribute a = lazyValues
+            ? decodeLazyAttribute(entryBuffer, config.getCompressedSchema())
+            : config.getCompressedSchema().decodeAttribute(entryBuffer);
         List<Attribute> attrList = attributes.get(a.getAttributeType());
         if (attrList == null)
         {
@@ -3774,6 +3860,30 @@ public class Entry
     return attributes;
   }
 
+  /**
+   * Decodes the attribute with a compressed description at the current
+   * position, without decoding its values.
+   */
+  private static Attribute decodeLazyAttribute(ByteSequenceReader entryBuffer,
+      CompressedSchema compressedSchema) throws DirectoryException
+  {
+    Map.Entry<AttributeType, Set<String>> ad =
+        compressedSchema.decodeAttributeDescription(entryBuffer);
+    int numValues = entryBuffer.readBERLength();
+
+    // Skip the sequence of length-value pairs.
+    int startPos = entryBuffer.position();
+    for (int i = 0; i < numValues; i++)
+    {
+      entryBuffer.skip(entryBuffer.readBERLength());
+    }
+    int endPos = entryBuffer.position();
+    entryBuffer.position(startPos);
+    // No copy when decoding from a ByteString
+    ByteString encodedValues = entryBuffer.readByteSequence(endPos - startPos).toByteString();
+    return new LazyAttribute(ad.getKey(), ad.getValue(), numValues, encodedValues);
+  }
+
 
 
   /**
@@ -0,0 +1,221 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.types;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
+
+/**
+ * An attribute decoded from an encoded entry, whose values are only decoded
+ * when they are first accessed.
+ * <p>
+ * The attribute description is known upfront, so looking up attributes in an
+ * entry does not decode any value. Large values which are never read, such as
+ * photos or certificates not returned by a search, are then never copied.
+ * <p>
+ * Entries may be shared between threads, for example by the entry cache, so
+ * decoding the values is thread safe.
+ */
+final class LazyAttribute extends AbstractAttribute
+{
+  private final AttributeType attributeType;
+  private final Set<String> options;
+  private final int numValues;
+  /** The encoded values, which the decoded values are sub-sequences of. */
+  private final ByteString encodedValues;
+  private volatile Attribute decoded;
+
+  /**
+   * Creates a lazy attribute.
+   *
+   * @param attributeType
+   *          The attribute type.
+   * @param options
+   *          The attribute options.
+   * @param numValues
+   *          The number of values.
+   * @param encodedValues
+   *          The sequence of length-value pairs of the values, usually a
+   *          sub-sequence of the encoded entry.
+   */
+  LazyAttribute(AttributeType attributeType, Set<String> options, int numValues, ByteString encodedValues)
+  {
+    this.attributeType = attributeType;
+    this.options = options;
+    this.numValues = numValues;
+    this.encodedValues = encodedValues;
+  }
+
+  private Attribute decoded()
+  {
+    Attribute attribute = decoded;
+    if (attribute == null)
+    {
+      synchronized (this)
+      {
+        attribute = decoded;
+        if (attribute == null)
+        {
+          attribute = decodeValues();
+          decoded = attribute;
+        }
+      }
+    }
+    return attribute;
+  }
+
+  private Attribute decodeValues()
+  {
+    final ByteSequenceReader reader = encodedValues.asReader();
+    // For the common case of a single value with no options, generate
+    // less garbage.
+    if (numValues == 1 && options.isEmpty())
+    {
+      return Attributes.create(attributeType, readValue(reader));
+    }
+    final AttributeBuilder builder = new AttributeBuilder(attributeType);
+    builder.setOptions(options);
+    for (int i = 0; i < numValues; i++)
+    {
+      builder.add(readValue(reader));
+    }
+    return builder.toAttribute();
+  }
+
+  /** Values share the bytes of the encoded values, they are not copied. */
+  private ByteString readValue(ByteSequenceReader reader)
+  {
+    final int valueLength = reader.readBERLength();
+    final int start = reader.position();
+    reader.skip(valueLength);
+    return encodedValues.subSequence(start, start + valueLength);
+  }
+
+  /**
+   * Returns a copy of this attribute holding its own copy of the encoded
+   * values, so that it does not keep the whole encoded entry alive.
+   *
+   * @return a copy of this attribute, whose values are not decoded yet
+   */
+  LazyAttribute detach()
+  {
+    return new LazyAttribute(attributeType, options, numValues, ByteString.wrap(encodedValues.toByteArray()));
+  }
+
+  /**
+   * Indicates whether the values of this attribute have been decoded.
+   *
+   * @return {@code true} if the values of this attribute have been decoded
+   */
+  boolean isDecoded()
+  {
+    return decoded != null;
+  }
+
+  @Override
+  public ConditionResult approximatelyEqualTo(ByteString assertionValue)
+  {
+    return decoded().approximatelyEqualTo(assertionValue);
+  }
+
+  @Override
+  public boolean contains(ByteString value)
+  {
+    return decoded().contains(value);
+  }
+
+  @Override
+  public ConditionResult matchesEqualityAssertion(ByteString assertionValue)
+  {
+    return decoded().matchesEqualityAssertion(assertionValue);
+  }
+
+  @Override
+  public AttributeType getAttributeType()
+  {
+    return attributeType;
+  }
+
+  @Override
+  public Set<String> getOptions()
+  {
+    return options;
+  }
+
+  @Override
+  public ConditionResult greaterThanOrEqualTo(ByteString assertionValue)
+  {
+    return decoded().greaterThanOrEqualTo(assertionValue);
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return numValues == 0;
+  }
+
+  @Override
+  public boolean isVirtual()
+  {
+    return false;
+  }
+
+  @Override
+  public Iterator<ByteString> iterator()
+  {
+    return decoded().iterator();
+  }
+
+  @Override
+  public ConditionResult lessThanOrEqualTo(ByteString assertionValue)
+  {
+    return decoded().lessThanOrEqualTo(assertionValue);
+  }
+
+  @Override
+  public ConditionResult matchesSubstring(ByteString subInitial, List<ByteString> subAny, ByteString subFinal)
+  {
+    return decoded().matchesSubstring(subInitial, subAny, subFinal);
+  }
+
+  @Override
+  public int size()
+  {
+    final Attribute attribute = decoded;
+    return attribute != null ? attribute.size() : numValues;
+  }
+
+  @Override
+  public void toString(StringBuilder buffer)
+  {
+    decoded().toString(buffer);
+  }
+}
@@ -2115,6 +2115,19 @@ public final class SearchFilter
 
 
 
+  /**
+   * Retrieves the set of attribute options for this filter.
+   *
+   * @return  The set of attribute options for this filter, which may
+   *          be empty or <CODE>null</CODE> if there are none.
+   */
+  public Set<String> getAttributeOptions()
+  {
+    return attributeOptions;
+  }
+
+
+
   /**
    * Retrieves the assertion value for this filter.
    *
@@ -33,8 +33,12 @@ import static org.opends.messages.UtilityMessages.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
@@ -46,10 +50,17 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -60,8 +71,16 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Pattern;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -74,6 +93,7 @@ import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.util.Pair;
 import org.opends.server.api.Backupable;
+import org.opends.server.api.DirectoryThread;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.types.BackupConfig;
 import org.opends.server.types.BackupDirectory;
@@ -123,6 +143,20 @@ public class BackupManager
    */
   private static final String ZIPENTRY_EMPTY_PLACEHOLDER = "empty.placeholder";
 
+  /**
+   * The value of the archive format backup property for chunked backups,
+   * whose archive file lists the chunks of each file.
+   */
+  private static final String ARCHIVE_FORMAT_CHUNKED = "chunked";
+
+  /**
+   * The name of the directory, in the backup directory, holding the chunks
+   * shared by the chunked backups.
+   */
+  private static final String CHUNKS_DIRECTORY = "chunks";
+
+  /** The version of the archive file of chunked backups. */
+  private static final int CHUNKED_ARCHIVE_VERSION = 1;
 
   /**
    * The backend ID.
@@ -491,7 +525,8 @@ public class BackupManager
       backupProperties = new HashMap<>();
       shouldCompress = backupConfig.compressData();
 
-      incrementalBaseID = retrieveIncrementalBaseID(backupConfig);
+      // chunked backups only store new chunks, but do not depend on previous backups
+      incrementalBaseID = backupConfig.isChunked() ? null : retrieveIncrementalBaseID(backupConfig);
       isIncremental = incrementalBaseID != null;
       baseBackupInfo = isIncremental ? getBackupInfo(backupDir, incrementalBaseID) : null;
     }
@@ -585,6 +620,32 @@ public class BackupManager
       dependencies.add(newBackupParams.baseBackupInfo.getBackupID());
     }
 
+    /** Creates the archive file. */
+    OutputStream openStream(String backupPath, String archiveFilename) throws DirectoryException {
+      OutputStream output = null;
+      try
+      {
+        File archiveFile = new File(backupPath, archiveFilename);
+        int i = 1;
+        while (archiveFile.exists())
+        {
+          archiveFile = new File(backupPath, archiveFilename  + "." + i);
+          i++;
+        }
+        output = new FileOutputStream(archiveFile, false);
+        newBackupParams.putProperty(BACKUP_PROPERTY_ARCHIVE_FILENAME, archiveFilename);
+        return output;
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        StaticUtils.close(output);
+        LocalizableMessage message = ERR_BACKUP_CANNOT_CREATE_ARCHIVE_FILE.
+            get(archiveFilename, backupPath, getBackupID(), stackTraceToSingleLineString(e));
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
+      }
+    }
+
     void updateBackupDirectory() throws DirectoryException
     {
       BackupInfo backupInfo = createDescriptorForBackup();
@@ -663,6 +724,11 @@ public class BackupManager
       return cryptoEngine;
     }
 
+    boolean isChunked()
+    {
+      return BackupManager.isChunked(backupInfo);
+    }
+
     /**
      * Obtains a list of the dependencies of this backup in order from
      * the oldest (the full backup), to the most recent.
@@ -917,36 +983,11 @@ public class BackupManager
 
     private ZipOutputStream open(String backupPath, String archiveFilename) throws DirectoryException
     {
-      OutputStream output = openStream(backupPath, archiveFilename);
+      OutputStream output = archive.openStream(backupPath, archiveFilename);
       output = cryptoEngine.encryptOutput(output);
       return openZipStream(output);
     }
 
-    private OutputStream openStream(String backupPath, String archiveFilename) throws DirectoryException {
-      OutputStream output = null;
-      try
-      {
-        File archiveFile = new File(backupPath, archiveFilename);
-        int i = 1;
-        while (archiveFile.exists())
-        {
-          archiveFile = new File(backupPath, archiveFilename  + "." + i);
-          i++;
-        }
-        output = new FileOutputStream(archiveFile, false);
-        archive.newBackupParams.putProperty(BACKUP_PROPERTY_ARCHIVE_FILENAME, archiveFilename);
-        return output;
-      }
-      catch (Exception e)
-      {
-        logger.traceException(e);
-        StaticUtils.close(output);
-        LocalizableMessage message = ERR_BACKUP_CANNOT_CREATE_ARCHIVE_FILE.
-            get(archiveFilename, backupPath, archive.getBackupID(), stackTraceToSingleLineString(e));
-        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
-      }
-    }
-
     /** Wraps the file output stream in a zip output stream. */
     private ZipOutputStream openZipStream(OutputStream outputStream)
     {
@@ -1167,7 +1208,7 @@ public class BackupManager
       try
       {
         Path fileToRestore = restoreDir.resolve(zipEntryName);
-        ensureFileCanBeRestored(fileToRestore);
+        ensureFileCanBeRestored(fileToRestore, identifier);
         outputStream = new FileOutputStream(fileToRestore.toFile());
         cryptoEngine.updateHashWith(zipEntryName);
         totalBytesRead = restoreFile(zipStream, outputStream, restoreConfig);
@@ -1179,23 +1220,6 @@ public class BackupManager
       }
     }
 
-    private void ensureFileCanBeRestored(Path fileToRestore) throws DirectoryException
-    {
-      Path parent = fileToRestore.getParent();
-      if (!Files.exists(parent))
-      {
-        try
-        {
-          Files.createDirectories(parent);
-        }
-        catch (IOException e)
-        {
-          throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
-              ERR_BACKUP_CANNOT_CREATE_DIRECTORY_TO_RESTORE_FILE.get(fileToRestore, identifier));
-        }
-      }
-    }
-
     /**
      * Restores the file provided by the zip input stream.
      * <p>
@@ -1257,6 +1281,606 @@ public class BackupManager
     }
   }
 
+  /**
+   * Represents the store of the chunks of the chunked backups of a backup
+   * directory.
+   * <p>
+   * Each chunk is stored once in its own file, named after the hash of its
+   * content and the way it is stored (compressed and/or encrypted), so that the
+   * chunks common to several backups are only stored once.
+   */
+  private static final class ChunkStore {
+
+    private static final String CHUNK_HASH_ALGORITHM = "SHA-256";
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int FLAG_ENCRYPTED = 2;
+    /**
+     * Chunk names are read from archive files, only accept valid names to avoid accessing other files. The length
+     * of the keyed hash naming encrypted chunks depends on the MAC algorithm.
+     */
+    private static final Pattern CHUNK_NAME = Pattern.compile("[0-9A-F]{40,128}-[0-3]");
+
+    private final Path chunksDir;
+    private final String identifier;
+    private final CryptoEngine cryptoEngine;
+    private final int flags;
+    /**
+     * Names the encrypted chunks: a plain hash of their content would let anyone reading the backup directory
+     * check whether it contains some known content. {@code null} if the chunks are not encrypted.
+     */
+    private final Mac mac;
+
+    /**
+     * Creates a chunk store.
+     *
+     * @param macKeyID
+     *          the identifier of the key used to name the encrypted chunks, {@code null} if they are not encrypted
+     */
+    ChunkStore(String backupPath, String identifier, CryptoEngine cryptoEngine, boolean shouldCompress,
+        String macKeyID) throws DirectoryException
+    {
+      this.chunksDir = Paths.get(backupPath, CHUNKS_DIRECTORY);
+      this.identifier = identifier;
+      this.cryptoEngine = cryptoEngine;
+      this.flags = (shouldCompress ? FLAG_COMPRESSED : 0) | (cryptoEngine.shouldEncrypt() ? FLAG_ENCRYPTED : 0);
+      this.mac = macKeyID != null ? getMacEngine(cryptoEngine.cryptoManager, macKeyID) : null;
+    }
+
+    private static Mac getMacEngine(CryptoManager cryptoManager, String macKeyID) throws DirectoryException
+    {
+      try
+      {
+        return cryptoManager.getMacEngine(macKeyID);
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        LocalizableMessage message = ERR_BACKUP_CANNOT_GET_MAC.get(macKeyID, stackTraceToSingleLineString(e));
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
+      }
+    }
+
+    /** Returns the name of the provided chunk when stored by this store. */
+    String nameOf(byte[] chunk) throws NoSuchAlgorithmException, CloneNotSupportedException
+    {
+      return hash(chunk, flags) + "-" + flags;
+    }
+
+    private String hash(byte[] chunk, int chunkFlags) throws NoSuchAlgorithmException, CloneNotSupportedException
+    {
+      if ((chunkFlags & FLAG_ENCRYPTED) != 0)
+      {
+        if (mac == null)
+        {
+          throw new NoSuchAlgorithmException("No MAC key to check encrypted chunks");
+        }
+        // Mac instances are not thread safe
+        return bytesToHexNoSpace(((Mac) mac.clone()).doFinal(chunk));
+      }
+      return bytesToHexNoSpace(MessageDigest.getInstance(CHUNK_HASH_ALGORITHM).digest(chunk));
+    }
+
+    private Path pathOf(String chunkName) throws IOException
+    {
+      if (!CHUNK_NAME.matcher(chunkName).matches())
+      {
+        throw new IOException("Invalid chunk name " + chunkName);
+      }
+      return chunksDir.resolve(chunkName.substring(0, 2)).resolve(chunkName);
+    }
+
+    /** Writes the provided chunk, unless it is already stored. */
+    void write(String chunkName, byte[] chunk) throws IOException, DirectoryException
+    {
+      final Path chunkFile = pathOf(chunkName);
+      if (Files.exists(chunkFile))
+      {
+        return;
+      }
+      Files.createDirectories(chunkFile.getParent());
+      // write to a temporary file first, so that an interrupted backup does not leave an incomplete chunk
+      final Path tmpFile = Files.createTempFile(chunkFile.getParent(), chunkName, ".tmp");
+      try
+      {
+        OutputStream output = cryptoEngine.encryptOutput(Files.newOutputStream(tmpFile));
+        if ((flags & FLAG_COMPRESSED) != 0)
+        {
+          output = new DeflaterOutputStream(output);
+        }
+        try
+        {
+          output.write(chunk);
+        }
+        finally
+        {
+          output.close();
+        }
+        Files.move(tmpFile, chunkFile, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (FileAlreadyExistsException e)
+      {
+        // the same chunk has been written concurrently
+        logger.traceException(e);
+      }
+      finally
+      {
+        Files.deleteIfExists(tmpFile);
+      }
+    }
+
+    /** Reads the provided chunk and checks its content matches its name. */
+    byte[] read(String chunkName, int length) throws DirectoryException
+    {
+      try
+      {
+        final int chunkFlags = chunkName.charAt(chunkName.length() - 1) - '0';
+        InputStream input = new BufferedInputStream(Files.newInputStream(pathOf(chunkName)));
+        if ((chunkFlags & FLAG_ENCRYPTED) != 0)
+        {
+          input = cryptoEngine.cryptoManager.getCipherInputStream(input);
+        }
+        if ((chunkFlags & FLAG_COMPRESSED) != 0)
+        {
+          input = new InflaterInputStream(input);
+        }
+        final byte[] chunk = new byte[length];
+        try
+        {
+          new DataInputStream(input).readFully(chunk);
+        }
+        finally
+        {
+          input.close();
+        }
+        if (!chunkName.startsWith(hash(chunk, chunkFlags) + "-"))
+        {
+          throw new IOException("hash mismatch");
+        }
+        return chunk;
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+            ERR_BACKUP_CHUNK_CORRUPTED.get(chunkName, identifier, stackTraceToSingleLineString(e)), e);
+      }
+    }
+
+    /** Removes the chunks of the provided directory which are not in the provided set. */
+    static void removeChunksExcept(Path chunksDir, Set<String> chunkNames) throws IOException
+    {
+      if (!Files.isDirectory(chunksDir))
+      {
+        return;
+      }
+      try (DirectoryStream<Path> subDirs = Files.newDirectoryStream(chunksDir))
+      {
+        for (Path subDir : subDirs)
+        {
+          try (DirectoryStream<Path> chunkFiles = Files.newDirectoryStream(subDir))
+          {
+            for (Path chunkFile : chunkFiles)
+            {
+              final String chunkName = chunkFile.getFileName().toString();
+              if (CHUNK_NAME.matcher(chunkName).matches() && !chunkNames.contains(chunkName))
+              {
+                Files.delete(chunkFile);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Represents a file of a chunked backup, as listed in the archive file of
+   * the backup.
+   * <p>
+   * The archive file starts with its version, followed by the files, each one
+   * preceded by {@code true}, and ends with {@code false}.
+   */
+  private static final class ChunkedFile {
+
+    private final String path;
+    private final long size;
+    private final List<String> chunkNames;
+    private final List<Integer> chunkLengths;
+
+    ChunkedFile(String path, long size, List<String> chunkNames, List<Integer> chunkLengths)
+    {
+      this.path = path;
+      this.size = size;
+      this.chunkNames = chunkNames;
+      this.chunkLengths = chunkLengths;
+    }
+
+    /** Reads the next file from the provided archive, or returns {@code null} at the end of the archive. */
+    static ChunkedFile read(DataInputStream input) throws IOException
+    {
+      if (!input.readBoolean())
+      {
+        return null;
+      }
+      final String path = input.readUTF();
+      final long size = input.readLong();
+      final int nbChunks = input.readInt();
+      final List<String> chunkNames = new ArrayList<>(nbChunks);
+      final List<Integer> chunkLengths = new ArrayList<>(nbChunks);
+      for (int i = 0; i < nbChunks; i++)
+      {
+        chunkNames.add(input.readUTF());
+        chunkLengths.add(input.readInt());
+      }
+      return new ChunkedFile(path, size, chunkNames, chunkLengths);
+    }
+
+    void write(DataOutputStream output) throws IOException
+    {
+      output.writeBoolean(true);
+      output.writeUTF(path);
+      output.writeLong(size);
+      output.writeInt(chunkNames.size());
+      for (int i = 0; i < chunkNames.size(); i++)
+      {
+        output.writeUTF(chunkNames.get(i));
+        output.writeInt(chunkLengths.get(i));
+      }
+    }
+
+    /** The chunk names identify their content, so hashing them is enough to check the backup. */
+    void updateHashWith(CryptoEngine cryptoEngine)
+    {
+      cryptoEngine.updateHashWith(path);
+      for (String chunkName : chunkNames)
+      {
+        cryptoEngine.updateHashWith(chunkName);
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return "ChunkedFile [path=" + path + ", size=" + size + ", nbChunks=" + chunkNames.size() + "]";
+    }
+  }
+
+  /**
+   * Represents a writer of a chunked backup archive.
+   * <p>
+   * Files are split into chunks by the calling thread, while the chunks are
+   * hashed, compressed, encrypted and written by a pool of threads.
+   */
+  private static final class ChunkedArchiveWriter implements Closeable {
+
+    /** The number of chunks waiting to be written per thread, bounding memory usage. */
+    private static final int PENDING_CHUNKS_PER_THREAD = 4;
+
+    private final NewBackupArchive archive;
+    private final ChunkStore chunkStore;
+    private final DataOutputStream archiveOutput;
+    private final ExecutorService executor;
+    private final Semaphore pendingChunks;
+
+    ChunkedArchiveWriter(NewBackupArchive archive, int threadCount) throws DirectoryException
+    {
+      this.archive = archive;
+      this.chunkStore = new ChunkStore(archive.getBackupPath(), archive.getBackupID(), archive.cryptoEngine,
+          archive.newBackupParams.shouldCompress, getChunkMacKeyID(archive));
+      final OutputStream output = archive.openStream(archive.getBackupPath(), archive.getArchiveFilename());
+      this.archiveOutput = new DataOutputStream(new BufferedOutputStream(archive.cryptoEngine.encryptOutput(output)));
+      final int nbThreads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+      this.executor = Executors.newFixedThreadPool(nbThreads, new DirectoryThread.Factory("Backup Chunk Writer"));
+      this.pendingChunks = new Semaphore(nbThreads * PENDING_CHUNKS_PER_THREAD);
+    }
+
+    /** Returns the identifier of the key naming the encrypted chunks, recorded in the backup properties. */
+    private static String getChunkMacKeyID(NewBackupArchive archive) throws DirectoryException
+    {
+      if (!archive.cryptoEngine.shouldEncrypt())
+      {
+        return null;
+      }
+      try
+      {
+        final String macKeyID = archive.cryptoEngine.cryptoManager.getMacEngineKeyEntryID();
+        archive.newBackupParams.putProperty(BACKUP_PROPERTY_CHUNK_MAC_KEY_ID, macKeyID);
+        return macKeyID;
+      }
+      catch (CryptoManagerException e)
+      {
+        logger.traceException(e);
+        LocalizableMessage message =
+            ERR_BACKUP_CANNOT_GET_MAC_KEY_ID.get(archive.getBackupID(), stackTraceToSingleLineString(e));
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      executor.shutdownNow();
+      archiveOutput.close();
+    }
+
+    /** Writes the provided files in the archive. */
+    void writeFiles(Path rootDirectory, ListIterator<Path> files, BackupConfig backupConfig)
+        throws DirectoryException
+    {
+      writeToArchive(archive.getArchiveFilename(), true);
+      while (files.hasNext() && !backupConfig.isCancelled())
+      {
+        Path file = files.next();
+        String relativePath = rootDirectory.relativize(file).toString();
+        try
+        {
+          final ChunkedFile chunkedFile = writeChunks(file, relativePath, backupConfig);
+          chunkedFile.updateHashWith(archive.cryptoEngine);
+          chunkedFile.write(archiveOutput);
+          archive.latestFileSize = chunkedFile.size;
+          archive.latestFileName = relativePath;
+          logger.info(NOTE_BACKUP_ARCHIVED_FILE, relativePath);
+        }
+        catch (FileNotFoundException e)
+        {
+          // The file may have been deleted by a cleaner (i.e. for JE storage) since we started.
+          // The backupable entity is responsible for handling the changes through the files list iterator
+          logger.traceException(e);
+        }
+        catch (IOException | ExecutionException | InterruptedException e)
+        {
+          logger.traceException(e);
+          throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+              ERR_BACKUP_CANNOT_WRITE_CHUNK.get(relativePath, archive.getBackupID(),
+                  stackTraceToSingleLineString(e)), e);
+        }
+      }
+      writeToArchive(archive.getArchiveFilename(), false);
+    }
+
+    private void writeToArchive(String name, boolean start) throws DirectoryException
+    {
+      try
+      {
+        if (start)
+        {
+          archiveOutput.writeInt(CHUNKED_ARCHIVE_VERSION);
+        }
+        else
+        {
+          archiveOutput.writeBoolean(false);
+          archiveOutput.flush();
+        }
+      }
+      catch (IOException e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(name, archive.getBackupID(), stackTraceToSingleLineString(e)),
+            e);
+      }
+    }
+
+    /** Splits the provided file into chunks, and waits until they are all written. */
+    private ChunkedFile writeChunks(Path file, String relativePath, BackupConfig backupConfig)
+        throws IOException, ExecutionException, InterruptedException
+    {
+      final List<Future<String>> futures = new ArrayList<>();
+      final List<Integer> chunkLengths = new ArrayList<>();
+      long size = 0;
+      try (InputStream input = new FileInputStream(file.toFile()))
+      {
+        final ContentDefinedChunker chunker = new ContentDefinedChunker(input);
+        byte[] chunk = chunker.next();
+        while (chunk != null && !backupConfig.isCancelled())
+        {
+          futures.add(submit(chunk));
+          chunkLengths.add(chunk.length);
+          size += chunk.length;
+          chunk = chunker.next();
+        }
+      }
+
+      final List<String> chunkNames = new ArrayList<>(futures.size());
+      for (Future<String> future : futures)
+      {
+        chunkNames.add(future.get());
+      }
+      return new ChunkedFile(relativePath, size, chunkNames, chunkLengths);
+    }
+
+    private Future<String> submit(final byte[] chunk) throws InterruptedException
+    {
+      pendingChunks.acquire();
+      return executor.submit(new Callable<String>()
+      {
+        @Override
+        public String call() throws Exception
+        {
+          try
+          {
+            final String chunkName = chunkStore.nameOf(chunk);
+            chunkStore.write(chunkName, chunk);
+            return chunkName;
+          }
+          finally
+          {
+            pendingChunks.release();
+          }
+        }
+      });
+    }
+
+    @Override
+    public String toString()
+    {
+      return "ChunkedArchiveWriter [archive file=" + archive.getArchiveFilename() + "]";
+    }
+  }
+
+  /**
+   * Represents a reader of a chunked backup archive.
+   * <p>
+   * The chunks of each file are read, decrypted, decompressed and checked by a
+   * pool of threads, which write them directly at their position in the
+   * restored file.
+   */
+  private static final class ChunkedArchiveReader {
+
+    private final String identifier;
+    private final BackupInfo backupInfo;
+    private final File archiveFile;
+    private final CryptoEngine cryptoEngine;
+    private final ChunkStore chunkStore;
+
+    ChunkedArchiveReader(String identifier, BackupInfo backupInfo, String backupDirectoryPath)
+        throws DirectoryException
+    {
+      this.identifier = identifier;
+      this.backupInfo = backupInfo;
+      this.archiveFile = BackupManager.retrieveArchiveFile(backupInfo, backupDirectoryPath);
+      this.cryptoEngine = CryptoEngine.forRestore(backupInfo);
+      this.chunkStore = new ChunkStore(backupDirectoryPath, identifier, cryptoEngine, backupInfo.isCompressed(),
+          backupInfo.getBackupProperties().get(BACKUP_PROPERTY_CHUNK_MAC_KEY_ID));
+    }
+
+    /** Adds the names of the chunks used by this backup to the provided set. */
+    void readChunkNames(Set<String> chunkNames) throws DirectoryException
+    {
+      try (DataInputStream input = openArchive())
+      {
+        ChunkedFile chunkedFile = ChunkedFile.read(input);
+        while (chunkedFile != null)
+        {
+          chunkNames.addAll(chunkedFile.chunkNames);
+          chunkedFile = ChunkedFile.read(input);
+        }
+      }
+      catch (IOException e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_RESTORE.get(identifier, stackTraceToSingleLineString(e)), e);
+      }
+    }
+
+    /**
+     * Restores the provided set of files from the archive, or all the files of
+     * the archive if the set is empty.
+     */
+    void restoreArchive(Path restoreDir, Set<String> filesToRestore, RestoreConfig restoreConfig)
+        throws DirectoryException
+    {
+      final ExecutorService executor = Executors.newFixedThreadPool(
+          Runtime.getRuntime().availableProcessors(), new DirectoryThread.Factory("Backup Chunk Reader"));
+      try (DataInputStream input = openArchive())
+      {
+        ChunkedFile chunkedFile = ChunkedFile.read(input);
+        while (chunkedFile != null && !restoreConfig.isCancelled())
+        {
+          chunkedFile.updateHashWith(cryptoEngine);
+          if (restoreConfig.verifyOnly())
+          {
+            logger.info(NOTE_BACKUP_VERIFY_FILE, chunkedFile.path);
+            restoreFile(chunkedFile, null, executor);
+          }
+          else if (filesToRestore.isEmpty() || filesToRestore.contains(chunkedFile.path))
+          {
+            final Path fileToRestore = restoreDir.resolve(chunkedFile.path);
+            ensureFileCanBeRestored(fileToRestore, identifier);
+            try (FileChannel channel = FileChannel.open(fileToRestore,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+              restoreFile(chunkedFile, channel, executor);
+            }
+            logger.info(NOTE_BACKUP_RESTORED_FILE, chunkedFile.path, chunkedFile.size);
+          }
+          chunkedFile = ChunkedFile.read(input);
+        }
+      }
+      catch (ExecutionException e)
+      {
+        if (e.getCause() instanceof DirectoryException)
+        {
+          throw (DirectoryException) e.getCause();
+        }
+        throw newRestoreException(e);
+      }
+      catch (IOException | InterruptedException e)
+      {
+        throw newRestoreException(e);
+      }
+      finally
+      {
+        executor.shutdownNow();
+      }
+
+      // check the hash
+      byte[] hash = backupInfo.getUnsignedHash() != null ? backupInfo.getUnsignedHash() : backupInfo.getSignedHash();
+      cryptoEngine.check(hash, backupInfo.getBackupID());
+    }
+
+    /**
+     * Reads the chunks of the provided file and writes them to the provided
+     * channel. The chunks are only checked if the channel is {@code null}.
+     */
+    private void restoreFile(ChunkedFile chunkedFile, final FileChannel channel, ExecutorService executor)
+        throws ExecutionException, InterruptedException
+    {
+      final List<Future<Void>> futures = new ArrayList<>(chunkedFile.chunkNames.size());
+      long position = 0;
+      for (int i = 0; i < chunkedFile.chunkNames.size(); i++)
+      {
+        final String chunkName = chunkedFile.chunkNames.get(i);
+        final int length = chunkedFile.chunkLengths.get(i);
+        final long chunkPosition = position;
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            final ByteBuffer chunk = ByteBuffer.wrap(chunkStore.read(chunkName, length));
+            if (channel != null)
+            {
+              long writePosition = chunkPosition;
+              while (chunk.hasRemaining())
+              {
+                writePosition += channel.write(chunk, writePosition);
+              }
+            }
+            return null;
+          }
+        }));
+        position += length;
+      }
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+
+    private DataInputStream openArchive() throws DirectoryException, IOException
+    {
+      final InputStream input = new FileInputStream(archiveFile);
+      final DataInputStream archiveInput =
+          new DataInputStream(new BufferedInputStream(cryptoEngine.encryptInput(input)));
+      final int version = archiveInput.readInt();
+      if (version != CHUNKED_ARCHIVE_VERSION)
+      {
+        archiveInput.close();
+        throw new IOException("Unsupported chunked archive version " + version);
+      }
+      return archiveInput;
+    }
+
+    private DirectoryException newRestoreException(Exception e)
+    {
+      logger.traceException(e);
+      return new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+          ERR_BACKUP_CANNOT_RESTORE.get(identifier, stackTraceToSingleLineString(e)), e);
+    }
+  }
+
   /**
    * Creates a backup of the provided backupable entity.
    * <p>
@@ -1266,6 +1890,11 @@ public class BackupManager
    * file containing a list of all the log files that are unchanged since the
    * previous backup. The remaining zip entries are the log files themselves,
    * which, for an incremental, only include those files that have changed.
+   * <p>
+   * If the backup is chunked, the files are split into chunks stored in the
+   * "chunks" directory of the backup directory, and shared by all the chunked
+   * backups, so that only the chunks not already stored are written. The
+   * archive file then lists the chunks of each file.
    *
    * @param backupable
    *          The underlying entity (storage, backend) to be backed up.
@@ -1280,6 +1909,28 @@ public class BackupManager
     final CryptoEngine cryptoEngine = CryptoEngine.forCreation(backupConfig, backupParams);
     final NewBackupArchive newArchive = new NewBackupArchive(backendID, backupParams, cryptoEngine);
 
+    if (backupConfig.isChunked())
+    {
+      createChunkedBackup(backupable, backupConfig, newArchive);
+    }
+    else
+    {
+      createZipBackup(backupable, backupConfig, newArchive);
+    }
+
+    newArchive.updateBackupDirectory();
+
+    if (backupConfig.isCancelled())
+    {
+      // Remove the backup since it may be incomplete
+      removeBackup(backupParams.backupDir, backupParams.backupID);
+    }
+  }
+
+  private void createZipBackup(Backupable backupable, BackupConfig backupConfig, NewBackupArchive newArchive)
+      throws DirectoryException
+  {
+    final NewBackupParams backupParams = newArchive.newBackupParams;
     BackupArchiveWriter archiveWriter = null;
     try
     {
@@ -1302,13 +1953,21 @@ public class BackupManager
     {
       closeArchiveWriter(archiveWriter, newArchive.getArchiveFilename(), backupParams.backupDir.getPath());
     }
+  }
 
-    newArchive.updateBackupDirectory();
-
-    if (backupConfig.isCancelled())
+  private void createChunkedBackup(Backupable backupable, BackupConfig backupConfig, NewBackupArchive newArchive)
+      throws DirectoryException
+  {
+    newArchive.newBackupParams.putProperty(BACKUP_PROPERTY_ARCHIVE_FORMAT, ARCHIVE_FORMAT_CHUNKED);
+    ChunkedArchiveWriter archiveWriter = null;
+    try
     {
-      // Remove the backup since it may be incomplete
-      removeBackup(backupParams.backupDir, backupParams.backupID);
+      archiveWriter = new ChunkedArchiveWriter(newArchive, backupConfig.getThreadCount());
+      archiveWriter.writeFiles(backupable.getDirectory().toPath(), backupable.getFilesToBackup(), backupConfig);
+    }
+    finally
+    {
+      closeArchiveWriter(archiveWriter, newArchive.getArchiveFilename(), newArchive.getBackupPath());
     }
   }
 
@@ -1372,6 +2031,35 @@ public class BackupManager
   {
     ExistingBackupArchive archive = new ExistingBackupArchive(backupID, backupDir);
     archive.removeArchive();
+    if (archive.isChunked())
+    {
+      removeUnusedChunks(backupDir);
+    }
+  }
+
+  /** Removes the chunks which are no longer used by any chunked backup of the backup directory. */
+  private void removeUnusedChunks(BackupDirectory backupDir) throws DirectoryException
+  {
+    final Set<String> usedChunks = new HashSet<>();
+    for (BackupInfo backupInfo : backupDir.getBackups().values())
+    {
+      if (isChunked(backupInfo))
+      {
+        new ChunkedArchiveReader(backupInfo.getBackupID(), backupInfo, backupDir.getPath()).readChunkNames(usedChunks);
+      }
+    }
+
+    final Path chunksDir = Paths.get(backupDir.getPath(), CHUNKS_DIRECTORY);
+    try
+    {
+      ChunkStore.removeChunksExcept(chunksDir, usedChunks);
+    }
+    catch (IOException e)
+    {
+      logger.traceException(e);
+      throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+          ERR_BACKUP_CANNOT_REMOVE_CHUNKS.get(chunksDir, stackTraceToSingleLineString(e)), e);
+    }
   }
 
   private Path getRestoreDirectory(Backupable backupable, String backupID)
@@ -1384,7 +2072,7 @@ public class BackupManager
     return restoreDirectory.toPath();
   }
 
-  private void closeArchiveWriter(BackupArchiveWriter archiveWriter, String backupFile, String backupPath)
+  private void closeArchiveWriter(Closeable archiveWriter, String backupFile, String backupPath)
       throws DirectoryException
   {
     if (archiveWriter != null)
@@ -1436,10 +2124,39 @@ public class BackupManager
     String backupID = backupInfo.getBackupID();
     String backupDirectoryPath = restoreConfig.getBackupDirectory().getPath();
 
+    if (isChunked(backupInfo))
+    {
+      new ChunkedArchiveReader(backupID, backupInfo, backupDirectoryPath)
+          .restoreArchive(restoreDir, filesToRestore, restoreConfig);
+      return;
+    }
     BackupArchiveReader zipArchiveReader = new BackupArchiveReader(backupID, backupInfo, backupDirectoryPath);
     zipArchiveReader.restoreArchive(restoreDir, filesToRestore, restoreConfig, backupable);
   }
 
+  private static void ensureFileCanBeRestored(Path fileToRestore, String identifier) throws DirectoryException
+  {
+    Path parent = fileToRestore.getParent();
+    if (!Files.exists(parent))
+    {
+      try
+      {
+        Files.createDirectories(parent);
+      }
+      catch (IOException e)
+      {
+        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_CREATE_DIRECTORY_TO_RESTORE_FILE.get(fileToRestore, identifier));
+      }
+    }
+  }
+
+  /** Indicates whether the provided backup is a chunked backup. */
+  private static boolean isChunked(BackupInfo backupInfo)
+  {
+    return ARCHIVE_FORMAT_CHUNKED.equals(backupInfo.getBackupProperties().get(BACKUP_PROPERTY_ARCHIVE_FORMAT));
+  }
+
   /** Retrieves the full path of the archive file. */
   private static File retrieveArchiveFile(BackupInfo backupInfo, String backupDirectoryPath)
   {
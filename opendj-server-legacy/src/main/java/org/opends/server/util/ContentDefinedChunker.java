@@ -0,0 +1,151 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits a stream into chunks whose boundaries depend on the content of the
+ * stream rather than on offsets, so that inserting or removing bytes in a file
+ * only changes the chunks around the modification.
+ * <p>
+ * Boundaries are found with a gear rolling hash, which only depends on the
+ * last 64 bytes read: a boundary is put after a byte when the hash has its
+ * {@link #BOUNDARY_BITS} highest bits cleared, giving chunks of
+ * {@code 2^BOUNDARY_BITS} bytes on average, bounded by {@link #MIN_CHUNK_SIZE}
+ * and {@link #MAX_CHUNK_SIZE}.
+ * <p>
+ * The boundaries must not change between versions, otherwise new backups
+ * would no longer share chunks with the previous ones.
+ */
+final class ContentDefinedChunker
+{
+  /** The minimum size of a chunk, except for the last chunk of a stream. */
+  static final int MIN_CHUNK_SIZE = 64 * 1024;
+  /** The maximum size of a chunk. */
+  static final int MAX_CHUNK_SIZE = 1024 * 1024;
+  /**
+   * The number of bits of the hash which must be cleared at a boundary. The
+   * highest bits are used because they depend on all the bytes of the window.
+   */
+  private static final int BOUNDARY_BITS = 18;
+  private static final long BOUNDARY_MASK = -1L << (Long.SIZE - BOUNDARY_BITS);
+  /** The number of bytes the hash depends on. */
+  private static final int WINDOW_SIZE = 64;
+
+  /** Random values for each byte value, generated from a fixed seed. */
+  private static final long[] GEAR = new long[256];
+  static
+  {
+    long seed = 0x2545F4914F6CDD1DL;
+    for (int i = 0; i < GEAR.length; i++)
+    {
+      // xorshift64
+      seed ^= seed << 13;
+      seed ^= seed >>> 7;
+      seed ^= seed << 17;
+      GEAR[i] = seed;
+    }
+  }
+
+  private final InputStream input;
+  private final byte[] buffer = new byte[MAX_CHUNK_SIZE];
+  /** The number of bytes read in the buffer. */
+  private int length;
+  private boolean endOfStream;
+
+  /**
+   * Creates a chunker reading the provided stream.
+   *
+   * @param input
+   *          the stream to split into chunks
+   */
+  ContentDefinedChunker(InputStream input)
+  {
+    this.input = input;
+  }
+
+  /**
+   * Returns the next chunk of the stream.
+   *
+   * @return the next chunk of the stream, or {@code null} if the end of the
+   *         stream has been reached
+   * @throws IOException
+   *           if the stream cannot be read
+   */
+  byte[] next() throws IOException
+  {
+    fillBuffer();
+    if (length == 0)
+    {
+      return null;
+    }
+
+    final int chunkSize = findBoundary();
+    final byte[] chunk = Arrays.copyOf(buffer, chunkSize);
+    length -= chunkSize;
+    System.arraycopy(buffer, chunkSize, buffer, 0, length);
+    return chunk;
+  }
+
+  private void fillBuffer() throws IOException
+  {
+    while (length < buffer.length && !endOfStream)
+    {
+      final int read = input.read(buffer, length, buffer.length - length);
+      if (read < 0)
+      {
+        endOfStream = true;
+      }
+      else
+      {
+        length += read;
+      }
+    }
+  }
+
+  /** Returns the size of the chunk at the start of the buffer. */
+  private int findBoundary()
+  {
+    if (length <= MIN_CHUNK_SIZE)
+    {
+      return length;
+    }
+    long hash = 0;
+    // the hash only depends on the bytes of the window preceding the minimum size
+    for (int i = MIN_CHUNK_SIZE - WINDOW_SIZE; i < length; i++)
+    {
+      hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+      if (i >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0)
+      {
+        return i + 1;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, recording values with a bounded relative error in
+ * a fixed amount of memory, without locking.
+ * <p>
+ * Values lower than {@value #LINEAR_BUCKETS} are counted exactly. Greater
+ * values are counted in buckets whose width doubles with each power of two,
+ * each power of two being split into {@value #SUB_BUCKETS} buckets, so that the
+ * value reported for a percentile is at most 1/{@value #SUB_BUCKETS} above the
+ * recorded value. Values greater than {@link #MAX_TRACKABLE_VALUE} are counted
+ * as {@link #MAX_TRACKABLE_VALUE}.
+ * <p>
+ * Recording a value only increments one counter, so histograms can be shared
+ * by many threads. Statistics read while values are recorded are consistent
+ * with a state of the histogram at some point during the read.
+ */
+public final class LatencyHistogram
+{
+  /** The greatest value which is recorded with a bounded relative error. */
+  public static final long MAX_TRACKABLE_VALUE = (1L << 36) - 1;
+
+  private static final int SUB_BUCKET_BITS = 6;
+  /** The number of buckets per power of two above the linear buckets. */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** The number of buckets counting a single value. */
+  private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+  private static final int NB_BUCKETS = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NB_BUCKETS);
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+  /** Returns the index of the bucket counting the provided value. */
+  private static int bucketIndex(long value)
+  {
+    if (value < LINEAR_BUCKETS)
+    {
+      return (int) value;
+    }
+    final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - 1 - SUB_BUCKET_BITS;
+    final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the greatest value counted by the bucket with the provided index. */
+  private static long highestValue(int index)
+  {
+    if (index < LINEAR_BUCKETS)
+    {
+      return index;
+    }
+    final int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    final long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /** Returns the value representing the values counted by the bucket with the provided index. */
+  private static long medianValue(int index)
+  {
+    if (index < LINEAR_BUCKETS)
+    {
+      return index;
+    }
+    final int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    return highestValue(index) - (1L << (shift - 1));
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param value
+   *          the value to record, negative values are recorded as 0
+   */
+  public void recordValue(long value)
+  {
+    final long v = Math.min(Math.max(value, 0), MAX_TRACKABLE_VALUE);
+    counts.incrementAndGet(bucketIndex(v));
+    updateMin(v);
+    updateMax(v);
+  }
+
+  private void updateMin(long value)
+  {
+    long current = min.get();
+    while (value < current && !min.compareAndSet(current, value))
+    {
+      current = min.get();
+    }
+  }
+
+  private void updateMax(long value)
+  {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value))
+    {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of values recorded.
+   *
+   * @return the number of values recorded
+   */
+  public long getTotalCount()
+  {
+    long total = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the lowest value recorded.
+   *
+   * @return the lowest value recorded, or 0 if no value has been recorded
+   */
+  public long getMin()
+  {
+    final long value = min.get();
+    return value == Long.MAX_VALUE ? 0 : value;
+  }
+
+  /**
+   * Returns the greatest value recorded.
+   *
+   * @return the greatest value recorded, or 0 if no value has been recorded
+   */
+  public long getMax()
+  {
+    final long value = max.get();
+    return value == Long.MIN_VALUE ? 0 : value;
+  }
+
+  /**
+   * Returns the mean of the values recorded, computed from the buckets.
+   *
+   * @return the mean of the values recorded, or 0 if no value has been
+   *         recorded
+   */
+  public double getMean()
+  {
+    long total = 0;
+    double sum = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      final long count = counts.get(i);
+      if (count != 0)
+      {
+        total += count;
+        sum += (double) count * medianValue(i);
+      }
+    }
+    return total != 0 ? sum / total : 0;
+  }
+
+  /**
+   * Returns the value below which the provided percentage of the recorded
+   * values fall. The returned value is the greatest value counted by the same
+   * bucket as the exact value, bounded by the greatest value recorded.
+   *
+   * @param percentile
+   *          the percentage, between 0 and 100
+   * @return the value at the provided percentile, or 0 if no value has been
+   *         recorded
+   */
+  public long getValueAtPercentile(double percentile)
+  {
+    final long[] snapshot = new long[NB_BUCKETS];
+    long total = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0)
+    {
+      return 0;
+    }
+
+    final double ratio = Math.min(Math.max(percentile, 0), 100) / 100;
+    final long target = Math.max(1, (long) Math.ceil(ratio * total));
+    long cumulated = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      cumulated += snapshot[i];
+      if (cumulated >= target)
+      {
+        return Math.min(highestValue(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Adds the values recorded by the provided histogram to this histogram.
+   *
+   * @param other
+   *          the histogram whose values must be added
+   */
+  public void add(LatencyHistogram other)
+  {
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      final long count = other.counts.get(i);
+      if (count != 0)
+      {
+        counts.addAndGet(i, count);
+      }
+    }
+    if (other.min.get() != Long.MAX_VALUE)
+    {
+      updateMin(other.min.get());
+    }
+    if (other.max.get() != Long.MIN_VALUE)
+    {
+      updateMax(other.max.get());
+    }
+  }
+
+  /** Forgets all the values recorded. */
+  public void reset()
+  {
+    snapshotAndReset();
+  }
+
+  /**
+   * Moves the values recorded so far to a new histogram. Values recorded
+   * concurrently are either counted by the returned histogram or by this
+   * histogram, never by both.
+   *
+   * @return a histogram with the values recorded before this call
+   */
+  public LatencyHistogram snapshotAndReset()
+  {
+    final LatencyHistogram snapshot = new LatencyHistogram();
+    snapshot.min.set(min.getAndSet(Long.MAX_VALUE));
+    snapshot.max.set(max.getAndSet(Long.MIN_VALUE));
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      if (counts.get(i) != 0)
+      {
+        snapshot.counts.set(i, counts.getAndSet(i, 0));
+      }
+    }
+    return snapshot;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "(count=" + getTotalCount() + ", min=" + getMin() + ", mean=" + getMean()
+        + ", p50=" + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax() + ")";
+  }
+}
@@ -332,6 +332,57 @@ public final class ServerConstants
 
 
 
+  /**
+   * The name of the monitor attribute that is used to hold the time operations
+   * waited before being processed, since the latencies were last reset.
+   */
+  public static final String ATTR_MONITOR_OPERATION_QUEUE_WAIT_TIME =
+       "ds-mon-operation-queue-wait-time";
+
+  /**
+   * The name of the monitor attribute that is used to hold the time taken to
+   * process operations, since the latencies were last reset.
+   */
+  public static final String ATTR_MONITOR_OPERATION_PROCESSING_TIME =
+       "ds-mon-operation-processing-time";
+
+  /**
+   * The name of the monitor attribute that is used to hold the response time
+   * of operations, since the latencies were last reset.
+   */
+  public static final String ATTR_MONITOR_OPERATION_RESPONSE_TIME =
+       "ds-mon-operation-response-time";
+
+  /**
+   * The name of the monitor attribute that is used to hold the time recent
+   * operations waited before being processed.
+   */
+  public static final String ATTR_MONITOR_RECENT_OPERATION_QUEUE_WAIT_TIME =
+       "ds-mon-recent-operation-queue-wait-time";
+
+  /**
+   * The name of the monitor attribute that is used to hold the time taken to
+   * process recent operations.
+   */
+  public static final String ATTR_MONITOR_RECENT_OPERATION_PROCESSING_TIME =
+       "ds-mon-recent-operation-processing-time";
+
+  /**
+   * The name of the monitor attribute that is used to hold the response time
+   * of recent operations.
+   */
+  public static final String ATTR_MONITOR_RECENT_OPERATION_RESPONSE_TIME =
+       "ds-mon-recent-operation-response-time";
+
+  /**
+   * The name of the monitor attribute that is used to hold the time at which
+   * the operation latencies were last reset.
+   */
+  public static final String ATTR_MONITOR_OPERATION_LATENCY_RESET_TIME =
+       "ds-mon-operation-latency-reset-time";
+
+
+
   /**
    * The name of the monitor attribute that is used to hold the connection
    * handler connections.
@@ -1059,6 +1110,13 @@ public final class ServerConstants
   public static final String OC_MONITOR_CONNHANDLERSTATS =
           "ds-connectionhandler-statistics-monitor-entry";
 
+  /**
+   * The name of the custom objectclass that will be included in the operation
+   * latency monitor entry.
+   */
+  public static final String OC_MONITOR_OPERATION_LATENCY =
+       "ds-operation-latency-monitor-entry";
+
 
   /**
    * The name of the objectclass that will be used as the structural class for
@@ -2471,6 +2529,14 @@ public final class ServerConstants
 
 
 
+  /**
+   * The name of the backup property that holds the format of the archive
+   * file, which is a zip file when absent.
+   */
+  public static final String BACKUP_PROPERTY_ARCHIVE_FORMAT = "archive_format";
+
+
+
   /**
    * The name of the backup property that holds the name of the digest algorithm
    * used to generate the hash of a backup.
@@ -2489,6 +2555,15 @@ public final class ServerConstants
 
 
 
+  /**
+   * The name of the backup property that holds the identifer of the key entry
+   * that contains the MAC algorithm and shared secret key used to name the
+   * encrypted chunks of a chunked backup.
+   */
+  public static final String BACKUP_PROPERTY_CHUNK_MAC_KEY_ID = "chunk_mac_key_id";
+
+
+
   /**
    * The base filename to use for the archive file containing a backup of the
    * server configuration.
@@ -203,7 +203,7 @@ public class LocalBackendAddOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
+          for (PersistentSearch psearch : backend.getPersistentSearchIndex().getCandidates(entry))
           {
             psearch.processAdd(entry);
           }
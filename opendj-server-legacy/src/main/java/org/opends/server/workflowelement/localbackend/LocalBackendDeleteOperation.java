@@ -175,7 +175,7 @@ public class LocalBackendDeleteOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
+          for (PersistentSearch psearch : backend.getPersistentSearchIndex().getCandidates(entry))
           {
             psearch.processDelete(entry);
           }
@@ -212,9 +212,10 @@ public class LocalBackendModifyDNOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
+          final DN oldDN = currentEntry.getName();
+          for (PersistentSearch psearch : backend.getPersistentSearchIndex().getCandidatesForModifyDN(newEntry, oldDN))
           {
-            psearch.processModifyDN(newEntry, currentEntry.getName());
+            psearch.processModifyDN(newEntry, oldDN);
           }
         }
       });
@@ -308,7 +308,8 @@ public class LocalBackendModifyOperation
         @Override
         public void run()
         {
-          for (PersistentSearch psearch : backend.getPersistentSearches())
+          for (PersistentSearch psearch
+              : backend.getPersistentSearchIndex().getCandidatesForModify(modifiedEntry, currentEntry))
           {
             psearch.processModify(modifiedEntry, currentEntry);
           }
@@ -886,6 +886,10 @@ public class LocalBackendWorkflowElement
       return false;
     }
 
+    if (operation instanceof AbstractOperation)
+    {
+      ((AbstractOperation) operation).setProcessingBackend(workflow.getBackend());
+    }
     if (workflow.getBaseDN().isRootDN())
     {
       executeOnRootDSE(operation, workflow);
@@ -0,0 +1,114 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.authorization.dseecompat;
+
+import static org.opends.server.config.ConfigConstants.*;
+import static org.testng.Assert.*;
+
+import org.opends.server.core.AccessControlConfigManager;
+import org.opends.server.types.DN;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the access control decisions cached by the ACI handler.
+ */
+@SuppressWarnings("javadoc")
+public class AciDecisionCacheTestCase extends AciTestCase {
+
+  private static final String peopleBase="ou=People,o=test";
+  private static final String user1="uid=user.1,ou=People,o=test";
+  private static final String user5="uid=user.5,ou=People,o=test";
+  private static final String groupDN = "cn=group 1,ou=Nested Groups, o=test";
+
+  private static final
+  String groupAci = "(targetattr=\"*\")" +
+        "(version 3.0; acl \"group ACI\"; " +
+        "allow (all) " +
+        "groupdn=\"ldap:///" + groupDN + "\";)";
+
+  @BeforeClass
+  public void setupClass() throws Exception {
+    deleteAttrFromAdminEntry(ACCESS_HANDLER_DN, ATTR_AUTHZ_GLOBAL_ACI);
+    addEntries("o=test");
+  }
+
+
+  @BeforeMethod
+  public void clearBackend() throws Exception {
+    deleteAttrFromEntry(peopleBase, "aci");
+    deleteAttrFromEntry(groupDN, "member");
+    deleteAttrFromAdminEntry(ACCESS_HANDLER_DN, ATTR_AUTHZ_GLOBAL_ACI);
+  }
+
+  /**
+   * Test that the decisions cached for a client are reused after writes to
+   * other entries, and invalidated by group changes and by the changes of the
+   * client entry.
+   *
+   * @throws Exception If an unexpected result is received.
+   */
+  @Test
+  public void testCachedDecisionsAreReusedUntilInvalidated() throws Exception {
+    String aciLdif=makeAddLDIF("aci", peopleBase, groupAci);
+    LDIFModify(aciLdif, DIR_MGR_DN, PWD);
+    AciDecisionCache decisionCache = getDecisionCache();
+    DN user5DN = DN.valueOf(user5);
+
+    //Access to user5 is denied, and the decisions are cached.
+    assertEquals(searchUser5(), "");
+    assertTrue(decisionCache.hasDecisions(user5DN));
+
+    //A write to another entry keeps the cached decisions.
+    LDIFModify(makeAddLDIF("description", user1, "unrelated change"), DIR_MGR_DN, PWD);
+    assertTrue(decisionCache.hasDecisions(user5DN));
+    assertEquals(searchUser5(), "");
+    assertTrue(decisionCache.hasDecisions(user5DN));
+
+    //Adding user5 to the group invalidates the cached denials.
+    LDIFModify(makeAddLDIF("member", groupDN, user5), DIR_MGR_DN, PWD);
+    assertNotEquals(searchUser5(), "");
+    assertTrue(decisionCache.hasDecisions(user5DN));
+
+    //A write to the client entry discards its cached decisions.
+    LDIFModify(makeAddLDIF("description", user5, "client change"), DIR_MGR_DN, PWD);
+    assertFalse(decisionCache.hasDecisions(user5DN));
+    assertNotEquals(searchUser5(), "");
+
+    //Removing the ACI invalidates the cached grants.
+    deleteAttrFromEntry(peopleBase, "aci");
+    assertEquals(searchUser5(), "");
+  }
+
+  private String searchUser5() throws Exception {
+    return LDAPSearchParams(user5, PWD, null, null, null, user5, filter, null);
+  }
+
+  private AciDecisionCache getDecisionCache() {
+    return ((AciHandler) AccessControlConfigManager.getInstance().getAccessControlHandler()).getDecisionCache();
+  }
+}
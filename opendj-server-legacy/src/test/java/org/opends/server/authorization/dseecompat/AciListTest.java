@@ -0,0 +1,114 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.authorization.dseecompat;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.types.DN;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class AciListTest extends DirectoryServerTestCase
+{
+  private DN baseDN;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startFakeServer();
+    baseDN = DN.valueOf("dc=example,dc=com");
+  }
+
+  @AfterClass
+  public void tearDown()
+  {
+    TestCaseUtils.shutdownFakeServer();
+  }
+
+  @DataProvider
+  public Object[][] acis()
+  {
+    return new Object[][] {
+      { "(targetattr=\"*\")(version 3.0; acl \"anyone\"; allow(read) userdn=\"ldap:///anyone\";)", true },
+      { "(targetattr=\"*\")(version 3.0; acl \"users\"; allow(read) userdn=\"ldap:///uid=*,dc=example,dc=com\";)",
+        true },
+      { "(targetattr=\"*\")(version 3.0; acl \"group\"; allow(read) groupdn=\"ldap:///cn=g,dc=example,dc=com\";)",
+        true },
+      { "(targetattr=\"*\")(version 3.0; acl \"self\"; allow(write) userdn=\"ldap:///self\";)", false },
+      { "(targetattr=\"*\")(version 3.0; acl \"ip\"; allow(read) ip=\"127.0.0.1\";)", false },
+      { "(targetattr=\"*\")(version 3.0; acl \"mixed\"; allow(read) userdn=\"ldap:///anyone\" and ip=\"127.0.0.1\";)",
+        false },
+      { "(targetfilter=\"(cn=*)\")(version 3.0; acl \"filter\"; allow(read) userdn=\"ldap:///anyone\";)", false },
+    };
+  }
+
+  @Test(dataProvider = "acis")
+  public void testDecisionCacheable(String aciString, boolean cacheable) throws Exception
+  {
+    final Aci aci = Aci.decode(ByteString.valueOfUtf8(aciString), baseDN);
+    assertThat(aci.isDecisionCacheable(false)).isEqualTo(cacheable);
+
+    final AciList aciList = new AciList(DN.valueOf("cn=config"));
+    final SortedSet<Aci> acis = new TreeSet<>();
+    acis.add(aci);
+    aciList.addAci(baseDN, acis);
+
+    final AciList.Candidates candidates = aciList.getCandidates(DN.valueOf("uid=user.0,ou=people," + baseDN));
+    assertThat(candidates.getAcis()).containsExactly(aci);
+    assertThat(candidates.isCacheable()).isEqualTo(cacheable);
+  }
+
+  @Test
+  public void testCandidatesShareSubtreeAcisAndTrackAciChanges() throws Exception
+  {
+    final AciList aciList = new AciList(DN.valueOf("cn=config"));
+    final SortedSet<Aci> acis = new TreeSet<>();
+    acis.add(Aci.decode(ByteString.valueOfUtf8(
+        "(targetattr=\"*\")(version 3.0; acl \"anyone\"; allow(read) userdn=\"ldap:///anyone\";)"), baseDN));
+    aciList.addAci(baseDN, acis);
+
+    final AciList.Candidates user0 = aciList.getCandidates(DN.valueOf("uid=user.0,ou=people," + baseDN));
+    final AciList.Candidates user1 = aciList.getCandidates(DN.valueOf("uid=user.1,ou=people," + baseDN));
+    assertThat(user0.getSubtreeAcis()).isSameAs(user1.getSubtreeAcis());
+    assertThat(user0.getGeneration()).isEqualTo(user1.getGeneration());
+
+    final SortedSet<Aci> otherAcis = new TreeSet<>();
+    otherAcis.add(Aci.decode(ByteString.valueOfUtf8(
+        "(targetattr=\"*\")(version 3.0; acl \"all\"; allow(read) userdn=\"ldap:///all\";)"), baseDN));
+    aciList.addAci(DN.valueOf("ou=people," + baseDN), otherAcis);
+    assertThat(aciList.getCandidates(baseDN).getGeneration()).isGreaterThan(user0.getGeneration());
+    assertThat(aciList.getCandidates(DN.valueOf("dc=other,dc=com")).getAcis()).isEmpty();
+  }
+}
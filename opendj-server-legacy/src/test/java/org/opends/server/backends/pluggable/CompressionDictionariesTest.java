@@ -0,0 +1,242 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.core.DirectoryServer.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.Entry;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+@SuppressWarnings("javadoc")
+public class CompressionDictionariesTest extends DirectoryServerTestCase
+{
+  private static final int NB_ENTRIES = 1500;
+  private static final int SAMPLE_SIZE = 1000;
+
+  private ExecutorService trainer;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void createTrainer()
+  {
+    trainer = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterMethod
+  public void shutdownTrainer()
+  {
+    trainer.shutdownNow();
+  }
+
+  @Test
+  public void testTrainerKeepsContentCommonToSamples()
+  {
+    final List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 100; i++)
+    {
+      samples.add(("objectClass=inetOrgPerson,unique-" + i + "-" + (i * 7919) + ",mail=example.com").getBytes());
+    }
+
+    final String dictionary = new String(DictionaryTrainer.train(samples, 1024));
+
+    assertThat(dictionary).contains("inetOrgPerson").contains("example.com");
+    assertThat(DictionaryTrainer.train(samples, 16)).hasSize(16);
+  }
+
+  @Test
+  public void testEntriesCompressedWithDictionaryAreSmallerAndDecodable() throws Exception
+  {
+    final Storage storage = mock(Storage.class);
+    final CompressionDictionaries dictionaries = newDictionaries(storage);
+    final DataConfig withDictionary = new DataConfig(true, true, false, null, dictionaries);
+    final DataConfig withoutDictionary = new DataConfig(true, false, false, null, dictionaries);
+
+    int sizeWithDictionary = 0;
+    int sizeWithoutDictionary = 0;
+    for (int i = 0; i < NB_ENTRIES; i++)
+    {
+      final Entry entry = newPerson(i);
+      final ByteString encodedWithDictionary = ID2Entry.entryToDatabase(entry, withDictionary);
+      final ByteString encodedWithoutDictionary = ID2Entry.entryToDatabase(entry, withoutDictionary);
+      if (dictionaries.get(1) != null)
+      {
+        sizeWithDictionary += encodedWithDictionary.length();
+        sizeWithoutDictionary += encodedWithoutDictionary.length();
+      }
+      final Entry decoded =
+          ID2Entry.entryFromDatabase(encodedWithDictionary, getDefaultCompressedSchema(), dictionaries);
+      assertThat(decoded).isEqualTo(entry);
+      if (i == SAMPLE_SIZE - 1)
+      {
+        waitForTraining();
+      }
+    }
+
+    verify(storage).write(any(WriteOperation.class));
+    assertThat(dictionaries.get(1)).isNotNull();
+    assertThat(sizeWithDictionary).isLessThan(sizeWithoutDictionary);
+  }
+
+  @Test(expectedExceptions = Exception.class)
+  public void testEntryCompressedWithUnknownDictionaryCannotBeDecoded() throws Exception
+  {
+    final CompressionDictionaries dictionaries = newDictionaries(mock(Storage.class));
+    final DataConfig dataConfig = new DataConfig(true, true, false, null, dictionaries);
+    compressSamples(dictionaries, 0);
+    waitForTraining();
+    final ByteString encoded = ID2Entry.entryToDatabase(newPerson(SAMPLE_SIZE), dataConfig);
+
+    ID2Entry.entryFromDatabase(encoded, getDefaultCompressedSchema(), null);
+  }
+
+  @Test
+  public void testDictionaryIsOnlyUsedOnceStored() throws Exception
+  {
+    final CountDownLatch storing = new CountDownLatch(1);
+    final CountDownLatch stored = new CountDownLatch(1);
+    final Storage storage = mock(Storage.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        storing.countDown();
+        stored.await();
+        return null;
+      }
+    }).when(storage).write(any(WriteOperation.class));
+    final CompressionDictionaries dictionaries = newDictionaries(storage);
+
+    compressSamples(dictionaries, 0);
+    storing.await();
+    assertThat(dictionaries.getDictionaryForCompression(ByteString.valueOfUtf8("entry"))).isNull();
+    assertThat(dictionaries.get(1)).isNull();
+
+    stored.countDown();
+    waitForTraining();
+    assertThat(dictionaries.getDictionaryForCompression(ByteString.valueOfUtf8("entry")).getVersion()).isEqualTo(1);
+  }
+
+  @Test
+  public void testTrainingIsRetriedWhenDictionaryCannotBeStored() throws Exception
+  {
+    final Storage storage = mock(Storage.class);
+    doThrow(new StorageRuntimeException("rollback")).doNothing().when(storage).write(any(WriteOperation.class));
+    final CompressionDictionaries dictionaries = newDictionaries(storage);
+
+    compressSamples(dictionaries, 0);
+    waitForTraining();
+    assertThat(dictionaries.get(1)).isNull();
+
+    compressSamples(dictionaries, SAMPLE_SIZE);
+    waitForTraining();
+    assertThat(dictionaries.get(1)).isNotNull();
+    verify(storage, times(2)).write(any(WriteOperation.class));
+  }
+
+  private CompressionDictionaries newDictionaries(Storage storage) throws Exception
+  {
+    return new CompressionDictionaries(storage, newEmptyTransaction(), AccessMode.READ_WRITE, trainer);
+  }
+
+  /** Samples enough entries to start training a dictionary. */
+  private void compressSamples(CompressionDictionaries dictionaries, int firstEntry) throws Exception
+  {
+    final DataConfig dataConfig = new DataConfig(true, true, false, null, dictionaries);
+    for (int i = firstEntry; i < firstEntry + SAMPLE_SIZE; i++)
+    {
+      ID2Entry.entryToDatabase(newPerson(i), dataConfig);
+    }
+  }
+
+  private void waitForTraining() throws Exception
+  {
+    trainer.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        // the tasks are run in order
+      }
+    }).get();
+  }
+
+  @SuppressWarnings("unchecked")
+  private WriteableTransaction newEmptyTransaction()
+  {
+    final Cursor<ByteString, ByteString> cursor = mock(Cursor.class);
+    final WriteableTransaction txn = mock(WriteableTransaction.class);
+    when(txn.openCursor(any(TreeName.class))).thenReturn(cursor);
+    return txn;
+  }
+
+  private Entry newPerson(int i) throws Exception
+  {
+    return TestCaseUtils.makeEntry(
+        "dn: uid=user." + i + ",ou=people,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user." + i,
+        "cn: User " + i,
+        "sn: " + i,
+        "givenName: User",
+        "mail: user." + i + "@example.com",
+        "telephoneNumber: +1 408 555 " + (1000 + i),
+        "description: This is the description for User " + i + ".");
+  }
+}
@@ -47,7 +47,9 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.opends.server.DirectoryServerTestCase;
 import org.opends.server.TestCaseUtils;
+import org.opends.server.admin.std.meta.BackendIndexCfgDefn.IndexType;
 import org.opends.server.admin.std.meta.BackendVLVIndexCfgDefn.Scope;
+import org.opends.server.admin.std.server.BackendIndexCfg;
 import org.opends.server.admin.std.server.BackendVLVIndexCfg;
 import org.opends.server.admin.std.server.PDBBackendCfg;
 import org.opends.server.backends.pdb.PDBBackend;
@@ -110,6 +112,12 @@ public class ControlsTestCase extends DirectoryServerTestCase
   /** Indexed: ordered by ascending givenName then entryID */
   private static final String SORT_ORDER_4 = "surname:caseExactOrderingMatch";
 
+  /** Attribute with an ordering index, used when no VLV index matches the sorted search */
+  private static final String ORDERING_INDEX = "givenName";
+
+  /** Does not match the filter of the VLV indexes */
+  private static final String NON_VLV_FILTER = "(objectClass=inetOrgPerson)";
+
   /** Ordered by {@link #SORT_ORDER_1} */
   private static final List<Integer> USERS_BY_ENTRY_ID = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8);
 
@@ -138,7 +146,7 @@ public class ControlsTestCase extends DirectoryServerTestCase
     when(backendCfg.dn()).thenReturn(baseDN);
     when(backendCfg.getBackendId()).thenReturn(BACKEND_NAME);
     when(backendCfg.getBaseDN()).thenReturn(newTreeSet(baseDN));
-    when(backendCfg.listBackendIndexes()).thenReturn(new String[0]);
+    when(backendCfg.listBackendIndexes()).thenReturn(new String[] { ORDERING_INDEX });
     when(backendCfg.listBackendVLVIndexes()).thenReturn(new String[] { SORT_ORDER_1, SORT_ORDER_2 });
 
     when(backendCfg.getDBDirectory()).thenReturn(BACKEND_NAME);
@@ -148,6 +156,7 @@ public class ControlsTestCase extends DirectoryServerTestCase
 
     createVlvIndex(baseDN, backendCfg, SORT_ORDER_1);
     createVlvIndex(baseDN, backendCfg, SORT_ORDER_2);
+    createOrderingIndex(backendCfg, ORDERING_INDEX);
 
     backend = new PDBBackend();
     backend.setBackendID(backendCfg.getBackendId());
@@ -173,6 +182,15 @@ public class ControlsTestCase extends DirectoryServerTestCase
     when(backendCfg.getBackendVLVIndex(sortOrder)).thenReturn(vlvIndexCfg);
   }
 
+  private void createOrderingIndex(final PDBBackendCfg backendCfg, final String attributeName)
+  {
+    final BackendIndexCfg indexCfg = legacyMockCfg(BackendIndexCfg.class);
+    when(indexCfg.getAttribute()).thenReturn(DirectoryServer.getAttributeTypeOrNull(attributeName.toLowerCase()));
+    when(indexCfg.getIndexType()).thenReturn(newTreeSet(IndexType.ORDERING));
+    when(indexCfg.getIndexEntryLimit()).thenReturn(4000);
+    when(backendCfg.getBackendIndex(attributeName)).thenReturn(indexCfg);
+  }
+
   @DataProvider
   private Object[][] encodedKeyDataProvider()
   {
@@ -557,6 +575,65 @@ public class ControlsTestCase extends DirectoryServerTestCase
     vlvByOffset(sortOrder, beforeCount, afterCount, offset, expectedOrder);
   }
 
+  @DataProvider
+  private Object[][] sortWithoutVlvIndexDataProvider()
+  {
+    // @formatter:off
+    return new Object[][] {
+      // walks the ordering index
+      { SORT_ORDER_1, 3, USERS_BY_SORT_ORDER_1.subList(0, 3) },
+      { SORT_ORDER_1, 8, USERS_BY_SORT_ORDER_1.subList(0, 8) },
+      // sorts all the candidates
+      { SORT_ORDER_1, 0, USERS_BY_SORT_ORDER_1 },
+      // no ordering index for descending sort keys
+      { SORT_ORDER_2, 4, USERS_BY_SORT_ORDER_2.subList(0, 4) },
+      { SORT_ORDER_2, 0, USERS_BY_SORT_ORDER_2 },
+      { SORT_ORDER_3, 5, USERS_BY_SORT_ORDER_3.subList(0, 5) },
+      { SORT_ORDER_3, 0, USERS_BY_SORT_ORDER_3 },
+    };
+    // @formatter:on
+  }
+
+  @Test(dataProvider = "sortWithoutVlvIndexDataProvider")
+  public void sortWithoutVlvIndexShouldReturnResultsInCorrectOrder(final String sortOrder, final int sizeLimit,
+      final List<Integer> expectedOrder) throws Exception
+  {
+    final SearchRequest request = newSearchRequest(BACKEND_BASE_DN, SearchScope.WHOLE_SUBTREE, NON_VLV_FILTER)
+        .setSizeLimit(sizeLimit)
+        .addControl(new ServerSideSortRequestControl(mangleSortOrder(sortOrder)));
+    final InternalSearchOperation internalSearch = getRootConnection().processSearch(request);
+
+    final ResultCode expectedResultCode =
+        expectedOrder.size() < CONTENT_COUNT ? ResultCode.SIZE_LIMIT_EXCEEDED : ResultCode.SUCCESS;
+    assertThat(internalSearch.getResultCode()).isEqualTo(expectedResultCode);
+    assertThat(getDNs(internalSearch.getSearchEntries())).isEqualTo(getDNs(expectedOrder));
+    assertThat(getServerSideSortResponseControl(internalSearch.getResponseControls()).getResultCode())
+        .isEqualTo(LDAPResultCode.SUCCESS);
+  }
+
+  @Test
+  public void sortWithoutVlvIndexShouldNotReturnEntriesWhenLookthroughLimitIsExceeded() throws Exception
+  {
+    // few enough candidates to be returned by the ordering index without being restricted to the search scope
+    final SearchRequest request = newSearchRequest(BACKEND_BASE_DN, SearchScope.WHOLE_SUBTREE, "(givenName>=A)")
+        .addControl(new ServerSideSortRequestControl(mangleSortOrder(SORT_ORDER_1)));
+    final List<Integer> usersWithGivenName = new ArrayList<>(USERS_BY_SORT_ORDER_1);
+    usersWithGivenName.remove(Integer.valueOf(5));
+    final ClientConnectionStub connection = new ClientConnectionStub();
+
+    connection.setLookthroughLimit(usersWithGivenName.size());
+    InternalSearchOperation internalSearch = new InternalSearchOperation(connection, 1, 1, request, null);
+    internalSearch.run();
+    assertThat(internalSearch.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    assertThat(getDNs(internalSearch.getSearchEntries())).isEqualTo(getDNs(usersWithGivenName));
+
+    connection.setLookthroughLimit(usersWithGivenName.size() - 1);
+    internalSearch = new InternalSearchOperation(connection, 1, 1, request, null);
+    internalSearch.run();
+    assertThat(internalSearch.getResultCode()).isEqualTo(ResultCode.ADMIN_LIMIT_EXCEEDED);
+    assertThat(internalSearch.getSearchEntries()).isEmpty();
+  }
+
   @AfterClass
   public void afterClass() throws Exception
   {
@@ -316,9 +316,81 @@ public class EntryIDSetTest extends DirectoryServerTestCase
     assertIdsEquals(retained, 1, 3, 5, 7, 9);
   }
 
+  @Test(dataProvider = "codecs")
+  public void testCodecsLargeSets(EntryIDSetCodec codec)
+  {
+    final long[] dense = range(1000, 11000, 1);
+    assertThat(codec.decode(KEY, codec.encode(newDefinedSet(dense))).toLongArray()).isEqualTo(dense);
+
+    final long[] sparse = range(1000, 1000 + 2000 * 100000L, 100000);
+    assertThat(codec.decode(KEY, codec.encode(newDefinedSet(sparse))).toLongArray()).isEqualTo(sparse);
+  }
+
+  @Test
+  public void testCodecV3EncodesDenseSetsAsBitmap()
+  {
+    final EntryIDSet dense = newDefinedSet(range(1000, 11000, 1));
+    assertThat(CODEC_V3.encode(dense).length()).isLessThan(CODEC_V2.encode(dense).length());
+
+    final EntryIDSet sparse = newDefinedSet(range(1000, 1000 + 2000 * 100000L, 100000));
+    assertThat(CODEC_V3.encode(sparse)).isEqualTo(CODEC_V2.encode(sparse));
+  }
+
+  @Test
+  public void testCodecV3DecodesCodecV2()
+  {
+    final long[] ids = range(1000, 11000, 3);
+    assertThat(CODEC_V3.decode(KEY, CODEC_V2.encode(newDefinedSet(ids))).toLongArray()).isEqualTo(ids);
+  }
+
+  @Test
+  public void testLargeSetsOperations()
+  {
+    final EntryIDSet set = newDefinedSet();
+    set.addAll(newDefinedSet(range(0, 5000, 2)));
+    set.addAll(newDefinedSet(range(1, 5000, 2)));
+    assertThat(set.size()).isEqualTo(5000);
+    assertThat(set.toLongArray()).isEqualTo(range(0, 5000, 1));
+    assertThat(set.contains(id(4999))).isTrue();
+    assertThat(set.contains(id(5000))).isFalse();
+    assertIdsEquals(set.iterator(id(4998)), 4998, 4999);
+
+    final EntryIDSet retained = newUndefinedSet();
+    retained.retainAll(set);
+    retained.retainAll(newDefinedSet(range(0, 10000, 3)));
+    assertThat(retained.toLongArray()).isEqualTo(range(0, 5000, 3));
+
+    set.removeAll(newDefinedSet(range(0, 5000, 2)));
+    assertThat(set.toLongArray()).isEqualTo(range(1, 5000, 2));
+    set.removeAll(newDefinedSet(range(1, 4990, 2)));
+    assertThat(set.toLongArray()).containsExactly(4991, 4993, 4995, 4997, 4999);
+    assertThat(set.add(id(1))).isTrue();
+    assertThat(set.toLongArray()).containsExactly(1, 4991, 4993, 4995, 4997, 4999);
+  }
+
+  @Test
+  public void testNewSetFromUnionsOfLargeSets()
+  {
+    final EntryIDSet union = newSetFromUnion(Arrays.asList(newDefinedSet(range(0, 3000, 2)),
+        newDefinedSet(range(1, 3000, 2)), newDefinedSet(100000)));
+    assertThat(union.size()).isEqualTo(3001);
+    assertThat(union.contains(id(100000))).isTrue();
+    assertThat(union.toLongArray()).startsWith(range(0, 3000, 1));
+  }
+
+  private static long[] range(long from, long to, long step)
+  {
+    final long[] ids = new long[(int) ((to - from + step - 1) / step)];
+    for (int i = 0; i < ids.length; i++)
+    {
+      ids[i] = from + i * step;
+    }
+    return ids;
+  }
+
   @DataProvider(name = "codecs")
   public static Object[][] codecs() {
-     return new Object[][] { { CODEC_V1 }, { CODEC_V2 } };
+     return new Object[][] { { CODEC_V1 }, { CODEC_V2 }, { CODEC_V3 } };
   }
 
 }
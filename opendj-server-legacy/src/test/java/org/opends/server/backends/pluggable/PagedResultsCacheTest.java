@@ -0,0 +1,160 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Collections;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pluggable.PagedResultsCache.Candidates;
+import org.opends.server.backends.pluggable.PagedResultsCache.Position;
+import org.opends.server.types.Control;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential = true)
+public class PagedResultsCacheTest extends DirectoryServerTestCase
+{
+  private static final String SEARCH_KEY = "dc=example,dc=com|(objectClass=*)";
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    // Time thread is needed
+    TestCaseUtils.startServer();
+  }
+
+  @Test
+  public void testNextPageIsServedFromCache()
+  {
+    final PagedResultsCache cache = new PagedResultsCache(1024 * 1024, 4, 60000);
+    final Candidates candidates = newCandidates(1, 10, 20, 30, 40);
+    assertThat(cache.put(candidates)).isTrue();
+
+    final Position position = PagedResultsCache.decodeCookie(cookie(candidates, 2, 30));
+    assertThat(cache.get(1, SEARCH_KEY, position)).isSameAs(candidates);
+    assertThat(position.indexIn(candidates.getEntryIDs())).isEqualTo(2);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getBytesHeld()).isGreaterThan(4 * 8);
+  }
+
+  @Test
+  public void testCookieCannotBeReplayedByAnotherSearchOrConnection()
+  {
+    final PagedResultsCache cache = new PagedResultsCache(1024 * 1024, 4, 60000);
+    final Candidates candidates = newCandidates(1, 10, 20, 30, 40);
+    cache.put(candidates);
+
+    final Position position = PagedResultsCache.decodeCookie(cookie(candidates, 2, 30));
+    assertThat(cache.get(2, SEARCH_KEY, position)).isNull();
+    assertThat(cache.get(1, "another search", position)).isNull();
+    assertThat(cache.getMisses()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEntryIDCookieIsStillSupported()
+  {
+    final Position position = PagedResultsCache.decodeCookie(new EntryID(30).toByteString());
+    assertThat(position.indexIn(new long[] { 10, 20, 30, 40 })).isEqualTo(2);
+    assertThat(position.indexIn(new long[] { 10, 20 })).isEqualTo(-1);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSearchesAreEvictedWhenFull()
+  {
+    final Candidates first = newCandidates(1, 1, 2, 3, 4);
+    final Candidates second = newCandidates(2, 5, 6, 7, 8);
+    final Candidates third = newCandidates(3, 9, 10, 11, 12);
+    final PagedResultsCache cache = new PagedResultsCache(2 * memorySizeOf(first), 4, 60000);
+
+    cache.put(first);
+    cache.put(second);
+    cache.get(1, SEARCH_KEY, PagedResultsCache.decodeCookie(cookie(first, 0, 1)));
+    cache.put(third);
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(cache.get(2, SEARCH_KEY, PagedResultsCache.decodeCookie(cookie(second, 0, 5)))).isNull();
+    assertThat(cache.get(1, SEARCH_KEY, PagedResultsCache.decodeCookie(cookie(first, 0, 1)))).isSameAs(first);
+  }
+
+  @Test
+  public void testMaxSearchesPerConnection()
+  {
+    final PagedResultsCache cache = new PagedResultsCache(1024 * 1024, 2, 60000);
+    final Candidates first = newCandidates(1, 1, 2);
+    cache.put(first);
+    cache.put(newCandidates(1, 3, 4));
+    cache.put(newCandidates(1, 5, 6));
+    cache.put(newCandidates(2, 7, 8));
+
+    assertThat(cache.size()).isEqualTo(3);
+    assertThat(cache.get(1, SEARCH_KEY, PagedResultsCache.decodeCookie(cookie(first, 0, 1)))).isNull();
+  }
+
+  @Test
+  public void testRemoveReleasesMemory()
+  {
+    final PagedResultsCache cache = new PagedResultsCache(1024 * 1024, 4, 60000);
+    final Candidates candidates = newCandidates(1, 10, 20, 30, 40);
+    cache.put(candidates);
+    cache.remove(candidates);
+
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.getBytesHeld()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDisabledCacheDoesNotCache()
+  {
+    final PagedResultsCache cache = new PagedResultsCache(0, 4, 60000);
+    assertThat(cache.isEnabled()).isFalse();
+    assertThat(cache.put(newCandidates(1, 10, 20))).isFalse();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  private static Candidates newCandidates(long connectionID, long... entryIDs)
+  {
+    return new Candidates(connectionID, SEARCH_KEY, entryIDs, true, Collections.<Control> emptyList());
+  }
+
+  private static ByteString cookie(Candidates candidates, int index, long nextEntryID)
+  {
+    return PagedResultsCache.encodeCookie(candidates, index, new EntryID(nextEntryID));
+  }
+
+  private static long memorySizeOf(Candidates candidates)
+  {
+    final PagedResultsCache cache = new PagedResultsCache(Long.MAX_VALUE, 1, 60000);
+    cache.put(candidates);
+    final long size = cache.getBytesHeld();
+    cache.remove(candidates);
+    return size;
+  }
+}
@@ -38,6 +38,7 @@ import static org.testng.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -46,6 +47,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.ResultCode;
@@ -71,21 +73,28 @@ import org.opends.server.backends.pluggable.spi.Storage;
 import org.opends.server.backends.pluggable.spi.TreeName;
 import org.opends.server.backends.pluggable.spi.WriteOperation;
 import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.controls.PagedResultsControl;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchListener;
 import org.opends.server.protocols.internal.InternalSearchOperation;
 import org.opends.server.protocols.internal.SearchRequest;
 import org.opends.server.types.AttributeType;
 import org.opends.server.types.BackupConfig;
 import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.CancelRequest;
+import org.opends.server.types.Control;
 import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LDIFExportConfig;
 import org.opends.server.types.LDIFImportConfig;
 import org.opends.server.types.Modification;
+import org.opends.server.types.Operation;
+import org.opends.server.types.Privilege;
 import org.opends.server.types.RestoreConfig;
 import org.opends.server.types.SearchResultEntry;
+import org.opends.server.types.SearchResultReference;
 import org.opends.server.workflowelement.localbackend.LocalBackendSearchOperation;
 import org.testng.Reporter;
 import org.testng.annotations.AfterClass;
@@ -101,6 +110,7 @@ import org.testng.annotations.Test;
 public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg> extends DirectoryServerTestCase
 {
   private BackendImpl<C> backend;
+  private C backendCfg;
   private List<Entry> topEntries;
   private List<Entry> entries;
   private List<Entry> workEntries;
@@ -150,11 +160,13 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
 
     testBaseDN = DN.valueOf("dc=test,dc=com");
 
-    C backendCfg = createBackendCfg();
+    backendCfg = createBackendCfg();
     when(backendCfg.dn()).thenReturn(testBaseDN);
     when(backendCfg.getBaseDN()).thenReturn(newTreeSet(testBaseDN));
     when(backendCfg.listBackendIndexes()).thenReturn(backendIndexes.keySet().toArray(new String[0]));
     when(backendCfg.listBackendVLVIndexes()).thenReturn(backendVlvIndexes);
+    // Decode and filter the search candidates in parallel, the other backend tests evaluate them sequentially
+    when(backendCfg.getSearchEvaluationParallelism()).thenReturn(4);
 
     for (Map.Entry<String, IndexType[]> index : backendIndexes.entrySet())
     {
@@ -808,6 +820,190 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     assertThat(searchOperation.getEntriesSent()).isEqualTo(0);
   }
 
+  @DataProvider
+  protected Object[][] parallelSearchData()
+  {
+    return new Object[][] {
+      // @formatter:off
+      // indexed by the sn presence index
+      { "(sn=*)", 0 },
+      { "(sn=*)", 1 },
+      { "(sn=*)", 5 },
+      // unindexed, because the lookthrough limit is lower than the number of entries in scope
+      { "(objectClass=*)", 0 },
+      { "(objectClass=*)", 1 },
+      { "(objectClass=*)", 5 },
+      // @formatter:on
+    };
+  }
+
+  @Test(dataProvider = "parallelSearchData")
+  public void testParallelSearchReturnsSameResultsAsSequentialSearch(String filter, int sizeLimit) throws Exception
+  {
+    final SearchRequest request =
+        newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, filter).setSizeLimit(sizeLimit);
+
+    final SearchResults sequentialResults = new SearchResults(0);
+    final InternalSearchOperation sequentialSearch = runSearch(request, 1, sequentialResults);
+    final SearchResults parallelResults = new SearchResults(0);
+    final InternalSearchOperation parallelSearch = runSearch(request, 4, parallelResults);
+
+    if (sizeLimit > 0)
+    {
+      assertThat(sequentialSearch.getResultCode()).isEqualTo(ResultCode.SIZE_LIMIT_EXCEEDED);
+      assertThat(sequentialResults.dns).hasSize(sizeLimit);
+    }
+    else
+    {
+      assertThat(sequentialSearch.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    }
+    assertThat(parallelSearch.getResultCode()).isEqualTo(sequentialSearch.getResultCode());
+    assertThat(parallelResults.dns).isEqualTo(sequentialResults.dns);
+  }
+
+  @Test(dataProvider = "parallelSearchData")
+  public void testParallelSearchIsCanceledLikeSequentialSearch(String filter, int cancelAfter) throws Exception
+  {
+    if (cancelAfter == 0)
+    {
+      return;
+    }
+    final SearchRequest request = newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, filter);
+
+    final SearchResults sequentialResults = new SearchResults(cancelAfter);
+    final InternalSearchOperation sequentialSearch = runSearch(request, 1, sequentialResults);
+    final SearchResults parallelResults = new SearchResults(cancelAfter);
+    final InternalSearchOperation parallelSearch = runSearch(request, 4, parallelResults);
+
+    assertThat(sequentialSearch.getResultCode()).isEqualTo(ResultCode.CANCELLED);
+    assertThat(sequentialResults.dns).hasSize(cancelAfter);
+    assertThat(parallelSearch.getResultCode()).isEqualTo(ResultCode.CANCELLED);
+    assertThat(parallelResults.dns).isEqualTo(sequentialResults.dns);
+  }
+
+  @Test(dataProvider = "parallelSearchData")
+  public void testParallelPagedSearchReturnsSamePagesAsSequentialSearch(String filter, int pageSize) throws Exception
+  {
+    if (pageSize == 0)
+    {
+      return;
+    }
+    final List<List<DN>> sequentialPages = searchPages(filter, pageSize, 1, 1);
+    assertThat(sequentialPages.size()).isGreaterThan(1);
+
+    assertThat(searchPages(filter, pageSize, 4, 4)).isEqualTo(sequentialPages);
+    // the position where a page stopped must be understood whatever the parallelism of the next page
+    assertThat(searchPages(filter, pageSize, 1, 4)).isEqualTo(sequentialPages);
+    assertThat(searchPages(filter, pageSize, 4, 1)).isEqualTo(sequentialPages);
+  }
+
+  /** Returns all the pages of the paged search, alternating the parallelism from one page to the next. */
+  private List<List<DN>> searchPages(String filter, int pageSize, int firstParallelism, int secondParallelism)
+      throws Exception
+  {
+    final List<List<DN>> pages = new ArrayList<>();
+    ByteString cookie = ByteString.empty();
+    do
+    {
+      final SearchRequest request = newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, filter)
+          .addControl(new PagedResultsControl(true, pageSize, cookie));
+      final SearchResults results = new SearchResults(0);
+      final int parallelism = pages.size() % 2 == 0 ? firstParallelism : secondParallelism;
+      final InternalSearchOperation search = runSearch(request, parallelism, results);
+      assertThat(search.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+      pages.add(results.dns);
+      cookie = getPagedResultsCookie(search);
+    }
+    while (cookie.length() > 0);
+    return pages;
+  }
+
+  private ByteString getPagedResultsCookie(InternalSearchOperation search)
+  {
+    for (Control control : search.getResponseControls())
+    {
+      if (control instanceof PagedResultsControl)
+      {
+        return ((PagedResultsControl) control).getCookie();
+      }
+    }
+    fail("Expected a paged results response control");
+    return null;
+  }
+
+  /**
+   * Runs the search with the provided search evaluation parallelism, on a connection which can make
+   * unindexed searches and whose lookthrough limit makes the searches not filtered by an index unindexed.
+   */
+  private InternalSearchOperation runSearch(SearchRequest request, int parallelism, SearchResults results)
+      throws Exception
+  {
+    final ClientConnection connection = new ClientConnectionStub()
+    {
+      @Override
+      public boolean hasPrivilege(Privilege privilege, Operation operation)
+      {
+        return true;
+      }
+    };
+    connection.setLookthroughLimit((int) backend.getNumberOfEntriesInBaseDN(testBaseDN) - 1);
+
+    setSearchEvaluationParallelism(parallelism);
+    try
+    {
+      final InternalSearchOperation search = new InternalSearchOperation(connection, 1, 1, request, results);
+      search.run();
+      return search;
+    }
+    finally
+    {
+      setSearchEvaluationParallelism(4);
+    }
+  }
+
+  private void setSearchEvaluationParallelism(int parallelism)
+  {
+    when(backendCfg.getSearchEvaluationParallelism()).thenReturn(parallelism);
+    backend.getRootContainer().applyConfigurationChange(backendCfg);
+    if (parallelism > 1)
+    {
+      assertThat(backend.getRootContainer().getSearchEvaluationPool().getParallelism()).isEqualTo(parallelism);
+    }
+    else
+    {
+      assertThat(backend.getRootContainer().getSearchEvaluationPool()).isNull();
+    }
+  }
+
+  /** Collects the DNs of the entries returned by a search, canceling the search after some entries if requested. */
+  private static final class SearchResults implements InternalSearchListener
+  {
+    private final int cancelAfter;
+    private final List<DN> dns = new ArrayList<>();
+
+    private SearchResults(int cancelAfter)
+    {
+      this.cancelAfter = cancelAfter;
+    }
+
+    @Override
+    public void handleInternalSearchEntry(InternalSearchOperation searchOperation, SearchResultEntry searchEntry)
+    {
+      dns.add(searchEntry.getName());
+      if (dns.size() == cancelAfter)
+      {
+        searchOperation.abort(new CancelRequest(false, LocalizableMessage.raw("canceled by the test")));
+      }
+    }
+
+    @Override
+    public void handleInternalSearchReference(InternalSearchOperation searchOperation,
+        SearchResultReference searchReference)
+    {
+      // no referrals in the test backend
+    }
+  }
+
   private void subTreeSearch(boolean useInternalConnection) throws Exception
   {
     SearchRequest request = newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, "objectclass=*");
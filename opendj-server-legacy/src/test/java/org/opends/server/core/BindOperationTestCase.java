@@ -34,6 +34,7 @@ import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.TestCaseUtils;
+import org.opends.server.api.AuthenticationPolicyState;
 import org.opends.server.plugins.DisconnectClientPlugin;
 import org.opends.server.plugins.InvocationCounterPlugin;
 import org.opends.server.plugins.ShortCircuitPlugin;
@@ -2319,6 +2320,306 @@ public class BindOperationTestCase
     }
   }
 
+  /**
+   * Tests that the last login time is written behind when the password policy
+   * has a write-behind interval, while the password policy state of the user
+   * already sees it.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testWriteBehindStateUpdates()
+         throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+
+    TestCaseUtils.applyModifications(true,
+      "dn: uid=test.user,o=test",
+      "changetype: add",
+      "objectClass: top",
+      "objectClass: person",
+      "objectClass: organizationalPerson",
+      "objectClass: inetOrgPerson",
+      "uid: test.user",
+      "givenName: Test",
+      "sn: User",
+      "cn: Test User",
+      "userPassword: password",
+      "",
+      "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+      "changetype: modify",
+      "replace: ds-cfg-last-login-time-attribute",
+      "ds-cfg-last-login-time-attribute: ds-pwp-last-login-time",
+      "-",
+      "replace: ds-cfg-last-login-time-format",
+      "ds-cfg-last-login-time-format: yyyyMMddHHmmss'Z'",
+      "-",
+      "replace: ds-cfg-state-update-write-behind-interval",
+      "ds-cfg-state-update-write-behind-interval: 1 h",
+      "-",
+      "replace: ds-cfg-state-update-failure-policy",
+      "ds-cfg-state-update-failure-policy: ignore"
+    );
+
+    try
+    {
+      DN userDN = DN.valueOf("uid=test.user,o=test");
+      InternalClientConnection conn =
+           new InternalClientConnection(new AuthenticationInfo());
+      BindOperation bindOperation =
+           conn.processSimpleBind(userDN, ByteString.valueOfUtf8("password"));
+      assertEquals(bindOperation.getResultCode(), ResultCode.SUCCESS);
+
+      AttributeType lastLoginTimeType =
+           DirectoryServer.getAttributeTypeOrDefault("ds-pwp-last-login-time");
+      Entry userEntry = DirectoryServer.getEntry(userDN);
+      assertFalse(userEntry.hasAttribute(lastLoginTimeType));
+      PasswordPolicyState state =
+           (PasswordPolicyState) AuthenticationPolicyState.forUser(userEntry, false);
+      assertThat(state.getLastLoginTime()).isGreaterThan(0);
+
+      PasswordPolicyStateBuffer stateBuffer =
+           DirectoryServer.getPasswordPolicyStateBuffer();
+      assertEquals(stateBuffer.getPendingUserCount(), 1);
+      stateBuffer.flush(true);
+      assertEquals(stateBuffer.getPendingUserCount(), 0);
+      assertTrue(DirectoryServer.getEntry(userDN).hasAttribute(lastLoginTimeType));
+    }
+    finally
+    {
+      TestCaseUtils.applyModifications(true,
+        "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+        "changetype: modify",
+        "replace: ds-cfg-last-login-time-attribute",
+        "-",
+        "replace: ds-cfg-last-login-time-format",
+        "-",
+        "replace: ds-cfg-state-update-write-behind-interval",
+        "-",
+        "replace: ds-cfg-state-update-failure-policy",
+        "ds-cfg-state-update-failure-policy: reactive"
+      );
+    }
+  }
+
+  /**
+   * Tests that the authentication failures removed by a successful bind and
+   * not written yet are no longer counted, while the subsequent failures are
+   * still counted and lock the account.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testWriteBehindStateUpdatesPreserveLockout()
+         throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+
+    TestCaseUtils.applyModifications(true,
+      "dn: uid=test.user,o=test",
+      "changetype: add",
+      "objectClass: top",
+      "objectClass: person",
+      "objectClass: organizationalPerson",
+      "objectClass: inetOrgPerson",
+      "uid: test.user",
+      "givenName: Test",
+      "sn: User",
+      "cn: Test User",
+      "userPassword: password",
+      "",
+      "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+      "changetype: modify",
+      "replace: ds-cfg-lockout-failure-count",
+      "ds-cfg-lockout-failure-count: 2",
+      "-",
+      "replace: ds-cfg-state-update-write-behind-interval",
+      "ds-cfg-state-update-write-behind-interval: 1 h",
+      "-",
+      "replace: ds-cfg-state-update-failure-policy",
+      "ds-cfg-state-update-failure-policy: ignore"
+    );
+
+    try
+    {
+      DN userDN = DN.valueOf("uid=test.user,o=test");
+      AttributeType failureTimeType =
+           DirectoryServer.getAttributeTypeOrDefault("pwdfailuretime");
+      PasswordPolicyStateBuffer stateBuffer =
+           DirectoryServer.getPasswordPolicyStateBuffer();
+
+      assertBindResult(userDN, "wrong", ResultCode.INVALID_CREDENTIALS);
+      assertEquals(DirectoryServer.getEntry(userDN).getAttribute(failureTimeType).get(0).size(), 1);
+
+      // the removal of the failure is deferred
+      assertBindResult(userDN, "password", ResultCode.SUCCESS);
+      assertEquals(stateBuffer.getPendingUserCount(), 1);
+      assertTrue(DirectoryServer.getEntry(userDN).hasAttribute(failureTimeType));
+
+      // the next failure is written along with the deferred removal, it is the only one counted
+      assertBindResult(userDN, "wrong", ResultCode.INVALID_CREDENTIALS);
+      assertEquals(stateBuffer.getPendingUserCount(), 0);
+      assertEquals(DirectoryServer.getEntry(userDN).getAttribute(failureTimeType).get(0).size(), 1);
+      assertBindResult(userDN, "password", ResultCode.SUCCESS);
+
+      // two failures in a row still lock the account
+      assertBindResult(userDN, "wrong", ResultCode.INVALID_CREDENTIALS);
+      assertBindResult(userDN, "wrong", ResultCode.INVALID_CREDENTIALS);
+      assertBindResult(userDN, "password", ResultCode.INVALID_CREDENTIALS);
+    }
+    finally
+    {
+      TestCaseUtils.applyModifications(true,
+        "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+        "changetype: modify",
+        "replace: ds-cfg-lockout-failure-count",
+        "ds-cfg-lockout-failure-count: 0",
+        "-",
+        "replace: ds-cfg-state-update-write-behind-interval",
+        "-",
+        "replace: ds-cfg-state-update-failure-policy",
+        "ds-cfg-state-update-failure-policy: reactive"
+      );
+    }
+  }
+
+  private void assertBindResult(DN userDN, String password, ResultCode expectedResultCode)
+  {
+    InternalClientConnection conn =
+         new InternalClientConnection(new AuthenticationInfo());
+    BindOperation bindOperation =
+         conn.processSimpleBind(userDN, ByteString.valueOfUtf8(password));
+    assertEquals(bindOperation.getResultCode(), expectedResultCode);
+  }
+
+  /**
+   * Tests that a finalized password policy state buffer no longer defers
+   * updates, so that the updates of the binds processed during the shutdown
+   * are written rather than lost.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testWriteBehindStateBufferRejectsUpdatesOnceFinalized()
+         throws Exception
+  {
+    TestCaseUtils.applyModifications(true,
+      "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+      "changetype: modify",
+      "replace: ds-cfg-last-login-time-attribute",
+      "ds-cfg-last-login-time-attribute: ds-pwp-last-login-time",
+      "-",
+      "replace: ds-cfg-last-login-time-format",
+      "ds-cfg-last-login-time-format: yyyyMMddHHmmss'Z'",
+      "-",
+      "replace: ds-cfg-state-update-write-behind-interval",
+      "ds-cfg-state-update-write-behind-interval: 1 h",
+      "-",
+      "replace: ds-cfg-state-update-failure-policy",
+      "ds-cfg-state-update-failure-policy: ignore"
+    );
+
+    try
+    {
+      DN userDN = DN.valueOf("uid=test.user,o=test");
+      List<Modification> mods = newArrayList(new Modification(REPLACE,
+           Attributes.create("ds-pwp-last-login-time", "20151001000000Z")));
+      PasswordPolicy policy = DirectoryServer.getDefaultPasswordPolicy();
+
+      PasswordPolicyStateBuffer stateBuffer = new PasswordPolicyStateBuffer();
+      stateBuffer.finalizeStateBuffer();
+      assertFalse(stateBuffer.defer(policy, userDN, mods));
+      assertEquals(stateBuffer.getPendingUserCount(), 0);
+    }
+    finally
+    {
+      TestCaseUtils.applyModifications(true,
+        "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+        "changetype: modify",
+        "replace: ds-cfg-last-login-time-attribute",
+        "-",
+        "replace: ds-cfg-last-login-time-format",
+        "-",
+        "replace: ds-cfg-state-update-write-behind-interval",
+        "-",
+        "replace: ds-cfg-state-update-failure-policy",
+        "ds-cfg-state-update-failure-policy: reactive"
+      );
+    }
+  }
+
+  /**
+   * Tests that a password verified for a user is remembered when the password
+   * policy has a verified password cache duration, and forgotten when the
+   * password of the user is changed.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testVerifiedPasswordCache()
+         throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+
+    TestCaseUtils.applyModifications(true,
+      "dn: uid=test.user,o=test",
+      "changetype: add",
+      "objectClass: top",
+      "objectClass: person",
+      "objectClass: organizationalPerson",
+      "objectClass: inetOrgPerson",
+      "uid: test.user",
+      "givenName: Test",
+      "sn: User",
+      "cn: Test User",
+      "userPassword: password",
+      "",
+      "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+      "changetype: modify",
+      "replace: ds-cfg-verified-password-cache-duration",
+      "ds-cfg-verified-password-cache-duration: 1 h"
+    );
+
+    try
+    {
+      DN userDN = DN.valueOf("uid=test.user,o=test");
+      VerifiedPasswordCache cache = DirectoryServer.getVerifiedPasswordCache();
+      long hits = cache.getHits();
+
+      InternalClientConnection conn =
+           new InternalClientConnection(new AuthenticationInfo());
+      assertEquals(conn.processSimpleBind(userDN, ByteString.valueOfUtf8("password")).getResultCode(),
+                   ResultCode.SUCCESS);
+      assertEquals(cache.getHits(), hits);
+      assertEquals(conn.processSimpleBind(userDN, ByteString.valueOfUtf8("password")).getResultCode(),
+                   ResultCode.SUCCESS);
+      assertEquals(cache.getHits(), hits + 1);
+      assertEquals(conn.processSimpleBind(userDN, ByteString.valueOfUtf8("wrong")).getResultCode(),
+                   ResultCode.INVALID_CREDENTIALS);
+      assertEquals(cache.getHits(), hits + 1);
+
+      TestCaseUtils.applyModifications(true,
+        "dn: uid=test.user,o=test",
+        "changetype: modify",
+        "replace: userPassword",
+        "userPassword: newPassword"
+      );
+      assertEquals(conn.processSimpleBind(userDN, ByteString.valueOfUtf8("password")).getResultCode(),
+                   ResultCode.INVALID_CREDENTIALS);
+      assertEquals(conn.processSimpleBind(userDN, ByteString.valueOfUtf8("newPassword")).getResultCode(),
+                   ResultCode.SUCCESS);
+      assertEquals(cache.getHits(), hits + 1);
+    }
+    finally
+    {
+      TestCaseUtils.applyModifications(true,
+        "dn: cn=Default Password Policy,cn=Password Policies,cn=config",
+        "changetype: modify",
+        "replace: ds-cfg-verified-password-cache-duration"
+      );
+    }
+  }
+
   /**
    * Tests the <CODE>cancel</CODE> method to ensure that it indicates that the
    * operation cannot be cancelled.
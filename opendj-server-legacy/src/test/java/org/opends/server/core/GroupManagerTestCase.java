@@ -2363,6 +2363,114 @@ public class GroupManagerTestCase
     TestCaseUtils.clearBackend("userRoot");
   }
 
+  /**
+   * Tests that the group manager indexes the memberships of nested static
+   * groups, virtual static groups and static groups nesting dynamic groups,
+   * and keeps the index up to date when the nesting changes.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testGetGroupsOfNested() throws Exception {
+    TestCaseUtils.initializeTestBackend(true);
+    GroupManager groupManager = DirectoryServer.getGroupManager();
+    groupManager.deregisterAllGroups();
+    addNestedGroupTestEntries();
+    TestCaseUtils.addEntry(
+      "dn: cn=virtual 3,ou=Groups,o=test",
+      "objectClass: top",
+      "objectClass: groupOfNames",
+      "objectClass: ds-virtual-static-group",
+      "cn: virtual 3",
+      "ds-target-group-dn: cn=group 3,ou=Groups,o=test");
+    DN group1DN = DN.valueOf("cn=group 1,ou=Groups,o=test");
+    DN group2DN = DN.valueOf("cn=group 2,ou=Groups,o=test");
+    DN group3DN = DN.valueOf("cn=group 3,ou=Groups,o=test");
+    DN group4DN = DN.valueOf("cn=group 4,ou=Groups,o=test");
+    DN virtual3DN = DN.valueOf("cn=virtual 3,ou=Groups,o=test");
+    Entry user3Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.3,ou=People,o=test"));
+    Entry user5Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.5,ou=People,o=test"));
+    Group group1Instance = groupManager.getGroupInstance(group1DN);
+    Group group2Instance = groupManager.getGroupInstance(group2DN);
+    Group group3Instance = groupManager.getGroupInstance(group3DN);
+    group1Instance.addNestedGroup(group2DN);
+    group2Instance.addNestedGroup(group3DN);
+    group3Instance.addMember(user3Entry);
+    group2Instance.addNestedGroup(group4DN);
+
+    Set<DN> user3Groups = groupManager.getGroupsOf(user3Entry);
+    assertEquals(user3Groups.size(), 4, "Unexpected groups " + user3Groups);
+    assertTrue(user3Groups.contains(group1DN));
+    assertTrue(user3Groups.contains(group2DN));
+    assertTrue(user3Groups.contains(group3DN));
+    assertTrue(user3Groups.contains(virtual3DN));
+    assertTrue(groupManager.getGroupInstance(virtual3DN).isMember(user3Entry));
+
+    // user 5 is only a member of the dynamic group 4, nested in group 2
+    Set<DN> user5Groups = groupManager.getGroupsOf(user5Entry);
+    assertEquals(user5Groups.size(), 3, "Unexpected groups " + user5Groups);
+    assertTrue(user5Groups.contains(group4DN));
+    assertTrue(group1Instance.isMember(user5Entry));
+    assertFalse(group3Instance.isMember(user5Entry));
+
+    group1Instance.removeNestedGroup(group2DN);
+    assertFalse(groupManager.getGroupsOf(user3Entry).contains(group1DN));
+    assertFalse(group1Instance.isMember(user3Entry));
+    assertTrue(group2Instance.isMember(user3Entry));
+  }
+
+  /**
+   * Tests that modifications of a static group entry which only add or remove
+   * members are applied to the registered group instance, and that other
+   * modifications of the member list create the group instance again.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testModifyMembersUpdatesGroupInstance() throws Exception {
+    TestCaseUtils.initializeTestBackend(true);
+    GroupManager groupManager = DirectoryServer.getGroupManager();
+    groupManager.deregisterAllGroups();
+    addNestedGroupTestEntries();
+    DN group1DN = DN.valueOf("cn=group 1,ou=Groups,o=test");
+    DN group2DN = DN.valueOf("cn=group 2,ou=Groups,o=test");
+    Entry user1Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.1,ou=People,o=test"));
+    Entry user2Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.2,ou=People,o=test"));
+    Group group1Instance = groupManager.getGroupInstance(group1DN);
+    InternalClientConnection conn = getRootConnection();
+
+    LinkedList<Modification> mods = new LinkedList<>();
+    mods.add(new Modification(ModificationType.ADD, Attributes.create("member", "uid=user.1,ou=People,o=test")));
+    mods.add(new Modification(ModificationType.ADD, Attributes.create("member", "cn=group 2,ou=Groups,o=test")));
+    mods.add(new Modification(ModificationType.ADD, Attributes.create("description", "members added")));
+    assertEquals(conn.processModify(group1DN, mods).getResultCode(), ResultCode.SUCCESS);
+    assertSame(groupManager.getGroupInstance(group1DN), group1Instance);
+    assertTrue(group1Instance.isMember(user1Entry));
+    assertTrue(groupManager.getGroupsOf(user1Entry).contains(group1DN));
+
+    // the members of the nested group are members of group 1
+    groupManager.getGroupInstance(group2DN).addMember(user2Entry);
+    assertTrue(group1Instance.isMember(user2Entry));
+
+    mods = new LinkedList<>();
+    mods.add(new Modification(ModificationType.DELETE, Attributes.create("member", "cn=group 2,ou=Groups,o=test")));
+    assertEquals(conn.processModify(group1DN, mods).getResultCode(), ResultCode.SUCCESS);
+    assertSame(groupManager.getGroupInstance(group1DN), group1Instance);
+    assertFalse(group1Instance.isMember(user2Entry));
+    assertFalse(groupManager.getGroupsOf(user2Entry).contains(group1DN));
+    assertTrue(group1Instance.isMember(user1Entry));
+
+    // replacing all the members creates the group instance again
+    mods = new LinkedList<>();
+    mods.add(new Modification(ModificationType.REPLACE, Attributes.create("member", "uid=user.2,ou=People,o=test")));
+    assertEquals(conn.processModify(group1DN, mods).getResultCode(), ResultCode.SUCCESS);
+    Group newGroup1Instance = groupManager.getGroupInstance(group1DN);
+    assertNotSame(newGroup1Instance, group1Instance);
+    assertFalse(newGroup1Instance.isMember(user1Entry));
+    assertTrue(newGroup1Instance.isMember(user2Entry));
+    assertTrue(groupManager.getGroupsOf(user2Entry).contains(group1DN));
+  }
+
   /**
    * Adds nested group entries.
    *
@@ -0,0 +1,136 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.EnumSet;
+
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.controls.PersistentSearchChangeType;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PersistentSearchIndexTestCase extends CoreTestCase
+{
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @Test
+  public void testCandidatesAreFoundByBaseDN() throws Exception
+  {
+    final PersistentSearchIndex index = new PersistentSearchIndex();
+    final PersistentSearch inSuffix = newPersistentSearch("dc=example,dc=com", "(cn=*)");
+    final PersistentSearch inOu = newPersistentSearch("ou=people,dc=example,dc=com", "(objectClass=*)");
+    final PersistentSearch elsewhere = newPersistentSearch("ou=groups,dc=example,dc=com", "(objectClass=*)");
+    final PersistentSearch inRootDSE = newPersistentSearch("", "(objectClass=*)");
+    index.add(inSuffix);
+    index.add(inOu);
+    index.add(elsewhere);
+    index.add(inRootDSE);
+
+    assertThat(index.getCandidates(newPerson("uid=user.0,ou=people,dc=example,dc=com", "user.0")))
+        .containsOnly(inSuffix, inOu, inRootDSE);
+  }
+
+  @Test
+  public void testCandidatesAreFoundByFilterComponent() throws Exception
+  {
+    final PersistentSearchIndex index = new PersistentSearchIndex();
+    final PersistentSearch matchingEquality = newPersistentSearch("dc=example,dc=com", "(uid=USER.0)");
+    final PersistentSearch otherEquality = newPersistentSearch("dc=example,dc=com", "(uid=user.1)");
+    final PersistentSearch matchingAnd = newPersistentSearch("dc=example,dc=com", "(&(cn=*)(uid=user.0))");
+    final PersistentSearch otherPresence = newPersistentSearch("dc=example,dc=com", "(description=*)");
+    final PersistentSearch unindexed = newPersistentSearch("dc=example,dc=com", "(|(uid=user.1)(cn=x))");
+    index.add(matchingEquality);
+    index.add(otherEquality);
+    index.add(matchingAnd);
+    index.add(otherPresence);
+    index.add(unindexed);
+
+    final Entry entry = newPerson("uid=user.0,ou=people,dc=example,dc=com", "user.0");
+    assertThat(index.getCandidates(entry)).containsOnly(matchingEquality, matchingAnd, unindexed);
+
+    index.remove(matchingEquality);
+    index.remove(unindexed);
+    assertThat(index.getCandidates(entry)).containsOnly(matchingAnd);
+
+    index.clear();
+    assertThat(index.getCandidates(entry)).isEmpty();
+  }
+
+  @Test
+  public void testCandidatesForModifyAndModifyDN() throws Exception
+  {
+    final PersistentSearchIndex index = new PersistentSearchIndex();
+    final PersistentSearch oldValue = newPersistentSearch("dc=example,dc=com", "(uid=user.0)");
+    final PersistentSearch newValue = newPersistentSearch("dc=example,dc=com", "(uid=user.1)");
+    final PersistentSearch oldParent = newPersistentSearch("ou=people,dc=example,dc=com", "(objectClass=*)");
+    final PersistentSearch newParent = newPersistentSearch("ou=others,dc=example,dc=com", "(objectClass=*)");
+    index.add(oldValue);
+    index.add(newValue);
+    index.add(oldParent);
+    index.add(newParent);
+
+    final Entry oldEntry = newPerson("uid=user.0,ou=people,dc=example,dc=com", "user.0");
+    final Entry modifiedEntry = newPerson("uid=user.0,ou=people,dc=example,dc=com", "user.1");
+    assertThat(index.getCandidatesForModify(modifiedEntry, oldEntry)).containsOnly(oldValue, newValue, oldParent);
+
+    final Entry renamedEntry = newPerson("uid=user.0,ou=others,dc=example,dc=com", "user.0");
+    assertThat(index.getCandidatesForModifyDN(renamedEntry, oldEntry.getName()))
+        .containsOnly(oldValue, oldParent, newParent);
+  }
+
+  private PersistentSearch newPersistentSearch(String baseDN, String filter) throws Exception
+  {
+    final SearchOperation searchOperation = mock(SearchOperation.class);
+    when(searchOperation.getBaseDN()).thenReturn(DN.valueOf(baseDN));
+    when(searchOperation.getScope()).thenReturn(SearchScope.WHOLE_SUBTREE);
+    when(searchOperation.getFilter()).thenReturn(SearchFilter.createFilterFromString(filter));
+    return new PersistentSearch(searchOperation, EnumSet.allOf(PersistentSearchChangeType.class), false, true);
+  }
+
+  private Entry newPerson(String dn, String uid) throws Exception
+  {
+    return TestCaseUtils.makeEntry(
+        "dn: " + dn,
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: inetOrgPerson",
+        "uid: " + uid,
+        "cn: " + uid,
+        "sn: " + uid);
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.admin.std.server.ElasticWorkQueueCfg;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Operation;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * A set of test cases for the elastic work queue.
+ */
+@SuppressWarnings("javadoc")
+public class ElasticWorkQueueTestCase extends ExtensionsTestCase
+{
+  private static final int MAX_CONCURRENT_OPERATIONS = 4;
+  private static final int CAPACITY = 3;
+
+  private MonitorProvider<?> serverWorkQueueMonitor;
+  private ElasticWorkQueue workQueue;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void initializeWorkQueue() throws Exception
+  {
+    serverWorkQueueMonitor = DirectoryServer.getMonitorProvider("work queue");
+
+    final ElasticWorkQueueCfg cfg = mock(ElasticWorkQueueCfg.class);
+    when(cfg.getMaxConcurrentOperations()).thenReturn(MAX_CONCURRENT_OPERATIONS);
+    when(cfg.getMaxWorkQueueCapacity()).thenReturn(CAPACITY);
+    workQueue = new ElasticWorkQueue();
+    workQueue.initializeWorkQueue(cfg);
+  }
+
+  @AfterMethod
+  public void finalizeWorkQueue()
+  {
+    workQueue.finalizeWorkQueue(LocalizableMessage.raw("test finished"));
+    // the monitor of the test work queue replaced the monitor of the server work queue
+    DirectoryServer.registerMonitorProvider(serverWorkQueueMonitor);
+  }
+
+  @Test
+  public void testBlockedOperationsDoNotPreventProcessingOtherOperations() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(MAX_CONCURRENT_OPERATIONS - 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    try
+    {
+      for (int i = 0; i < MAX_CONCURRENT_OPERATIONS - 1; i++)
+      {
+        workQueue.submitOperation(newOperation(started, release));
+      }
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+      final int nbOperations = 100;
+      final CountDownLatch processed = new CountDownLatch(nbOperations);
+      for (int i = 0; i < nbOperations; i++)
+      {
+        workQueue.submitOperation(newOperation(processed, null));
+      }
+      assertThat(processed.await(10, TimeUnit.SECONDS)).isTrue();
+      assertThat(workQueue.isIdle()).isFalse();
+    }
+    finally
+    {
+      release.countDown();
+    }
+    assertThat(workQueue.waitUntilIdle(10000)).isTrue();
+    assertThat(workQueue.getOpsSubmitted()).isEqualTo(MAX_CONCURRENT_OPERATIONS - 1 + 100);
+  }
+
+  @Test
+  public void testTrySubmitOperationRejectsWhenQueueIsFull() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(MAX_CONCURRENT_OPERATIONS);
+    final CountDownLatch release = new CountDownLatch(1);
+    try
+    {
+      for (int i = 0; i < MAX_CONCURRENT_OPERATIONS; i++)
+      {
+        workQueue.submitOperation(newOperation(started, release));
+      }
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+      assertThat(workQueue.getNumRunningOperations()).isEqualTo(MAX_CONCURRENT_OPERATIONS);
+
+      for (int i = 0; i < CAPACITY; i++)
+      {
+        assertThat(workQueue.trySubmitOperation(newOperation(null, null))).isTrue();
+      }
+      assertThat(workQueue.trySubmitOperation(newOperation(null, null))).isFalse();
+      assertThat(workQueue.size()).isEqualTo(CAPACITY);
+      assertThat(workQueue.getOpsRejectedDueToQueueFull()).isEqualTo(1);
+    }
+    finally
+    {
+      release.countDown();
+    }
+    assertThat(workQueue.waitUntilIdle(10000)).isTrue();
+  }
+
+  @Test
+  public void testOperationsRunOnDirectoryThreads() throws Exception
+  {
+    final Thread[] thread = new Thread[1];
+    final CountDownLatch processed = new CountDownLatch(1);
+    final Operation operation = mock(Operation.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        thread[0] = Thread.currentThread();
+        processed.countDown();
+        return null;
+      }
+    }).when(operation).run();
+
+    workQueue.submitOperation(operation);
+
+    assertThat(processed.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(thread[0]).isInstanceOf(DirectoryThread.class);
+    assertThat(thread[0].getName()).startsWith("Worker Thread");
+  }
+
+  @Test
+  public void testSubmitOperationAfterShutdownIsRejected() throws Exception
+  {
+    workQueue.finalizeWorkQueue(LocalizableMessage.raw("shutting down"));
+    try
+    {
+      workQueue.submitOperation(newOperation(null, null));
+      failBecauseExceptionWasNotThrown(DirectoryException.class);
+    }
+    catch (DirectoryException e)
+    {
+      assertThat(e.getResultCode()).isEqualTo(ResultCode.UNAVAILABLE);
+    }
+  }
+
+  /** Returns an operation counting down the first latch, then waiting for the second one when run. */
+  private Operation newOperation(final CountDownLatch started, final CountDownLatch release)
+  {
+    final Operation operation = mock(Operation.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        if (started != null)
+        {
+          started.countDown();
+        }
+        if (release != null)
+        {
+          release.await(10, TimeUnit.SECONDS);
+        }
+        return null;
+      }
+    }).when(operation).run();
+    return operation;
+  }
+}
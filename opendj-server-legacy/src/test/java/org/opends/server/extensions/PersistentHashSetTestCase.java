@@ -0,0 +1,156 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+/**
+ * A set of test cases for the persistent hash set used by static groups.
+ */
+@SuppressWarnings("javadoc")
+public class PersistentHashSetTestCase extends ExtensionsTestCase
+{
+  /** An element whose hash code is chosen, to create collisions. */
+  private static final class Element
+  {
+    private final int hashCode;
+    private final int id;
+
+    private Element(int hashCode, int id)
+    {
+      this.hashCode = hashCode;
+      this.id = id;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return obj instanceof Element && ((Element) obj).id == id;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Element(" + hashCode + "," + id + ")";
+    }
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final PersistentHashSet<String> set = PersistentHashSet.empty();
+    assertThat(set).isEmpty();
+    assertThat(set.contains("a")).isFalse();
+    assertThat(set.minus("a")).isSameAs(set);
+    assertThat(PersistentHashSet.copyOf(new ArrayList<String>())).isEmpty();
+  }
+
+  @Test
+  public void testPlusAndMinusReturnSameSetWhenUnchanged()
+  {
+    final PersistentHashSet<String> set = PersistentHashSet.<String> empty().plus("a").plus("b");
+    assertThat(set.plus("a")).isSameAs(set);
+    assertThat(set.minus("c")).isSameAs(set);
+    assertThat(set.minus("a")).containsOnly("b");
+    assertThat(set.minus("a").minus("b")).isEmpty();
+  }
+
+  @Test
+  public void testIterationIsNotAffectedByNewVersions()
+  {
+    PersistentHashSet<Integer> set = PersistentHashSet.empty();
+    for (int i = 0; i < 1000; i++)
+    {
+      set = set.plus(i);
+    }
+    final PersistentHashSet<Integer> snapshot = set;
+    for (int i = 0; i < 1000; i += 2)
+    {
+      set = set.minus(i).plus(-i - 1);
+    }
+
+    assertThat(snapshot).hasSize(1000);
+    int count = 0;
+    for (Integer i : snapshot)
+    {
+      assertThat(i).isBetween(0, 999);
+      count++;
+    }
+    assertThat(count).isEqualTo(1000);
+    assertThat(set).hasSize(1000).contains(1, -1).doesNotContain(0);
+  }
+
+  @Test
+  public void testRandomOperationsMatchHashSet()
+  {
+    final Random random = new Random(0);
+    for (int round = 0; round < 20; round++)
+    {
+      // few hash codes for half of the rounds, to exercise collisions
+      final int nbHashCodes = round % 2 == 0 ? 8 : Integer.MAX_VALUE;
+      final List<Element> initialElements = new ArrayList<>();
+      for (int i = 0; i < 500; i++)
+      {
+        initialElements.add(new Element(random.nextInt(nbHashCodes), random.nextInt(1000)));
+      }
+      final Set<Element> expected = new HashSet<>(initialElements);
+      PersistentHashSet<Element> set = PersistentHashSet.copyOf(initialElements);
+      assertThat(set).isEqualTo(expected);
+
+      for (int i = 0; i < 2000; i++)
+      {
+        final Element element = new Element(random.nextInt(nbHashCodes), random.nextInt(1000));
+        if (random.nextBoolean())
+        {
+          expected.add(element);
+          set = set.plus(element);
+        }
+        else
+        {
+          expected.remove(element);
+          set = set.minus(element);
+        }
+      }
+      assertThat(set).hasSize(expected.size());
+      assertThat(set).isEqualTo(expected);
+      assertThat(new HashSet<>(set)).isEqualTo(expected);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.admin.std.server.WorkStealingWorkQueueCfg;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Operation;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * A set of test cases for the work-stealing work queue.
+ */
+@SuppressWarnings("javadoc")
+public class WorkStealingWorkQueueTestCase extends ExtensionsTestCase
+{
+  private static final int NUM_WORKER_THREADS = 4;
+  private static final int CAPACITY = 8;
+
+  private MonitorProvider<?> serverWorkQueueMonitor;
+  private WorkStealingWorkQueue workQueue;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void initializeWorkQueue() throws Exception
+  {
+    serverWorkQueueMonitor = DirectoryServer.getMonitorProvider("work queue");
+
+    final WorkStealingWorkQueueCfg cfg = mock(WorkStealingWorkQueueCfg.class);
+    when(cfg.getNumWorkerThreads()).thenReturn(NUM_WORKER_THREADS);
+    when(cfg.getMaxWorkQueueCapacity()).thenReturn(CAPACITY);
+    when(cfg.isConnectionAffinity()).thenReturn(true);
+    workQueue = new WorkStealingWorkQueue();
+    workQueue.initializeWorkQueue(cfg);
+  }
+
+  @AfterMethod
+  public void finalizeWorkQueue()
+  {
+    workQueue.finalizeWorkQueue(LocalizableMessage.raw("test finished"));
+    // the monitor of the test work queue replaced the monitor of the server work queue
+    DirectoryServer.registerMonitorProvider(serverWorkQueueMonitor);
+  }
+
+  @Test
+  public void testAllOperationsAreProcessed() throws Exception
+  {
+    final int nbOperations = 1000;
+    final CountDownLatch processed = new CountDownLatch(nbOperations);
+    for (int i = 0; i < nbOperations; i++)
+    {
+      // few connections, so that idle worker threads steal operations
+      workQueue.submitOperation(newOperation(i % 3, processed, null));
+    }
+
+    assertThat(processed.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(workQueue.waitUntilIdle(10000)).isTrue();
+    assertThat(workQueue.size()).isEqualTo(0);
+    assertThat(workQueue.getOpsSubmitted()).isEqualTo(nbOperations);
+  }
+
+  @Test
+  public void testTrySubmitOperationRejectsWhenAllQueuesAreFull() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(NUM_WORKER_THREADS);
+    final CountDownLatch release = new CountDownLatch(1);
+    try
+    {
+      // block all the worker threads
+      for (int i = 0; i < NUM_WORKER_THREADS; i++)
+      {
+        workQueue.submitOperation(newOperation(i, started, release));
+      }
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // operations go to the other queues when the queue of their connection is full
+      for (int i = 0; i < CAPACITY; i++)
+      {
+        assertThat(workQueue.trySubmitOperation(newOperation(0, null, null))).isTrue();
+      }
+      assertThat(workQueue.trySubmitOperation(newOperation(0, null, null))).isFalse();
+      assertThat(workQueue.size()).isEqualTo(CAPACITY);
+      assertThat(workQueue.getOpsRejectedDueToQueueFull()).isEqualTo(1);
+      assertThat(workQueue.isIdle()).isFalse();
+    }
+    finally
+    {
+      release.countDown();
+    }
+    assertThat(workQueue.waitUntilIdle(10000)).isTrue();
+  }
+
+  @Test
+  public void testCapacityLowerThanTheNumberOfQueuesIsNotExceeded() throws Exception
+  {
+    final WorkStealingWorkQueueCfg cfg = mock(WorkStealingWorkQueueCfg.class);
+    when(cfg.getNumWorkerThreads()).thenReturn(NUM_WORKER_THREADS);
+    when(cfg.getMaxWorkQueueCapacity()).thenReturn(1);
+    when(cfg.isConnectionAffinity()).thenReturn(true);
+    workQueue.applyConfigurationChange(cfg);
+
+    final CountDownLatch started = new CountDownLatch(NUM_WORKER_THREADS);
+    final CountDownLatch release = new CountDownLatch(1);
+    try
+    {
+      // block all the worker threads, waiting for a free slot between the operations
+      for (int i = 0; i < NUM_WORKER_THREADS; i++)
+      {
+        workQueue.submitOperation(newOperation(i, started, release));
+      }
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // whatever the queue of their connection, only one operation is queued
+      assertThat(workQueue.trySubmitOperation(newOperation(1, null, null))).isTrue();
+      for (int i = 0; i < NUM_WORKER_THREADS; i++)
+      {
+        assertThat(workQueue.trySubmitOperation(newOperation(i, null, null))).isFalse();
+      }
+      assertThat(workQueue.size()).isEqualTo(1);
+    }
+    finally
+    {
+      release.countDown();
+    }
+    assertThat(workQueue.waitUntilIdle(10000)).isTrue();
+  }
+
+  @Test
+  public void testSubmitOperationAfterShutdownIsRejected() throws Exception
+  {
+    workQueue.finalizeWorkQueue(LocalizableMessage.raw("shutting down"));
+    try
+    {
+      workQueue.submitOperation(newOperation(0, null, null));
+      failBecauseExceptionWasNotThrown(DirectoryException.class);
+    }
+    catch (DirectoryException e)
+    {
+      assertThat(e.getResultCode()).isEqualTo(ResultCode.UNAVAILABLE);
+    }
+  }
+
+  private static final AtomicInteger nextOperationID = new AtomicInteger();
+
+  /** Returns an operation counting down the first latch, then waiting for the second one when run. */
+  private Operation newOperation(long connectionID, final CountDownLatch started, final CountDownLatch release)
+  {
+    final Operation operation = mock(Operation.class);
+    when(operation.getConnectionID()).thenReturn(connectionID);
+    when(operation.getOperationID()).thenReturn((long) nextOperationID.incrementAndGet());
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable
+      {
+        if (started != null)
+        {
+          started.countDown();
+        }
+        if (release != null)
+        {
+          release.await(10, TimeUnit.SECONDS);
+        }
+        return null;
+      }
+    }).when(operation).run();
+    return operation;
+  }
+}
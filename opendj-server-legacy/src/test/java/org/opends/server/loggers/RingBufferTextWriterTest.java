@@ -0,0 +1,171 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.loggers;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.types.DN;
+import org.opends.server.types.FilePermission;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RingBufferTextWriterTest extends DirectoryServerTestCase
+{
+  private static final int NB_THREADS = 4;
+  private static final int NB_RECORDS_PER_THREAD = 5000;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startFakeServer();
+  }
+
+  @Test
+  public void testAllRecordsAreWrittenInOrderPerThread() throws Exception
+  {
+    final File logFile = newLogFile();
+    // a small queue and batch make the writers wait and the batches split records
+    final RingBufferTextWriter writer =
+        new RingBufferTextWriter("test ring writer", 16, false, 1024, newFileWriter(logFile));
+
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < NB_THREADS; t++)
+    {
+      final int threadNumber = t;
+      threads.add(new Thread()
+      {
+        @Override
+        public void run()
+        {
+          final StringBuilder buffer = new StringBuilder();
+          for (int i = 0; i < NB_RECORDS_PER_THREAD; i++)
+          {
+            buffer.setLength(0);
+            buffer.append("thread=").append(threadNumber).append(" record=").append(i);
+            if (i % 100 == 0)
+            {
+              // non ASCII characters, including a supplementary character
+              buffer.append(" cn=J\u00f6rg \u4e2d\u6587 \ud83d\ude00");
+            }
+            writer.writeRecord(buffer);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    writer.shutdown();
+
+    final List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(NB_THREADS * NB_RECORDS_PER_THREAD);
+    final int[] nextRecord = new int[NB_THREADS];
+    for (String line : lines)
+    {
+      final String[] fields = line.split(" ");
+      final int threadNumber = Integer.parseInt(fields[0].substring("thread=".length()));
+      final int recordNumber = Integer.parseInt(fields[1].substring("record=".length()));
+      assertThat(recordNumber).isEqualTo(nextRecord[threadNumber]++);
+      if (recordNumber % 100 == 0)
+      {
+        assertThat(line).endsWith(" cn=J\u00f6rg \u4e2d\u6587 \ud83d\ude00");
+      }
+    }
+    assertThat(writer.getDroppedRecords()).isZero();
+    assertThat(writer.getBytesWritten()).isEqualTo(logFile.length());
+  }
+
+  @Test
+  public void testRecordsLargerThanTheBatchAreWritten() throws Exception
+  {
+    final File logFile = newLogFile();
+    final RingBufferTextWriter writer =
+        new RingBufferTextWriter("test ring writer", 4, false, 0, newFileWriter(logFile));
+    final StringBuilder largeRecord = new StringBuilder();
+    while (largeRecord.length() < 200 * 1024)
+    {
+      largeRecord.append("large record ");
+    }
+
+    writer.writeRecord("small record");
+    writer.writeRecord(largeRecord.toString());
+    writer.writeRecord("small record");
+    writer.shutdown();
+
+    final List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+    assertThat(lines).containsExactly("small record", largeRecord.toString(), "small record");
+  }
+
+  @Test
+  public void testDropPolicyCountsDroppedRecords() throws Exception
+  {
+    final File logFile = newLogFile();
+    final RingBufferTextWriter writer =
+        new RingBufferTextWriter("test ring writer", 2, true, 0, newFileWriter(logFile));
+    final int nbRecords = 100000;
+    for (int i = 0; i < nbRecords; i++)
+    {
+      writer.writeRecord("record " + i);
+    }
+    writer.shutdown();
+
+    final List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+    assertThat(lines.size() + writer.getDroppedRecords()).isEqualTo(nbRecords);
+    assertThat(writer.getBlockedRecords()).isZero();
+    final Set<String> uniqueLines = new HashSet<>(lines);
+    assertThat(uniqueLines).hasSize(lines.size());
+  }
+
+  private File newLogFile() throws Exception
+  {
+    final File logFile = File.createTempFile("ring-buffer-writer-", ".log");
+    logFile.deleteOnExit();
+    return logFile;
+  }
+
+  private MultifileTextWriter newFileWriter(File logFile) throws Exception
+  {
+    return new MultifileTextWriter("test file writer", 5000, new TimeStampNaming(logFile),
+        FilePermission.decodeUNIXMode("640"), new LogPublisherErrorHandler(DN.valueOf("cn=test")), "UTF-8",
+        false, false, 0);
+  }
+}
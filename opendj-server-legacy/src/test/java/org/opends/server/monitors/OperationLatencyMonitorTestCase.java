@@ -0,0 +1,158 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.monitors;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.opends.server.util.ServerConstants.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.tools.LDAPSearch;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.OperationType;
+import org.testng.annotations.Test;
+
+/** This class defines a set of tests for the {@link OperationLatencyMonitor} class. */
+@Test
+public class OperationLatencyMonitorTestCase extends GenericMonitorTestCase
+{
+  /**
+   * Creates a new instance of this test case class.
+   *
+   * @throws  Exception  If an unexpected problem occurred.
+   */
+  public OperationLatencyMonitorTestCase() throws Exception
+  {
+    super(null);
+  }
+
+  @Override
+  protected MonitorProvider getMonitorInstance() throws Exception
+  {
+    MonitorProvider<? extends MonitorProviderCfg> provider =
+         DirectoryServer.getMonitorProvider("operation latency");
+    provider.initializeMonitorProvider(null);
+    return provider;
+  }
+
+  @Test
+  public void testClientSearchIsReportedByServerAndBackend() throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+    String[] args =
+    {
+      "--noPropertiesFile",
+      "-h", "127.0.0.1",
+      "-p", String.valueOf(TestCaseUtils.getServerLdapPort()),
+      "-b", "o=test",
+      "-s", "base",
+      "(objectClass=*)"
+    };
+    assertEquals(LDAPSearch.mainSearch(args, false, null, System.err), 0);
+
+    List<Attribute> serverData = getMonitorInstance().getMonitorData();
+    assertThat(getCount(serverData, ATTR_MONITOR_OPERATION_RESPONSE_TIME, "search")).isGreaterThan(0);
+    assertThat(getCount(serverData, ATTR_MONITOR_RECENT_OPERATION_RESPONSE_TIME, "search")).isGreaterThan(0);
+
+    List<Attribute> backendData = DirectoryServer.getMonitorProvider("test backend").getMonitorData();
+    assertThat(getCount(backendData, ATTR_MONITOR_OPERATION_PROCESSING_TIME, "search")).isGreaterThan(0);
+  }
+
+  @Test
+  public void testRecordAndReset() throws Exception
+  {
+    OperationLatencyStatistics statistics = new OperationLatencyStatistics();
+    long now = System.currentTimeMillis();
+    statistics.record(OperationType.MODIFY, now, 10, 100);
+    statistics.record(OperationType.MODIFY, now, 20, 200);
+    statistics.record(OperationType.ABANDON, now, 10, 100);
+
+    List<Attribute> data = getMonitorData(statistics);
+    assertEquals(getValue(data, ATTR_MONITOR_OPERATION_QUEUE_WAIT_TIME, "modify"),
+        "modify count=2 mean=15 p50=10 p90=20 p99=20 p99.9=20 max=20");
+    assertEquals(getValue(data, ATTR_MONITOR_OPERATION_RESPONSE_TIME, "modify"),
+        "modify count=2 mean=165 p50=110 p90=220 p99=220 p99.9=220 max=220");
+    assertNull(getValue(data, ATTR_MONITOR_OPERATION_RESPONSE_TIME, "abandon"));
+
+    statistics.reset();
+    data = getMonitorData(statistics);
+    assertEquals(getCount(data, ATTR_MONITOR_OPERATION_PROCESSING_TIME, "modify"), 0);
+    assertEquals(getCount(data, ATTR_MONITOR_RECENT_OPERATION_PROCESSING_TIME, "modify"), 2);
+  }
+
+  @Test
+  public void testSlidingWindowForgetsOldIntervals() throws Exception
+  {
+    OperationLatencyStatistics.WindowedHistogram histogram = new OperationLatencyStatistics.WindowedHistogram();
+    long now = System.currentTimeMillis();
+    histogram.record(100, now - OperationLatencyStatistics.WINDOW_DURATION_MS);
+    histogram.record(200, now);
+
+    assertEquals(histogram.getCumulative().getTotalCount(), 2);
+    assertEquals(histogram.getWindow(now).getTotalCount(), 1);
+    assertEquals(histogram.getWindow(now).getMax(), 200);
+  }
+
+  private List<Attribute> getMonitorData(OperationLatencyStatistics statistics)
+  {
+    List<Attribute> data = new ArrayList<>();
+    statistics.addMonitorData(data);
+    return data;
+  }
+
+  private String getValue(List<Attribute> data, String attributeName, String operationName)
+  {
+    for (Attribute attribute : data)
+    {
+      if (attribute.getName().equalsIgnoreCase(attributeName))
+      {
+        for (ByteString value : attribute)
+        {
+          if (value.toString().startsWith(operationName + " "))
+          {
+            return value.toString();
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private long getCount(List<Attribute> data, String attributeName, String operationName)
+  {
+    String value = getValue(data, attributeName, operationName);
+    assertNotNull(value, attributeName + " has no value for " + operationName);
+    String count = value.substring(value.indexOf("count=") + "count=".length());
+    return Long.parseLong(count.substring(0, count.indexOf(' ')));
+  }
+}
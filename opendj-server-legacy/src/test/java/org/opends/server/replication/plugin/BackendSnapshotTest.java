@@ -0,0 +1,134 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.replication.plugin;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class BackendSnapshotTest extends DirectoryServerTestCase
+{
+  private static final String FORMAT = "org.opends.server.backends.pdb.PDBBackend/3.0.0";
+
+  private File source;
+  private File target;
+  private DN baseDN;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+    baseDN = DN.valueOf("dc=example,dc=com");
+  }
+
+  @BeforeMethod
+  public void createDirectories() throws Exception
+  {
+    source = Files.createTempDirectory("snapshot-source").toFile();
+    target = Files.createTempDirectory("snapshot-target").toFile();
+    Files.write(new File(source, "backup.info").toPath(), "backup descriptor".getBytes());
+    final byte[] archive = new byte[200 * 1024];
+    for (int i = 0; i < archive.length; i++)
+    {
+      archive[i] = (byte) (i * 31);
+    }
+    Files.write(new File(source, "backup-userRoot-1").toPath(), archive);
+  }
+
+  @AfterMethod
+  public void deleteDirectories()
+  {
+    recursiveDelete(source);
+    recursiveDelete(target);
+  }
+
+  @Test
+  public void testFilesReadAreTheFilesWritten() throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BackendSnapshot.writeFiles(source, "1", FORMAT, output);
+
+    final String backupID =
+        BackendSnapshot.readFiles(new ByteArrayInputStream(output.toByteArray()), target, baseDN, FORMAT);
+
+    assertThat(backupID).isEqualTo("1");
+    assertThat(target.list()).containsOnly("backup.info", "backup-userRoot-1");
+    for (String name : source.list())
+    {
+      assertThat(Files.readAllBytes(new File(target, name).toPath()))
+          .isEqualTo(Files.readAllBytes(new File(source, name).toPath()));
+    }
+  }
+
+  @Test(expectedExceptions = DirectoryException.class)
+  public void testCorruptedFilesAreRejected() throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BackendSnapshot.writeFiles(source, "1", FORMAT, output);
+    final byte[] bytes = output.toByteArray();
+    bytes[bytes.length / 2] ^= 1;
+
+    BackendSnapshot.readFiles(new ByteArrayInputStream(bytes), target, baseDN, FORMAT);
+  }
+
+  @Test(expectedExceptions = DirectoryException.class)
+  public void testUnknownFormatIsRejected() throws Exception
+  {
+    BackendSnapshot.readFiles(new ByteArrayInputStream(new byte[64]), target, baseDN, FORMAT);
+  }
+
+  @Test
+  public void testSnapshotOfAnotherFormatIsRejectedBeforeWritingFiles() throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BackendSnapshot.writeFiles(source, "1", "org.opends.server.backends.jeb.JEBackend/3.0.0", output);
+
+    try
+    {
+      BackendSnapshot.readFiles(new ByteArrayInputStream(output.toByteArray()), target, baseDN, FORMAT);
+      fail("Expected DirectoryException");
+    }
+    catch (DirectoryException e)
+    {
+      assertThat(e.getMessageObject().toString()).contains("JEBackend");
+    }
+    assertThat(target.list()).isEmpty();
+  }
+}
@@ -326,6 +326,12 @@ public class DomainFakeCfg implements ReplicationDomainCfg
     return true;
   }
 
+  @Override
+  public boolean isSnapshotInitialization()
+  {
+    return false;
+  }
+
   /**
    * Gets the "conflicts-historical-purge-delay" property.
    * <p>
@@ -1094,6 +1094,11 @@ public class SynchronizationMsgTest extends ReplicationTestCase
     assertEquals(msg.getSenderID(), newMsg.getSenderID());
     assertEquals(msg.getDestination(), newMsg.getDestination());
     assertEquals(msg.getBaseDN(), newMsg.getBaseDN());
+    assertNull(newMsg.getSnapshotFormat());
+
+    msg.setSnapshotFormat("org.opends.server.backends.pdb.PDBBackend/3.0.0");
+    newMsg = new InitializeRequestMsg(msg.getBytes(getCurrentVersion()), getCurrentVersion());
+    assertEquals(newMsg.getSnapshotFormat(), "org.opends.server.backends.pdb.PDBBackend/3.0.0");
   }
 
   /**
@@ -1122,6 +1127,12 @@ public class SynchronizationMsgTest extends ReplicationTestCase
     assertEquals(requestorID, newMsg.getInitiatorID());
     assertEquals(entryCount, newMsg.getEntryCount());
     assertEquals(TEST_ROOT_DN, newMsg.getBaseDN());
+    assertFalse(newMsg.isSnapshot());
+
+    msg.setSnapshotFormat("org.opends.server.backends.pdb.PDBBackend/3.0.0");
+    newMsg = new InitializeTargetMsg(msg.getBytes(getCurrentVersion()), getCurrentVersion());
+    assertTrue(newMsg.isSnapshot());
+    assertEquals(newMsg.getSnapshotFormat(), "org.opends.server.backends.pdb.PDBBackend/3.0.0");
   }
 
   /**
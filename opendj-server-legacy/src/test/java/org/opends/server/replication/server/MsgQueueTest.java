@@ -0,0 +1,161 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.replication.server;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.opends.server.replication.ReplicationTestCase;
+import org.opends.server.replication.common.CSN;
+import org.opends.server.replication.protocol.UpdateMsg;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class MsgQueueTest extends ReplicationTestCase
+{
+  @Test
+  public void testMessagesAreOrderedByCSN()
+  {
+    final MsgQueue queue = new MsgQueue();
+    queue.add(newUpdateMsg(3, 1));
+    queue.add(newUpdateMsg(1, 2));
+    queue.add(newUpdateMsg(2, 1));
+
+    assertThat(queue.count()).isEqualTo(3);
+    assertThat(queue.bytesCount()).isEqualTo(3 * newUpdateMsg(1, 1).size());
+    assertThat(queue.first().getCSN()).isEqualTo(csn(1, 2));
+    assertThat(queue.removeFirst().getCSN()).isEqualTo(csn(1, 2));
+    assertThat(queue.removeFirst().getCSN()).isEqualTo(csn(2, 1));
+    assertThat(queue.removeFirst().getCSN()).isEqualTo(csn(3, 1));
+    assertThat(queue.removeFirst()).isNull();
+    assertThat(queue.first()).isNull();
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.bytesCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testAddingSameMessageTwiceIsCountedOnce()
+  {
+    final MsgQueue queue = new MsgQueue();
+    queue.add(newUpdateMsg(1, 1));
+    queue.add(newUpdateMsg(1, 1));
+
+    assertThat(queue.count()).isEqualTo(1);
+    assertThat(queue.bytesCount()).isEqualTo(newUpdateMsg(1, 1).size());
+  }
+
+  @Test
+  public void testConsumeUpTo()
+  {
+    final MsgQueue queue = new MsgQueue();
+    for (int i = 1; i <= 5; i++)
+    {
+      queue.add(newUpdateMsg(i, 1));
+    }
+
+    queue.consumeUpTo(newUpdateMsg(3, 1));
+    assertThat(queue.count()).isEqualTo(2);
+    assertThat(queue.first().getCSN()).isEqualTo(csn(4, 1));
+
+    queue.clear();
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.count()).isEqualTo(0);
+    assertThat(queue.bytesCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumer() throws Exception
+  {
+    final MsgQueue queue = new MsgQueue();
+    final int nbProducers = 4;
+    final int nbMsgsPerProducer = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < nbProducers; i++)
+    {
+      final int serverId = i + 1;
+      final Thread producer = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+          }
+          catch (InterruptedException e)
+          {
+            return;
+          }
+          for (int t = 1; t <= nbMsgsPerProducer; t++)
+          {
+            queue.add(newUpdateMsg(t, serverId));
+          }
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+
+    start.countDown();
+    int consumed = 0;
+    final int[] lastTimes = new int[nbProducers + 1];
+    while (consumed < nbProducers * nbMsgsPerProducer)
+    {
+      final UpdateMsg msg = queue.removeFirst();
+      if (msg != null)
+      {
+        // Messages from the same replica are consumed in CSN order
+        final CSN csn = msg.getCSN();
+        assertThat((int) csn.getTime()).isGreaterThan(lastTimes[csn.getServerId()]);
+        lastTimes[csn.getServerId()] = (int) csn.getTime();
+        consumed++;
+      }
+    }
+    for (Thread producer : producers)
+    {
+      producer.join();
+    }
+
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.count()).isEqualTo(0);
+    assertThat(queue.bytesCount()).isEqualTo(0);
+    assertThat(queue.getMaxTimeInQueue()).isGreaterThanOrEqualTo(queue.getAverageTimeInQueue());
+  }
+
+  private static CSN csn(int time, int serverId)
+  {
+    return new CSN(time, 0, serverId);
+  }
+
+  private static UpdateMsg newUpdateMsg(int time, int serverId)
+  {
+    return new UpdateMsg(csn(time, serverId), new byte[1]);
+  }
+}
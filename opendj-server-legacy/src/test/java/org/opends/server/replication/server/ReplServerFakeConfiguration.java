@@ -256,4 +256,28 @@ public class ReplServerFakeConfiguration implements ReplicationServerCfg
   {
     this.computeChangenumber = computeChangenumber;
   }
+
+  @Override
+  public boolean isChangelogMemoryMappedReads()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean isChangelogGroupCommitEnabled()
+  {
+    return false;
+  }
+
+  @Override
+  public long getChangelogGroupCommitInterval()
+  {
+    return 5;
+  }
+
+  @Override
+  public long getChangelogGroupCommitMaxSize()
+  {
+    return 1024 * 1024;
+  }
 }
@@ -0,0 +1,232 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.replication.server.changelog.file;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.server.changelog.api.ChangelogException;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ChangelogGroupCommitterTest extends DirectoryServerTestCase
+{
+  private static final long ONE_HOUR = 3600 * 1000;
+
+  @Test(timeOut = 10000)
+  public void testChangesAppendedConcurrentlyAreSyncedTogether() throws Exception
+  {
+    final ChangelogGroupCommitter committer = newCommitter(100, Long.MAX_VALUE);
+    try
+    {
+      final int nbWriters = 8;
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicReference<Throwable> error = new AtomicReference<>();
+      final List<FileReplicaDB> replicaDBs = new ArrayList<>();
+      final List<Thread> writers = new ArrayList<>();
+      for (int i = 0; i < nbWriters; i++)
+      {
+        final FileReplicaDB replicaDB = mock(FileReplicaDB.class);
+        replicaDBs.add(replicaDB);
+        final Thread writer = new Thread(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            try
+            {
+              start.await();
+              committer.changeAppendedAndAwaitSync(replicaDB, 100);
+            }
+            catch (Throwable t)
+            {
+              error.set(t);
+            }
+          }
+        });
+        writer.start();
+        writers.add(writer);
+      }
+
+      start.countDown();
+      for (Thread writer : writers)
+      {
+        writer.join();
+      }
+
+      assertThat(error.get()).isNull();
+      assertThat(committer.getNumberOfSyncedChanges()).isEqualTo(nbWriters);
+      assertThat(committer.getNumberOfSyncs()).isLessThan(nbWriters);
+      for (FileReplicaDB replicaDB : replicaDBs)
+      {
+        verify(replicaDB).syncToFileSystem();
+      }
+    }
+    finally
+    {
+      stop(committer);
+    }
+  }
+
+  @Test(timeOut = 10000)
+  public void testSyncIsTriggeredByMaxSize() throws Exception
+  {
+    final ChangelogGroupCommitter committer = newCommitter(ONE_HOUR, 1000);
+    try
+    {
+      final FileReplicaDB replicaDB = mock(FileReplicaDB.class);
+      committer.changeAppendedAndAwaitSync(replicaDB, 2000);
+
+      verify(replicaDB).syncToFileSystem();
+      assertThat(committer.getNumberOfSyncs()).isEqualTo(1);
+    }
+    finally
+    {
+      stop(committer);
+    }
+  }
+
+  @Test(timeOut = 10000, expectedExceptions = ChangelogException.class)
+  public void testSyncFailureIsReportedToWaiter() throws Exception
+  {
+    final ChangelogGroupCommitter committer = newCommitter(1, Long.MAX_VALUE);
+    try
+    {
+      final FileReplicaDB replicaDB = mock(FileReplicaDB.class);
+      doThrow(new ChangelogException(LocalizableMessage.raw("expected"))).when(replicaDB).syncToFileSystem();
+
+      committer.changeAppendedAndAwaitSync(replicaDB, 100);
+    }
+    finally
+    {
+      stop(committer);
+    }
+  }
+
+  @Test(timeOut = 10000)
+  public void testSyncFailureIsOnlyReportedToWaitersOfTheFailedBatch() throws Exception
+  {
+    final ChangelogGroupCommitter committer = newCommitter(1, Long.MAX_VALUE);
+    try
+    {
+      final FileReplicaDB failingReplicaDB = mock(FileReplicaDB.class);
+      doThrow(new ChangelogException(LocalizableMessage.raw("expected"))).when(failingReplicaDB).syncToFileSystem();
+      final AtomicReference<Throwable> laterError = new AtomicReference<>();
+      final Thread laterWriter = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            committer.changeAppendedAndAwaitSync(failingReplicaDB, 100);
+          }
+          catch (Throwable t)
+          {
+            laterError.set(t);
+          }
+        }
+      });
+
+      // the change of the failing batch is appended while the first batch is synchronized
+      final FileReplicaDB replicaDB = mock(FileReplicaDB.class);
+      doAnswer(new Answer<Void>()
+      {
+        @Override
+        public Void answer(InvocationOnMock invocation) throws Throwable
+        {
+          laterWriter.start();
+          while (laterWriter.getState() != Thread.State.WAITING)
+          {
+            Thread.sleep(1);
+          }
+          return null;
+        }
+      }).when(replicaDB).syncToFileSystem();
+
+      // must not report the failure of the next batch, whenever this thread wakes up
+      committer.changeAppendedAndAwaitSync(replicaDB, 100);
+
+      laterWriter.join();
+      assertThat(laterError.get()).isInstanceOf(ChangelogException.class);
+      assertThat(committer.getNumberOfSyncs()).isEqualTo(2);
+    }
+    finally
+    {
+      stop(committer);
+    }
+  }
+
+  @Test(timeOut = 10000)
+  public void testPendingChangesAreSyncedOnShutdown() throws Exception
+  {
+    final ChangelogGroupCommitter committer = newCommitter(ONE_HOUR, Long.MAX_VALUE);
+    final FileReplicaDB replicaDB = mock(FileReplicaDB.class);
+    committer.changeAppended(replicaDB, 100);
+    verify(replicaDB, never()).syncToFileSystem();
+
+    stop(committer);
+
+    verify(replicaDB).syncToFileSystem();
+  }
+
+  @Test(timeOut = 10000)
+  public void testChangesAppendedToStoppedCommitterAreSyncedByWaiters() throws Exception
+  {
+    final ChangelogGroupCommitter committer = newCommitter(ONE_HOUR, Long.MAX_VALUE);
+    stop(committer);
+
+    // for example a thread still using a group committer replaced at runtime
+    final FileReplicaDB replicaDB = mock(FileReplicaDB.class);
+    assertThat(committer.changeAppended(replicaDB, 100)).isEqualTo(0);
+    verify(replicaDB, never()).syncToFileSystem();
+
+    committer.changeAppendedAndAwaitSync(replicaDB, 100);
+    verify(replicaDB).syncToFileSystem();
+  }
+
+  private ChangelogGroupCommitter newCommitter(long intervalInMillis, long maxSizeInBytes)
+  {
+    final ChangelogGroupCommitter committer = new ChangelogGroupCommitter(intervalInMillis, maxSizeInBytes, null);
+    committer.start();
+    return committer;
+  }
+
+  private void stop(ChangelogGroupCommitter committer) throws InterruptedException
+  {
+    committer.initiateShutdown();
+    committer.join();
+  }
+}
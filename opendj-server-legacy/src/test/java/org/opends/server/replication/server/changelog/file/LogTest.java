@@ -32,6 +32,7 @@ import static org.opends.server.replication.server.changelog.api.DBCursor.Positi
 import static org.opends.server.replication.server.changelog.file.LogFileTest.*;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.opends.server.DirectoryServerTestCase;
@@ -49,6 +50,8 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.forgerock.opendj.util.OperatingSystem;
+
 @SuppressWarnings("javadoc")
 @Test(sequential=true)
 public class LogTest extends DirectoryServerTestCase
@@ -79,6 +82,12 @@ public class LogTest extends DirectoryServerTestCase
   }
 
   private Log<String, String> openLog(RecordParser<String, String> parser) throws ChangelogException
+  {
+    return openLog(parser, false);
+  }
+
+  private Log<String, String> openLog(RecordParser<String, String> parser, boolean memoryMappedRead)
+      throws ChangelogException
   {
     // Each string record has a length of approximately 18 bytes
     // This size is set in order to have 2 records per log file before the rotation happens
@@ -89,6 +98,7 @@ public class LogTest extends DirectoryServerTestCase
     final LogRotationParameters rotationParams = new LogRotationParameters(sizeLimitPerFileInBytes,
         NO_TIME_BASED_LOG_ROTATION, NO_TIME_BASED_LOG_ROTATION);
     final ReplicationEnvironment replicationEnv = mock(ReplicationEnvironment.class);
+    when(replicationEnv.isMemoryMappedReadEnabled()).thenReturn(memoryMappedRead);
 
     return Log.openLog(replicationEnv, LOG_DIRECTORY, parser, rotationParams);
   }
@@ -480,6 +490,62 @@ public class LogTest extends DirectoryServerTestCase
         }
       };
 
+  /**
+   * Similar to testPurgeWithConcurrentCursorOpened() test but with memory mapped reads:
+   * the purged log files must be deleted while the aborted cursor still holds its reader.
+   */
+  @Test
+  public void testPurgeWithConcurrentCursorOpenedOnMemoryMappedFiles() throws Exception
+  {
+    try (Log<String, String> log = openLog(LogFileTest.RECORD_PARSER, true);
+        DBCursor<Record<String, String>> concurrentCursor = log.getCursor())
+    {
+      concurrentCursor.next();
+      assertThat(concurrentCursor.getRecord()).isEqualTo(Record.from("key001", "value1"));
+
+      log.purgeUpTo("key005");
+
+      assertThat(Arrays.asList(LOG_DIRECTORY.list()))
+          .doesNotContain("key001_key002.log", "key003_key004.log")
+          .contains("key005_key006.log");
+      try (DBCursor<Record<String, String>> cursor = log.getCursor())
+      {
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.getRecord()).isEqualTo(Record.from("key005", "value5"));
+        assertThatCursorCanBeFullyRead(cursor, 6, 10);
+      }
+
+      try
+      {
+        concurrentCursor.next();
+        fail("Expected an AbortedChangelogCursorException");
+      }
+      catch (AbortedChangelogCursorException e) {
+        // nothing to do
+      }
+    }
+  }
+
+  @Test
+  public void testReaderPoolUnmapsFileWhenShutdownAndAllReadersReleased() throws Exception
+  {
+    final File file = new File(LOG_DIRECTORY, "key001_key002.log");
+    final boolean memoryMapped = !OperatingSystem.isWindows();
+    final LogReaderPool<String, String> pool = new LogReaderPool<>(file, LogFileTest.RECORD_PARSER, true);
+
+    final BlockLogReader<String, String> reader1 = pool.get();
+    final BlockLogReader<String, String> reader2 = pool.get();
+    assertThat(pool.isMappedForTests()).isEqualTo(memoryMapped);
+
+    pool.shutdown();
+    pool.release(reader1);
+    assertThat(pool.isMappedForTests()).isEqualTo(memoryMapped);
+
+    pool.release(reader2);
+    assertThat(pool.isMappedForTests()).isFalse();
+    assertThat(file.delete()).isTrue();
+  }
+
   @DataProvider
   Object[][] findBoundaryKeyData()
   {
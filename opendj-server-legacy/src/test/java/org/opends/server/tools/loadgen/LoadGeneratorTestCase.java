@@ -0,0 +1,162 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.loadgen;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.opends.server.TestCaseUtils.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.opends.server.TestCaseUtils;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.tools.ToolsTestCase;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LoadGeneratorTestCase extends ToolsTestCase
+{
+  private static final int NB_USERS = 20;
+
+  private String templatePath;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+    TestCaseUtils.initializeTestBackend(true);
+    for (int i = 0; i < NB_USERS; i++)
+    {
+      TestCaseUtils.addEntry(
+          "dn: uid=user." + i + "," + TEST_ROOT_DN_STRING,
+          "objectClass: top",
+          "objectClass: person",
+          "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson",
+          "uid: user." + i,
+          "cn: User " + i,
+          "sn: User",
+          "userPassword: password");
+    }
+
+    templatePath = TestCaseUtils.createTempFile(
+        "define suffix=" + TEST_ROOT_DN_STRING,
+        "",
+        "branch: [suffix]",
+        "subordinateTemplate: person:" + NB_USERS,
+        "",
+        "template: person",
+        "rdnAttr: uid",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user.<sequential:0>",
+        "cn: User {uid}",
+        "sn: User",
+        "userPassword: password");
+  }
+
+  @Test
+  public void testAddDeleteProfileDeletesAddedEntries() throws Exception
+  {
+    final Map<String, String[]> totals = run("--profile", "addDelete", "--numConnections", "2", "--maxInFlight", "4");
+
+    assertThat(totals.keySet()).containsOnly("add", "delete");
+    assertNoErrors(totals.get("add"));
+    assertNoErrors(totals.get("delete"));
+    assertThat(getTestBackendEntryCount()).isEqualTo(NB_USERS + 1);
+  }
+
+  @Test
+  public void testMixedProfileReportsEachOperation() throws Exception
+  {
+    final Map<String, String[]> totals = run("--profile", "mixed", "--mix", "search:2,modify:1,addDelete:1,bind:1");
+
+    assertThat(totals.keySet()).containsOnly("search", "modify", "add", "delete", "bind");
+    for (String[] total : totals.values())
+    {
+      assertNoErrors(total);
+    }
+    assertThat(getTestBackendEntryCount()).isEqualTo(NB_USERS + 1);
+  }
+
+  @Test
+  public void testTargetRateIsNotExceeded() throws Exception
+  {
+    final Map<String, String[]> totals = run("--profile", "search", "--targetRate", "50", "--maxInFlight", "8");
+
+    assertNoErrors(totals.get("search"));
+    assertThat(Double.parseDouble(totals.get("search")[2])).isLessThanOrEqualTo(60);
+  }
+
+  @Test
+  public void testInvalidMixIsRejected() throws Exception
+  {
+    final String[] args = { "--embedded", "--templateFile", templatePath, "--profile", "mixed", "--mix", "compare:1" };
+    assertThat(LoadGenerator.mainLoadGenerator(args, false, null, null)).isNotEqualTo(0);
+  }
+
+  /** Runs the load generator for one second, and returns the columns of the totals for each operation type. */
+  private Map<String, String[]> run(String... profileArgs)
+  {
+    final String[] commonArgs = { "--embedded", "--templateFile", templatePath, "--duration", "1", "--warmUp", "0",
+      "--statsInterval", "1", "--csv" };
+    final String[] args = new String[commonArgs.length + profileArgs.length];
+    System.arraycopy(commonArgs, 0, args, 0, commonArgs.length);
+    System.arraycopy(profileArgs, 0, args, commonArgs.length, profileArgs.length);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertThat(LoadGenerator.mainLoadGenerator(args, false, out, err)).as(err.toString()).isEqualTo(0);
+
+    final String[] lines = out.toString().split("\\r?\\n");
+    assertThat(lines[0]).isEqualTo("time,op,throughput,errors,mean,p50,p90,p99,p99.9,max");
+    final Map<String, String[]> totals = new HashMap<>();
+    for (String line : lines)
+    {
+      final String[] columns = line.split(",");
+      if ("total".equals(columns[0]))
+      {
+        totals.put(columns[1], columns);
+      }
+    }
+    return totals;
+  }
+
+  private void assertNoErrors(String[] total)
+  {
+    assertThat(Double.parseDouble(total[2])).as("throughput").isGreaterThan(0);
+    assertThat(total[3]).as("errors").isEqualTo("0");
+  }
+
+  private long getTestBackendEntryCount()
+  {
+    return DirectoryServer.getBackend(TEST_BACKEND_ID).getEntryCount();
+  }
+}
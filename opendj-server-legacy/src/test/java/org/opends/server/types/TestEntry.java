@@ -36,6 +36,7 @@ import org.assertj.core.api.Assertions;
 import org.forgerock.i18n.LocalizableMessageBuilder;
 import org.forgerock.i18n.LocalizedIllegalArgumentException;
 import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.opends.server.TestCaseUtils;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.schema.AttributeTypeSyntax;
@@ -982,5 +983,87 @@ public final class TestEntry extends TypesTestCase {
     attrs = e.getOperationalAttribute(mnType, options);
     assertNull(attrs);
   }
-}
 
+  /**
+   * Tests that the values of a lazily decoded entry are only decoded when
+   * first accessed.
+   *
+   * @throws Exception
+   *           If the test failed unexpectedly.
+   */
+  @Test
+  public void testDecodeLazilyDecodesValuesOnFirstAccess() throws Exception
+  {
+    Entry entry = TestCaseUtils.makeEntry(
+        "dn: uid=user.0,ou=people,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: inetOrgPerson",
+        "uid: user.0",
+        "cn: User 0",
+        "sn: 0",
+        "description: first",
+        "description: second");
+    ByteStringBuilder buffer = new ByteStringBuilder();
+    entry.encode(buffer, new EntryEncodeConfig(false, true, true));
+
+    Entry decoded = Entry.decodeLazily(buffer.toByteString().asReader(),
+        DirectoryServer.getDefaultCompressedSchema());
+
+    LazyAttribute description = (LazyAttribute) decoded.getAttribute("description").get(0);
+    LazyAttribute cn = (LazyAttribute) decoded.getAttribute("cn").get(0);
+    assertFalse(description.isDecoded());
+    assertTrue(description.contains(ByteString.valueOfUtf8("second")));
+    assertTrue(description.isDecoded());
+    assertFalse(cn.isDecoded());
+    assertEquals(description.size(), 2);
+
+    assertEquals(decoded, entry);
+  }
+
+  /**
+   * Tests that the number of values of the attributes of a lazily decoded
+   * entry is known without decoding them, and that the copy of the entry
+   * kept by the entry cache does not depend on the buffer it has been
+   * decoded from.
+   *
+   * @throws Exception
+   *           If the test failed unexpectedly.
+   */
+  @Test
+  public void testDecodeLazilyAndDuplicateForEntryCache() throws Exception
+  {
+    Entry entry = TestCaseUtils.makeEntry(
+        "dn: uid=user.0,ou=people,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: inetOrgPerson",
+        "uid: user.0",
+        "cn: User 0",
+        "sn: 0",
+        "description: first",
+        "description: second");
+    ByteStringBuilder buffer = new ByteStringBuilder();
+    entry.encode(buffer, new EntryEncodeConfig(false, true, true));
+
+    Entry decoded = Entry.decodeLazily(buffer.asReader(),
+        DirectoryServer.getDefaultCompressedSchema());
+    LazyAttribute description = (LazyAttribute) decoded.getAttribute("description").get(0);
+    assertEquals(description.size(), 2);
+    assertFalse(description.isDecoded());
+    Entry cached = decoded.duplicateForEntryCache();
+    assertEquals(decoded, entry);
+    assertTrue(description.isDecoded());
+
+    // the buffer may be reused once the entry has been duplicated for the entry cache
+    buffer.clear();
+    for (int i = 0; i < 1024; i++)
+    {
+      buffer.appendByte(0xFF);
+    }
+    LazyAttribute cachedDescription = (LazyAttribute) cached.getAttribute("description").get(0);
+    assertNotSame(cachedDescription, description);
+    assertFalse(cachedDescription.isDecoded());
+    assertEquals(cached, entry);
+  }
+}
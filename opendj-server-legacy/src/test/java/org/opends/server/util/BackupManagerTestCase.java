@@ -33,8 +33,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
@@ -130,6 +132,26 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
     BackupConfig backupConfig6 = new BackupConfig(backupDir6, BACKUP_ID, false);
     RestoreConfig restoreConfig6 = new RestoreConfig(backupDir6, BACKUP_ID, false);
 
+    String label7 = "chunked";
+    Backupable backupable7 = buildBackupableForMultipleDirectoriesCase(createSourceDirectory(label7), 3);
+    BackupDirectory backupDir7 = buildBackupDir(label7);
+    BackupConfig backupConfig7 = new BackupConfig(backupDir7, BACKUP_ID, false);
+    backupConfig7.setChunked(true);
+    backupConfig7.setHashData(true);
+    RestoreConfig restoreConfig7 = new RestoreConfig(backupDir7, BACKUP_ID, false);
+
+    String label8 = "chunked_encrypted_compressed_signedhash";
+    Backupable backupable8 = buildBackupable(createSourceDirectory(label8), 3);
+    BackupDirectory backupDir8 = buildBackupDir(label8);
+    BackupConfig backupConfig8 = new BackupConfig(backupDir8, BACKUP_ID, false);
+    backupConfig8.setChunked(true);
+    backupConfig8.setThreadCount(2);
+    backupConfig8.setEncryptData(true);
+    backupConfig8.setCompressData(true);
+    backupConfig8.setHashData(true);
+    backupConfig8.setSignHash(true);
+    RestoreConfig restoreConfig8 = new RestoreConfig(backupDir8, BACKUP_ID, false);
+
     return new Object[][] {
       { label0, backupable0, backupConfig0, restoreConfig0 },
       { label1, backupable1, backupConfig1, restoreConfig1 },
@@ -138,6 +160,8 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
       { label4, backupable4, backupConfig4, restoreConfig4 },
       { label5, backupable5, backupConfig5, restoreConfig5 },
       { label6, backupable6, backupConfig6, restoreConfig6 },
+      { label7, backupable7, backupConfig7, restoreConfig7 },
+      { label8, backupable8, backupConfig8, restoreConfig8 },
     };
   }
 
@@ -228,6 +252,99 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
     cleanDirectories(sourceDirectory, backupPath);
   }
 
+  /**
+   * Chunked backups of the same files share their chunks, which are removed
+   * with the last backup using them.
+   */
+  @Test
+  public void testChunkedBackupsShareChunks() throws Exception
+  {
+    Path sourceDirectory = createSourceDirectory("chunked-shared");
+    BackupDirectory backupDir = buildBackupDir("chunked-shared");
+    BackupManager backupManager = new BackupManager(BACKEND_ID);
+    Path chunksDirectory = new File(backupDir.getPath(), "chunks").toPath();
+
+    String initialBackupId = BACKUP_ID + "_0";
+    BackupConfig backupConfig0 = new BackupConfig(backupDir, initialBackupId, false);
+    backupConfig0.setChunked(true);
+    backupManager.createBackup(buildBackupable(sourceDirectory, 2), backupConfig0);
+    List<Path> initialChunks = listChunks(chunksDirectory);
+    assertThat(initialChunks).hasSize(2);
+
+    // same 2 files plus 2 new files: only the new files add chunks
+    Backupable backupable1 = buildBackupable(sourceDirectory, 4);
+    BackupConfig backupConfig1 = new BackupConfig(backupDir, BACKUP_ID, true);
+    backupConfig1.setChunked(true);
+    backupManager.createBackup(backupable1, backupConfig1);
+    assertThat(listChunks(chunksDirectory)).hasSize(4).containsAll(initialChunks);
+    // chunked backups never depend on other backups
+    assertThat(backupDir.getBackupInfo(BACKUP_ID).getDependencies()).isEmpty();
+
+    // removing the first backup keeps the chunks used by the second one
+    backupManager.removeBackup(backupDir, initialBackupId);
+    assertThat(listChunks(chunksDirectory)).hasSize(4);
+
+    removeBackedUpFiles(backupable1);
+    backupManager.restoreBackup(backupable1, new RestoreConfig(backupDir, BACKUP_ID, false));
+    for (int i = 0; i < 4; i++)
+    {
+      assertThat(sourceDirectory.resolve(FILE_NAME_PREFIX + i).toFile()).hasContent(FILE_NAME_PREFIX + i);
+    }
+
+    backupManager.removeBackup(backupDir, BACKUP_ID);
+    assertThat(listChunks(chunksDirectory)).isEmpty();
+
+    cleanDirectories(sourceDirectory, backupDir.getPath());
+  }
+
+  /**
+   * Encrypted chunks are not named after a plain hash of their content, which
+   * would reveal whether the backups contain some known content, but are
+   * still shared between backups.
+   */
+  @Test
+  public void testEncryptedChunksAreNamedWithKeyedHash() throws Exception
+  {
+    Path sourceDirectory = createSourceDirectory("chunked-encrypted");
+    BackupDirectory backupDir = buildBackupDir("chunked-encrypted");
+    BackupManager backupManager = new BackupManager(BACKEND_ID);
+    Path chunksDirectory = new File(backupDir.getPath(), "chunks").toPath();
+
+    String initialBackupId = BACKUP_ID + "_0";
+    BackupConfig backupConfig0 = new BackupConfig(backupDir, initialBackupId, false);
+    backupConfig0.setChunked(true);
+    backupConfig0.setEncryptData(true);
+    backupManager.createBackup(buildBackupable(sourceDirectory, 2), backupConfig0);
+    List<Path> initialChunks = listChunks(chunksDirectory);
+    assertThat(initialChunks).hasSize(2);
+    for (Path chunk : initialChunks)
+    {
+      String chunkName = chunk.getFileName().toString();
+      for (int i = 0; i < 2; i++)
+      {
+        String plainHash = bytesToHexNoSpace(
+            MessageDigest.getInstance("SHA-256").digest(StaticUtils.getBytes(FILE_NAME_PREFIX + i)));
+        assertThat(chunkName).doesNotStartWith(plainHash);
+      }
+    }
+
+    Backupable backupable1 = buildBackupable(sourceDirectory, 3);
+    BackupConfig backupConfig1 = new BackupConfig(backupDir, BACKUP_ID, false);
+    backupConfig1.setChunked(true);
+    backupConfig1.setEncryptData(true);
+    backupManager.createBackup(backupable1, backupConfig1);
+    assertThat(listChunks(chunksDirectory)).hasSize(3).containsAll(initialChunks);
+
+    removeBackedUpFiles(backupable1);
+    backupManager.restoreBackup(backupable1, new RestoreConfig(backupDir, BACKUP_ID, false));
+    for (int i = 0; i < 3; i++)
+    {
+      assertThat(sourceDirectory.resolve(FILE_NAME_PREFIX + i).toFile()).hasContent(FILE_NAME_PREFIX + i);
+    }
+
+    cleanDirectories(sourceDirectory, backupDir.getPath());
+  }
+
   @Test
   public void testCreateDirectoryWithNumericSuffix() throws Exception
   {
@@ -268,6 +385,25 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
     recursiveDelete(actualTargetDir);
   }
 
+  private List<Path> listChunks(Path chunksDirectory) throws IOException
+  {
+    List<Path> chunks = new ArrayList<>();
+    try (DirectoryStream<Path> subDirs = Files.newDirectoryStream(chunksDirectory))
+    {
+      for (Path subDir : subDirs)
+      {
+        try (DirectoryStream<Path> chunkFiles = Files.newDirectoryStream(subDir))
+        {
+          for (Path chunkFile : chunkFiles)
+          {
+            chunks.add(chunkFile);
+          }
+        }
+      }
+    }
+    return chunks;
+  }
+
   private void cleanDirectories(Path sourceDirectory, String backupPath)
   {
     StaticUtils.recursiveDelete(sourceDirectory.toFile());
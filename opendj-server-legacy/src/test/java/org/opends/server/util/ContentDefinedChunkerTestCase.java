@@ -0,0 +1,122 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ContentDefinedChunkerTestCase extends UtilTestCase
+{
+  private static final int DATA_SIZE = 8 * 1024 * 1024;
+
+  @Test
+  public void testChunksAreBoundedAndRebuildTheStream() throws Exception
+  {
+    final byte[] data = randomBytes(DATA_SIZE, 1);
+    final List<byte[]> chunks = split(data);
+
+    final ByteArrayOutputStream rebuilt = new ByteArrayOutputStream(data.length);
+    for (int i = 0; i < chunks.size(); i++)
+    {
+      final byte[] chunk = chunks.get(i);
+      assertThat(chunk.length).isLessThanOrEqualTo(ContentDefinedChunker.MAX_CHUNK_SIZE);
+      if (i < chunks.size() - 1)
+      {
+        assertThat(chunk.length).isGreaterThanOrEqualTo(ContentDefinedChunker.MIN_CHUNK_SIZE);
+      }
+      rebuilt.write(chunk);
+    }
+    assertThat(rebuilt.toByteArray()).isEqualTo(data);
+    // boundaries depend on the content: random data must not only be cut at the maximum size
+    assertThat(chunks.size()).isGreaterThan(DATA_SIZE / ContentDefinedChunker.MAX_CHUNK_SIZE);
+  }
+
+  @Test
+  public void testEmptyStreamHasNoChunk() throws Exception
+  {
+    assertThat(split(new byte[0])).isEmpty();
+  }
+
+  @Test
+  public void testInsertionOnlyChangesNearbyChunks() throws Exception
+  {
+    final byte[] data = randomBytes(DATA_SIZE, 2);
+    final byte[] inserted = randomBytes(100, 3);
+    final int insertionOffset = DATA_SIZE / 2;
+    final byte[] modified = new byte[data.length + inserted.length];
+    System.arraycopy(data, 0, modified, 0, insertionOffset);
+    System.arraycopy(inserted, 0, modified, insertionOffset, inserted.length);
+    System.arraycopy(data, insertionOffset, modified, insertionOffset + inserted.length,
+        data.length - insertionOffset);
+
+    final List<byte[]> chunks = split(data);
+    final Set<ByteBuffer> originalChunks = new HashSet<>();
+    for (byte[] chunk : chunks)
+    {
+      originalChunks.add(ByteBuffer.wrap(chunk));
+    }
+    int newChunks = 0;
+    for (byte[] chunk : split(modified))
+    {
+      if (!originalChunks.contains(ByteBuffer.wrap(chunk)))
+      {
+        newChunks++;
+      }
+    }
+    assertThat(newChunks).isBetween(1, 2);
+  }
+
+  private List<byte[]> split(byte[] data) throws Exception
+  {
+    final ContentDefinedChunker chunker = new ContentDefinedChunker(new ByteArrayInputStream(data));
+    final List<byte[]> chunks = new ArrayList<>();
+    byte[] chunk = chunker.next();
+    while (chunk != null)
+    {
+      chunks.add(chunk);
+      chunk = chunker.next();
+    }
+    return chunks;
+  }
+
+  private byte[] randomBytes(int size, long seed)
+  {
+    final byte[] bytes = new byte[size];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LatencyHistogramTestCase extends UtilTestCase
+{
+  @Test
+  public void testEmptyHistogram()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.getTotalCount()).isEqualTo(0);
+    assertThat(histogram.getMin()).isEqualTo(0);
+    assertThat(histogram.getMax()).isEqualTo(0);
+    assertThat(histogram.getMean()).isEqualTo(0);
+    assertThat(histogram.getValueAtPercentile(99)).isEqualTo(0);
+  }
+
+  @Test
+  public void testSmallValuesAreExact()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++)
+    {
+      histogram.recordValue(i);
+    }
+    assertThat(histogram.getTotalCount()).isEqualTo(100);
+    assertThat(histogram.getMin()).isEqualTo(1);
+    assertThat(histogram.getMax()).isEqualTo(100);
+    assertThat(histogram.getMean()).isEqualTo(50.5);
+    assertThat(histogram.getValueAtPercentile(50)).isEqualTo(50);
+    assertThat(histogram.getValueAtPercentile(99)).isEqualTo(99);
+    assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100);
+    assertThat(histogram.getValueAtPercentile(0)).isEqualTo(1);
+  }
+
+  @Test
+  public void testLargeValuesHaveBoundedError()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final List<Long> values = new ArrayList<>();
+    for (long value = 1000; value <= 1000000000L; value *= 10)
+    {
+      values.add(value);
+      values.add(value + 1);
+      histogram.recordValue(value);
+      histogram.recordValue(value + 1);
+    }
+    for (int percentile = 10; percentile <= 100; percentile += 10)
+    {
+      final long expected = values.get((int) Math.ceil(percentile / 100.0 * values.size()) - 1);
+      final long actual = histogram.getValueAtPercentile(percentile);
+      assertThat(actual).isGreaterThanOrEqualTo(expected);
+      assertThat((double) actual).isLessThanOrEqualTo(expected * (1 + 1.0 / 64));
+    }
+    assertThat(histogram.getMax()).isEqualTo(1000000001L);
+  }
+
+  @Test
+  public void testValuesOutOfRangeAreClamped()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(-5);
+    histogram.recordValue(Long.MAX_VALUE);
+    assertThat(histogram.getMin()).isEqualTo(0);
+    assertThat(histogram.getMax()).isEqualTo(LatencyHistogram.MAX_TRACKABLE_VALUE);
+    assertThat(histogram.getValueAtPercentile(100)).isEqualTo(LatencyHistogram.MAX_TRACKABLE_VALUE);
+  }
+
+  @Test
+  public void testSnapshotAndResetMovesValues()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(10);
+    histogram.recordValue(20000);
+
+    final LatencyHistogram snapshot = histogram.snapshotAndReset();
+    assertThat(snapshot.getTotalCount()).isEqualTo(2);
+    assertThat(snapshot.getMax()).isEqualTo(20000);
+    assertThat(histogram.getTotalCount()).isEqualTo(0);
+    assertThat(histogram.getMax()).isEqualTo(0);
+
+    histogram.recordValue(5);
+    final LatencyHistogram total = new LatencyHistogram();
+    total.add(snapshot);
+    total.add(histogram);
+    assertThat(total.getTotalCount()).isEqualTo(3);
+    assertThat(total.getMin()).isEqualTo(5);
+    assertThat(total.getMax()).isEqualTo(20000);
+  }
+
+  @Test
+  public void testConcurrentRecording() throws Exception
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++)
+    {
+      threads[i] = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          for (int j = 0; j < 10000; j++)
+          {
+            histogram.recordValue(j);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    assertThat(histogram.getTotalCount()).isEqualTo(40000);
+    assertThat(histogram.getMax()).isEqualTo(9999);
+  }
+}